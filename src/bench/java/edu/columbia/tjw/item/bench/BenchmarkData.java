@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.bench;
+
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.base.raw.RawFittingGrid;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Loads the fixtures shared by the benchmarks (the same files used by the unit tests).
+ */
+final class BenchmarkData
+{
+    static final String SMALL_GRID = "/raw_data.dat";
+    static final String LARGE_GRID = "/raw_data_large.dat";
+    static final String SMALL_MODEL = "/test_model_small.dat";
+    static final String MEDIUM_MODEL = "/test_model_medium.dat";
+
+    private BenchmarkData()
+    {
+    }
+
+    static ItemFittingGrid<SimpleStatus, SimpleRegressor> loadGrid(final String fileName_)
+    {
+        try (final InputStream iStream = open(fileName_))
+        {
+            return RawFittingGrid.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> loadParams(final String fileName_)
+    {
+        try (final InputStream iStream = open(fileName_))
+        {
+            return ItemParameters.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class,
+                    StandardCurveType.class);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InputStream open(final String fileName_) throws IOException
+    {
+        final InputStream iStream = BenchmarkData.class.getResourceAsStream(fileName_);
+
+        if (null == iStream)
+        {
+            throw new IOException("Missing fixture: " + fileName_);
+        }
+
+        return iStream;
+    }
+}
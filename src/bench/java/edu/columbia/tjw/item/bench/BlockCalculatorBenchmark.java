@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.bench;
+
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.fit.PackedParameters;
+import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
+import edu.columbia.tjw.item.fit.calculator.BlockResult;
+import edu.columbia.tjw.item.fit.calculator.ColumnOps;
+import edu.columbia.tjw.item.fit.calculator.FitPointGenerator;
+import edu.columbia.tjw.item.fit.calculator.ItemFitPoint;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full pass of BlockResultCalculator.compute over the grid, for each calculation type, as done for every point
+ * visited by the optimizers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlockCalculatorBenchmark
+{
+    @Param({"VALUE", "FIRST_DERIVATIVE", "SECOND_DERIVATIVE"})
+    public BlockCalculationType _type;
+
+    @Param({"1000", "10000"})
+    public int _blockSize;
+
+    @Param({"1", "4"})
+    public int _threads;
+
+    @Param({BenchmarkData.SMALL_GRID, BenchmarkData.LARGE_GRID})
+    public String _gridFile;
+
+    private ForkJoinExecutor _executor;
+    private FitPointGenerator<SimpleStatus, SimpleRegressor, StandardCurveType> _generator;
+    private PackedParameters<SimpleStatus, SimpleRegressor, StandardCurveType> _packed;
+
+    @Setup
+    public void setup()
+    {
+        final ItemFittingGrid<SimpleStatus, SimpleRegressor> grid = BenchmarkData.loadGrid(_gridFile);
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                BenchmarkData.loadParams(BenchmarkData.MEDIUM_MODEL);
+
+        _executor = new ForkJoinExecutor(_threads);
+        _generator = new FitPointGenerator<>(grid, _blockSize, ColumnOps.getOps(false), _executor);
+        _packed = params.generatePacked();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _executor.close();
+    }
+
+    @Benchmark
+    public BlockResult compute()
+    {
+        // A fresh point each time, otherwise the blocks would simply be cached.
+        final ItemFitPoint<SimpleStatus, SimpleRegressor, StandardCurveType> point =
+                _generator.generatePoint(_packed);
+        point.computeAll(_type);
+        return point.getAggregated(_type);
+    }
+}
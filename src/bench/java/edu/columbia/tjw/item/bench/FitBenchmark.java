@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.bench;
+
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.StandardCurveFactory;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.fit.FitResult;
+import edu.columbia.tjw.item.fit.ItemFitter;
+import edu.columbia.tjw.item.optimize.ConvergenceException;
+import edu.columbia.tjw.item.util.random.PrngType;
+import edu.columbia.tjw.item.util.random.RandomTool;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An end to end fit, the same one run by ItemFitterTest.basicTest. This takes minutes, so it is measured a single
+ * shot at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class FitBenchmark
+{
+    @Param({"1", "4"})
+    public int _threads;
+
+    @Param({BenchmarkData.SMALL_GRID})
+    public String _gridFile;
+
+    private ItemFittingGrid<SimpleStatus, SimpleRegressor> _grid;
+    private Set<SimpleRegressor> _curveRegs;
+    private ForkJoinExecutor _executor;
+
+    @Setup
+    public void setup()
+    {
+        _grid = BenchmarkData.loadGrid(_gridFile);
+        _curveRegs = new TreeSet<>();
+
+        for (final String name : new String[]{"FICO", "INCENTIVE", "AGE"})
+        {
+            _curveRegs.add(_grid.getRegressorFamily().getFromName(name));
+        }
+
+        _executor = new ForkJoinExecutor(_threads);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _executor.close();
+    }
+
+    @Benchmark
+    public FitResult<SimpleStatus, SimpleRegressor, StandardCurveType> fitModel() throws ConvergenceException
+    {
+        final SimpleRegressor intercept = _grid.getRegressorFamily().getFromName("INTERCEPT");
+        final ItemSettings settings = ItemSettings.newBuilder()
+                .setRand(RandomTool.getRandomGenerator(PrngType.SECURE, 0xcafebabe))
+                .setExecutor(_executor).build();
+
+        final ItemFitter<SimpleStatus, SimpleRegressor, StandardCurveType> fitter =
+                new ItemFitter<>(new StandardCurveFactory<>(), intercept.getFamily(), _grid, settings);
+
+        return fitter.fitModel(Collections.emptySet(), _curveRegs, 2, false);
+    }
+}
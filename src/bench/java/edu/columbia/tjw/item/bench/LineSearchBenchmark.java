@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.bench;
+
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.algo.DoubleVector;
+import edu.columbia.tjw.item.algo.VectorTools;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.fit.base.BaseModelFunction;
+import edu.columbia.tjw.item.optimize.ConvergenceException;
+import edu.columbia.tjw.item.optimize.GoldenSectionOptimizer;
+import edu.columbia.tjw.item.optimize.OptimizationResult;
+import edu.columbia.tjw.item.optimize.UnivariateOptimizationFunction;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single golden section line search, the inner loop of the multivariate optimizer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LineSearchBenchmark
+{
+    private static final double TOLERANCE = Math.sqrt(Math.ulp(1.0));
+    private static final int MAX_EVAL_COUNT = 100;
+    private static final double PERTURBATION = 0.1;
+
+    @Param({"1000", "10000"})
+    public int _blockSize;
+
+    @Param({"1", "4"})
+    public int _threads;
+
+    @Param({BenchmarkData.SMALL_GRID})
+    public String _gridFile;
+
+    private ForkJoinExecutor _executor;
+    private GoldenSectionOptimizer _optimizer;
+    private UnivariateOptimizationFunction _function;
+
+    @Setup
+    public void setup()
+    {
+        final ItemFittingGrid<SimpleStatus, SimpleRegressor> grid = BenchmarkData.loadGrid(_gridFile);
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                BenchmarkData.loadParams(BenchmarkData.MEDIUM_MODEL);
+
+        _executor = new ForkJoinExecutor(_threads);
+        final ItemSettings settings = ItemSettings.newBuilder().setBlockSize(_blockSize).setExecutor(_executor)
+                .build();
+
+        final BaseModelFunction<SimpleStatus, SimpleRegressor, StandardCurveType> function =
+                new BaseModelFunction<>(grid, settings, params.generatePacked());
+        // Start away from the fitted betas, and search back towards them.
+        final DoubleVector fitted = function.getBeta();
+        final DoubleVector start = VectorTools.scalarMultiply(fitted, 1.0 - PERTURBATION);
+        final DoubleVector direction = VectorTools.subtract(fitted, start);
+
+        _function = new UnivariateOptimizationFunction(function, start, direction);
+        _optimizer = new GoldenSectionOptimizer(TOLERANCE, TOLERANCE, _blockSize, MAX_EVAL_COUNT,
+                settings.getTarget(), settings);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _executor.close();
+    }
+
+    @Benchmark
+    public OptimizationResult lineSearch() throws ConvergenceException
+    {
+        return _optimizer.optimize(_function);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.bench;
+
+import edu.columbia.tjw.item.ItemModel;
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.fit.ParamFittingGrid;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row by row model evaluation, the path taken by everything that does not go through the block calculators.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModelBenchmark
+{
+    @Param({BenchmarkData.SMALL_MODEL, BenchmarkData.MEDIUM_MODEL})
+    public String _modelFile;
+
+    @Param({BenchmarkData.SMALL_GRID})
+    public String _gridFile;
+
+    private ItemModel<SimpleStatus, SimpleRegressor, StandardCurveType> _model;
+    private ParamFittingGrid<SimpleStatus, SimpleRegressor, StandardCurveType> _grid;
+    private double[] _derivative;
+    private double[] _jDiag;
+    private double[][] _secondDerivative;
+
+    @Setup
+    public void setup()
+    {
+        final ItemFittingGrid<SimpleStatus, SimpleRegressor> raw = BenchmarkData.loadGrid(_gridFile);
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                BenchmarkData.loadParams(_modelFile);
+
+        _model = new ItemModel<>(params);
+        _grid = new ParamFittingGrid<>(params, raw);
+
+        final int dimension = _model.getDerivativeSize();
+        _derivative = new double[dimension];
+        _jDiag = new double[dimension];
+        _secondDerivative = new double[dimension][dimension];
+    }
+
+    @Benchmark
+    public double logLikelihood()
+    {
+        double sum = 0.0;
+
+        for (int i = 0; i < _grid.size(); i++)
+        {
+            sum += _model.logLikelihood(_grid, i);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public void computeGradient(final Blackhole bh_)
+    {
+        for (int i = 0; i < _grid.size(); i++)
+        {
+            _model.computeGradient(_grid, i, _derivative, _jDiag, null);
+            bh_.consume(_derivative);
+        }
+    }
+
+    @Benchmark
+    public void computeGradientAndHessian(final Blackhole bh_)
+    {
+        for (int i = 0; i < _grid.size(); i++)
+        {
+            _model.computeGradient(_grid, i, _derivative, _jDiag, _secondDerivative);
+            bh_.consume(_secondDerivative);
+        }
+    }
+}
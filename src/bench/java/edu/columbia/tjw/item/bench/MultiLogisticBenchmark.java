@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.bench;
+
+import edu.columbia.tjw.item.util.MultiLogistic;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per row logistic calculations, on a batch of random power scores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MultiLogisticBenchmark
+{
+    private static final int ROWS = 1000;
+
+    @Param({"3", "8"})
+    public int _statusCount;
+
+    private double[][] _powerScores;
+    private double[][] _probabilities;
+    private double[] _gradient;
+    private double[][] _hessian;
+
+    @Setup
+    public void setup()
+    {
+        final Random rand = new Random(0xcafebabe);
+        _powerScores = new double[ROWS][_statusCount];
+        _probabilities = new double[ROWS][_statusCount];
+
+        for (int i = 0; i < ROWS; i++)
+        {
+            for (int k = 0; k < _statusCount; k++)
+            {
+                _powerScores[i][k] = rand.nextGaussian();
+            }
+
+            MultiLogistic.multiLogisticFunction(_powerScores[i], _probabilities[i]);
+        }
+
+        _gradient = new double[_statusCount];
+        _hessian = new double[_statusCount][_statusCount];
+    }
+
+    @Benchmark
+    public double multiLogisticFunction()
+    {
+        double sum = 0.0;
+
+        for (int i = 0; i < ROWS; i++)
+        {
+            sum += MultiLogistic.multiLogisticFunction(_powerScores[i], _gradient);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public double multiLogisticEntropy()
+    {
+        double sum = 0.0;
+
+        for (int i = 0; i < ROWS; i++)
+        {
+            sum += MultiLogistic.multiLogisticEntropy(_probabilities[i], i % _statusCount);
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public double[] powerScoreEntropyGradient()
+    {
+        for (int i = 0; i < ROWS; i++)
+        {
+            MultiLogistic.powerScoreEntropyGradient(_probabilities[i], i % _statusCount, _gradient);
+        }
+
+        return _gradient;
+    }
+
+    @Benchmark
+    public double[][] powerScoreEntropyHessian()
+    {
+        for (int i = 0; i < ROWS; i++)
+        {
+            MultiLogistic.powerScoreEntropyHessian(_probabilities[i], _hessian);
+        }
+
+        return _hessian;
+    }
+}
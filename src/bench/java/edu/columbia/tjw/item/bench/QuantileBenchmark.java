@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.bench;
+
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.algo.GKQuantiles;
+import edu.columbia.tjw.item.algo.QuantileStatistics;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.raw.RawReader;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quantile calculations over a single regressor, as used when choosing curve starting points.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QuantileBenchmark
+{
+    @Param({"FICO", "INCENTIVE", "AGE"})
+    public String _regressor;
+
+    @Param({BenchmarkData.SMALL_GRID})
+    public String _gridFile;
+
+    private ItemRegressorReader _xReader;
+    private ItemRegressorReader _yReader;
+
+    @Setup
+    public void setup()
+    {
+        final ItemFittingGrid<SimpleStatus, SimpleRegressor> grid = BenchmarkData.loadGrid(_gridFile);
+        _xReader = grid.getRegressorReader(grid.getRegressorFamily().getFromName(_regressor));
+
+        // Any response will do, use an indicator of the transition actually taken.
+        final double[] response = new double[grid.size()];
+        final int fromOrdinal = grid.getFromStatus().ordinal();
+
+        for (int i = 0; i < response.length; i++)
+        {
+            response[i] = (grid.getNextStatus(i) == fromOrdinal) ? 0.0 : 1.0;
+        }
+
+        _yReader = new RawReader(response);
+    }
+
+    @Benchmark
+    public GKQuantiles gkOffer()
+    {
+        final GKQuantiles quantiles = new GKQuantiles();
+
+        for (int i = 0; i < _xReader.size(); i++)
+        {
+            quantiles.offer(_xReader.asDouble(i));
+        }
+
+        return quantiles;
+    }
+
+    @Benchmark
+    public QuantileStatistics quantileStatistics()
+    {
+        return QuantileStatistics.generate(_xReader, _yReader);
+    }
+}
@@ -0,0 +1,145 @@
+package edu.columbia.tjw.item.fit.calculator;
+
+import edu.columbia.tjw.item.ItemCurve;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.util.MultiLogistic;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of the column operations, using the jdk.incubator.vector module.
+ * <p>
+ * This is only compiled by the vector profile, and only loaded (reflectively, by ColumnOps) when requested through
+ * ItemSettings.getVectorize(). Rows are processed in SIMD lanes, so the softmax over the reachable statuses is done
+ * for a full vector of rows at once.
+ * <p>
+ * The products and sums are performed in the same order as the scalar code, but the exponentials are computed by
+ * the vector intrinsics, so results may differ from FastMath in the last few bits.
+ *
+ * @author tyler
+ */
+final class VectorColumnOps extends ColumnOps
+{
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    VectorColumnOps()
+    {
+        // Make sure the module is actually usable before anyone relies on this.
+        DoubleVector.zero(SPECIES);
+    }
+
+    @Override
+    public void multiply(final double[] weights_, final double[] column_, final int size_)
+    {
+        for (int i = 0; i < size_; i += SPECIES.length())
+        {
+            final VectorMask<Double> mask = SPECIES.indexInRange(i, size_);
+            final DoubleVector weights = DoubleVector.fromArray(SPECIES, weights_, i, mask);
+            final DoubleVector column = DoubleVector.fromArray(SPECIES, column_, i, mask);
+            weights.mul(column).intoArray(weights_, i, mask);
+        }
+    }
+
+    @Override
+    public void multiplyCurve(final double[] weights_, final ItemCurve<?> curve_, final double[] column_,
+                              final int size_)
+    {
+        final Object type = curve_.getCurveType();
+
+        if (type == StandardCurveType.LOGISTIC)
+        {
+            // Mirrors StandardCurveFactory.LogisticCurve: 1 / (1 + exp(-slope * (x - center)))
+            final double center = curve_.getParam(0);
+            final double slopeParam = curve_.getParam(1);
+            final double slope = slopeParam * slopeParam;
+
+            for (int i = 0; i < size_; i += SPECIES.length())
+            {
+                final VectorMask<Double> mask = SPECIES.indexInRange(i, size_);
+                final DoubleVector x = DoubleVector.fromArray(SPECIES, column_, i, mask);
+                final DoubleVector exp = x.sub(center).mul(slope).neg().lanewise(VectorOperators.EXP);
+                final DoubleVector value = DoubleVector.broadcast(SPECIES, 1.0).div(exp.add(1.0));
+                DoubleVector.fromArray(SPECIES, weights_, i, mask).mul(value).intoArray(weights_, i, mask);
+            }
+        }
+        else if (type == StandardCurveType.GAUSSIAN)
+        {
+            // Mirrors StandardCurveFactory.GaussianCurve: exp(-(x - mean)^2 / (2 * stdDev^2))
+            final double mean = curve_.getParam(0);
+            final double stdDev = curve_.getParam(1);
+            final double variance = (stdDev * stdDev);
+            final double expNormalizer = -1.0 / (2.0 * variance);
+
+            for (int i = 0; i < size_; i += SPECIES.length())
+            {
+                final VectorMask<Double> mask = SPECIES.indexInRange(i, size_);
+                final DoubleVector x = DoubleVector.fromArray(SPECIES, column_, i, mask);
+                final DoubleVector centered = x.sub(mean);
+                final DoubleVector value = centered.mul(expNormalizer).mul(centered)
+                        .lanewise(VectorOperators.EXP);
+                DoubleVector.fromArray(SPECIES, weights_, i, mask).mul(value).intoArray(weights_, i, mask);
+            }
+        }
+        else
+        {
+            // Unknown curve, nothing to do but apply it directly.
+            for (int i = 0; i < size_; i++)
+            {
+                weights_[i] *= curve_.transform(column_[i]);
+            }
+        }
+    }
+
+    @Override
+    public void multiplyAdd(final double[] scores_, final double[] weights_, final double beta_,
+                            final int size_)
+    {
+        for (int i = 0; i < size_; i += SPECIES.length())
+        {
+            final VectorMask<Double> mask = SPECIES.indexInRange(i, size_);
+            final DoubleVector weights = DoubleVector.fromArray(SPECIES, weights_, i, mask);
+            final DoubleVector scores = DoubleVector.fromArray(SPECIES, scores_, i, mask);
+
+            // N.B: Not an FMA, keep the same rounding as the scalar code.
+            scores.add(weights.mul(beta_)).intoArray(scores_, i, mask);
+        }
+    }
+
+    @Override
+    public void multiLogistic(final double[][] scores_, final int size_)
+    {
+        final int reachable = scores_.length;
+
+        for (int i = 0; i < size_; i += SPECIES.length())
+        {
+            final VectorMask<Double> mask = SPECIES.indexInRange(i, size_);
+            DoubleVector maxSum = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+
+            for (int k = 0; k < reachable; k++)
+            {
+                maxSum = maxSum.max(DoubleVector.fromArray(SPECIES, scores_[k], i, mask));
+            }
+
+            DoubleVector expSum = DoubleVector.zero(SPECIES);
+
+            for (int k = 0; k < reachable; k++)
+            {
+                final DoubleVector raw = DoubleVector.fromArray(SPECIES, scores_[k], i, mask);
+                final DoubleVector exp = raw.sub(maxSum).max(MultiLogistic.MIN_POWER_SCORE)
+                        .lanewise(VectorOperators.EXP);
+                exp.intoArray(scores_[k], i, mask);
+                expSum = expSum.add(exp);
+            }
+
+            final DoubleVector normalizer = DoubleVector.broadcast(SPECIES, 1.0).div(expSum);
+
+            for (int k = 0; k < reachable; k++)
+            {
+                DoubleVector.fromArray(SPECIES, scores_[k], i, mask).mul(normalizer)
+                        .intoArray(scores_[k], i, mask);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@
  */
 package edu.columbia.tjw.item;
 
+import edu.columbia.tjw.item.algo.SymmetricBlockLayout;
 import edu.columbia.tjw.item.fit.ItemParamGrid;
 import edu.columbia.tjw.item.fit.PackedParameters;
 import edu.columbia.tjw.item.fit.ParamFittingGrid;
@@ -34,6 +35,8 @@ import java.util.logging.Logger;
  * <p>
  * Note that this class is not threadsafe. You need to synchronize on your own,
  * or clone this model and use the clone in other threads.
+ * <p>
+ * To score whole grids (from any number of threads), use an ItemScorer instead.
  *
  * @param <S> The status type for this model
  * @param <R> The regressor type for this model
@@ -67,7 +70,15 @@ public final class ItemModel<S extends ItemStatus<S>, R extends ItemRegressor<R>
     private final double[] _entropyScoreDerivative;
     private final double[][] _entropyScoreHessian;
 
+    // The (transition, entry) of each packed parameter, the second derivative is structured along these.
+    private final int[] _paramTransitions;
+    private final int[] _paramEntries;
+
+    // Groups the parameters by (transition, entry), the blocks of the second derivative.
+    private final SymmetricBlockLayout _hessianLayout;
 
+    // Packed upper triangle of the second derivative of a single row, only allocated if needed.
+    private double[] _packedHessianWorkspace;
 
 
     /**
@@ -111,6 +122,30 @@ public final class ItemModel<S extends ItemStatus<S>, R extends ItemRegressor<R>
 
             _entropyScoreDerivative = new double[_reachableSize];
             _entropyScoreHessian = new double[_reachableSize][_reachableSize];
+
+            final int dimension = _packed.size();
+            _paramTransitions = new int[dimension];
+            _paramEntries = new int[dimension];
+
+            int groupCount = 0;
+            final int[] groupStarts = new int[dimension + 1];
+
+            for (int i = 0; i < dimension; i++)
+            {
+                _paramTransitions[i] = _packed.getTransition(i);
+                _paramEntries[i] = _packed.getEntry(i);
+
+                // The packed parameters of each (transition, entry) are contiguous.
+                if (i == 0 || _paramTransitions[i] != _paramTransitions[i - 1]
+                        || _paramEntries[i] != _paramEntries[i - 1])
+                {
+                    groupStarts[groupCount++] = i;
+                }
+            }
+
+            groupStarts[groupCount] = dimension;
+            _hessianLayout = SymmetricBlockLayout.of(Arrays.copyOf(groupStarts, groupCount + 1));
+            _packedHessianWorkspace = null;
         }
     }
 
@@ -130,6 +165,14 @@ public final class ItemModel<S extends ItemStatus<S>, R extends ItemRegressor<R>
         return _packed.size();
     }
 
+    /**
+     * @return The layout of the second derivative written by computePackedGradient, one group per (transition, entry)
+     */
+    public SymmetricBlockLayout getHessianLayout()
+    {
+        return _hessianLayout;
+    }
+
     /**
      * N.B: This is NOT threadsafe! Generate a new model for each thread, there
      * is some internal workspace associated that can't be shared.
@@ -234,6 +277,44 @@ public final class ItemModel<S extends ItemStatus<S>, R extends ItemRegressor<R>
     public void computeGradient(final ParamFittingGrid<S, R, T> grid_,
                                 final int index_, final double[] derivative_,
                                 final double[] jDiag_, final double[][] secondDerivative_)
+    {
+        if (null == secondDerivative_)
+        {
+            computePackedGradient(grid_, index_, derivative_, jDiag_, null);
+            return;
+        }
+
+        final int dimension = _packed.size();
+
+        if (null == _packedHessianWorkspace)
+        {
+            _packedHessianWorkspace = new double[_hessianLayout.getSize()];
+        }
+
+        computePackedGradient(grid_, index_, derivative_, jDiag_, _packedHessianWorkspace);
+
+        for (int w = 0; w < dimension; w++)
+        {
+            _hessianLayout.copyRow(_packedHessianWorkspace, w, secondDerivative_[w]);
+        }
+    }
+
+    /**
+     * Same as computeGradient, but the (symmetric) second derivative is written as the blocks of its upper triangle,
+     * laid out by getHessianLayout.
+     * <p>
+     * N.B: This is NOT threadsafe.
+     *
+     * @param grid_                   The grid holding the data
+     * @param index_                  The row of the grid on which to apply the model
+     * @param derivative_             Output for the gradient
+     * @param jDiag_                  Output for the diagonal of the second derivative, may be null if
+     *                                packedSecondDerivative_ is also null
+     * @param packedSecondDerivative_ Output for the packed second derivative, or null if not needed
+     */
+    public void computePackedGradient(final ParamFittingGrid<S, R, T> grid_,
+                                      final int index_, final double[] derivative_,
+                                      final double[] jDiag_, final double[] packedSecondDerivative_)
     {
         final int dimension = _packed.size();
 
@@ -302,12 +383,12 @@ public final class ItemModel<S extends ItemStatus<S>, R extends ItemRegressor<R>
             derivative_[k] = derivCore * pDeriv;
         }
 
-        if (null != secondDerivative_ || null != jDiag_)
+        if (null != packedSecondDerivative_ || null != jDiag_)
         {
             fillSecondDerivatives(rawReg, actualOffset,
                     modelProbabilities,
                     powerScoreDerivatives, _entropyScoreDerivative,
-                    jDiag_, secondDerivative_);
+                    jDiag_, packedSecondDerivative_);
         }
     }
 
@@ -346,12 +427,13 @@ public final class ItemModel<S extends ItemStatus<S>, R extends ItemRegressor<R>
     private void fillSecondDerivatives(final double[] x_, final int actualOffset_,
                                        final double[] modelProbabilities_, final double[] pDeriv_,
                                        double[] scoreGradient_, final double[] jDiag_,
-                                       double[][] secondDerivative_)
+                                       double[] packedSecondDerivative_)
     {
-        if (null != secondDerivative_ && secondDerivative_.length != jDiag_.length)
+        if (null != packedSecondDerivative_ &&
+                packedSecondDerivative_.length != _hessianLayout.getSize())
         {
-            throw new IllegalArgumentException("Mismatched sizes! " + secondDerivative_.length +
-                    " != " + jDiag_.length);
+            throw new IllegalArgumentException("Mismatched sizes! " + packedSecondDerivative_.length +
+                    " != " + _hessianLayout.getSize());
         }
 
         final int outputSize = modelProbabilities_.length;
@@ -366,8 +448,8 @@ public final class ItemModel<S extends ItemStatus<S>, R extends ItemRegressor<R>
 
         for (int w = 0; w < derivSize; w++)
         {
-            final int wStatus = _packed.getTransition(w);
-            final int entryW = _packed.getEntry(w);
+            final int wStatus = _paramTransitions[w];
+            final int entryW = _paramEntries[w];
             final double pw = pDeriv_[w];
             final double psHessDiag = _entropyScoreHessian[wStatus][wStatus];
             final double psGradW = scoreGradient_[wStatus];
@@ -381,39 +463,58 @@ public final class ItemModel<S extends ItemStatus<S>, R extends ItemRegressor<R>
 
             final double diagVal = diag1 + diag2;
             jDiag_[w] = diagVal;
+        }
+
+        if (null == packedSecondDerivative_)
+        {
+            return;
+        }
+
+        // Fill the blocks in the order they are stored, see SymmetricBlockLayout.
+        final int groupCount = _hessianLayout.getGroupCount();
+        int pointer = 0;
 
-            if (null != secondDerivative_)
+        for (int g = 0; g < groupCount; g++)
+        {
+            final int gStart = _hessianLayout.getGroupStart(g);
+            final int gEnd = gStart + _hessianLayout.getGroupSize(g);
+            final int gStatus = _paramTransitions[gStart];
+            final int entryG = _paramEntries[gStart];
+            final double[] gHessian = _entropyScoreHessian[gStatus];
+            final double psGradG = scoreGradient_[gStatus];
+
+            // The diagonal block, the only one where both parameters belong to the same entry (and transition).
+            for (int w = gStart; w < gEnd; w++)
             {
-                secondDerivative_[w][w] = diagVal;
+                final double pw = pDeriv_[w];
+                packedSecondDerivative_[pointer++] = jDiag_[w];
 
-                // Fill the off diagonal elements if needed.
-                for (int w2 = w + 1; w2 < derivSize; w2++)
+                for (int w2 = w + 1; w2 < gEnd; w2++)
                 {
-                    final int w2Status = _packed.getTransition(w2);
-                    final double pw2 = pDeriv_[w2];
-                    final double ds2 = _entropyScoreHessian[wStatus][w2Status];
-                    final int entryW2 = _packed.getEntry(w2);
+                    final double term1 = pw * pDeriv_[w2] * gHessian[gStatus];
+                    final double psd = powerScoreSecondDerivative(x_, w, w2, gStatus, entryG);
+                    final double term2 = psd * psGradG;
+                    packedSecondDerivative_[pointer++] = term1 + term2;
+                }
+            }
 
-                    final double term1 = pw * pw2 * ds2;
-                    final double term2;
+            // Off diagonal blocks are different entries, so the second derivative of the power score is zero (taking
+            // derivative w.r.t. something that isn't a parameter of this entry), leaving only an outer product of the
+            // power score derivatives scaled by a single element of the entropy hessian.
+            for (int h = g + 1; h < groupCount; h++)
+            {
+                final int hStart = _hessianLayout.getGroupStart(h);
+                final int hEnd = hStart + _hessianLayout.getGroupSize(h);
+                final double ds2 = gHessian[_paramTransitions[hStart]];
 
-                    if (entryW != entryW2)
-                    {
-                        // These are different entries, the second derivative is zero (taking derivative
-                        // w.r.t. something that isn't a parameter of this entry)
-                        term2 = 0.0;
-                    }
-                    else
+                for (int w = gStart; w < gEnd; w++)
+                {
+                    final double pw = pDeriv_[w];
+
+                    for (int w2 = hStart; w2 < hEnd; w2++)
                     {
-                        // N.B: We know wToStatus == zToStatus because their entries match and they have at least one curve
-                        // (otherwise both are betas, and this is zero).
-                        final double psd = powerScoreSecondDerivative(x_, w, w2, wStatus, entryW);
-                        term2 = psd * psGradW;
+                        packedSecondDerivative_[pointer++] = pw * pDeriv_[w2] * ds2;
                     }
-
-                    final double hessianEntry = term1 + term2;
-                    secondDerivative_[w][w2] = hessianEntry;
-                    secondDerivative_[w2][w] = hessianEntry;
                 }
             }
         }
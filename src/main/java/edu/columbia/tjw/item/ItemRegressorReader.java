@@ -45,5 +45,37 @@ public interface ItemRegressorReader
      */
     public int size();
 
+    /**
+     * Reads a block of regressors, equivalent to calling asDouble for each index in [start_, start_ + length_).
+     * <p>
+     * Implementations backed by contiguous storage should override this, so that consumers may read whole blocks
+     * without a (virtual) call per element.
+     *
+     * @param start_  The index of the first observation to read
+     * @param length_ The number of observations to read
+     * @param output_ Receives the values, starting from position zero
+     */
+    public default void read(final int start_, final int length_, final double[] output_)
+    {
+        for (int i = 0; i < length_; i++)
+        {
+            output_[i] = asDouble(start_ + i);
+        }
+    }
+
+    /**
+     * As read(int, int, double[]), but narrowed to floats.
+     *
+     * @param start_  The index of the first observation to read
+     * @param length_ The number of observations to read
+     * @param output_ Receives the values, starting from position zero
+     */
+    public default void read(final int start_, final int length_, final float[] output_)
+    {
+        for (int i = 0; i < length_; i++)
+        {
+            output_[i] = (float) asDouble(start_ + i);
+        }
+    }
 
 }
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item;
+
+import edu.columbia.tjw.item.data.ItemGrid;
+import edu.columbia.tjw.item.fit.calculator.ColumnOps;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import edu.columbia.tjw.item.util.thread.GeneralTask;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compiled form of an ITEM model, for scoring (i.e. computing transition probabilities of) whole grids.
+ * <p>
+ * Unlike ItemModel, this holds no internal workspaces, so a single scorer may be used from any number of threads
+ * at once. All scratch space lives in an ItemWorkspace (see createWorkspace), of which each thread needs its own.
+ * <p>
+ * Rows are scored a tile at a time, one entry (i.e. column) at a time, exactly as the fitting kernels compute the
+ * entropy. With the scalar ColumnOps, the results are bit-for-bit identical to ItemModel.transitionProbability.
+ * <p>
+ * The output is a (rows x reachable statuses) matrix in row major order, the statuses in the order of
+ * getReachable(). It can be written to any DoubleBuffer (e.g. a wrapped array), or to a file, which is memory
+ * mapped in segments as it is written.
+ *
+ * @param <S> The status type for this scorer
+ * @param <R> The regressor type for this scorer
+ * @param <T> The curve type for this scorer
+ */
+public final class ItemScorer<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+{
+    // Small enough that the whole tile of workspaces stays in cache.
+    private static final int TILE_SIZE = 256;
+
+    // The rows scored by each task, enough to amortize the overhead of a task (and of mapping its output).
+    private static final int TASK_ROWS = 64 * 1024;
+
+    private final ItemParameters<S, R, T> _params;
+    private final ColumnOps _ops;
+    private final int _reachableCount;
+
+    public ItemScorer(final ItemParameters<S, R, T> params_)
+    {
+        this(params_, ColumnOps.getOps(false));
+    }
+
+    /**
+     * @param params_ The parameters of the model to score
+     * @param ops_    The column operations to use, the vectorized ops are faster but not bit-for-bit identical to
+     *                ItemModel
+     */
+    public ItemScorer(final ItemParameters<S, R, T> params_, final ColumnOps ops_)
+    {
+        if (null == params_)
+        {
+            throw new NullPointerException("Params cannot be null.");
+        }
+        if (null == ops_)
+        {
+            throw new NullPointerException("Ops cannot be null.");
+        }
+
+        _params = params_;
+        _ops = ops_;
+        _reachableCount = params_.getStatus().getReachableCount();
+    }
+
+    public ItemParameters<S, R, T> getParams()
+    {
+        return _params;
+    }
+
+    /**
+     * @return The statuses reachable from the model's status, in the order of the output columns
+     */
+    public List<S> getReachable()
+    {
+        return _params.getStatus().getReachable();
+    }
+
+    public int getReachableCount()
+    {
+        return _reachableCount;
+    }
+
+    /**
+     * @return A new workspace for use with this scorer, each thread needs its own
+     */
+    public ItemWorkspace<S> createWorkspace()
+    {
+        return new ItemWorkspace<>(_params.getStatus(), _params.getUniqueRegressors().size(), TILE_SIZE);
+    }
+
+    /**
+     * Score every row of the grid, in parallel on the shared executor.
+     *
+     * @param grid_   The grid to score
+     * @param output_ The output matrix, must hold at least (grid_.size() * getReachableCount()) elements
+     */
+    public void score(final ItemGrid<R> grid_, final double[] output_)
+    {
+        score(grid_, DoubleBuffer.wrap(output_), ForkJoinExecutor.shared());
+    }
+
+    /**
+     * Score every row of the grid, in parallel. The output is written with absolute puts, so the position of
+     * output_ is ignored (and not changed).
+     *
+     * @param grid_     The grid to score
+     * @param output_   The output matrix, its limit must be at least (grid_.size() * getReachableCount())
+     * @param executor_ The executor on which to score ranges of rows
+     */
+    public void score(final ItemGrid<R> grid_, final DoubleBuffer output_, final ItemExecutor executor_)
+    {
+        checkGrid(grid_);
+
+        final long required = (long) grid_.size() * _reachableCount;
+
+        if (output_.limit() < required)
+        {
+            throw new IllegalArgumentException("Output too small: " + output_.limit() + " < " + required);
+        }
+
+        final List<BufferTask> tasks = new ArrayList<>();
+
+        for (int start = 0; start < grid_.size(); start += TASK_ROWS)
+        {
+            final int end = Math.min(grid_.size(), start + TASK_ROWS);
+            tasks.add(new BufferTask(grid_, start, end, output_));
+        }
+
+        executor_.runAll(tasks);
+    }
+
+    /**
+     * Score every row of the grid into the given file, in parallel. The file holds the output matrix as little
+     * endian doubles, and nothing else. Each task maps (and then forces) only its own segment of the file, so the
+     * output may be much larger than both the heap and the 2GB limit of a single mapping.
+     *
+     * @param grid_     The grid to score
+     * @param file_     The output file, will be overwritten
+     * @param executor_ The executor on which to score ranges of rows
+     * @throws IOException If the file could not be written
+     */
+    public void score(final ItemGrid<R> grid_, final Path file_, final ItemExecutor executor_) throws IOException
+    {
+        checkGrid(grid_);
+
+        final long rowBytes = (long) _reachableCount * Double.BYTES;
+
+        try (final FileChannel channel = FileChannel.open(file_, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            final long fileSize = rowBytes * grid_.size();
+
+            if (fileSize > 0)
+            {
+                // Size the file up front, rather than having each mapping extend it.
+                channel.write(ByteBuffer.allocate(1), fileSize - 1);
+            }
+
+            final List<FileTask> tasks = new ArrayList<>();
+
+            for (int start = 0; start < grid_.size(); start += TASK_ROWS)
+            {
+                final int end = Math.min(grid_.size(), start + TASK_ROWS);
+                tasks.add(new FileTask(grid_, start, end, channel, rowBytes));
+            }
+
+            try
+            {
+                executor_.runAll(tasks);
+            }
+            catch (final RuntimeException e)
+            {
+                if (e.getCause() instanceof IOException)
+                {
+                    throw (IOException) e.getCause();
+                }
+
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Score the rows [start_, end_) of the grid on the calling thread. The probabilities of row i are written to
+     * output_ starting at outputOffset_ + (i - start_) * getReachableCount().
+     *
+     * @param grid_         The grid to score
+     * @param start_        The first row to score
+     * @param end_          The end (exclusive) of the rows to score
+     * @param workspace_    A workspace from createWorkspace, not in use by any other thread
+     * @param output_       The output matrix
+     * @param outputOffset_ The position in output_ of the first row's probabilities
+     */
+    public void scoreRange(final ItemGrid<R> grid_, final int start_, final int end_,
+                           final ItemWorkspace<S> workspace_, final DoubleBuffer output_, final int outputOffset_)
+    {
+        final double[][] scores = workspace_.getScoreWorkspace();
+        final double[] weights = workspace_.getWeightWorkspace();
+        final int tileSize = workspace_.getTileSize();
+
+        if (scores.length != _reachableCount)
+        {
+            throw new IllegalArgumentException("Workspace does not match this scorer.");
+        }
+
+        final int entryCount = _params.getEntryCount();
+        final ItemRegressorReader[] readers = new ItemRegressorReader[grid_.getRegressorFamily().size()];
+
+        for (int start = start_; start < end_; start += tileSize)
+        {
+            final int size = Math.min(tileSize, end_ - start);
+
+            for (int k = 0; k < _reachableCount; k++)
+            {
+                Arrays.fill(scores[k], 0, size, 0.0);
+            }
+
+            // Column by column, accumulate the power scores in entry order, exactly as ItemModel does.
+            for (int entry = 0; entry < entryCount; entry++)
+            {
+                computeEntryWeights(grid_, readers, entry, start, size, workspace_);
+
+                for (int k = 0; k < _reachableCount; k++)
+                {
+                    _ops.multiplyAdd(scores[k], weights, _params.getBeta(k, entry), size);
+                }
+            }
+
+            _ops.multiLogistic(scores, size);
+
+            int pointer = outputOffset_ + (start - start_) * _reachableCount;
+
+            for (int i = 0; i < size; i++)
+            {
+                for (int k = 0; k < _reachableCount; k++)
+                {
+                    output_.put(pointer++, scores[k][i]);
+                }
+            }
+        }
+    }
+
+    private void computeEntryWeights(final ItemGrid<R> grid_, final ItemRegressorReader[] readers_,
+                                     final int entry_, final int start_, final int size_,
+                                     final ItemWorkspace<S> workspace_)
+    {
+        final double[] weights = workspace_.getWeightWorkspace();
+        Arrays.fill(weights, 0, size_, 1.0);
+
+        if (entry_ == _params.getInterceptIndex())
+        {
+            // The intercept doesn't even need a regressor.
+            return;
+        }
+
+        final double[] column = workspace_.getColumnWorkspace();
+        final int depth = _params.getEntryDepth(entry_);
+
+        for (int w = 0; w < depth; w++)
+        {
+            final R regressor = _params.getEntryRegressor(entry_, w);
+            final int ordinal = regressor.ordinal();
+
+            if (null == readers_[ordinal])
+            {
+                readers_[ordinal] = grid_.getRegressorReader(regressor);
+            }
+
+            readers_[ordinal].read(start_, size_, column);
+            final ItemCurve<T> curve = _params.getEntryCurve(entry_, w);
+
+            if (null == curve)
+            {
+                _ops.multiply(weights, column, size_);
+            }
+            else
+            {
+                _ops.multiplyCurve(weights, curve, column, size_);
+            }
+        }
+    }
+
+    private void checkGrid(final ItemGrid<R> grid_)
+    {
+        for (int entry = 0; entry < _params.getEntryCount(); entry++)
+        {
+            if (entry == _params.getInterceptIndex())
+            {
+                continue;
+            }
+
+            for (int w = 0; w < _params.getEntryDepth(entry); w++)
+            {
+                final R regressor = _params.getEntryRegressor(entry, w);
+
+                if (!grid_.getAvailableRegressors().contains(regressor))
+                {
+                    throw new IllegalArgumentException("Grid is missing regressor: " + regressor);
+                }
+            }
+        }
+    }
+
+    private final class BufferTask extends GeneralTask<Void>
+    {
+        private final ItemGrid<R> _grid;
+        private final int _start;
+        private final int _end;
+        private final DoubleBuffer _output;
+
+        private BufferTask(final ItemGrid<R> grid_, final int start_, final int end_, final DoubleBuffer output_)
+        {
+            _grid = grid_;
+            _start = start_;
+            _end = end_;
+            _output = output_;
+        }
+
+        @Override
+        protected Void subRun()
+        {
+            scoreRange(_grid, _start, _end, createWorkspace(), _output, _start * _reachableCount);
+            return null;
+        }
+    }
+
+    private final class FileTask extends GeneralTask<Void>
+    {
+        private final ItemGrid<R> _grid;
+        private final int _start;
+        private final int _end;
+        private final FileChannel _channel;
+        private final long _rowBytes;
+
+        private FileTask(final ItemGrid<R> grid_, final int start_, final int end_, final FileChannel channel_,
+                         final long rowBytes_)
+        {
+            _grid = grid_;
+            _start = start_;
+            _end = end_;
+            _channel = channel_;
+            _rowBytes = rowBytes_;
+        }
+
+        @Override
+        protected Void subRun() throws IOException
+        {
+            final MappedByteBuffer mapped = _channel.map(FileChannel.MapMode.READ_WRITE, _start * _rowBytes,
+                    (_end - _start) * _rowBytes);
+            final DoubleBuffer output = mapped.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+
+            scoreRange(_grid, _start, _end, createWorkspace(), output, 0);
+            mapped.force();
+            return null;
+        }
+    }
+}
@@ -20,12 +20,18 @@
 package edu.columbia.tjw.item;
 
 import edu.columbia.tjw.item.optimize.OptimizationTarget;
+import edu.columbia.tjw.item.optimize.OptimizerType;
 import edu.columbia.tjw.item.util.random.PrngType;
+import edu.columbia.tjw.item.util.random.RandomStreams;
 import edu.columbia.tjw.item.util.random.RandomTool;
+import edu.columbia.tjw.item.fit.metrics.FitListener;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
 import org.apache.commons.math3.random.RandomGenerator;
 
 import java.io.Serializable;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Some general settings that control how curves are constructed and fit.
@@ -36,7 +42,8 @@ import java.util.Random;
  * builder to make adjusted versions of this class.
  * <p>
  * One word of warning, these will share a single Random, typically this will
- * still be threadsafe, but not always. Be careful about that.
+ * still be threadsafe, but not always. Be careful about that. Parallel tasks
+ * should instead draw their own streams from newRandomStreams().
  *
  * @author tyler
  */
@@ -54,6 +61,14 @@ public final class ItemSettings implements Serializable
     private static final boolean CENTRALITY_BOUND = true;
     private static final double Z_SCORE_CUTOFF = 1.0;
     private static final boolean DEFAULT_VALIDATE = true;
+    private static final boolean DEFAULT_VECTORIZE = false;
+    private static final boolean DEFAULT_PARALLEL_CANDIDATES = false;
+    private static final boolean DEFAULT_RACE_CANDIDATES = false;
+    private static final boolean DEFAULT_PARALLEL_QUANTILES = false;
+    private static final long DEFAULT_ENTRY_WEIGHT_CACHE_BYTES = 0L;
+    private static final OptimizerType DEFAULT_BETA_OPTIMIZER = OptimizerType.LINE_SEARCH;
+    private static final OptimizerType DEFAULT_OPTIMIZER = OptimizerType.LINE_SEARCH;
+    private static final int DEFAULT_FIT_POINT_CACHE_SIZE = 0;
 
     private static final ItemSettings DEFAULT = new ItemSettings();
 
@@ -90,6 +105,38 @@ public final class ItemSettings implements Serializable
 
     private final boolean _complexFitResults;
 
+    // Use SIMD (jdk.incubator.vector) evaluation of blocks when available. Not bit-for-bit identical to scalar.
+    private final boolean _vectorize;
+
+    // Evaluate curve candidates concurrently. Selects the same candidates as the serial path.
+    private final boolean _parallelCandidates;
+
+    // Screen curve candidates on a prefix of the data, and race them block by block before fully calibrating.
+    private final boolean _raceCandidates;
+
+    // Build the quantile breakdowns of the regressors from mergeable sketches of shards, in parallel.
+    private final boolean _parallelQuantiles;
+
+    // Memory (per fit) for caching entry weights, so that evaluations which do not change the curves skip them. The
+    // weights are cached exactly, so the results are the same with or without it. Zero disables the cache.
+    private final long _entryWeightCacheBytes;
+
+    // The optimizer for fits in which only betas are free.
+    private final OptimizerType _betaOptimizer;
+
+    // The optimizer for fits with free curve parameters.
+    private final OptimizerType _optimizer;
+
+    // The number of recently generated fit points (per FitPointGenerator) kept for reuse, zero to disable.
+    private final int _fitPointCacheSize;
+
+    // The executor is not serializable, a deserialized settings object gets a new one with the same parallelism.
+    private final int _parallelism;
+    private final transient ItemExecutor _executor;
+
+    // Receives the measurements of the fit, null (the default) for none. Not serialized.
+    private final transient FitListener _fitListener;
+
     public ItemSettings()
     {
         _rand = RandomTool.getRandomGenerator();
@@ -112,6 +159,17 @@ public final class ItemSettings implements Serializable
         _l2Lambda = 0.0;
 
         _complexFitResults = false;
+        _vectorize = DEFAULT_VECTORIZE;
+        _entryWeightCacheBytes = DEFAULT_ENTRY_WEIGHT_CACHE_BYTES;
+        _parallelCandidates = DEFAULT_PARALLEL_CANDIDATES;
+        _raceCandidates = DEFAULT_RACE_CANDIDATES;
+        _parallelQuantiles = DEFAULT_PARALLEL_QUANTILES;
+        _betaOptimizer = DEFAULT_BETA_OPTIMIZER;
+        _optimizer = DEFAULT_OPTIMIZER;
+        _fitPointCacheSize = DEFAULT_FIT_POINT_CACHE_SIZE;
+        _parallelism = ForkJoinExecutor.getDefaultParallelism();
+        _executor = ForkJoinExecutor.shared();
+        _fitListener = null;
     }
 
     public ItemSettings(final Builder builder_)
@@ -135,6 +193,17 @@ public final class ItemSettings implements Serializable
         _target = builder_.getTarget();
         _l2Lambda = builder_.getL2Lambda();
         _complexFitResults = builder_.getComplexFitResults();
+        _vectorize = builder_.isVectorize();
+        _parallelCandidates = builder_.isParallelCandidates();
+        _raceCandidates = builder_.isRaceCandidates();
+        _parallelQuantiles = builder_.isParallelQuantiles();
+        _entryWeightCacheBytes = builder_.getEntryWeightCacheBytes();
+        _betaOptimizer = builder_.getBetaOptimizer();
+        _optimizer = builder_.getOptimizer();
+        _fitPointCacheSize = builder_.getFitPointCacheSize();
+        _parallelism = builder_.getParallelism();
+        _executor = builder_.getExecutor();
+        _fitListener = builder_.getFitListener();
     }
 
     public double getExhaustiveImprovementLimit()
@@ -207,6 +276,17 @@ public final class ItemSettings implements Serializable
         return _rand;
     }
 
+    /**
+     * Create a source of independent random streams, for parallel tasks. This draws a single seed from getRandom(),
+     * so the streams are reproducible whenever the settings' generator is seeded.
+     *
+     * @return A new source of random streams
+     */
+    public RandomStreams newRandomStreams()
+    {
+        return RandomStreams.create(_rand);
+    }
+
     public double getZScoreCutoff()
     {
         return _zScoreCutoff;
@@ -232,6 +312,80 @@ public final class ItemSettings implements Serializable
         return _complexFitResults;
     }
 
+    public boolean getVectorize()
+    {
+        return _vectorize;
+    }
+
+    public boolean getParallelCandidates()
+    {
+        return _parallelCandidates;
+    }
+
+    public boolean getRaceCandidates()
+    {
+        return _raceCandidates;
+    }
+
+    public boolean getParallelQuantiles()
+    {
+        return _parallelQuantiles;
+    }
+
+    public long getEntryWeightCacheBytes()
+    {
+        return _entryWeightCacheBytes;
+    }
+
+    public OptimizerType getBetaOptimizer()
+    {
+        return _betaOptimizer;
+    }
+
+    public OptimizerType getOptimizer()
+    {
+        return _optimizer;
+    }
+
+    public int getFitPointCacheSize()
+    {
+        return _fitPointCacheSize;
+    }
+
+    public int getParallelism()
+    {
+        return _parallelism;
+    }
+
+    /**
+     * @return The executor used to run the (possibly nested) parallel parts of the fit
+     */
+    public ItemExecutor getExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * @return The listener receiving the measurements (timings, evaluation counts, etc...) of the fit, or null if
+     * the fit is not instrumented
+     */
+    public FitListener getFitListener()
+    {
+        return _fitListener;
+    }
+
+    private Object readResolve()
+    {
+        // The executor is transient, recreate it. Older versions did not record the parallelism (or the optimizers)
+        // at all, use the defaults for those.
+        final int parallelism = _parallelism > 0 ? _parallelism : ForkJoinExecutor.getDefaultParallelism();
+        final OptimizerType optimizer = (null != _optimizer) ? _optimizer : DEFAULT_OPTIMIZER;
+        final OptimizerType betaOptimizer = (null != _betaOptimizer) ? _betaOptimizer : DEFAULT_BETA_OPTIMIZER;
+
+        return new Builder(this).setParallelism(parallelism).setOptimizer(optimizer).setBetaOptimizer(betaOptimizer)
+                .build();
+    }
+
     public Builder toBuilder()
     {
         return new Builder(this);
@@ -264,6 +418,17 @@ public final class ItemSettings implements Serializable
         private double _l2Lambda;
 
         private boolean _complexFitResults;
+        private boolean _vectorize;
+        private boolean _parallelCandidates;
+        private boolean _raceCandidates;
+        private boolean _parallelQuantiles;
+        private long _entryWeightCacheBytes;
+        private OptimizerType _betaOptimizer;
+        private OptimizerType _optimizer;
+        private int _fitPointCacheSize;
+        private int _parallelism;
+        private ItemExecutor _executor;
+        private FitListener _fitListener;
 
         public Builder()
         {
@@ -291,6 +456,17 @@ public final class ItemSettings implements Serializable
             _target = base_.getTarget();
             _l2Lambda = base_.getL2Lambda();
             _complexFitResults = base_.getComplexFitResults();
+            _vectorize = base_.getVectorize();
+            _parallelCandidates = base_.getParallelCandidates();
+            _raceCandidates = base_.getRaceCandidates();
+            _parallelQuantiles = base_.getParallelQuantiles();
+            _entryWeightCacheBytes = base_.getEntryWeightCacheBytes();
+            _betaOptimizer = base_.getBetaOptimizer();
+            _optimizer = base_.getOptimizer();
+            _fitPointCacheSize = base_.getFitPointCacheSize();
+            _parallelism = base_.getParallelism();
+            _executor = base_.getExecutor();
+            _fitListener = base_.getFitListener();
         }
 
         public ItemSettings build()
@@ -526,6 +702,256 @@ public final class ItemSettings implements Serializable
             _complexFitResults = complexFitResults_;
             return this;
         }
+
+        public boolean isVectorize()
+        {
+            return _vectorize;
+        }
+
+        /**
+         * Request SIMD evaluation of the block values. This requires the library to be built with the vector profile
+         * and the jdk.incubator.vector module to be present at runtime, otherwise the scalar code is used.
+         *
+         * @param vectorize_ True to use SIMD evaluation when available
+         * @return this
+         */
+        public Builder setVectorize(final boolean vectorize_)
+        {
+            _vectorize = vectorize_;
+            return this;
+        }
+
+        public boolean isParallelCandidates()
+        {
+            return _parallelCandidates;
+        }
+
+        /**
+         * Evaluate the candidate curves concurrently on the executor. The candidates draw their starting points
+         * from the main PRNG in the same order as the serial search does, before their fits are run, so the results
+         * are the same as the serial search, whatever the parallelism.
+         *
+         * @param parallelCandidates_ True to search the curve candidates in parallel
+         * @return this
+         */
+        public Builder setParallelCandidates(final boolean parallelCandidates_)
+        {
+            _parallelCandidates = parallelCandidates_;
+            return this;
+        }
+
+        public boolean isRaceCandidates()
+        {
+            return _raceCandidates;
+        }
+
+        /**
+         * Race the curve candidates rather than fully calibrating each of them. Candidates are fit on a prefix of
+         * the (shuffled) grid, then evaluated block by block on the full grid, and those clearly worse than the
+         * leader are abandoned before their full calibration.
+         *
+         * @param raceCandidates_ True to race the curve candidates
+         * @return this
+         */
+        public Builder setRaceCandidates(final boolean raceCandidates_)
+        {
+            _raceCandidates = raceCandidates_;
+            return this;
+        }
+
+        public boolean isParallelQuantiles()
+        {
+            return _parallelQuantiles;
+        }
+
+        /**
+         * Build the quantile breakdowns of the regressors (used to place new curves) by sketching shards of each
+         * column in parallel on the executor, and merging the sketches. The buckets are close to, but not exactly,
+         * those of the serial breakdown.
+         *
+         * @param parallelQuantiles_ True to build the quantile breakdowns in parallel
+         * @return this
+         */
+        public Builder setParallelQuantiles(final boolean parallelQuantiles_)
+        {
+            _parallelQuantiles = parallelQuantiles_;
+            return this;
+        }
+
+        public long getEntryWeightCacheBytes()
+        {
+            return _entryWeightCacheBytes;
+        }
+
+        /**
+         * Cache the entry weights (i.e. the products of the curve transforms) of the model, using up to this many
+         * bytes for each fit. The cache belongs to the fit's EntropyCalculator, so it lasts from one optimization to
+         * the next. Evaluations that do not change the curves of an entry, such as every evaluation of a beta only
+         * fit, then just read the cached weights.
+         * <p>
+         * The weights are cached exactly, so results are the same with or without the cache.
+         *
+         * @param entryWeightCacheBytes_ The memory budget, zero to disable the cache
+         * @return this
+         */
+        public Builder setEntryWeightCacheBytes(final long entryWeightCacheBytes_)
+        {
+            if (entryWeightCacheBytes_ < 0)
+            {
+                throw new IllegalArgumentException("Cache size must be nonnegative: " + entryWeightCacheBytes_);
+            }
+
+            _entryWeightCacheBytes = entryWeightCacheBytes_;
+            return this;
+        }
+
+        public OptimizerType getBetaOptimizer()
+        {
+            return _betaOptimizer;
+        }
+
+        /**
+         * Select the optimizer used when only betas are free (e.g. ParamFitter). Fits including curve parameters
+         * use getOptimizer() instead.
+         * <p>
+         * NEWTON converges in a handful of passes over the data for the ENTROPY and L2 targets, as the beta only
+         * problem is convex. Other targets fall back to line searches.
+         *
+         * @param betaOptimizer_ The optimizer to use
+         * @return this
+         */
+        public Builder setBetaOptimizer(final OptimizerType betaOptimizer_)
+        {
+            if (null == betaOptimizer_)
+            {
+                throw new NullPointerException("Optimizer cannot be null.");
+            }
+
+            _betaOptimizer = betaOptimizer_;
+            return this;
+        }
+
+        public OptimizerType getOptimizer()
+        {
+            return _optimizer;
+        }
+
+        /**
+         * Select the optimizer used for fits with free curve parameters (see setBetaOptimizer for the others).
+         * <p>
+         * LBFGS typically needs far fewer passes over the data than the line searches when there are many curve
+         * parameters. STOCHASTIC samples blocks for most of the fit, which pays off for very large grids. NEWTON is
+         * not allowed here, the curve parameters make the problem nonconvex.
+         *
+         * @param optimizer_ The optimizer to use
+         * @return this
+         */
+        public Builder setOptimizer(final OptimizerType optimizer_)
+        {
+            if (null == optimizer_)
+            {
+                throw new NullPointerException("Optimizer cannot be null.");
+            }
+            if (optimizer_ == OptimizerType.NEWTON)
+            {
+                throw new IllegalArgumentException("Newton is only supported for beta only fits.");
+            }
+
+            _optimizer = optimizer_;
+            return this;
+        }
+
+        public int getFitPointCacheSize()
+        {
+            return _fitPointCacheSize;
+        }
+
+        /**
+         * Keep up to this many recently generated fit points (for each FitPointGenerator), so that re-evaluating
+         * identical parameters (e.g. line search brackets, optimizer restarts, validation) reuses the blocks already
+         * computed rather than computing them again. The hit and miss counts are available from the generator.
+         *
+         * @param fitPointCacheSize_ The number of points to keep, zero to disable the cache
+         * @return this
+         */
+        public Builder setFitPointCacheSize(final int fitPointCacheSize_)
+        {
+            if (fitPointCacheSize_ < 0)
+            {
+                throw new IllegalArgumentException("Cache size must be nonnegative: " + fitPointCacheSize_);
+            }
+
+            _fitPointCacheSize = fitPointCacheSize_;
+            return this;
+        }
+
+        public int getParallelism()
+        {
+            return _parallelism;
+        }
+
+        /**
+         * Use the given number of threads for fitting. Every settings object with the same parallelism shares a
+         * single pool, see ForkJoinExecutor.shared(int).
+         *
+         * @param parallelism_ The number of threads to use
+         * @return this
+         */
+        public Builder setParallelism(final int parallelism_)
+        {
+            if (parallelism_ < 1)
+            {
+                throw new IllegalArgumentException("Parallelism must be positive: " + parallelism_);
+            }
+
+            return this.setExecutor(ForkJoinExecutor.shared(parallelism_));
+        }
+
+        /**
+         * Run the fit on the given pool, which may be shared by several fitters.
+         *
+         * @param pool_ The pool to use
+         * @return this
+         */
+        public Builder setPool(final ForkJoinPool pool_)
+        {
+            return this.setExecutor(new ForkJoinExecutor(pool_));
+        }
+
+        public ItemExecutor getExecutor()
+        {
+            return _executor;
+        }
+
+        public Builder setExecutor(final ItemExecutor executor_)
+        {
+            if (null == executor_)
+            {
+                throw new NullPointerException("Executor cannot be null.");
+            }
+
+            _executor = executor_;
+            _parallelism = executor_.getParallelism();
+            return this;
+        }
+
+        public FitListener getFitListener()
+        {
+            return _fitListener;
+        }
+
+        /**
+         * Instrument the fit, sending its measurements to the given listener (e.g. a FitMetrics). The listener is
+         * called from the fitting threads, see FitListener.
+         *
+         * @param fitListener_ The listener, or null to turn instrumentation off
+         * @return this
+         */
+        public Builder setFitListener(final FitListener fitListener_)
+        {
+            _fitListener = fitListener_;
+            return this;
+        }
     }
 
 }
@@ -35,11 +35,37 @@ public final class ItemWorkspace<S extends ItemStatus<S>>
     private final double[] _probWorkspace;
     private final double[] _actualProbWorkspace;
 
+    // Columnar workspaces, for batch operations (see ItemScorer) that process a tile of rows at a time.
+    private final double[] _weightWorkspace;
+    private final double[] _columnWorkspace;
+    private final double[][] _scoreWorkspace;
+
     public ItemWorkspace(final S status_, final int regressorCount_)
     {
+        this(status_, regressorCount_, 1);
+    }
+
+    /**
+     * @param status_         The status whose transitions are computed
+     * @param regressorCount_ The number of (unique) regressors
+     * @param tileSize_       The number of rows processed at a time by batch operations
+     */
+    public ItemWorkspace(final S status_, final int regressorCount_, final int tileSize_)
+    {
+        if (tileSize_ < 1)
+        {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize_);
+        }
+
+        final int reachableCount = status_.getReachable().size();
+
         _regWorkspace = new double[regressorCount_];
-        _probWorkspace = new double[status_.getReachable().size()];
-        _actualProbWorkspace = new double[status_.getReachable().size()];
+        _probWorkspace = new double[reachableCount];
+        _actualProbWorkspace = new double[reachableCount];
+
+        _weightWorkspace = new double[tileSize_];
+        _columnWorkspace = new double[tileSize_];
+        _scoreWorkspace = new double[reachableCount][tileSize_];
     }
 
     public double[] getRegressorWorkspace()
@@ -57,4 +83,27 @@ public final class ItemWorkspace<S extends ItemStatus<S>>
         return _actualProbWorkspace;
     }
 
+    public int getTileSize()
+    {
+        return _weightWorkspace.length;
+    }
+
+    public double[] getWeightWorkspace()
+    {
+        return _weightWorkspace;
+    }
+
+    public double[] getColumnWorkspace()
+    {
+        return _columnWorkspace;
+    }
+
+    /**
+     * @return For each reachable status, a column of scores for a tile of rows
+     */
+    public double[][] getScoreWorkspace()
+    {
+        return _scoreWorkspace;
+    }
+
 }
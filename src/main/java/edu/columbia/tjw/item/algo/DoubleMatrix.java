@@ -8,6 +8,10 @@ import java.util.Arrays;
 
 /**
  * A rectangular matrix of numbers.
+ * <p>
+ * Symmetric matrices (such as second derivatives and fisher information) may instead be stored packed, keeping only
+ * the blocks on or above the diagonal, see SymmetricBlockLayout. Element-wise operations on two packed matrices with
+ * the same layout stay packed, so these are never densified unless copyOfUnderlying (or getRow) is called.
  */
 public final class DoubleMatrix implements Serializable
 {
@@ -16,11 +20,31 @@ public final class DoubleMatrix implements Serializable
     private final DoubleVector[] _underlying;
     private final int _columSize;
 
+    // The upper triangle of a symmetric matrix, laid out by _layout, or null if this matrix is stored as rows.
+    private final double[] _packed;
+    private final SymmetricBlockLayout _layout;
+
     private transient DoubleMatrix _collapsed;
 
+    private DoubleMatrix(final double[] packed_, final SymmetricBlockLayout layout_)
+    {
+        if (packed_.length != layout_.getSize())
+        {
+            throw new IllegalArgumentException("Size mismatch.");
+        }
+
+        _underlying = null;
+        _columSize = layout_.getDimension();
+        _packed = packed_;
+        _layout = layout_;
+        _collapsed = this;
+    }
+
     private DoubleMatrix(final DoubleVector[] underlying_)
     {
         _underlying = underlying_;
+        _packed = null;
+        _layout = null;
 
         if (_underlying.length < 1)
         {
@@ -54,18 +78,89 @@ public final class DoubleMatrix implements Serializable
      */
     public double getEntry(final int row_, final int column_)
     {
+        if (null != _packed)
+        {
+            return _packed[_layout.index(row_, column_)];
+        }
+
         return getRow(row_).getEntry(column_);
     }
 
     /**
+     * N.B: For a packed symmetric matrix, this will need to copy out the row.
+     *
      * @param row_
      * @return
      */
     public DoubleVector getRow(final int row_)
     {
+        if (null != _packed)
+        {
+            final double[] row = new double[_columSize];
+            _layout.copyRow(_packed, row_, row);
+            return DoubleVector.of(row, false);
+        }
+
         return _underlying[row_];
     }
 
+    /**
+     * Copy a row of this matrix into output_, without allocating a vector for it.
+     *
+     * @param row_    The row to copy
+     * @param output_ Output for the row
+     */
+    public void copyRow(final int row_, final double[] output_)
+    {
+        if (output_.length != _columSize)
+        {
+            throw new IllegalArgumentException("Size mismatch.");
+        }
+
+        if (null != _packed)
+        {
+            _layout.copyRow(_packed, row_, output_);
+            return;
+        }
+
+        final DoubleVector row = _underlying[row_];
+
+        for (int i = 0; i < _columSize; i++)
+        {
+            output_[i] = row.getEntry(i);
+        }
+    }
+
+    /**
+     * The dot product of a row of this matrix with x_, summed in order of increasing column.
+     *
+     * @param row_ The row to multiply
+     * @param x_   The vector to multiply by
+     * @return The dot product
+     */
+    public double rowDot(final int row_, final double[] x_)
+    {
+        if (x_.length != _columSize)
+        {
+            throw new IllegalArgumentException("Size mismatch.");
+        }
+
+        if (null != _packed)
+        {
+            return _layout.rowDot(_packed, row_, x_);
+        }
+
+        final DoubleVector row = _underlying[row_];
+        double sum = 0.0;
+
+        for (int i = 0; i < _columSize; i++)
+        {
+            sum += x_[i] * row.getEntry(i);
+        }
+
+        return sum;
+    }
+
     /**
      * Returns the number of elements in this Vector.
      *
@@ -73,6 +168,11 @@ public final class DoubleMatrix implements Serializable
      */
     public int getRowSize()
     {
+        if (null != _packed)
+        {
+            return _columSize;
+        }
+
         return _underlying.length;
     }
 
@@ -99,6 +199,12 @@ public final class DoubleMatrix implements Serializable
         {
             return _collapsed;
         }
+        if (null != _packed)
+        {
+            // Already fully computed.
+            _collapsed = this;
+            return _collapsed;
+        }
 
         for (int i = 0; i < getRowSize(); i++)
         {
@@ -139,6 +245,16 @@ public final class DoubleMatrix implements Serializable
     {
         final double[][] output = new double[this.getRowSize()][this.getColumnSize()];
 
+        if (null != _packed)
+        {
+            for (int i = 0; i < _columSize; i++)
+            {
+                _layout.copyRow(_packed, i, output[i]);
+            }
+
+            return output;
+        }
+
         for (int i = 0; i < output.length; i++)
         {
             output[i] = this.getRow(i).copyOfUnderlying();
@@ -147,6 +263,57 @@ public final class DoubleMatrix implements Serializable
         return output;
     }
 
+    /**
+     * @return True if this is a symmetric matrix stored as its packed upper triangle
+     */
+    public boolean isPackedSymmetric()
+    {
+        return null != _packed;
+    }
+
+    /**
+     * @return The layout of the packed upper triangle, or null if this matrix is stored as rows
+     */
+    public SymmetricBlockLayout getLayout()
+    {
+        return _layout;
+    }
+
+    /**
+     * The number of elements in the packed upper triangle of a symmetric matrix of the given dimension.
+     *
+     * @param dimension_ The number of rows (and columns) of the matrix
+     * @return The size of its packed upper triangle
+     */
+    public static int packedSize(final int dimension_)
+    {
+        return (dimension_ * (dimension_ + 1)) / 2;
+    }
+
+    /**
+     * Index of element (row_, column_) in the packed upper triangle of a symmetric matrix of the given dimension.
+     */
+    public static int packedIndex(final int dimension_, final int row_, final int column_)
+    {
+        final int row = Math.min(row_, column_);
+        final int column = Math.max(row_, column_);
+
+        if (row < 0 || column >= dimension_)
+        {
+            throw new ArrayIndexOutOfBoundsException("Out of bounds: (" + row_ + ", " + column_ + ")");
+        }
+
+        // Rows before this one hold dimension, dimension - 1, ... elements.
+        return (row * (2 * dimension_ - row + 1)) / 2 + (column - row);
+    }
+
+    public static DoubleMatrix constantSymmetricMatrix(final double value_, final int dimension_)
+    {
+        final double[] packed = new double[packedSize(dimension_)];
+        Arrays.fill(packed, value_);
+        return new DoubleMatrix(packed, SymmetricBlockLayout.single(dimension_));
+    }
+
     public static DoubleMatrix constantMatrix(final double value_, final int rowCount_, final int columnCount_)
     {
         final DoubleVector constRow = DoubleVector.constantVector(value_, columnCount_);
@@ -162,6 +329,19 @@ public final class DoubleMatrix implements Serializable
             throw new IllegalArgumentException("Row counts do not match.");
         }
 
+        if (a_.isPackedSymmetric() && b_.isPackedSymmetric() && a_._layout.equals(b_._layout))
+        {
+            // Element-wise functions preserve symmetry, so this can stay packed.
+            final double[] packed = new double[a_._packed.length];
+
+            for (int i = 0; i < packed.length; i++)
+            {
+                packed[i] = function_.value(a_._packed[i], b_._packed[i]);
+            }
+
+            return new DoubleMatrix(packed, a_._layout);
+        }
+
         final DoubleVector[] rows = new DoubleVector[a_.getRowSize()];
 
         for (int i = 0; i < rows.length; i++)
@@ -174,6 +354,18 @@ public final class DoubleMatrix implements Serializable
 
     public static DoubleMatrix apply(final UnivariateFunction function_, final DoubleMatrix a_)
     {
+        if (a_.isPackedSymmetric())
+        {
+            final double[] packed = new double[a_._packed.length];
+
+            for (int i = 0; i < packed.length; i++)
+            {
+                packed[i] = function_.value(a_._packed[i]);
+            }
+
+            return new DoubleMatrix(packed, a_._layout);
+        }
+
         final DoubleVector[] rows = new DoubleVector[a_.getRowSize()];
 
         for (int i = 0; i < rows.length; i++)
@@ -194,6 +386,43 @@ public final class DoubleMatrix implements Serializable
         return new DoubleMatrix(rows_);
     }
 
+    /**
+     * Make a symmetric matrix from its packed upper triangle (row by row, see packedIndex).
+     *
+     * @param packed_    The upper triangle of the matrix
+     * @param dimension_ The number of rows (and columns) of the matrix
+     * @param doCopy_    If false, the array is used directly and must not be modified afterwards
+     * @return A packed symmetric matrix, or null if packed_ is null
+     */
+    public static DoubleMatrix ofSymmetric(final double[] packed_, final int dimension_, final boolean doCopy_)
+    {
+        return ofSymmetric(packed_, SymmetricBlockLayout.single(dimension_), doCopy_);
+    }
+
+    /**
+     * Make a symmetric matrix from the blocks of its upper triangle.
+     *
+     * @param packed_ The blocks on or above the diagonal, laid out by layout_
+     * @param layout_ The layout of packed_
+     * @param doCopy_ If false, the array is used directly and must not be modified afterwards
+     * @return A packed symmetric matrix, or null if packed_ is null
+     */
+    public static DoubleMatrix ofSymmetric(final double[] packed_, final SymmetricBlockLayout layout_,
+                                           final boolean doCopy_)
+    {
+        if (null == packed_)
+        {
+            return null;
+        }
+
+        if (doCopy_)
+        {
+            return new DoubleMatrix(packed_.clone(), layout_);
+        }
+
+        return new DoubleMatrix(packed_, layout_);
+    }
+
     public static DoubleMatrix of(final double[][] data_)
     {
         return of(data_, true);
@@ -14,6 +14,7 @@ public final class GKQuantileBreakdown implements QuantileBreakdown
 
     public static final int MIN_SIZE = 10 * 1000;
     public static final int MIN_FILL = 100;
+    private static final int READ_BLOCK_SIZE = 10 * 1000;
 
     private final int _bucketCount;
     private final double _epsilon;
@@ -50,57 +51,66 @@ public final class GKQuantileBreakdown implements QuantileBreakdown
         final int blockSize = MIN_FILL * _bucketCount;
         double[] buckets = null;
 
-        outer:
-        for (int i = 0; i < regressor_.size(); i++)
-        {
-            final double x = regressor_.asDouble(i);
-
-            if (Double.isNaN(x) || Double.isInfinite(x))
-            {
-                continue;
-            }
+        final int size = regressor_.size();
+        final double[] block = new double[Math.min(size, READ_BLOCK_SIZE)];
 
-            _quantiles.offer(x);
-            _varCalc.update(x);
+        for (int start = 0; start < size; start += READ_BLOCK_SIZE)
+        {
+            final int length = Math.min(READ_BLOCK_SIZE, size - start);
+            regressor_.read(start, length, block);
 
-            if (USE_APPROX_BUCKETS && _varCalc.getCount() % blockSize == 0)
+            values:
+            for (int i = 0; i < length; i++)
             {
-                // Let's see if this has stablized, so we don't need to get any more data.
-                final double[] nextBuckets = generateBuckets(_quantiles, _bucketCount, _epsilon);
+                final double x = block[i];
 
-                if (buckets == null)
+                if (Double.isNaN(x) || Double.isInfinite(x))
                 {
-                    buckets = nextBuckets;
                     continue;
                 }
 
-                if (nextBuckets.length != buckets.length)
-                {
-                    continue;
-                }
-                if (nextBuckets[0] != buckets[0]
-                        || nextBuckets[buckets.length - 1] != buckets[buckets.length - 1])
-                {
-                    // First and last elements must match.
-                    continue;
-                }
+                _quantiles.offer(x);
+                _varCalc.update(x);
 
-                for (int w = 1; w < nextBuckets.length - 1; w++)
+                if (USE_APPROX_BUCKETS && _varCalc.getCount() % blockSize == 0)
                 {
-                    final double nextW = nextBuckets[w];
-                    final double prevWm = buckets[w - 1];
-                    final double prevWp = buckets[w + 1];
+                    // Let's see if this has stablized, so we don't need to get any more data.
+                    final double[] nextBuckets = generateBuckets(_quantiles, _bucketCount, _epsilon);
 
-                    // We require that the elements are in the same order, but not necessarily equal.
-                    if (nextW < prevWm || nextW > prevWp)
+                    if (buckets == null)
                     {
-                        continue outer;
+                        buckets = nextBuckets;
+                        continue;
+                    }
+
+                    if (nextBuckets.length != buckets.length)
+                    {
+                        continue;
+                    }
+                    if (nextBuckets[0] != buckets[0]
+                            || nextBuckets[buckets.length - 1] != buckets[buckets.length - 1])
+                    {
+                        // First and last elements must match.
+                        continue;
                     }
-                }
 
-                // These quantiles are essentially equivalent, no need to compute further.
-                _xVals = nextBuckets;
-                return;
+                    for (int w = 1; w < nextBuckets.length - 1; w++)
+                    {
+                        final double nextW = nextBuckets[w];
+                        final double prevWm = buckets[w - 1];
+                        final double prevWp = buckets[w + 1];
+
+                        // We require that the elements are in the same order, but not necessarily equal.
+                        if (nextW < prevWm || nextW > prevWp)
+                        {
+                            continue values;
+                        }
+                    }
+
+                    // These quantiles are essentially equivalent, no need to compute further.
+                    _xVals = nextBuckets;
+                    return;
+                }
             }
         }
 
@@ -0,0 +1,218 @@
+package edu.columbia.tjw.item.algo;
+
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.util.thread.GeneralTask;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A quantile breakdown built from a KllQuantiles sketch.
+ * <p>
+ * The column is split into shards, which are sketched in parallel and then merged (in shard order, so the result
+ * does not depend on the executor). Otherwise, this matches GKQuantileBreakdown with simple buckets.
+ */
+public final class KllQuantileBreakdown implements QuantileBreakdown
+{
+    public static final int DEFAULT_BUCKETS = GKQuantileBreakdown.DEFAULT_BUCKETS;
+
+    private static final int SHARD_SIZE = 256 * 1024;
+    private static final int READ_BLOCK_SIZE = 10 * 1000;
+
+    private final int _bucketCount;
+    private final double _epsilon;
+    private final KllQuantiles _quantiles;
+    private final VarianceCalculator _varCalc;
+    private final double[] _xVals;
+
+    private KllQuantileBreakdown(final KllQuantileBreakdown prev_, final int bucketCount_)
+    {
+        if (bucketCount_ > prev_._bucketCount)
+        {
+            throw new IllegalArgumentException("Cannot re-bucket to a larger bucket count");
+        }
+        if (bucketCount_ <= 0)
+        {
+            throw new IllegalArgumentException("Bucket count must be positive.");
+        }
+
+        _bucketCount = bucketCount_;
+        _epsilon = 1.0 / _bucketCount;
+        _quantiles = prev_._quantiles;
+        _varCalc = prev_._varCalc;
+        _xVals = generateBuckets(_quantiles, _bucketCount, _epsilon);
+    }
+
+    public KllQuantileBreakdown(final ItemRegressorReader regressor_, final ItemExecutor executor_)
+    {
+        if (null == executor_)
+        {
+            throw new NullPointerException("Executor cannot be null.");
+        }
+
+        _bucketCount = DEFAULT_BUCKETS;
+        _epsilon = 1.0 / _bucketCount;
+
+        final List<ShardTask> tasks = new ArrayList<>();
+
+        for (int start = 0; start < regressor_.size(); start += SHARD_SIZE)
+        {
+            final int end = Math.min(regressor_.size(), start + SHARD_SIZE);
+            tasks.add(new ShardTask(regressor_, start, end, 0.5 * _epsilon));
+        }
+
+        _quantiles = new KllQuantiles(0.5 * _epsilon);
+        _varCalc = new VarianceCalculator();
+
+        for (final ShardTask next : executor_.runAll(tasks))
+        {
+            _quantiles.merge(next._quantiles);
+            _varCalc.merge(next._varCalc);
+        }
+
+        _xVals = generateBuckets(_quantiles, _bucketCount, _epsilon);
+    }
+
+    private static double[] generateBuckets(final KllQuantiles quantiles_, final int bucketCount_,
+                                            final double epsilon_)
+    {
+        final double[] xVals = new double[bucketCount_];
+
+        for (int i = 0; i < xVals.length; i++)
+        {
+            xVals[i] = quantiles_.getQuantile(epsilon_ * i);
+        }
+
+        return xVals;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return _xVals.length;
+    }
+
+    @Override
+    public int findBucket(double x_)
+    {
+        final int findIndex = Arrays.binarySearch(_xVals, x_);
+
+        if (findIndex >= 0)
+        {
+            return findIndex;
+        }
+
+        // This is the first element greater than x_, we want previous one.
+        final int insertionPoint = (-findIndex) - 1;
+        return Math.max(0, insertionPoint - 1);
+    }
+
+    @Override
+    public int firstStep(double alpha_)
+    {
+        if (alpha_ == 0)
+        {
+            return 0;
+        }
+        if (Double.isNaN(alpha_))
+        {
+            throw new IllegalArgumentException("NaN alpha.");
+        }
+        if (alpha_ < 0 || alpha_ >= 0.5)
+        {
+            throw new IllegalArgumentException("Alpha (for trimming) must be in [0, 0.5): " + alpha_);
+        }
+
+        return (int) Math.round(alpha_ * getSize());
+    }
+
+    @Override
+    public int lastStep(double alpha_)
+    {
+        return this.getSize() - firstStep(alpha_);
+    }
+
+    @Override
+    public double[] getXValues()
+    {
+        return _xVals.clone();
+    }
+
+    @Override
+    public double getMean()
+    {
+        return _varCalc.getMean();
+    }
+
+    @Override
+    public double getBucketMean(int index_)
+    {
+        return _xVals[index_];
+    }
+
+    @Override
+    public int getTotalCount()
+    {
+        return _quantiles.getCount();
+    }
+
+    @Override
+    public double getMeanStdDev()
+    {
+        return _varCalc.getMeanDev();
+    }
+
+    @Override
+    public QuantileBreakdown rebucket(int bucketCount_)
+    {
+        return new KllQuantileBreakdown(this, bucketCount_);
+    }
+
+    private static final class ShardTask extends GeneralTask<ShardTask>
+    {
+        private final ItemRegressorReader _reader;
+        private final int _start;
+        private final int _end;
+        private final KllQuantiles _quantiles;
+        private final VarianceCalculator _varCalc;
+
+        private ShardTask(final ItemRegressorReader reader_, final int start_, final int end_,
+                          final double epsilon_)
+        {
+            _reader = reader_;
+            _start = start_;
+            _end = end_;
+            _quantiles = new KllQuantiles(epsilon_);
+            _varCalc = new VarianceCalculator();
+        }
+
+        @Override
+        protected ShardTask subRun()
+        {
+            final double[] block = new double[Math.min(_end - _start, READ_BLOCK_SIZE)];
+
+            for (int start = _start; start < _end; start += READ_BLOCK_SIZE)
+            {
+                final int length = Math.min(READ_BLOCK_SIZE, _end - start);
+                _reader.read(start, length, block);
+
+                for (int i = 0; i < length; i++)
+                {
+                    final double x = block[i];
+
+                    if (Double.isNaN(x) || Double.isInfinite(x))
+                    {
+                        continue;
+                    }
+
+                    _quantiles.offer(x);
+                    _varCalc.update(x);
+                }
+            }
+
+            return this;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package edu.columbia.tjw.item.algo;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A KLL quantile sketch (Karnin, Lang and Liberty, "Optimal Quantile Approximation in Streams"), held entirely in
+ * primitive arrays.
+ * <p>
+ * Unlike GKQuantiles, two of these can be merged, so the shards of a column may be summarized in parallel and then
+ * combined, with the same error guarantee as a single sketch of the whole column.
+ * <p>
+ * The items are held in levels, each item in level h standing in for 2^h of the originals. When the sketch is full,
+ * the lowest full level is sorted, and every other item is promoted to the level above. The compactions of each
+ * level alternate between promoting the odd and the even items, rather than choosing at random, so a sketch is
+ * entirely determined by its input and the order of any merges.
+ * <p>
+ * N.B: This is not threadsafe.
+ *
+ * @author tyler
+ */
+public final class KllQuantiles implements Serializable
+{
+    private static final long serialVersionUID = 0x6a1e7c2f90d3b845L;
+
+    // The capacity of each level is this fraction of the one above it.
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 8;
+
+    // The (top level) capacity is this over epsilon, which keeps the rank error well within epsilon in practice.
+    private static final double CAPACITY_FACTOR = 4.0;
+
+    private final double _epsilon;
+    private final int _k;
+
+    private double[][] _levels;
+    private int[] _sizes;
+    private int[] _compactions;
+    private int _height;
+    private int _retained;
+    private int _capacity;
+
+    private int _count;
+    private double _minimum;
+    private double _maximum;
+
+    // The retained items in order, with their cumulative weights, built lazily for queries.
+    private transient double[] _sortedValues;
+    private transient long[] _sortedWeights;
+
+    public KllQuantiles()
+    {
+        this(0.05);
+    }
+
+    /**
+     * Creates a new sketch that computes epsilon-approximate quantiles.
+     *
+     * @param epsilon_ The target error, in rank (as a fraction of the count)
+     */
+    public KllQuantiles(final double epsilon_)
+    {
+        if (!(epsilon_ > 0 && epsilon_ < 1))
+        {
+            throw new IllegalArgumentException("Epsilon must be in (0, 1): " + epsilon_);
+        }
+
+        _epsilon = epsilon_;
+        _k = Math.max(MIN_CAPACITY, (int) Math.ceil(CAPACITY_FACTOR / epsilon_));
+        _levels = new double[0][];
+        _sizes = new int[0];
+        _compactions = new int[0];
+        _height = 0;
+        _retained = 0;
+        _count = 0;
+        _minimum = Double.NaN;
+        _maximum = Double.NaN;
+
+        addLevel();
+    }
+
+    public double getEpsilon()
+    {
+        return _epsilon;
+    }
+
+    public int getCount()
+    {
+        return _count;
+    }
+
+    /**
+     * @return The number of items actually held by this sketch
+     */
+    public int getRetained()
+    {
+        return _retained;
+    }
+
+    public void offer(final double value_)
+    {
+        if (_count == 0)
+        {
+            _minimum = value_;
+            _maximum = value_;
+        }
+        else
+        {
+            _minimum = Math.min(_minimum, value_);
+            _maximum = Math.max(_maximum, value_);
+        }
+
+        _count++;
+        append(0, value_);
+        compress();
+    }
+
+    /**
+     * Fold other_ into this sketch, after which this summarizes the union of both inputs. The other sketch is not
+     * changed.
+     *
+     * @param other_ The sketch to merge, must have the same epsilon as this one
+     */
+    public void merge(final KllQuantiles other_)
+    {
+        if (other_._k != _k)
+        {
+            throw new IllegalArgumentException("Cannot merge sketches of different sizes: " + other_._k + " != " + _k);
+        }
+        if (other_._count == 0)
+        {
+            return;
+        }
+
+        if (_count == 0)
+        {
+            _minimum = other_._minimum;
+            _maximum = other_._maximum;
+        }
+        else
+        {
+            _minimum = Math.min(_minimum, other_._minimum);
+            _maximum = Math.max(_maximum, other_._maximum);
+        }
+
+        while (_height < other_._height)
+        {
+            addLevel();
+        }
+
+        for (int h = 0; h < other_._height; h++)
+        {
+            for (int i = 0; i < other_._sizes[h]; i++)
+            {
+                append(h, other_._levels[h][i]);
+            }
+        }
+
+        _count += other_._count;
+        compress();
+    }
+
+    /**
+     * Estimates the given quantile. Returns NaN if the sketch is empty, or if q_ is not in [0, 1].
+     *
+     * @param q_ The quantile to estimate
+     * @return An item whose rank is within (approximately) epsilon of q_
+     */
+    public double getQuantile(final double q_)
+    {
+        if (_count == 0 || !(q_ >= 0 && q_ <= 1))
+        {
+            return Double.NaN;
+        }
+        if (q_ == 0)
+        {
+            return _minimum;
+        }
+        if (q_ == 1)
+        {
+            return _maximum;
+        }
+
+        buildSortedView();
+
+        final double wantedRank = q_ * _count;
+
+        for (int i = 0; i < _sortedValues.length; i++)
+        {
+            if (_sortedWeights[i] > wantedRank)
+            {
+                return _sortedValues[i];
+            }
+        }
+
+        return _maximum;
+    }
+
+    /**
+     * @param x_ The value to look up
+     * @return The (estimated) fraction of the items that are no greater than x_
+     */
+    public double getRank(final double x_)
+    {
+        if (_count == 0)
+        {
+            return Double.NaN;
+        }
+
+        buildSortedView();
+
+        int index = Arrays.binarySearch(_sortedValues, x_);
+
+        if (index < 0)
+        {
+            index = (-index) - 2;
+        }
+        else
+        {
+            // There may be ties, find the last of them.
+            while (index + 1 < _sortedValues.length && _sortedValues[index + 1] == x_)
+            {
+                index++;
+            }
+        }
+
+        if (index < 0)
+        {
+            return 0.0;
+        }
+
+        return _sortedWeights[index] / (double) _count;
+    }
+
+    private void addLevel()
+    {
+        _levels = Arrays.copyOf(_levels, _height + 1);
+        _sizes = Arrays.copyOf(_sizes, _height + 1);
+        _compactions = Arrays.copyOf(_compactions, _height + 1);
+        _levels[_height] = new double[MIN_CAPACITY];
+        _height++;
+
+        _capacity = 0;
+
+        for (int h = 0; h < _height; h++)
+        {
+            _capacity += levelCapacity(h);
+        }
+    }
+
+    private int levelCapacity(final int level_)
+    {
+        final int depth = _height - 1 - level_;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(_k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void append(final int level_, final double value_)
+    {
+        final int size = _sizes[level_];
+
+        if (size == _levels[level_].length)
+        {
+            _levels[level_] = Arrays.copyOf(_levels[level_], 2 * size);
+        }
+
+        _levels[level_][size] = value_;
+        _sizes[level_] = size + 1;
+        _retained++;
+        _sortedValues = null;
+        _sortedWeights = null;
+    }
+
+    private void compress()
+    {
+        while (_retained > _capacity)
+        {
+            // Some level must be at capacity, otherwise we would be within the total.
+            for (int h = 0; h < _height; h++)
+            {
+                if (_sizes[h] >= levelCapacity(h))
+                {
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void compact(final int level_)
+    {
+        if (level_ + 1 == _height)
+        {
+            addLevel();
+        }
+
+        final double[] items = _levels[level_];
+        final int size = _sizes[level_];
+        Arrays.sort(items, 0, size);
+
+        // With an odd count, the smallest item stays behind.
+        final int start = size & 1;
+        final int offset = _compactions[level_] & 1;
+        _compactions[level_]++;
+
+        for (int i = start + offset; i < size; i += 2)
+        {
+            append(level_ + 1, items[i]);
+        }
+
+        _sizes[level_] = start;
+        _retained -= (size - start);
+    }
+
+    private void buildSortedView()
+    {
+        if (null != _sortedValues)
+        {
+            return;
+        }
+
+        double[] values = new double[0];
+        long[] weights = new long[0];
+
+        for (int h = 0; h < _height; h++)
+        {
+            final int size = _sizes[h];
+            final double[] level = Arrays.copyOf(_levels[h], size);
+            Arrays.sort(level);
+
+            // Merge this level into the items so far, weights are not yet cumulative.
+            final double[] nextValues = new double[values.length + size];
+            final long[] nextWeights = new long[values.length + size];
+            final long weight = 1L << h;
+            int a = 0;
+            int b = 0;
+
+            for (int i = 0; i < nextValues.length; i++)
+            {
+                if (b >= size || (a < values.length && values[a] <= level[b]))
+                {
+                    nextValues[i] = values[a];
+                    nextWeights[i] = weights[a];
+                    a++;
+                }
+                else
+                {
+                    nextValues[i] = level[b];
+                    nextWeights[i] = weight;
+                    b++;
+                }
+            }
+
+            values = nextValues;
+            weights = nextWeights;
+        }
+
+        for (int i = 1; i < weights.length; i++)
+        {
+            weights[i] += weights[i - 1];
+        }
+
+        _sortedValues = values;
+        _sortedWeights = weights;
+    }
+}
@@ -45,9 +45,98 @@ public final class MatrixTools
         //return add(a_, scalarMultiply(b_, scalar_));
     }
 
+    /**
+     * Solve (a + ridge * I) x = b for a symmetric positive definite a, using a Cholesky decomposition.
+     * <p>
+     * Only the upper triangle of a is read, so a packed symmetric matrix is never densified.
+     *
+     * @param a_     The (symmetric) matrix
+     * @param b_     The right hand side
+     * @param ridge_ A constant to be added to the diagonal of a
+     * @return x, or null if (a + ridge * I) is not (numerically) positive definite
+     */
+    public static DoubleVector choleskySolve(final DoubleMatrix a_, final DoubleVector b_, final double ridge_)
+    {
+        final int dimension = b_.getSize();
+
+        if (a_.getRowSize() != dimension || a_.getColumnSize() != dimension)
+        {
+            throw new IllegalArgumentException("Size mismatch.");
+        }
+
+        // The lower triangle L, such that L * L^T = a + ridge * I.
+        final double[][] lower = new double[dimension][];
+
+        for (int i = 0; i < dimension; i++)
+        {
+            final double[] row = new double[i + 1];
+            lower[i] = row;
+
+            for (int j = 0; j <= i; j++)
+            {
+                double sum = a_.getEntry(j, i);
+
+                if (i == j)
+                {
+                    sum += ridge_;
+                }
+
+                final double[] rowJ = lower[j];
+
+                for (int k = 0; k < j; k++)
+                {
+                    sum -= row[k] * rowJ[k];
+                }
+
+                if (i == j)
+                {
+                    if (!(sum > 0.0) || Double.isInfinite(sum))
+                    {
+                        return null;
+                    }
+
+                    row[i] = Math.sqrt(sum);
+                }
+                else
+                {
+                    row[j] = sum / rowJ[j];
+                }
+            }
+        }
+
+        // Forward substitution, L y = b, then back substitution, L^T x = y.
+        final double[] x = b_.copyOfUnderlying();
+
+        for (int i = 0; i < dimension; i++)
+        {
+            double sum = x[i];
+
+            for (int k = 0; k < i; k++)
+            {
+                sum -= lower[i][k] * x[k];
+            }
+
+            x[i] = sum / lower[i][i];
+        }
+
+        for (int i = dimension - 1; i >= 0; i--)
+        {
+            double sum = x[i];
+
+            for (int k = i + 1; k < dimension; k++)
+            {
+                sum -= lower[k][i] * x[k];
+            }
+
+            x[i] = sum / lower[i][i];
+        }
+
+        return DoubleVector.of(x, false);
+    }
+
     public static RealMatrix toApacheMatrix(final DoubleMatrix a_)
     {
-        return new Array2DRowRealMatrix(a_.copyOfUnderlying());
+        return new Array2DRowRealMatrix(a_.copyOfUnderlying(), false);
     }
 
 
@@ -1,6 +1,7 @@
 package edu.columbia.tjw.item.algo;
 
 import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
 
 public interface QuantileBreakdown
 {
@@ -28,4 +29,17 @@ public interface QuantileBreakdown
     {
         return new GKQuantileBreakdown(xReader_);
     }
+
+    /**
+     * As buildApproximation(ItemRegressorReader), but sketches shards of the column in parallel, and merges them.
+     * The buckets will be close to those of the serial version, but not identical.
+     *
+     * @param xReader_  The column to break down
+     * @param executor_ The executor on which to sketch the shards
+     * @return A breakdown of the column
+     */
+    static QuantileBreakdown buildApproximation(final ItemRegressorReader xReader_, final ItemExecutor executor_)
+    {
+        return new KllQuantileBreakdown(xReader_, executor_);
+    }
 }
@@ -100,24 +100,24 @@ public final class QuantileStatistics
         }
 
         final QuantileStatisticsBuilder builder = builder(breakdown_);
-        boolean passes = false;
+        final double[] xBlock = new double[Math.min(size, BLOCK_SIZE)];
+        final double[] yBlock = new double[xBlock.length];
 
-        for (int i = 0; i < size; i++)
+        for (int start = 0; start < size; start += BLOCK_SIZE)
         {
-            final double x = xReader_.asDouble(i);
-            final double y = yReader_.asDouble(i);
-
-            builder.append(x, y);
+            final int length = Math.min(BLOCK_SIZE, size - start);
+            xReader_.read(start, length, xBlock);
+            yReader_.read(start, length, yBlock);
 
-            //check to see if we're done here.
-            if (0 == (i + 1) % BLOCK_SIZE)
+            for (int i = 0; i < length; i++)
             {
-                passes = builder.checkConvergence();
+                builder.append(xBlock[i], yBlock[i]);
+            }
 
-                if (passes)
-                {
-                    break;
-                }
+            //check to see if we're done here, only on complete blocks.
+            if (length == BLOCK_SIZE && builder.checkConvergence())
+            {
+                break;
             }
         }
 
@@ -227,6 +227,47 @@ public final class QuantileStatistics
             return true;
         }
 
+        /**
+         * As append, but for an x already located (via findBucket) in the breakdown of this builder. This lets
+         * several builders over the same breakdown share a single search.
+         *
+         * @param bucket_ The bucket of the observation's x
+         * @param y_      The observation's y
+         * @return False if y_ is not finite, and so was ignored
+         */
+        public boolean appendToBucket(final int bucket_, final double y_)
+        {
+            if (Double.isNaN(y_) || Double.isInfinite(y_))
+            {
+                return false;
+            }
+
+            _totalCalc.update(y_);
+            _calcs[bucket_].update(y_);
+            return true;
+        }
+
+        /**
+         * Fold in the observations of other_, which must be over the same breakdown. This allows shards of the data
+         * to be accumulated in parallel.
+         *
+         * @param other_ The builder to merge, it is not changed
+         */
+        public void merge(final QuantileStatisticsBuilder other_)
+        {
+            if (other_._approx != _approx)
+            {
+                throw new IllegalArgumentException("Builders must share a breakdown.");
+            }
+
+            for (int i = 0; i < _calcs.length; i++)
+            {
+                _calcs[i].merge(other_._calcs[i]);
+            }
+
+            _totalCalc.merge(other_._totalCalc);
+        }
+
         public boolean checkConvergence()
         {
             boolean passes = true;
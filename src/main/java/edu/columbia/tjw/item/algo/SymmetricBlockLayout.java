@@ -0,0 +1,303 @@
+package edu.columbia.tjw.item.algo;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The storage layout of a symmetric matrix whose rows (and columns) are split into contiguous groups.
+ * <p>
+ * Only the blocks on or above the diagonal are stored, block by block: a diagonal block holds its own packed upper
+ * triangle (row by row), an off diagonal block (g, h) with g &lt; h holds all of its elements, row by row. With a
+ * single group this is exactly the packed upper triangle, see DoubleMatrix.packedIndex. Every block is stored, so any
+ * layout of a given dimension takes the same space as the packed upper triangle, only the order differs.
+ * <p>
+ * The second derivative of an ItemModel is grouped by (transition, entry), so each block is the interaction of two
+ * entries, and a single row can be accumulated one block at a time.
+ */
+public final class SymmetricBlockLayout implements Serializable
+{
+    private static final long serialVersionUID = 0x2c1f6a8e93d4b517L;
+
+    private final int[] _groupStarts;
+    private final int[] _groups;
+    private final int[] _blockOffsets;
+    private final int _size;
+
+    private SymmetricBlockLayout(final int[] groupStarts_)
+    {
+        final int groupCount = groupStarts_.length - 1;
+
+        if (groupCount < 0 || groupStarts_[0] != 0)
+        {
+            throw new IllegalArgumentException("Groups must start at zero.");
+        }
+
+        final int dimension = groupStarts_[groupCount];
+        _groupStarts = groupStarts_;
+        _groups = new int[dimension];
+        _blockOffsets = new int[(groupCount * (groupCount + 1)) / 2];
+
+        int offset = 0;
+        int pointer = 0;
+
+        for (int g = 0; g < groupCount; g++)
+        {
+            final int size = groupStarts_[g + 1] - groupStarts_[g];
+
+            if (size <= 0)
+            {
+                throw new IllegalArgumentException("Group sizes must be positive: " + size);
+            }
+
+            Arrays.fill(_groups, groupStarts_[g], groupStarts_[g + 1], g);
+
+            for (int h = g; h < groupCount; h++)
+            {
+                _blockOffsets[pointer++] = offset;
+
+                if (h == g)
+                {
+                    offset += DoubleMatrix.packedSize(size);
+                }
+                else
+                {
+                    offset += size * (groupStarts_[h + 1] - groupStarts_[h]);
+                }
+            }
+        }
+
+        _size = offset;
+    }
+
+    /**
+     * @param dimension_ The number of rows (and columns) of the matrix
+     * @return The layout of a plain packed upper triangle, a single group
+     */
+    public static SymmetricBlockLayout single(final int dimension_)
+    {
+        if (dimension_ <= 0)
+        {
+            return new SymmetricBlockLayout(new int[]{0});
+        }
+
+        return new SymmetricBlockLayout(new int[]{0, dimension_});
+    }
+
+    /**
+     * @param groupStarts_ The first row of each group, followed by the dimension of the matrix
+     * @return The layout with the given groups
+     */
+    public static SymmetricBlockLayout of(final int[] groupStarts_)
+    {
+        return new SymmetricBlockLayout(groupStarts_.clone());
+    }
+
+    public int getDimension()
+    {
+        return _groups.length;
+    }
+
+    /**
+     * @return The number of stored elements, the same as the packed size of the whole matrix
+     */
+    public int getSize()
+    {
+        return _size;
+    }
+
+    public int getGroupCount()
+    {
+        return _groupStarts.length - 1;
+    }
+
+    public int getGroupStart(final int group_)
+    {
+        return _groupStarts[group_];
+    }
+
+    public int getGroupSize(final int group_)
+    {
+        return _groupStarts[group_ + 1] - _groupStarts[group_];
+    }
+
+    public int getGroup(final int row_)
+    {
+        return _groups[row_];
+    }
+
+    /**
+     * @param group_      The group of the rows of the block
+     * @param otherGroup_ The group of the columns of the block, at least group_
+     * @return The index of the first element of the block
+     */
+    public int getBlockOffset(final int group_, final int otherGroup_)
+    {
+        if (otherGroup_ < group_)
+        {
+            throw new ArrayIndexOutOfBoundsException("Only blocks on or above the diagonal are stored: (" + group_
+                    + ", " + otherGroup_ + ")");
+        }
+
+        final int groupCount = getGroupCount();
+        // Block rows before this one hold groupCount, groupCount - 1, ... blocks.
+        return _blockOffsets[(group_ * (2 * groupCount - group_ + 1)) / 2 + (otherGroup_ - group_)];
+    }
+
+    /**
+     * Index of element (row_, column_) in the storage of a matrix with this layout.
+     */
+    public int index(final int row_, final int column_)
+    {
+        final int row = Math.min(row_, column_);
+        final int column = Math.max(row_, column_);
+
+        if (row < 0 || column >= _groups.length)
+        {
+            throw new ArrayIndexOutOfBoundsException("Out of bounds: (" + row_ + ", " + column_ + ")");
+        }
+
+        final int rowGroup = _groups[row];
+        final int columnGroup = _groups[column];
+        final int offset = getBlockOffset(rowGroup, columnGroup);
+        final int localRow = row - _groupStarts[rowGroup];
+        final int localColumn = column - _groupStarts[columnGroup];
+
+        if (rowGroup == columnGroup)
+        {
+            return offset + DoubleMatrix.packedIndex(getGroupSize(rowGroup), localRow, localColumn);
+        }
+
+        return offset + localRow * getGroupSize(columnGroup) + localColumn;
+    }
+
+    /**
+     * Computes the dot product of row row_ of the matrix stored in storage_ with x_.
+     * <p>
+     * The row is walked block by block, so no index is recomputed per element, and the terms are summed in order of
+     * increasing column.
+     *
+     * @param storage_ The elements of a matrix with this layout
+     * @param row_     The row to multiply
+     * @param x_       The vector to multiply by
+     * @return The dot product
+     */
+    public double rowDot(final double[] storage_, final int row_, final double[] x_)
+    {
+        final int rowGroup = _groups[row_];
+        final int rowSize = getGroupSize(rowGroup);
+        final int local = row_ - _groupStarts[rowGroup];
+        double sum = 0.0;
+
+        // Blocks above this one in the same column, the row is column local of each of them.
+        for (int h = 0; h < rowGroup; h++)
+        {
+            int pointer = getBlockOffset(h, rowGroup) + local;
+
+            for (int w = _groupStarts[h]; w < _groupStarts[h + 1]; w++)
+            {
+                sum += x_[w] * storage_[pointer];
+                pointer += rowSize;
+            }
+        }
+
+        // The diagonal block, column local of the rows above this one, and then this row itself.
+        final int diagonalOffset = getBlockOffset(rowGroup, rowGroup);
+        final int start = _groupStarts[rowGroup];
+        int pointer = diagonalOffset + local;
+
+        for (int b = 0; b < local; b++)
+        {
+            sum += x_[start + b] * storage_[pointer];
+            pointer += rowSize - b - 1;
+        }
+
+        for (int w = row_; w < _groupStarts[rowGroup + 1]; w++)
+        {
+            sum += x_[w] * storage_[pointer++];
+        }
+
+        // Blocks to the right, this row of each of them is contiguous.
+        for (int h = rowGroup + 1; h < getGroupCount(); h++)
+        {
+            final int columnSize = getGroupSize(h);
+            pointer = getBlockOffset(rowGroup, h) + local * columnSize;
+
+            for (int w = _groupStarts[h]; w < _groupStarts[h + 1]; w++)
+            {
+                sum += x_[w] * storage_[pointer++];
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * Copies out row row_ of the matrix stored in storage_, walking it the same way as rowDot.
+     *
+     * @param storage_ The elements of a matrix with this layout
+     * @param row_     The row to copy
+     * @param output_  Output for the row
+     */
+    public void copyRow(final double[] storage_, final int row_, final double[] output_)
+    {
+        final int rowGroup = _groups[row_];
+        final int rowSize = getGroupSize(rowGroup);
+        final int local = row_ - _groupStarts[rowGroup];
+
+        for (int h = 0; h < rowGroup; h++)
+        {
+            int pointer = getBlockOffset(h, rowGroup) + local;
+
+            for (int w = _groupStarts[h]; w < _groupStarts[h + 1]; w++)
+            {
+                output_[w] = storage_[pointer];
+                pointer += rowSize;
+            }
+        }
+
+        final int start = _groupStarts[rowGroup];
+        int pointer = getBlockOffset(rowGroup, rowGroup) + local;
+
+        for (int b = 0; b < local; b++)
+        {
+            output_[start + b] = storage_[pointer];
+            pointer += rowSize - b - 1;
+        }
+
+        for (int w = row_; w < _groupStarts[rowGroup + 1]; w++)
+        {
+            output_[w] = storage_[pointer++];
+        }
+
+        for (int h = rowGroup + 1; h < getGroupCount(); h++)
+        {
+            pointer = getBlockOffset(rowGroup, h) + local * getGroupSize(h);
+
+            for (int w = _groupStarts[h]; w < _groupStarts[h + 1]; w++)
+            {
+                output_[w] = storage_[pointer++];
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(final Object that_)
+    {
+        if (this == that_)
+        {
+            return true;
+        }
+        if (!(that_ instanceof SymmetricBlockLayout))
+        {
+            return false;
+        }
+
+        return Arrays.equals(_groupStarts, ((SymmetricBlockLayout) that_)._groupStarts);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(_groupStarts);
+    }
+}
@@ -0,0 +1,468 @@
+package edu.columbia.tjw.item.algo;
+
+import java.util.Arrays;
+
+/**
+ * The eigen decomposition of a symmetric matrix, A = V * D * V^T.
+ * <p>
+ * The matrix is read a row at a time, so a packed (or block packed) symmetric matrix is never densified, and other
+ * symmetric matrices are only ever multiplied by eigenvectors. The only dense storage is the eigenvectors themselves.
+ * <p>
+ * Householder tridiagonalization followed by the implicit QL algorithm, as in JAMA (public domain), which is derived
+ * from the EISPACK routines tred2 and tql2.
+ */
+public final class SymmetricEigenDecomposition
+{
+    // Same cutoff as the apache SVD solver, singular values below this are dropped from the pseudo inverse.
+    private static final double EPSILON = 0x1.0p-52;
+    private static final double SAFE_MIN = Math.sqrt(Double.MIN_NORMAL);
+
+    private final int _dimension;
+    private final double[] _eigenvalues;
+
+    // Eigenvector k is _vectors[k].
+    private final double[][] _vectors;
+    private final double _tolerance;
+
+    public SymmetricEigenDecomposition(final DoubleMatrix matrix_)
+    {
+        if (matrix_.getRowSize() != matrix_.getColumnSize())
+        {
+            throw new IllegalArgumentException("Matrix must be square.");
+        }
+
+        final int n = matrix_.getRowSize();
+        _dimension = n;
+
+        final double[][] v = new double[n][n];
+        boolean isFinite = true;
+
+        for (int i = 0; i < n; i++)
+        {
+            matrix_.copyRow(i, v[i]);
+
+            for (final double next : v[i])
+            {
+                isFinite = isFinite && Double.isFinite(next);
+            }
+        }
+
+        final double[] d = new double[n];
+        final double[] e = new double[n];
+
+        if (!isFinite)
+        {
+            // The QL iteration need not converge, there is nothing meaningful to decompose.
+            Arrays.fill(d, Double.NaN);
+
+            for (final double[] row : v)
+            {
+                Arrays.fill(row, Double.NaN);
+            }
+        }
+        else if (n > 0)
+        {
+            tred2(v, d, e);
+            tql2(v, d, e);
+        }
+
+        _eigenvalues = d;
+        _vectors = new double[n][n];
+        double maxAbs = 0.0;
+
+        for (int k = 0; k < n; k++)
+        {
+            for (int i = 0; i < n; i++)
+            {
+                _vectors[k][i] = v[i][k];
+            }
+
+            maxAbs = Math.max(maxAbs, Math.abs(d[k]));
+        }
+
+        _tolerance = Math.max(n * maxAbs * EPSILON, SAFE_MIN);
+    }
+
+    public int getDimension()
+    {
+        return _dimension;
+    }
+
+    /**
+     * @return The eigenvalues, in increasing order
+     */
+    public DoubleVector getEigenvalues()
+    {
+        return DoubleVector.of(_eigenvalues);
+    }
+
+    /**
+     * @return The ratio of the smallest to the largest singular value (i.e. absolute eigenvalue)
+     */
+    public double getInverseConditionNumber()
+    {
+        double min = Double.POSITIVE_INFINITY;
+        double max = 0.0;
+
+        for (final double next : _eigenvalues)
+        {
+            final double abs = Math.abs(next);
+            min = Math.min(min, abs);
+            max = Math.max(max, abs);
+        }
+
+        return min / max;
+    }
+
+    /**
+     * @return The diagonal of the pseudo inverse of the matrix
+     */
+    public double[] getPseudoInverseDiagonal()
+    {
+        final double[] output = new double[_dimension];
+
+        for (int k = 0; k < _dimension; k++)
+        {
+            if (!(Math.abs(_eigenvalues[k]) > _tolerance))
+            {
+                continue;
+            }
+
+            final double inverse = 1.0 / _eigenvalues[k];
+            final double[] vector = _vectors[k];
+
+            for (int i = 0; i < _dimension; i++)
+            {
+                output[i] += vector[i] * vector[i] * inverse;
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Computes trace(A^+ * B) = sum_k v_k^T B v_k / d_k for a symmetric B, where A^+ is the pseudo inverse of this
+     * matrix.
+     *
+     * @param other_ The (symmetric) matrix B
+     * @return The trace of A^+ * B
+     */
+    public double traceOfPseudoInverseTimes(final DoubleMatrix other_)
+    {
+        if (other_.getRowSize() != _dimension || other_.getColumnSize() != _dimension)
+        {
+            throw new IllegalArgumentException("Size mismatch.");
+        }
+
+        double trace = 0.0;
+
+        for (int k = 0; k < _dimension; k++)
+        {
+            if (!(Math.abs(_eigenvalues[k]) > _tolerance))
+            {
+                continue;
+            }
+
+            final double[] vector = _vectors[k];
+            double quadratic = 0.0;
+
+            for (int i = 0; i < _dimension; i++)
+            {
+                quadratic += vector[i] * other_.rowDot(i, vector);
+            }
+
+            trace += quadratic / _eigenvalues[k];
+        }
+
+        return trace;
+    }
+
+    /**
+     * Symmetric Householder reduction to tridiagonal form.
+     */
+    private static void tred2(final double[][] v, final double[] d, final double[] e)
+    {
+        final int n = d.length;
+
+        for (int j = 0; j < n; j++)
+        {
+            d[j] = v[n - 1][j];
+        }
+
+        for (int i = n - 1; i > 0; i--)
+        {
+            // Scale to avoid under/overflow.
+            double scale = 0.0;
+            double h = 0.0;
+
+            for (int k = 0; k < i; k++)
+            {
+                scale = scale + Math.abs(d[k]);
+            }
+
+            if (scale == 0.0)
+            {
+                e[i] = d[i - 1];
+
+                for (int j = 0; j < i; j++)
+                {
+                    d[j] = v[i - 1][j];
+                    v[i][j] = 0.0;
+                    v[j][i] = 0.0;
+                }
+            }
+            else
+            {
+                // Generate Householder vector.
+                for (int k = 0; k < i; k++)
+                {
+                    d[k] /= scale;
+                    h += d[k] * d[k];
+                }
+
+                double f = d[i - 1];
+                double g = Math.sqrt(h);
+
+                if (f > 0)
+                {
+                    g = -g;
+                }
+
+                e[i] = scale * g;
+                h = h - f * g;
+                d[i - 1] = f - g;
+
+                for (int j = 0; j < i; j++)
+                {
+                    e[j] = 0.0;
+                }
+
+                // Apply similarity transformation to remaining columns.
+                for (int j = 0; j < i; j++)
+                {
+                    f = d[j];
+                    v[j][i] = f;
+                    g = e[j] + v[j][j] * f;
+
+                    for (int k = j + 1; k <= i - 1; k++)
+                    {
+                        g += v[k][j] * d[k];
+                        e[k] += v[k][j] * f;
+                    }
+
+                    e[j] = g;
+                }
+
+                f = 0.0;
+
+                for (int j = 0; j < i; j++)
+                {
+                    e[j] /= h;
+                    f += e[j] * d[j];
+                }
+
+                final double hh = f / (h + h);
+
+                for (int j = 0; j < i; j++)
+                {
+                    e[j] -= hh * d[j];
+                }
+
+                for (int j = 0; j < i; j++)
+                {
+                    f = d[j];
+                    g = e[j];
+
+                    for (int k = j; k <= i - 1; k++)
+                    {
+                        v[k][j] -= (f * e[k] + g * d[k]);
+                    }
+
+                    d[j] = v[i - 1][j];
+                    v[i][j] = 0.0;
+                }
+            }
+
+            d[i] = h;
+        }
+
+        // Accumulate transformations.
+        for (int i = 0; i < n - 1; i++)
+        {
+            v[n - 1][i] = v[i][i];
+            v[i][i] = 1.0;
+            final double h = d[i + 1];
+
+            if (h != 0.0)
+            {
+                for (int k = 0; k <= i; k++)
+                {
+                    d[k] = v[k][i + 1] / h;
+                }
+
+                for (int j = 0; j <= i; j++)
+                {
+                    double g = 0.0;
+
+                    for (int k = 0; k <= i; k++)
+                    {
+                        g += v[k][i + 1] * v[k][j];
+                    }
+
+                    for (int k = 0; k <= i; k++)
+                    {
+                        v[k][j] -= g * d[k];
+                    }
+                }
+            }
+
+            for (int k = 0; k <= i; k++)
+            {
+                v[k][i + 1] = 0.0;
+            }
+        }
+
+        for (int j = 0; j < n; j++)
+        {
+            d[j] = v[n - 1][j];
+            v[n - 1][j] = 0.0;
+        }
+
+        v[n - 1][n - 1] = 1.0;
+        e[0] = 0.0;
+    }
+
+    /**
+     * Symmetric tridiagonal QL algorithm.
+     */
+    private static void tql2(final double[][] v, final double[] d, final double[] e)
+    {
+        final int n = d.length;
+
+        for (int i = 1; i < n; i++)
+        {
+            e[i - 1] = e[i];
+        }
+
+        e[n - 1] = 0.0;
+
+        double f = 0.0;
+        double tst1 = 0.0;
+        final double eps = Math.ulp(1.0);
+
+        for (int l = 0; l < n; l++)
+        {
+            // Find small subdiagonal element.
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            int m = l;
+
+            while (m < n)
+            {
+                if (Math.abs(e[m]) <= eps * tst1)
+                {
+                    break;
+                }
+
+                m++;
+            }
+
+            // If m == l, d[l] is an eigenvalue, otherwise, iterate.
+            if (m > l)
+            {
+                do
+                {
+                    // Compute implicit shift.
+                    double g = d[l];
+                    double p = (d[l + 1] - g) / (2.0 * e[l]);
+                    double r = Math.hypot(p, 1.0);
+
+                    if (p < 0)
+                    {
+                        r = -r;
+                    }
+
+                    d[l] = e[l] / (p + r);
+                    d[l + 1] = e[l] * (p + r);
+                    final double dl1 = d[l + 1];
+                    double h = g - d[l];
+
+                    for (int i = l + 2; i < n; i++)
+                    {
+                        d[i] -= h;
+                    }
+
+                    f = f + h;
+
+                    // Implicit QL transformation.
+                    p = d[m];
+                    double c = 1.0;
+                    double c2 = c;
+                    double c3 = c;
+                    final double el1 = e[l + 1];
+                    double s = 0.0;
+                    double s2 = 0.0;
+
+                    for (int i = m - 1; i >= l; i--)
+                    {
+                        c3 = c2;
+                        c2 = c;
+                        s2 = s;
+                        g = c * e[i];
+                        h = c * p;
+                        r = Math.hypot(p, e[i]);
+                        e[i + 1] = s * r;
+                        s = e[i] / r;
+                        c = p / r;
+                        p = c * d[i] - s * g;
+                        d[i + 1] = h + s * (c * g + s * d[i]);
+
+                        // Accumulate transformation.
+                        for (int k = 0; k < n; k++)
+                        {
+                            h = v[k][i + 1];
+                            v[k][i + 1] = s * v[k][i] + c * h;
+                            v[k][i] = c * v[k][i] - s * h;
+                        }
+                    }
+
+                    p = -s * s2 * c3 * el1 * e[l] / dl1;
+                    e[l] = s * p;
+                    d[l] = c * p;
+                }
+                while (Math.abs(e[l]) > eps * tst1);
+            }
+
+            d[l] = d[l] + f;
+            e[l] = 0.0;
+        }
+
+        // Sort eigenvalues and corresponding vectors.
+        for (int i = 0; i < n - 1; i++)
+        {
+            int k = i;
+            double p = d[i];
+
+            for (int j = i + 1; j < n; j++)
+            {
+                if (d[j] < p)
+                {
+                    k = j;
+                    p = d[j];
+                }
+            }
+
+            if (k != i)
+            {
+                d[k] = d[i];
+                d[i] = p;
+
+                for (int j = 0; j < n; j++)
+                {
+                    p = v[j][i];
+                    v[j][i] = v[j][k];
+                    v[j][k] = p;
+                }
+            }
+        }
+    }
+}
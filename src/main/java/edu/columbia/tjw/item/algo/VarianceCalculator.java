@@ -30,6 +30,33 @@ public final class VarianceCalculator
         return true;
     }
 
+    /**
+     * Fold in the values seen by other_, as if they had been given to this calculator (Chan et al.).
+     *
+     * @param other_ The calculator to merge, it is not changed
+     */
+    public void merge(final VarianceCalculator other_)
+    {
+        if (other_._count == 0)
+        {
+            return;
+        }
+        if (_count == 0)
+        {
+            _count = other_._count;
+            _mean = other_._mean;
+            _m2 = other_._m2;
+            return;
+        }
+
+        final int count = _count + other_._count;
+        final double delta = other_._mean - _mean;
+
+        _mean += delta * other_._count / count;
+        _m2 += other_._m2 + delta * delta * ((double) _count * other_._count / count);
+        _count = count;
+    }
+
     public int getCount()
     {
         return _count;
@@ -0,0 +1,786 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.util.EnumFamily;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import edu.columbia.tjw.item.util.thread.GeneralTask;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads a RawItemStatusGrid from a delimited (e.g. CSV) text file, parsing chunks of the file in parallel.
+ * <p>
+ * The first line is a header. Columns named after regressors (see EnumFamily.getFromName) are loaded as regressors,
+ * the status and next status columns hold the names of statuses, and all other columns are ignored. An empty next
+ * status means that it was not observed, and an empty regressor value is read as NaN. Blank lines are skipped.
+ * <p>
+ * The file is read in two passes over chunks of (roughly) equal size, each split at a line boundary. The first pass
+ * counts the rows of each chunk, so that the columns can be allocated at their final size, and the second parses
+ * each chunk directly into its own range of those columns. Numbers are parsed from the raw bytes, so no strings (or
+ * other objects) are created per row, and at most one chunk per thread is held in memory besides the grid itself.
+ * <p>
+ * As with RawItemGrid, regressors are stored as floats.
+ * <p>
+ * N.B: Quoted fields are not supported, and the columns that are read must be ASCII.
+ *
+ * @param <S> The status type of the grid
+ * @param <R> The regressor type of the grid
+ */
+public final class DelimitedGridReader<S extends ItemStatus<S>, R extends ItemRegressor<R>>
+{
+    private static final int DEFAULT_CHUNK_BYTES = 64 * 1024 * 1024;
+    private static final int SCAN_BYTES = 64 * 1024;
+
+    // Column kinds, other than regressors (which use their ordinal).
+    private static final int STATUS_COLUMN = -1;
+    private static final int NEXT_STATUS_COLUMN = -2;
+    private static final int IGNORED_COLUMN = -3;
+
+    // Mantissas with at most this many digits are exact in a double, as are the powers of ten up to 10^22, so the
+    // fast path below is correctly rounded.
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static
+    {
+        POWERS_OF_TEN[0] = 1.0;
+
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+        {
+            POWERS_OF_TEN[i] = 10.0 * POWERS_OF_TEN[i - 1];
+        }
+    }
+
+    private final EnumFamily<S> _statusFamily;
+    private final EnumFamily<R> _regressorFamily;
+    private final String _statusColumn;
+    private final String _nextStatusColumn;
+    private final byte _delimiter;
+    private final int _chunkBytes;
+    private final ItemExecutor _executor;
+    private final byte[][] _statusNames;
+
+    /**
+     * Make a reader for comma separated files.
+     *
+     * @param statusFamily_     The status family of the grid
+     * @param regressorFamily_  The regressor family of the grid
+     * @param statusColumn_     The name of the status column
+     * @param nextStatusColumn_ The name of the next status column, or null if there isn't one
+     */
+    public DelimitedGridReader(final EnumFamily<S> statusFamily_, final EnumFamily<R> regressorFamily_,
+                               final String statusColumn_, final String nextStatusColumn_)
+    {
+        this(statusFamily_, regressorFamily_, statusColumn_, nextStatusColumn_, ',', DEFAULT_CHUNK_BYTES,
+                ForkJoinExecutor.shared());
+    }
+
+    /**
+     * @param statusFamily_     The status family of the grid
+     * @param regressorFamily_  The regressor family of the grid
+     * @param statusColumn_     The name of the status column
+     * @param nextStatusColumn_ The name of the next status column, or null if there isn't one
+     * @param delimiter_        The field delimiter, must be ASCII
+     * @param chunkBytes_       The (approximate) size of the chunks parsed by each task
+     * @param executor_         The executor on which chunks are parsed
+     */
+    public DelimitedGridReader(final EnumFamily<S> statusFamily_, final EnumFamily<R> regressorFamily_,
+                               final String statusColumn_, final String nextStatusColumn_, final char delimiter_,
+                               final int chunkBytes_, final ItemExecutor executor_)
+    {
+        if (null == statusFamily_)
+        {
+            throw new NullPointerException("Status family cannot be null.");
+        }
+        if (null == regressorFamily_)
+        {
+            throw new NullPointerException("Regressor family cannot be null.");
+        }
+        if (null == statusColumn_)
+        {
+            throw new NullPointerException("Status column cannot be null.");
+        }
+        if (null == executor_)
+        {
+            throw new NullPointerException("Executor cannot be null.");
+        }
+        if (delimiter_ > 127 || delimiter_ == '\n' || delimiter_ == '\r')
+        {
+            throw new IllegalArgumentException("Invalid delimiter: " + (int) delimiter_);
+        }
+        if (chunkBytes_ < 1)
+        {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkBytes_);
+        }
+
+        _statusFamily = statusFamily_;
+        _regressorFamily = regressorFamily_;
+        _statusColumn = statusColumn_;
+        _nextStatusColumn = nextStatusColumn_;
+        _delimiter = (byte) delimiter_;
+        _chunkBytes = chunkBytes_;
+        _executor = executor_;
+        _statusNames = new byte[statusFamily_.size()][];
+
+        for (final S next : statusFamily_.getMembers())
+        {
+            _statusNames[next.ordinal()] = next.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Read the given file.
+     *
+     * @param file_ The file to read
+     * @return A grid holding the contents of the file
+     * @throws IOException If the file could not be read, or is malformed
+     */
+    public RawItemStatusGrid<S, R> read(final Path file_) throws IOException
+    {
+        try (final FileChannel channel = FileChannel.open(file_, StandardOpenOption.READ))
+        {
+            final long fileSize = channel.size();
+            final HeaderLine header = readHeader(channel, fileSize);
+            final long[] bounds = findChunkBounds(channel, header._end, fileSize);
+            final int chunkCount = bounds.length - 1;
+
+            final List<RowCounter> counters = new ArrayList<>(chunkCount);
+
+            for (int i = 0; i < chunkCount; i++)
+            {
+                counters.add(new RowCounter(channel, bounds[i], bounds[i + 1]));
+            }
+
+            final List<Integer> counts = runAll(counters);
+            final int[] rowStart = new int[chunkCount + 1];
+
+            for (int i = 0; i < chunkCount; i++)
+            {
+                final long next = (long) rowStart[i] + counts.get(i);
+
+                if (next > Integer.MAX_VALUE)
+                {
+                    throw new IOException("Too many rows: " + next);
+                }
+
+                rowStart[i + 1] = (int) next;
+            }
+
+            final int size = rowStart[chunkCount];
+            final float[][] columns = new float[_regressorFamily.size()][];
+
+            for (final R next : header._regressors)
+            {
+                columns[next.ordinal()] = new float[size];
+            }
+
+            final int[] status = new int[size];
+            final int[] nextStatus = new int[size];
+
+            if (!header._hasNextStatus)
+            {
+                Arrays.fill(nextStatus, -1);
+            }
+
+            final List<ChunkParser> parsers = new ArrayList<>(chunkCount);
+
+            for (int i = 0; i < chunkCount; i++)
+            {
+                parsers.add(new ChunkParser(channel, bounds[i], bounds[i + 1], rowStart[i], rowStart[i + 1],
+                        header._kinds, columns, status, nextStatus));
+            }
+
+            runAll(parsers);
+
+            return new RawItemStatusGrid<>(_statusFamily, _regressorFamily,
+                    Collections.unmodifiableSet(header._regressors), columns, status, nextStatus);
+        }
+    }
+
+    private <V> List<V> runAll(final List<? extends GeneralTask<V>> tasks_) throws IOException
+    {
+        try
+        {
+            return _executor.runAll(tasks_);
+        }
+        catch (final RuntimeException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    private HeaderLine readHeader(final FileChannel channel_, final long fileSize_) throws IOException
+    {
+        final long end = findLineEnd(channel_, 0, fileSize_);
+
+        if (end > Integer.MAX_VALUE)
+        {
+            throw new IOException("Header is too long.");
+        }
+
+        final byte[] bytes = readRange(channel_, 0, end);
+        String line = new String(bytes, StandardCharsets.UTF_8);
+
+        while (line.endsWith("\n") || line.endsWith("\r"))
+        {
+            line = line.substring(0, line.length() - 1);
+        }
+
+        final List<String> names = splitHeader(line);
+        final int[] kinds = new int[names.size()];
+        final Set<R> regressors = new HashSet<>();
+        boolean hasStatus = false;
+        boolean hasNextStatus = false;
+
+        for (int i = 0; i < kinds.length; i++)
+        {
+            final String name = names.get(i).trim();
+            final R regressor = _regressorFamily.getFromName(name);
+
+            if (name.equals(_statusColumn))
+            {
+                if (hasStatus)
+                {
+                    throw new IOException("Duplicate status column: " + name);
+                }
+
+                kinds[i] = STATUS_COLUMN;
+                hasStatus = true;
+            }
+            else if (name.equals(_nextStatusColumn))
+            {
+                if (hasNextStatus)
+                {
+                    throw new IOException("Duplicate next status column: " + name);
+                }
+
+                kinds[i] = NEXT_STATUS_COLUMN;
+                hasNextStatus = true;
+            }
+            else if (null != regressor)
+            {
+                if (!regressors.add(regressor))
+                {
+                    throw new IOException("Duplicate regressor column: " + name);
+                }
+
+                kinds[i] = regressor.ordinal();
+            }
+            else
+            {
+                kinds[i] = IGNORED_COLUMN;
+            }
+        }
+
+        if (!hasStatus)
+        {
+            throw new IOException("Missing status column: " + _statusColumn);
+        }
+        if (null != _nextStatusColumn && !hasNextStatus)
+        {
+            throw new IOException("Missing next status column: " + _nextStatusColumn);
+        }
+
+        return new HeaderLine(end, kinds, regressors, hasNextStatus);
+    }
+
+    private List<String> splitHeader(final String line_)
+    {
+        final List<String> output = new ArrayList<>();
+        int start = 0;
+
+        for (int i = 0; i < line_.length(); i++)
+        {
+            if (line_.charAt(i) == _delimiter)
+            {
+                output.add(line_.substring(start, i));
+                start = i + 1;
+            }
+        }
+
+        output.add(line_.substring(start));
+        return output;
+    }
+
+    /**
+     * Split [start_, fileSize_) into chunks of about _chunkBytes each, every chunk (other than the last) ending just
+     * after a newline.
+     */
+    private long[] findChunkBounds(final FileChannel channel_, final long start_, final long fileSize_)
+            throws IOException
+    {
+        final List<Long> bounds = new ArrayList<>();
+        bounds.add(start_);
+        long prev = start_;
+
+        while (prev < fileSize_)
+        {
+            final long target = prev + _chunkBytes;
+
+            if (target >= fileSize_)
+            {
+                break;
+            }
+
+            prev = findLineEnd(channel_, target, fileSize_);
+            bounds.add(prev);
+        }
+
+        if (bounds.get(bounds.size() - 1) < fileSize_)
+        {
+            bounds.add(fileSize_);
+        }
+
+        final long[] output = new long[bounds.size()];
+
+        for (int i = 0; i < output.length; i++)
+        {
+            output[i] = bounds.get(i);
+        }
+
+        return output;
+    }
+
+    /**
+     * @return The position just after the first newline at or after pos_, or the end of the file if there is none
+     */
+    private static long findLineEnd(final FileChannel channel_, long pos_, final long fileSize_) throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BYTES);
+
+        while (pos_ < fileSize_)
+        {
+            buffer.clear();
+            final int count = channel_.read(buffer, pos_);
+
+            if (count < 0)
+            {
+                break;
+            }
+
+            for (int i = 0; i < count; i++)
+            {
+                if (buffer.get(i) == '\n')
+                {
+                    return pos_ + i + 1;
+                }
+            }
+
+            pos_ += count;
+        }
+
+        return fileSize_;
+    }
+
+    private static byte[] readRange(final FileChannel channel_, final long start_, final long end_) throws IOException
+    {
+        final long length = end_ - start_;
+
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IOException("Chunk too large: " + length);
+        }
+
+        final byte[] output = new byte[(int) length];
+        final ByteBuffer buffer = ByteBuffer.wrap(output);
+        long pos = start_;
+
+        while (buffer.hasRemaining())
+        {
+            final int count = channel_.read(buffer, pos);
+
+            if (count < 0)
+            {
+                throw new IOException("Unexpected end of file.");
+            }
+
+            pos += count;
+        }
+
+        return output;
+    }
+
+    /**
+     * @return The end of the line starting at start_ (i.e. the position of its newline, or end_)
+     */
+    private static int lineEnd(final byte[] data_, final int start_)
+    {
+        for (int i = start_; i < data_.length; i++)
+        {
+            if (data_[i] == '\n')
+            {
+                return i;
+            }
+        }
+
+        return data_.length;
+    }
+
+    /**
+     * @return The end of the content of the line ending at end_, i.e. without any trailing carriage return
+     */
+    private static int contentEnd(final byte[] data_, final int start_, final int end_)
+    {
+        if (end_ > start_ && data_[end_ - 1] == '\r')
+        {
+            return end_ - 1;
+        }
+
+        return end_;
+    }
+
+    private int parseStatus(final byte[] data_, final int start_, final int end_, final int row_)
+            throws IOException
+    {
+        for (int i = 0; i < _statusNames.length; i++)
+        {
+            if (Arrays.equals(_statusNames[i], 0, _statusNames[i].length, data_, start_, end_))
+            {
+                return i;
+            }
+        }
+
+        throw new IOException("Unknown status in row " + row_ + ": "
+                + new String(data_, start_, end_ - start_, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse a plain decimal number (e.g. -12.5e-3) directly, falling back to Double.parseDouble for anything
+     * unusual (NaN, Infinity, hex, or too many digits for the fast path to be exact).
+     */
+    private static double parseNumber(final byte[] data_, int start_, int end_, final int row_) throws IOException
+    {
+        while (start_ < end_ && data_[start_] == ' ')
+        {
+            start_++;
+        }
+        while (end_ > start_ && data_[end_ - 1] == ' ')
+        {
+            end_--;
+        }
+
+        if (start_ == end_)
+        {
+            return Double.NaN;
+        }
+
+        int pos = start_;
+        final boolean negative = data_[pos] == '-';
+
+        if (negative || data_[pos] == '+')
+        {
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+        boolean fast = true;
+
+        while (pos < end_ && data_[pos] >= '0' && data_[pos] <= '9')
+        {
+            anyDigits = true;
+
+            if (mantissa != 0 || data_[pos] != '0')
+            {
+                mantissa = 10 * mantissa + (data_[pos] - '0');
+                digits++;
+            }
+
+            pos++;
+        }
+
+        if (pos < end_ && data_[pos] == '.')
+        {
+            pos++;
+
+            while (pos < end_ && data_[pos] >= '0' && data_[pos] <= '9')
+            {
+                anyDigits = true;
+
+                if (mantissa != 0 || data_[pos] != '0')
+                {
+                    mantissa = 10 * mantissa + (data_[pos] - '0');
+                    digits++;
+                }
+
+                exponent--;
+                pos++;
+            }
+        }
+
+        if (pos < end_ && (data_[pos] == 'e' || data_[pos] == 'E') && anyDigits)
+        {
+            pos++;
+            boolean negativeExponent = false;
+
+            if (pos < end_ && (data_[pos] == '-' || data_[pos] == '+'))
+            {
+                negativeExponent = data_[pos] == '-';
+                pos++;
+            }
+
+            int explicit = 0;
+            boolean expDigits = false;
+
+            while (pos < end_ && data_[pos] >= '0' && data_[pos] <= '9')
+            {
+                // Anything this large will not take the fast path anyway.
+                explicit = Math.min(10 * explicit + (data_[pos] - '0'), 100000);
+                expDigits = true;
+                pos++;
+            }
+
+            if (!expDigits)
+            {
+                fast = false;
+            }
+
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+
+        if (!anyDigits || pos != end_ || digits > MAX_FAST_DIGITS || Math.abs(exponent) >= POWERS_OF_TEN.length)
+        {
+            fast = false;
+        }
+
+        if (fast)
+        {
+            final double value;
+
+            if (exponent >= 0)
+            {
+                value = mantissa * POWERS_OF_TEN[exponent];
+            }
+            else
+            {
+                value = mantissa / POWERS_OF_TEN[-exponent];
+            }
+
+            return negative ? -value : value;
+        }
+
+        final String text = new String(data_, start_, end_ - start_, StandardCharsets.US_ASCII);
+
+        try
+        {
+            return Double.parseDouble(text);
+        }
+        catch (final NumberFormatException e)
+        {
+            throw new IOException("Malformed number in row " + row_ + ": " + text, e);
+        }
+    }
+
+    private final class HeaderLine
+    {
+        private final long _end;
+        private final int[] _kinds;
+        private final Set<R> _regressors;
+        private final boolean _hasNextStatus;
+
+        private HeaderLine(final long end_, final int[] kinds_, final Set<R> regressors_,
+                           final boolean hasNextStatus_)
+        {
+            _end = end_;
+            _kinds = kinds_;
+            _regressors = regressors_;
+            _hasNextStatus = hasNextStatus_;
+        }
+    }
+
+    private static final class RowCounter extends GeneralTask<Integer>
+    {
+        private final FileChannel _channel;
+        private final long _start;
+        private final long _end;
+
+        private RowCounter(final FileChannel channel_, final long start_, final long end_)
+        {
+            _channel = channel_;
+            _start = start_;
+            _end = end_;
+        }
+
+        @Override
+        protected Integer subRun() throws Exception
+        {
+            final byte[] data = readRange(_channel, _start, _end);
+            int count = 0;
+            int pos = 0;
+
+            while (pos < data.length)
+            {
+                final int end = lineEnd(data, pos);
+
+                if (contentEnd(data, pos, end) > pos)
+                {
+                    count++;
+                }
+
+                pos = end + 1;
+            }
+
+            return count;
+        }
+    }
+
+    private final class ChunkParser extends GeneralTask<Void>
+    {
+        private final FileChannel _channel;
+        private final long _start;
+        private final long _end;
+        private final int _rowStart;
+        private final int _rowEnd;
+        private final int[] _kinds;
+        private final float[][] _columns;
+        private final int[] _status;
+        private final int[] _nextStatus;
+
+        private ChunkParser(final FileChannel channel_, final long start_, final long end_, final int rowStart_,
+                            final int rowEnd_, final int[] kinds_, final float[][] columns_, final int[] status_,
+                            final int[] nextStatus_)
+        {
+            _channel = channel_;
+            _start = start_;
+            _end = end_;
+            _rowStart = rowStart_;
+            _rowEnd = rowEnd_;
+            _kinds = kinds_;
+            _columns = columns_;
+            _status = status_;
+            _nextStatus = nextStatus_;
+        }
+
+        @Override
+        protected Void subRun() throws Exception
+        {
+            final byte[] data = readRange(_channel, _start, _end);
+            int row = _rowStart;
+            int pos = 0;
+
+            while (pos < data.length)
+            {
+                final int lineEnd = lineEnd(data, pos);
+                final int end = contentEnd(data, pos, lineEnd);
+
+                if (end > pos)
+                {
+                    if (row >= _rowEnd)
+                    {
+                        throw new IllegalStateException("Row count mismatch.");
+                    }
+
+                    parseRow(data, pos, end, row);
+                    row++;
+                }
+
+                pos = lineEnd + 1;
+            }
+
+            if (row != _rowEnd)
+            {
+                throw new IllegalStateException("Row count mismatch.");
+            }
+
+            return null;
+        }
+
+        private void parseRow(final byte[] data_, final int start_, final int end_, final int row_)
+                throws IOException
+        {
+            int fieldStart = start_;
+            int column = 0;
+
+            while (true)
+            {
+                int fieldEnd = fieldStart;
+
+                while (fieldEnd < end_ && data_[fieldEnd] != _delimiter)
+                {
+                    fieldEnd++;
+                }
+
+                if (column >= _kinds.length)
+                {
+                    throw new IOException("Too many fields in row " + row_ + ", expected " + _kinds.length);
+                }
+
+                final int kind = _kinds[column];
+
+                if (kind >= 0)
+                {
+                    _columns[kind][row_] = (float) parseNumber(data_, fieldStart, fieldEnd, row_);
+                }
+                else if (kind == STATUS_COLUMN)
+                {
+                    _status[row_] = parseStatus(data_, fieldStart, fieldEnd, row_);
+                }
+                else if (kind == NEXT_STATUS_COLUMN)
+                {
+                    if (fieldEnd == fieldStart)
+                    {
+                        // Not observed.
+                        _nextStatus[row_] = -1;
+                    }
+                    else
+                    {
+                        _nextStatus[row_] = parseStatus(data_, fieldStart, fieldEnd, row_);
+                    }
+                }
+
+                column++;
+
+                if (fieldEnd >= end_)
+                {
+                    break;
+                }
+
+                fieldStart = fieldEnd + 1;
+            }
+
+            if (column != _kinds.length)
+            {
+                throw new IOException("Too few fields in row " + row_ + ", expected " + _kinds.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A memory mapped equivalent of RawFittingGrid. Use writeToFile to convert any fitting grid, then open to map it.
+ *
+ * @param <S> The status type of this grid
+ * @param <R> The regressor type of this grid
+ */
+public final class MappedFittingGrid<S extends ItemStatus<S>, R extends ItemRegressor<R>> extends MappedItemGrid<R>
+        implements ItemFittingGrid<S, R>
+{
+    private final S _fromStatus;
+
+    private MappedFittingGrid(final MappedGridFile file_, final Class<S> statusClass_, final Class<R> regClass_)
+            throws IOException
+    {
+        super(file_, regClass_);
+
+        if (file_.getKind() != MappedGridFile.KIND_FITTING)
+        {
+            throw new IOException("Not a fitting grid.");
+        }
+        if (file_.getStatusFamily().getComponentType() != statusClass_)
+        {
+            throw new IOException("Wrong class type!");
+        }
+
+        final EnumFamily<S> statusFamily = file_.getStatusFamily().castFamily(statusClass_);
+        _fromStatus = statusFamily.getFromOrdinal(file_.getFromStatus());
+    }
+
+    public static <S2 extends ItemStatus<S2>, R2 extends ItemRegressor<R2>>
+    MappedFittingGrid<S2, R2> open(final Path path_, final Class<S2> statusClass_, final Class<R2> regClass_)
+            throws IOException
+    {
+        return new MappedFittingGrid<>(MappedGridFile.open(path_), statusClass_, regClass_);
+    }
+
+    public static <S2 extends ItemStatus<S2>, R2 extends ItemRegressor<R2>>
+    void writeToFile(final ItemFittingGrid<S2, R2> grid_, final Path path_) throws IOException
+    {
+        final int size = grid_.size();
+        final int[] nextStatus = new int[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            nextStatus[i] = grid_.getNextStatus(i);
+        }
+
+        final S2 fromStatus = grid_.getFromStatus();
+        MappedGridFile.write(grid_, MappedGridFile.KIND_FITTING, fromStatus.getFamily(), fromStatus.ordinal(),
+                null, nextStatus, path_);
+    }
+
+    @Override
+    public S getFromStatus()
+    {
+        return _fromStatus;
+    }
+
+    @Override
+    public int getNextStatus(int index_)
+    {
+        return getRawNextStatus(index_);
+    }
+}
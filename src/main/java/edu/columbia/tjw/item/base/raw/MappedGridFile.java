@@ -0,0 +1,472 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.data.ItemGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The columnar file format behind the mapped grids.
+ * <p>
+ * The layout (all little endian) is:
+ * <ul>
+ * <li>The header: magic, version, kind, row count</li>
+ * <li>The length and bytes of the serialized regressor and status families</li>
+ * <li>The from status ordinal (-1 for status grids)</li>
+ * <li>The number of regressors, then the (ordinal, column offset) pair of each</li>
+ * <li>The offsets of the status column (-1 for fitting grids) and the next status column</li>
+ * <li>The columns themselves, each aligned to COLUMN_ALIGNMENT bytes. Regressors are float columns, statuses are
+ * int columns, with -1 meaning no next status.</li>
+ * </ul>
+ * <p>
+ * Once written, the file is never modified, so it may be mapped (and shared through the page cache) by any number of
+ * readers.
+ */
+final class MappedGridFile
+{
+    static final int KIND_FITTING = 0;
+    static final int KIND_STATUS = 1;
+
+    private static final int MAGIC = 0x49544D47;
+    private static final int VERSION = 1;
+    private static final int COLUMN_ALIGNMENT = 64;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final int _kind;
+    private final int _size;
+    private final EnumFamily<?> _regressorFamily;
+    private final EnumFamily<?> _statusFamily;
+    private final int _fromStatus;
+    private final FloatBuffer[] _regressors;
+    private final IntBuffer _status;
+    private final IntBuffer _nextStatus;
+
+    private MappedGridFile(final int kind_, final int size_, final EnumFamily<?> regressorFamily_,
+                           final EnumFamily<?> statusFamily_, final int fromStatus_, final FloatBuffer[] regressors_,
+                           final IntBuffer status_, final IntBuffer nextStatus_)
+    {
+        _kind = kind_;
+        _size = size_;
+        _regressorFamily = regressorFamily_;
+        _statusFamily = statusFamily_;
+        _fromStatus = fromStatus_;
+        _regressors = regressors_;
+        _status = status_;
+        _nextStatus = nextStatus_;
+    }
+
+    public int getKind()
+    {
+        return _kind;
+    }
+
+    public int size()
+    {
+        return _size;
+    }
+
+    public EnumFamily<?> getRegressorFamily()
+    {
+        return _regressorFamily;
+    }
+
+    public EnumFamily<?> getStatusFamily()
+    {
+        return _statusFamily;
+    }
+
+    public int getFromStatus()
+    {
+        return _fromStatus;
+    }
+
+    /**
+     * @return The regressor columns, indexed by ordinal, null if the regressor is not available
+     */
+    public FloatBuffer[] getRegressors()
+    {
+        return _regressors;
+    }
+
+    public IntBuffer getStatus()
+    {
+        return _status;
+    }
+
+    public IntBuffer getNextStatus()
+    {
+        return _nextStatus;
+    }
+
+    /**
+     * Writes out a grid in this format.
+     *
+     * @param grid_         The grid to write
+     * @param kind_         The kind of grid (fitting or status)
+     * @param statusFamily_ The status family of the grid
+     * @param fromStatus_   The from status ordinal, or -1 for a status grid
+     * @param status_       The status of each row, or null for a fitting grid
+     * @param nextStatus_   The next status of each row, -1 if there is none
+     * @param path_         The file to write
+     * @throws IOException If the file could not be written
+     */
+    static <S extends ItemStatus<S>, R extends ItemRegressor<R>> void write(final ItemGrid<R> grid_,
+                                                                           final int kind_,
+                                                                           final EnumFamily<S> statusFamily_,
+                                                                           final int fromStatus_,
+                                                                           final int[] status_,
+                                                                           final int[] nextStatus_,
+                                                                           final Path path_)
+            throws IOException
+    {
+        final int size = grid_.size();
+        final EnumFamily<R> regFamily = grid_.getRegressorFamily();
+        final List<R> regressors = new ArrayList<>(grid_.getAvailableRegressors());
+        regressors.sort((a, b) -> Integer.compare(a.ordinal(), b.ordinal()));
+
+        final byte[] familyBytes;
+
+        try (final ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+             final ObjectOutputStream oOut = new ObjectOutputStream(bOut))
+        {
+            oOut.writeObject(regFamily);
+            oOut.writeObject(statusFamily_);
+            oOut.flush();
+            familyBytes = bOut.toByteArray();
+        }
+
+        final int headerSize = 4 * Integer.BYTES + Integer.BYTES + familyBytes.length + 2 * Integer.BYTES
+                + regressors.size() * (Integer.BYTES + Long.BYTES) + 2 * Long.BYTES;
+
+        final long floatColumnSize = align((long) size * Float.BYTES);
+        final long intColumnSize = align((long) size * Integer.BYTES);
+        long offset = align(headerSize);
+        final long[] regOffsets = new long[regressors.size()];
+
+        for (int i = 0; i < regOffsets.length; i++)
+        {
+            regOffsets[i] = offset;
+            offset += floatColumnSize;
+        }
+
+        final long statusOffset;
+
+        if (null != status_)
+        {
+            statusOffset = offset;
+            offset += intColumnSize;
+        }
+        else
+        {
+            statusOffset = -1;
+        }
+
+        final long nextStatusOffset = offset;
+
+        final ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(kind_);
+        header.putInt(size);
+        header.putInt(familyBytes.length);
+        header.put(familyBytes);
+        header.putInt(fromStatus_);
+        header.putInt(regressors.size());
+
+        for (int i = 0; i < regOffsets.length; i++)
+        {
+            header.putInt(regressors.get(i).ordinal());
+            header.putLong(regOffsets[i]);
+        }
+
+        header.putLong(statusOffset);
+        header.putLong(nextStatusOffset);
+        header.flip();
+
+        try (final FileChannel channel = FileChannel.open(path_, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            writeFully(channel, header, 0);
+
+            final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            for (int i = 0; i < regOffsets.length; i++)
+            {
+                final ItemRegressorReader reader = grid_.getRegressorReader(regressors.get(i));
+                long pos = regOffsets[i];
+                buffer.clear();
+
+                for (int k = 0; k < size; k++)
+                {
+                    if (buffer.remaining() < Float.BYTES)
+                    {
+                        buffer.flip();
+                        pos = writeFully(channel, buffer, pos);
+                        buffer.clear();
+                    }
+
+                    buffer.putFloat((float) reader.asDouble(k));
+                }
+
+                buffer.flip();
+                writeFully(channel, buffer, pos);
+            }
+
+            if (null != status_)
+            {
+                writeIntColumn(channel, buffer, status_, statusOffset);
+            }
+
+            writeIntColumn(channel, buffer, nextStatus_, nextStatusOffset);
+
+            // Pad out the last column, so every column occupies its full aligned length.
+            final long fileSize = nextStatusOffset + intColumnSize;
+
+            if (channel.size() < fileSize)
+            {
+                writeFully(channel, ByteBuffer.allocate(1), fileSize - 1);
+            }
+        }
+    }
+
+    /**
+     * Opens and maps a file in this format. The mappings remain valid after this returns, no file handles are
+     * retained.
+     *
+     * @param path_ The file to open
+     * @return The mapped file
+     * @throws IOException If the file could not be read, or is not in this format
+     */
+    static MappedGridFile open(final Path path_) throws IOException
+    {
+        try (final FileChannel channel = FileChannel.open(path_, StandardOpenOption.READ))
+        {
+            final ByteBuffer prefix = readFully(channel, 0, 5 * Integer.BYTES);
+
+            if (prefix.getInt() != MAGIC)
+            {
+                throw new IOException("Not a mapped grid file: " + path_);
+            }
+
+            final int version = prefix.getInt();
+
+            if (version != VERSION)
+            {
+                throw new IOException("Unsupported mapped grid version: " + version);
+            }
+
+            final int kind = prefix.getInt();
+            final int size = prefix.getInt();
+            final int familyLength = prefix.getInt();
+
+            if (size < 0 || familyLength < 0)
+            {
+                throw new IOException("Corrupt mapped grid header.");
+            }
+            if (kind != KIND_FITTING && kind != KIND_STATUS)
+            {
+                throw new IOException("Unknown mapped grid kind: " + kind);
+            }
+
+            final long fileLength = channel.size();
+
+            if (5L * Integer.BYTES + familyLength > fileLength)
+            {
+                throw new IOException("Family length " + familyLength + " extends past the end of the file ("
+                        + fileLength + " bytes): " + path_);
+            }
+
+            final long familyStart = 5 * Integer.BYTES;
+            final ByteBuffer familyBuffer = readFully(channel, familyStart, familyLength);
+            final EnumFamily<?> regFamily;
+            final EnumFamily<?> statusFamily;
+
+            try (final ObjectInputStream oIn = new ObjectInputStream(
+                    new ByteArrayInputStream(familyBuffer.array(), 0, familyLength)))
+            {
+                regFamily = (EnumFamily<?>) oIn.readObject();
+                statusFamily = (EnumFamily<?>) oIn.readObject();
+            }
+            catch (final ClassNotFoundException | ClassCastException e)
+            {
+                throw new IOException(e);
+            }
+
+            final long countsStart = familyStart + familyLength;
+            final ByteBuffer counts = readFully(channel, countsStart, 2 * Integer.BYTES);
+            final int fromStatus = counts.getInt();
+            final int regCount = counts.getInt();
+
+            if (regCount < 0 || regCount > regFamily.size())
+            {
+                throw new IOException("Invalid regressor count " + regCount + " for a family of "
+                        + regFamily.size() + " regressors: " + path_);
+            }
+            if (fromStatus < -1 || fromStatus >= statusFamily.size())
+            {
+                throw new IOException("Invalid from status ordinal " + fromStatus + " for a family of "
+                        + statusFamily.size() + " statuses: " + path_);
+            }
+
+            final ByteBuffer offsets = readFully(channel, countsStart + 2 * Integer.BYTES,
+                    regCount * (Integer.BYTES + Long.BYTES) + 2 * Long.BYTES);
+            final FloatBuffer[] regressors = new FloatBuffer[regFamily.size()];
+
+            for (int i = 0; i < regCount; i++)
+            {
+                final int ordinal = offsets.getInt();
+                final long offset = offsets.getLong();
+
+                if (ordinal < 0 || ordinal >= regressors.length)
+                {
+                    throw new IOException("Invalid regressor ordinal " + ordinal + " for a family of "
+                            + regressors.length + " regressors: " + path_);
+                }
+                if (null != regressors[ordinal])
+                {
+                    throw new IOException("Duplicate regressor ordinal " + ordinal + ": " + path_);
+                }
+                if (offset < 0 || offset + (long) size * Float.BYTES > fileLength)
+                {
+                    throw new IOException("Column of regressor " + ordinal + " at offset " + offset
+                            + " extends past the end of the file (" + fileLength + " bytes): " + path_);
+                }
+
+                regressors[ordinal] = map(channel, offset, (long) size * Float.BYTES).asFloatBuffer();
+            }
+
+            final long statusOffset = offsets.getLong();
+            final long nextStatusOffset = offsets.getLong();
+            final IntBuffer status;
+
+            if (statusOffset >= 0)
+            {
+                status = map(channel, statusOffset, (long) size * Integer.BYTES).asIntBuffer();
+            }
+            else
+            {
+                status = null;
+            }
+
+            final IntBuffer nextStatus = map(channel, nextStatusOffset, (long) size * Integer.BYTES).asIntBuffer();
+
+            return new MappedGridFile(kind, size, regFamily, statusFamily, fromStatus, regressors, status,
+                    nextStatus);
+        }
+    }
+
+    private static ByteBuffer map(final FileChannel channel_, final long offset_, final long length_)
+            throws IOException
+    {
+        if (length_ > Integer.MAX_VALUE)
+        {
+            throw new IOException("Column too large to map: " + length_);
+        }
+        if (offset_ < 0 || offset_ + length_ > channel_.size())
+        {
+            throw new IOException("Column extends past the end of the file.");
+        }
+
+        return channel_.map(FileChannel.MapMode.READ_ONLY, offset_, length_).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeIntColumn(final FileChannel channel_, final ByteBuffer buffer_, final int[] data_,
+                                       final long offset_) throws IOException
+    {
+        long pos = offset_;
+        buffer_.clear();
+
+        for (final int next : data_)
+        {
+            if (buffer_.remaining() < Integer.BYTES)
+            {
+                buffer_.flip();
+                pos = writeFully(channel_, buffer_, pos);
+                buffer_.clear();
+            }
+
+            buffer_.putInt(next);
+        }
+
+        buffer_.flip();
+        writeFully(channel_, buffer_, pos);
+    }
+
+    private static long writeFully(final FileChannel channel_, final ByteBuffer buffer_, final long position_)
+            throws IOException
+    {
+        long pos = position_;
+
+        while (buffer_.hasRemaining())
+        {
+            pos += channel_.write(buffer_, pos);
+        }
+
+        return pos;
+    }
+
+    private static ByteBuffer readFully(final FileChannel channel_, final long position_, final int length_)
+            throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(length_).order(ByteOrder.LITTLE_ENDIAN);
+        long pos = position_;
+
+        while (buffer.hasRemaining())
+        {
+            final int read = channel_.read(buffer, pos);
+
+            if (read < 0)
+            {
+                throw new EOFException("Truncated mapped grid file.");
+            }
+
+            pos += read;
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long align(final long offset_)
+    {
+        final long remainder = offset_ % COLUMN_ALIGNMENT;
+
+        if (0 == remainder)
+        {
+            return offset_;
+        }
+
+        return offset_ + COLUMN_ALIGNMENT - remainder;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.data.ItemGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An ItemGrid backed by a memory mapped columnar file (see MappedGridFile).
+ * <p>
+ * Opening one of these reads only the header, the columns are paged in lazily by the OS as they are used. Since the
+ * file is read only, the pages may be shared through the page cache by every JVM that has the same file open. Unlike
+ * RawItemGrid, nothing is decompressed and no column is held on the heap.
+ * <p>
+ * Like RawItemGrid, doubles are stored as floats.
+ *
+ * @param <R> The regressor type of this grid
+ */
+public abstract class MappedItemGrid<R extends ItemRegressor<R>> implements ItemGrid<R>
+{
+    private final Set<R> _availableRegressors;
+    private final int _size;
+    private final EnumFamily<R> _regressorFamily;
+    private final ItemRegressorReader[] _readers;
+    private final IntBuffer _nextStatus;
+
+    MappedItemGrid(final MappedGridFile file_, final Class<R> regClass_) throws IOException
+    {
+        if (file_.getRegressorFamily().getComponentType() != regClass_)
+        {
+            throw new IOException("Wrong class type!");
+        }
+
+        _regressorFamily = file_.getRegressorFamily().castFamily(regClass_);
+        _size = file_.size();
+        _nextStatus = file_.getNextStatus();
+
+        final FloatBuffer[] columns = file_.getRegressors();
+        final Set<R> available = new HashSet<>();
+        _readers = new ItemRegressorReader[_regressorFamily.size()];
+
+        for (int i = 0; i < columns.length; i++)
+        {
+            if (null == columns[i])
+            {
+                continue;
+            }
+
+            available.add(_regressorFamily.getFromOrdinal(i));
+            _readers[i] = new MappedRegressorReader(columns[i]);
+        }
+
+        _availableRegressors = Collections.unmodifiableSet(available);
+    }
+
+    @Override
+    public Set<R> getAvailableRegressors()
+    {
+        return _availableRegressors;
+    }
+
+    @Override
+    public ItemRegressorReader getRegressorReader(R field_)
+    {
+        return _readers[field_.ordinal()];
+    }
+
+    @Override
+    public int size()
+    {
+        return _size;
+    }
+
+    @Override
+    public EnumFamily<R> getRegressorFamily()
+    {
+        return _regressorFamily;
+    }
+
+    /**
+     * @param index_ The row to look up
+     * @return The raw next status of the row, -1 if it has none
+     */
+    protected final int getRawNextStatus(final int index_)
+    {
+        return _nextStatus.get(index_);
+    }
+
+    /**
+     * Reads a mapped column. Only absolute gets are used, so this is safe to share between threads.
+     */
+    private final class MappedRegressorReader implements ItemRegressorReader
+    {
+        private final FloatBuffer _data;
+
+        public MappedRegressorReader(final FloatBuffer data_)
+        {
+            _data = data_;
+        }
+
+        @Override
+        public double asDouble(int index_)
+        {
+            return _data.get(index_);
+        }
+
+        @Override
+        public void read(final int start_, final int length_, final double[] output_)
+        {
+            checkRange(start_, length_);
+
+            for (int i = 0; i < length_; i++)
+            {
+                output_[i] = _data.get(start_ + i);
+            }
+        }
+
+        @Override
+        public void read(final int start_, final int length_, final float[] output_)
+        {
+            checkRange(start_, length_);
+
+            for (int i = 0; i < length_; i++)
+            {
+                output_[i] = _data.get(start_ + i);
+            }
+        }
+
+        private void checkRange(final int start_, final int length_)
+        {
+            if (start_ < 0 || length_ < 0 || start_ > _size - length_)
+            {
+                throw new ArrayIndexOutOfBoundsException("Out of bounds.");
+            }
+        }
+
+        @Override
+        public int size()
+        {
+            return _size;
+        }
+    }
+}
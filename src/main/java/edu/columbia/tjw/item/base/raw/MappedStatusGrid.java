@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.data.ItemStatusGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+
+/**
+ * A memory mapped equivalent of RawItemStatusGrid. Use writeToFile to convert any status grid, then open to map it.
+ *
+ * @param <S> The status type of this grid
+ * @param <R> The regressor type of this grid
+ */
+public final class MappedStatusGrid<S extends ItemStatus<S>, R extends ItemRegressor<R>> extends MappedItemGrid<R>
+        implements ItemStatusGrid<S, R>
+{
+    private final EnumFamily<S> _statusFamily;
+    private final IntBuffer _status;
+
+    private MappedStatusGrid(final MappedGridFile file_, final Class<S> statusClass_, final Class<R> regClass_)
+            throws IOException
+    {
+        super(file_, regClass_);
+
+        if (file_.getKind() != MappedGridFile.KIND_STATUS)
+        {
+            throw new IOException("Not a status grid.");
+        }
+        if (file_.getStatusFamily().getComponentType() != statusClass_)
+        {
+            throw new IOException("Wrong class type!");
+        }
+
+        _statusFamily = file_.getStatusFamily().castFamily(statusClass_);
+        _status = file_.getStatus();
+    }
+
+    public static <S2 extends ItemStatus<S2>, R2 extends ItemRegressor<R2>>
+    MappedStatusGrid<S2, R2> open(final Path path_, final Class<S2> statusClass_, final Class<R2> regClass_)
+            throws IOException
+    {
+        return new MappedStatusGrid<>(MappedGridFile.open(path_), statusClass_, regClass_);
+    }
+
+    public static <S2 extends ItemStatus<S2>, R2 extends ItemRegressor<R2>>
+    void writeToFile(final ItemStatusGrid<S2, R2> grid_, final Path path_) throws IOException
+    {
+        final int size = grid_.size();
+        final int[] status = new int[size];
+        final int[] nextStatus = new int[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            status[i] = grid_.getStatus(i);
+
+            if (grid_.hasNextStatus(i))
+            {
+                nextStatus[i] = grid_.getNextStatus(i);
+            }
+            else
+            {
+                // Guaranteed to not be used for an actual status.
+                nextStatus[i] = -1;
+            }
+        }
+
+        MappedGridFile.write(grid_, MappedGridFile.KIND_STATUS, grid_.getStatusFamily(), -1, status, nextStatus,
+                path_);
+    }
+
+    @Override
+    public EnumFamily<S> getStatusFamily()
+    {
+        return _statusFamily;
+    }
+
+    @Override
+    public int getStatus(int index_)
+    {
+        return _status.get(index_);
+    }
+
+    @Override
+    public int getNextStatus(int index_)
+    {
+        if (!hasNextStatus(index_))
+        {
+            throw new IllegalArgumentException("Next status unavailable.");
+        }
+
+        return getRawNextStatus(index_);
+    }
+
+    @Override
+    public boolean hasNextStatus(int index_)
+    {
+        return (getRawNextStatus(index_) >= 0);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.base.raw;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A fixed width column held in direct (off heap) memory.
+ * <p>
+ * Addressing is done with longs internally, and the memory is split into chunks, so a column is not limited to 2GB
+ * (or 2^31 elements) the way an array is. The memory is released when this column is garbage collected.
+ * <p>
+ * Writes are not synchronized, and must all happen before the column is published to other threads. Reads only use
+ * absolute gets, so are safe to share between threads.
+ */
+final class OffHeapColumn
+{
+    // 256MB chunks, large enough that crossing a chunk boundary within a block read is rare.
+    private static final int CHUNK_SHIFT = 28;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final long _size;
+    private final int _elementSize;
+    private final ByteBuffer[] _chunks;
+
+    public OffHeapColumn(final long size_, final int elementSize_)
+    {
+        if (size_ < 0)
+        {
+            throw new IllegalArgumentException("Size must be nonnegative: " + size_);
+        }
+        if (elementSize_ != Float.BYTES && elementSize_ != Integer.BYTES)
+        {
+            throw new IllegalArgumentException("Unsupported element size: " + elementSize_);
+        }
+
+        _size = size_;
+        _elementSize = elementSize_;
+
+        final long byteSize = size_ * elementSize_;
+        final int chunkCount = (int) ((byteSize + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        _chunks = new ByteBuffer[chunkCount];
+
+        for (int i = 0; i < chunkCount; i++)
+        {
+            final long chunkBytes = Math.min(CHUNK_SIZE, byteSize - (((long) i) << CHUNK_SHIFT));
+            _chunks[i] = ByteBuffer.allocateDirect((int) chunkBytes).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    public long size()
+    {
+        return _size;
+    }
+
+    public float getFloat(final long index_)
+    {
+        final long offset = byteOffset(index_);
+        return _chunks[(int) (offset >>> CHUNK_SHIFT)].getFloat((int) (offset & CHUNK_MASK));
+    }
+
+    public void putFloat(final long index_, final float value_)
+    {
+        final long offset = byteOffset(index_);
+        _chunks[(int) (offset >>> CHUNK_SHIFT)].putFloat((int) (offset & CHUNK_MASK), value_);
+    }
+
+    public int getInt(final long index_)
+    {
+        final long offset = byteOffset(index_);
+        return _chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    public void putInt(final long index_, final int value_)
+    {
+        final long offset = byteOffset(index_);
+        _chunks[(int) (offset >>> CHUNK_SHIFT)].putInt((int) (offset & CHUNK_MASK), value_);
+    }
+
+    /**
+     * Read a block of float elements, widened to doubles.
+     *
+     * @param start_  The index of the first element to read
+     * @param length_ The number of elements to read
+     * @param output_ Receives the elements, starting from position zero
+     */
+    public void readFloats(final long start_, final int length_, final double[] output_)
+    {
+        if (length_ < 0 || start_ < 0 || start_ > _size - length_)
+        {
+            throw new ArrayIndexOutOfBoundsException("Out of bounds.");
+        }
+
+        int pos = 0;
+
+        while (pos < length_)
+        {
+            // Run straight through each chunk, only the chunk lookup happens per chunk rather than per element.
+            final long offset = (start_ + pos) * _elementSize;
+            final ByteBuffer chunk = _chunks[(int) (offset >>> CHUNK_SHIFT)];
+            final int chunkOffset = (int) (offset & CHUNK_MASK);
+            final int count = Math.min(length_ - pos, (chunk.capacity() - chunkOffset) / _elementSize);
+
+            for (int i = 0; i < count; i++)
+            {
+                output_[pos + i] = chunk.getFloat(chunkOffset + i * Float.BYTES);
+            }
+
+            pos += count;
+        }
+    }
+
+    /**
+     * Read a block of float elements.
+     *
+     * @param start_  The index of the first element to read
+     * @param length_ The number of elements to read
+     * @param output_ Receives the elements, starting from position zero
+     */
+    public void readFloats(final long start_, final int length_, final float[] output_)
+    {
+        if (length_ < 0 || start_ < 0 || start_ > _size - length_)
+        {
+            throw new ArrayIndexOutOfBoundsException("Out of bounds.");
+        }
+
+        int pos = 0;
+
+        while (pos < length_)
+        {
+            final long offset = (start_ + pos) * _elementSize;
+            final ByteBuffer chunk = _chunks[(int) (offset >>> CHUNK_SHIFT)];
+            final int chunkOffset = (int) (offset & CHUNK_MASK);
+            final int count = Math.min(length_ - pos, (chunk.capacity() - chunkOffset) / _elementSize);
+
+            for (int i = 0; i < count; i++)
+            {
+                output_[pos + i] = chunk.getFloat(chunkOffset + i * Float.BYTES);
+            }
+
+            pos += count;
+        }
+    }
+
+    private long byteOffset(final long index_)
+    {
+        if (index_ < 0 || index_ >= _size)
+        {
+            throw new ArrayIndexOutOfBoundsException("Out of bounds: " + index_);
+        }
+
+        return index_ * _elementSize;
+    }
+}
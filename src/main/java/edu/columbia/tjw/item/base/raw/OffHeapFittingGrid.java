@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
+
+import java.util.Set;
+
+/**
+ * A copy of a fitting grid, with every column held off heap.
+ * <p>
+ * Equivalent to RawFittingGrid (i.e. doubles are stored as floats), but the columns neither count against the heap
+ * nor need to be scanned or moved by the GC, which matters once there are a lot of regressors on a lot of rows. The
+ * readers support block reads, which is what the fitting kernels use.
+ *
+ * @param <S> The status type of this grid
+ * @param <R> The regressor type of this grid
+ */
+public final class OffHeapFittingGrid<S extends ItemStatus<S>, R extends ItemRegressor<R>>
+        implements ItemFittingGrid<S, R>
+{
+    private final Set<R> _availableRegressors;
+    private final int _size;
+    private final EnumFamily<R> _regressorFamily;
+    private final ItemRegressorReader[] _readers;
+    private final S _fromStatus;
+    private final OffHeapColumn _nextStatus;
+
+    public OffHeapFittingGrid(final ItemFittingGrid<S, R> underlying_)
+    {
+        if (null == underlying_)
+        {
+            throw new NullPointerException("Underlying cannot be null.");
+        }
+
+        _availableRegressors = underlying_.getAvailableRegressors();
+        _size = underlying_.size();
+        _regressorFamily = underlying_.getRegressorFamily();
+        _fromStatus = underlying_.getFromStatus();
+        _readers = new ItemRegressorReader[_regressorFamily.size()];
+
+        for (final R next : _availableRegressors)
+        {
+            _readers[next.ordinal()] = new OffHeapRegressorReader(underlying_.getRegressorReader(next));
+        }
+
+        _nextStatus = new OffHeapColumn(_size, Integer.BYTES);
+
+        for (int i = 0; i < _size; i++)
+        {
+            _nextStatus.putInt(i, underlying_.getNextStatus(i));
+        }
+    }
+
+    @Override
+    public S getFromStatus()
+    {
+        return _fromStatus;
+    }
+
+    @Override
+    public int getNextStatus(int index_)
+    {
+        return _nextStatus.getInt(index_);
+    }
+
+    @Override
+    public Set<R> getAvailableRegressors()
+    {
+        return _availableRegressors;
+    }
+
+    @Override
+    public ItemRegressorReader getRegressorReader(R field_)
+    {
+        return _readers[field_.ordinal()];
+    }
+
+    @Override
+    public int size()
+    {
+        return _size;
+    }
+
+    @Override
+    public EnumFamily<R> getRegressorFamily()
+    {
+        return _regressorFamily;
+    }
+
+    private final class OffHeapRegressorReader implements ItemRegressorReader
+    {
+        private final OffHeapColumn _data;
+
+        public OffHeapRegressorReader(final ItemRegressorReader underlying_)
+        {
+            if (_size != underlying_.size())
+            {
+                throw new IllegalArgumentException("Size mismatch.");
+            }
+
+            _data = new OffHeapColumn(_size, Float.BYTES);
+
+            for (int i = 0; i < _size; i++)
+            {
+                _data.putFloat(i, (float) underlying_.asDouble(i));
+            }
+        }
+
+        @Override
+        public double asDouble(int index_)
+        {
+            return _data.getFloat(index_);
+        }
+
+        @Override
+        public void read(final int start_, final int length_, final double[] output_)
+        {
+            _data.readFloats(start_, length_, output_);
+        }
+
+        @Override
+        public void read(final int start_, final int length_, final float[] output_)
+        {
+            _data.readFloats(start_, length_, output_);
+        }
+
+        @Override
+        public int size()
+        {
+            return _size;
+        }
+    }
+}
@@ -6,14 +6,18 @@ import edu.columbia.tjw.item.ItemStatus;
 import edu.columbia.tjw.item.data.ItemFittingGrid;
 import edu.columbia.tjw.item.data.ItemStatusGrid;
 import edu.columbia.tjw.item.data.RandomizedStatusGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
 
 import java.io.*;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 public class RawFittingGrid<S extends ItemStatus<S>, R extends ItemRegressor<R>>
         extends RawItemGrid<R> implements ItemFittingGrid<S, R>
 {
+    private static final long serialVersionUID = 4207560350316813496L;
     private final S _fromStatus;
     private final int[] _nextStatus;
 
@@ -31,6 +35,32 @@ public class RawFittingGrid<S extends ItemStatus<S>, R extends ItemRegressor<R>>
         }
     }
 
+    /**
+     * Adopt the given columns and next statuses (no copies are made), columns_ is indexed by regressor ordinal.
+     */
+    RawFittingGrid(final S fromStatus_, final EnumFamily<R> regressorFamily_, final Set<R> availableRegressors_,
+                   final float[][] columns_, final int[] nextStatus_)
+    {
+        super(regressorFamily_, availableRegressors_, columns_, nextStatus_.length);
+
+        _fromStatus = fromStatus_;
+        _nextStatus = nextStatus_;
+    }
+
+    /**
+     * Split a status grid into one fitting grid per from status, see StatusGridPartitioner. Fitting several
+     * statuses from the same data should use this rather than calling fromStatusGrid for each of them.
+     *
+     * @param grid_     The grid to split
+     * @param settings_ The settings controlling the shuffle, and the executor
+     * @return A grid for each status with at least one usable row
+     */
+    public static <S extends ItemStatus<S>, R extends ItemRegressor<R>>
+    SortedMap<S, RawFittingGrid<S, R>> partition(final ItemStatusGrid<S, R> grid_, final ItemSettings settings_)
+    {
+        return new StatusGridPartitioner<>(grid_, settings_).partition();
+    }
+
     public static <S extends ItemStatus<S>, R extends ItemRegressor<R>>
     RawFittingGrid<S, R> fromStatusGrid(final ItemStatusGrid<S, R> grid_, final S status_)
     {
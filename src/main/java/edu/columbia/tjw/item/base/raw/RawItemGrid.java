@@ -3,6 +3,7 @@ package edu.columbia.tjw.item.base.raw;
 import edu.columbia.tjw.item.ItemRegressor;
 import edu.columbia.tjw.item.ItemRegressorReader;
 import edu.columbia.tjw.item.data.ItemGrid;
+import edu.columbia.tjw.item.data.RawColumnReader;
 import edu.columbia.tjw.item.util.EnumFamily;
 
 import java.io.*;
@@ -19,6 +20,7 @@ import java.util.zip.GZIPOutputStream;
  */
 public class RawItemGrid<R extends ItemRegressor<R>> implements ItemGrid<R>, Serializable
 {
+    private static final long serialVersionUID = -7982570659304092349L;
     private final Set<R> _availableRegressors;
     private final int _size;
     private final EnumFamily<R> _regressorFamily;
@@ -37,6 +39,23 @@ public class RawItemGrid<R extends ItemRegressor<R>> implements ItemGrid<R>, Ser
         }
     }
 
+    /**
+     * Adopt the given columns (no copies are made), columns_ is indexed by regressor ordinal.
+     */
+    RawItemGrid(final EnumFamily<R> regressorFamily_, final Set<R> availableRegressors_, final float[][] columns_,
+                final int size_)
+    {
+        _availableRegressors = availableRegressors_;
+        _size = size_;
+        _regressorFamily = regressorFamily_;
+        _readers = new ItemRegressorReader[_regressorFamily.size()];
+
+        for (final R next : _availableRegressors)
+        {
+            _readers[next.ordinal()] = new RawRegressorReader(columns_[next.ordinal()]);
+        }
+    }
+
     @Override
     public Set<R> getAvailableRegressors()
     {
@@ -61,8 +80,9 @@ public class RawItemGrid<R extends ItemRegressor<R>> implements ItemGrid<R>, Ser
         return _regressorFamily;
     }
 
-    private final class RawRegressorReader implements ItemRegressorReader, Serializable
+    private final class RawRegressorReader implements RawColumnReader, Serializable
     {
+        private static final long serialVersionUID = -7895808789564655801L;
         private final float[] _data;
 
         public RawRegressorReader(ItemRegressorReader underlying_)
@@ -81,12 +101,34 @@ public class RawItemGrid<R extends ItemRegressor<R>> implements ItemGrid<R>, Ser
         }
 
 
+        public RawRegressorReader(final float[] data_)
+        {
+            if (this.size() != data_.length)
+            {
+                throw new IllegalArgumentException("Size mismatch.");
+            }
+
+            _data = data_;
+        }
+
         @Override
         public double asDouble(int index_)
         {
             return _data[index_];
         }
 
+        @Override
+        public float[] getUnderlyingArray()
+        {
+            return _data;
+        }
+
+        @Override
+        public int getArrayOffset()
+        {
+            return 0;
+        }
+
         @Override
         public int size()
         {
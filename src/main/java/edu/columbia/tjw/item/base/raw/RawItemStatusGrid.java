@@ -6,9 +6,12 @@ import edu.columbia.tjw.item.base.raw.RawItemGrid;
 import edu.columbia.tjw.item.data.ItemStatusGrid;
 import edu.columbia.tjw.item.util.EnumFamily;
 
+import java.util.Set;
+
 public final class RawItemStatusGrid<S extends ItemStatus<S>, R extends ItemRegressor<R>> extends RawItemGrid<R>
         implements ItemStatusGrid<S, R>
 {
+    private static final long serialVersionUID = 6229387578088916152L;
     private final EnumFamily<S> _statusFamily;
     private final int[] _status;
     private final int[] _nextStatus;
@@ -39,6 +42,25 @@ public final class RawItemStatusGrid<S extends ItemStatus<S>, R extends ItemRegr
         }
     }
 
+    /**
+     * Adopt the given columns (no copies are made), a negative next status means that it is unobserved.
+     */
+    RawItemStatusGrid(final EnumFamily<S> statusFamily_, final EnumFamily<R> regressorFamily_,
+                      final Set<R> availableRegressors_, final float[][] columns_, final int[] status_,
+                      final int[] nextStatus_)
+    {
+        super(regressorFamily_, availableRegressors_, columns_, status_.length);
+
+        if (nextStatus_.length != status_.length)
+        {
+            throw new IllegalArgumentException("Size mismatch.");
+        }
+
+        _statusFamily = statusFamily_;
+        _status = status_;
+        _nextStatus = nextStatus_;
+    }
+
     @Override
     public EnumFamily<S> getStatusFamily()
     {
@@ -42,6 +42,21 @@ public final class RawReader implements ItemRegressorReader, Serializable
         return _data[index_];
     }
 
+    @Override
+    public void read(final int start_, final int length_, final double[] output_)
+    {
+        System.arraycopy(_data, start_, output_, 0, length_);
+    }
+
+    @Override
+    public void read(final int start_, final int length_, final float[] output_)
+    {
+        for (int i = 0; i < length_; i++)
+        {
+            output_[i] = (float) _data[start_ + i];
+        }
+    }
+
     @Override
     public int size()
     {
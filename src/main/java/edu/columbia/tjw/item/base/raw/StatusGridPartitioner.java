@@ -0,0 +1,318 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.data.ItemStatusGrid;
+import edu.columbia.tjw.item.data.RawColumnReader;
+import edu.columbia.tjw.item.util.EnumFamily;
+import edu.columbia.tjw.item.util.random.RandomTool;
+import edu.columbia.tjw.item.util.thread.GeneralTask;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Splits a status grid into a fitting grid for each from status, in one pass over the data.
+ * <p>
+ * The rows are bucketed by status counting sort style: chunks of rows are classified (and counted) in parallel,
+ * and then scattered, again in parallel, to their offsets within each status. The partitions are then shuffled,
+ * and finally each regressor column is gathered into every partition at once, with the columns in parallel.
+ * <p>
+ * A row is used exactly when RandomizedStatusGrid would use it, the rows of each partition are in the same order
+ * before the shuffle, and the partitions are shuffled in ordinal order with the settings' PRNG. The grids are
+ * therefore identical to those from RawFittingGrid.fromStatusGrid, called for each status in ordinal order.
+ *
+ * @param <S> The status type
+ * @param <R> The regressor type
+ * @author tyler
+ */
+final class StatusGridPartitioner<S extends ItemStatus<S>, R extends ItemRegressor<R>>
+{
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int READ_BLOCK_SIZE = 10 * 1000;
+
+    private final ItemStatusGrid<S, R> _grid;
+    private final ItemSettings _settings;
+    private final ItemExecutor _executor;
+    private final EnumFamily<S> _statusFamily;
+    private final boolean[][] _reachable;
+
+    StatusGridPartitioner(final ItemStatusGrid<S, R> grid_, final ItemSettings settings_)
+    {
+        if (null == grid_)
+        {
+            throw new NullPointerException("Grid cannot be null.");
+        }
+        if (null == settings_)
+        {
+            throw new NullPointerException("Settings cannot be null.");
+        }
+
+        _grid = grid_;
+        _settings = settings_;
+        _executor = settings_.getExecutor();
+        _statusFamily = grid_.getStatusFamily();
+
+        final int statusCount = _statusFamily.size();
+        _reachable = new boolean[statusCount][statusCount];
+
+        for (final S from : _statusFamily.getMembers())
+        {
+            for (final S to : from.getReachable())
+            {
+                _reachable[from.ordinal()][to.ordinal()] = true;
+            }
+        }
+    }
+
+    SortedMap<S, RawFittingGrid<S, R>> partition()
+    {
+        final int size = _grid.size();
+        final int statusCount = _statusFamily.size();
+
+        // Pass 1: classify and count each chunk.
+        final List<ClassifyTask> classifyTasks = new ArrayList<>();
+
+        for (int start = 0; start < size; start += CHUNK_SIZE)
+        {
+            classifyTasks.add(new ClassifyTask(start, Math.min(size, start + CHUNK_SIZE)));
+        }
+
+        final List<int[]> counts = _executor.runAll(classifyTasks);
+
+        // Each chunk writes its rows of each status starting at the total of the preceding chunks.
+        final int[][] offsets = new int[classifyTasks.size()][statusCount];
+        final int[] totals = new int[statusCount];
+
+        for (int chunk = 0; chunk < offsets.length; chunk++)
+        {
+            for (int s = 0; s < statusCount; s++)
+            {
+                offsets[chunk][s] = totals[s];
+                totals[s] += counts.get(chunk)[s];
+            }
+        }
+
+        final int[][] mappings = new int[statusCount][];
+
+        for (int s = 0; s < statusCount; s++)
+        {
+            mappings[s] = new int[totals[s]];
+        }
+
+        // Pass 2: scatter the row indices, the rows of each status stay in their original order.
+        final List<ScatterTask> scatterTasks = new ArrayList<>(classifyTasks.size());
+
+        for (int chunk = 0; chunk < classifyTasks.size(); chunk++)
+        {
+            scatterTasks.add(new ScatterTask(classifyTasks.get(chunk), offsets[chunk], mappings));
+        }
+
+        _executor.runAll(scatterTasks);
+
+        if (_settings.isRandomShuffle())
+        {
+            // Serial, and in ordinal order, so the shuffles match those of the per status grids.
+            for (int s = 0; s < statusCount; s++)
+            {
+                if (mappings[s].length > 0)
+                {
+                    RandomTool.shuffle(mappings[s], _settings.getRandom());
+                }
+            }
+        }
+
+        // Pass 3: gather every column into all the partitions, columns in parallel.
+        final EnumFamily<R> regFamily = _grid.getRegressorFamily();
+        final List<GatherTask> gatherTasks = new ArrayList<>();
+
+        for (final R next : _grid.getAvailableRegressors())
+        {
+            gatherTasks.add(new GatherTask(_grid.getRegressorReader(next), mappings));
+        }
+
+        final List<float[][]> gathered = _executor.runAll(gatherTasks);
+        final List<R> available = new ArrayList<>(_grid.getAvailableRegressors());
+        final SortedMap<S, RawFittingGrid<S, R>> output = new TreeMap<>();
+
+        for (int s = 0; s < statusCount; s++)
+        {
+            if (mappings[s].length == 0)
+            {
+                continue;
+            }
+
+            final float[][] columns = new float[regFamily.size()][];
+
+            for (int k = 0; k < available.size(); k++)
+            {
+                columns[available.get(k).ordinal()] = gathered.get(k)[s];
+            }
+
+            final int[] nextStatus = new int[mappings[s].length];
+
+            for (int i = 0; i < nextStatus.length; i++)
+            {
+                nextStatus[i] = _grid.getNextStatus(mappings[s][i]);
+            }
+
+            final S status = _statusFamily.getFromOrdinal(s);
+            output.put(status, new RawFittingGrid<>(status, regFamily, _grid.getAvailableRegressors(), columns,
+                    nextStatus));
+        }
+
+        return output;
+    }
+
+    private final class ClassifyTask extends GeneralTask<int[]>
+    {
+        private final int _start;
+        private final int _end;
+
+        // The status of each row in this chunk, or -1 if the row is not usable.
+        private final int[] _status;
+
+        private ClassifyTask(final int start_, final int end_)
+        {
+            _start = start_;
+            _end = end_;
+            _status = new int[end_ - start_];
+        }
+
+        @Override
+        protected int[] subRun()
+        {
+            final int[] counts = new int[_statusFamily.size()];
+
+            for (int i = _start; i < _end; i++)
+            {
+                final int status = _grid.getStatus(i);
+
+                // Missing, or plainly invalid (impossible according to our status family), next statuses are skipped.
+                if (!_grid.hasNextStatus(i) || !_reachable[status][_grid.getNextStatus(i)])
+                {
+                    _status[i - _start] = -1;
+                    continue;
+                }
+
+                _status[i - _start] = status;
+                counts[status]++;
+            }
+
+            return counts;
+        }
+    }
+
+    private final class ScatterTask extends GeneralTask<Void>
+    {
+        private final ClassifyTask _chunk;
+        private final int[] _offsets;
+        private final int[][] _mappings;
+
+        private ScatterTask(final ClassifyTask chunk_, final int[] offsets_, final int[][] mappings_)
+        {
+            _chunk = chunk_;
+            _offsets = offsets_;
+            _mappings = mappings_;
+        }
+
+        @Override
+        protected Void subRun()
+        {
+            final int[] pointers = _offsets.clone();
+
+            for (int i = 0; i < _chunk._status.length; i++)
+            {
+                final int status = _chunk._status[i];
+
+                if (status >= 0)
+                {
+                    _mappings[status][pointers[status]++] = _chunk._start + i;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private final class GatherTask extends GeneralTask<float[][]>
+    {
+        private final ItemRegressorReader _reader;
+        private final int[][] _mappings;
+
+        private GatherTask(final ItemRegressorReader reader_, final int[][] mappings_)
+        {
+            _reader = reader_;
+            _mappings = mappings_;
+        }
+
+        @Override
+        protected float[][] subRun()
+        {
+            // Bring the whole column into one contiguous array, so the (shuffled) gathers are plain array reads.
+            final float[] source;
+            final int offset;
+
+            if (_reader instanceof RawColumnReader)
+            {
+                source = ((RawColumnReader) _reader).getUnderlyingArray();
+                offset = ((RawColumnReader) _reader).getArrayOffset();
+            }
+            else
+            {
+                source = new float[_grid.size()];
+                offset = 0;
+
+                final float[] block = new float[Math.min(source.length, READ_BLOCK_SIZE)];
+
+                for (int start = 0; start < source.length; start += READ_BLOCK_SIZE)
+                {
+                    final int length = Math.min(READ_BLOCK_SIZE, source.length - start);
+                    _reader.read(start, length, block);
+                    System.arraycopy(block, 0, source, start, length);
+                }
+            }
+
+            final float[][] output = new float[_mappings.length][];
+
+            for (int s = 0; s < _mappings.length; s++)
+            {
+                final int[] mapping = _mappings[s];
+                final float[] column = new float[mapping.length];
+
+                for (int i = 0; i < column.length; i++)
+                {
+                    column[i] = source[offset + mapping[i]];
+                }
+
+                output[s] = column;
+            }
+
+            return output;
+        }
+    }
+}
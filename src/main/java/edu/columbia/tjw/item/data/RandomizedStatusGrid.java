@@ -197,7 +197,7 @@ public class RandomizedStatusGrid<S extends ItemStatus<S>, R extends ItemRegress
         return _regressors[ordinal_];
     }
 
-    public final class MappedReader implements ItemRegressorReader
+    public final class MappedReader implements RawColumnReader
     {
         private final float[] _data;
 
@@ -220,11 +220,18 @@ public class RandomizedStatusGrid<S extends ItemStatus<S>, R extends ItemRegress
          *
          * @return
          */
+        @Override
         public float[] getUnderlyingArray()
         {
             return _data;
         }
 
+        @Override
+        public int getArrayOffset()
+        {
+            return 0;
+        }
+
         @Override
         public int size()
         {
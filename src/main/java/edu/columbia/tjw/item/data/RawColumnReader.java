@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.data;
+
+import edu.columbia.tjw.item.ItemRegressorReader;
+
+/**
+ * A regressor reader that is backed by a primitive float array, which it is willing to expose.
+ * <p>
+ * Row index_ of this reader is held in getUnderlyingArray()[getArrayOffset() + index_]. This allows the fitting
+ * kernels to run directly over the raw columns rather than going through asDouble one element at a time.
+ * <p>
+ * N.B: The underlying array must never be modified by the caller.
+ *
+ * @author tyler
+ */
+public interface RawColumnReader extends ItemRegressorReader
+{
+    /**
+     * Gives out the array holding the data for this reader. Extremely dangerous, do not modify this array.
+     *
+     * @return The underlying array of this reader
+     */
+    public float[] getUnderlyingArray();
+
+    /**
+     * The position within the underlying array of row zero of this reader.
+     *
+     * @return The offset of this reader within its underlying array
+     */
+    public int getArrayOffset();
+
+    @Override
+    public default void read(final int start_, final int length_, final double[] output_)
+    {
+        checkRange(start_, length_);
+        final float[] data = getUnderlyingArray();
+        final int offset = getArrayOffset() + start_;
+
+        for (int i = 0; i < length_; i++)
+        {
+            output_[i] = data[offset + i];
+        }
+    }
+
+    @Override
+    public default void read(final int start_, final int length_, final float[] output_)
+    {
+        checkRange(start_, length_);
+        System.arraycopy(getUnderlyingArray(), getArrayOffset() + start_, output_, 0, length_);
+    }
+
+    private void checkRange(final int start_, final int length_)
+    {
+        // The underlying array may be larger than this reader (e.g. for a shard), so check against our own size.
+        if (start_ < 0 || length_ < 0 || start_ > size() - length_)
+        {
+            throw new ArrayIndexOutOfBoundsException("Out of bounds.");
+        }
+    }
+}
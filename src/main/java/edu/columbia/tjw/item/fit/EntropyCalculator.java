@@ -45,7 +45,7 @@ public final class EntropyCalculator<S extends ItemStatus<S>, R extends ItemRegr
 
     public EntropyCalculator(final ItemFittingGrid<S, R> grid_, final ItemSettings settings_)
     {
-        _calc = new FitPointGenerator<>(grid_);
+        _calc = new FitPointGenerator<>(grid_, settings_);
         _grid = grid_;
         _settings = settings_;
     }
@@ -65,6 +65,33 @@ public final class EntropyCalculator<S extends ItemStatus<S>, R extends ItemRegr
         return _grid.size();
     }
 
+    /**
+     * Everything fit on this calculator's grid should generate its points here, so that the fit point and entry
+     * weight caches last for the whole fit, rather than a single optimization.
+     *
+     * @return The generator of this calculator's fit points
+     */
+    public FitPointGenerator<S, R, T> getGenerator()
+    {
+        return _calc;
+    }
+
+    /**
+     * @return The number of fit points reused from the cache, see ItemSettings.getFitPointCacheSize
+     */
+    public long getFitPointCacheHits()
+    {
+        return _calc.getCacheHits();
+    }
+
+    /**
+     * @return The number of fit points not found in the cache, see ItemSettings.getFitPointCacheSize
+     */
+    public long getFitPointCacheMisses()
+    {
+        return _calc.getCacheMisses();
+    }
+
     public ItemFitPoint<S, R, T> generatePoint(final ItemParameters<S, R, T> params_)
     {
         return _calc.generatePoint(params_);
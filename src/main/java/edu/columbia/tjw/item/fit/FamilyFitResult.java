@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.fit;
+
+import edu.columbia.tjw.item.ItemCurveType;
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemStatus;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The results of fitting a whole status family, see FamilyFitter.
+ *
+ * @param <S> The status type
+ * @param <R> The regressor type
+ * @param <T> The curve type
+ * @author tyler
+ */
+public final class FamilyFitResult<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+{
+    private final SortedMap<S, FittingProgressChain<S, R, T>> _chains;
+    private final SortedMap<S, Throwable> _failures;
+    private final SortedMap<S, Long> _elapsed;
+    private final long _totalElapsed;
+
+    FamilyFitResult(final SortedMap<S, FittingProgressChain<S, R, T>> chains_,
+                    final SortedMap<S, Throwable> failures_, final SortedMap<S, Long> elapsed_,
+                    final long totalElapsed_)
+    {
+        _chains = Collections.unmodifiableSortedMap(new TreeMap<>(chains_));
+        _failures = Collections.unmodifiableSortedMap(new TreeMap<>(failures_));
+        _elapsed = Collections.unmodifiableSortedMap(new TreeMap<>(elapsed_));
+        _totalElapsed = totalElapsed_;
+    }
+
+    /**
+     * @return Every status that was fit, whether or not its fit succeeded
+     */
+    public SortedSet<S> getStatuses()
+    {
+        final SortedSet<S> output = new TreeSet<>(_chains.keySet());
+        output.addAll(_failures.keySet());
+        return Collections.unmodifiableSortedSet(output);
+    }
+
+    /**
+     * @param status_ The from status
+     * @return The progress of the fit for status_, or null if it was not fit (or failed)
+     */
+    public FittingProgressChain<S, R, T> getChain(final S status_)
+    {
+        return _chains.get(status_);
+    }
+
+    /**
+     * @param status_ The from status
+     * @return The exception that ended the fit for status_, or null if it succeeded
+     */
+    public Throwable getFailure(final S status_)
+    {
+        return _failures.get(status_);
+    }
+
+    public boolean isSuccessful()
+    {
+        return _failures.isEmpty();
+    }
+
+    /**
+     * @return The best parameters of each successfully fit status, e.g. for use with the MarkovSimulator
+     */
+    public SortedMap<S, ItemParameters<S, R, T>> getBestParameters()
+    {
+        final SortedMap<S, ItemParameters<S, R, T>> output = new TreeMap<>();
+
+        for (final SortedMap.Entry<S, FittingProgressChain<S, R, T>> entry : _chains.entrySet())
+        {
+            output.put(entry.getKey(), entry.getValue().getBestParameters());
+        }
+
+        return Collections.unmodifiableSortedMap(output);
+    }
+
+    /**
+     * @param status_ The from status
+     * @return The wall time (in milliseconds) of the fit for status_
+     */
+    public long getElapsed(final S status_)
+    {
+        final Long elapsed = _elapsed.get(status_);
+
+        if (null == elapsed)
+        {
+            throw new IllegalArgumentException("Status was not fit: " + status_);
+        }
+
+        return elapsed;
+    }
+
+    /**
+     * @return The wall time (in milliseconds) of the whole family, partitioning included
+     */
+    public long getTotalElapsed()
+    {
+        return _totalElapsed;
+    }
+}
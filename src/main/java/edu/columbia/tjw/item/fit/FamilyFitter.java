@@ -0,0 +1,304 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.fit;
+
+import edu.columbia.tjw.item.ItemCurveFactory;
+import edu.columbia.tjw.item.ItemCurveType;
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.base.raw.RawFittingGrid;
+import edu.columbia.tjw.item.data.ItemStatusGrid;
+import edu.columbia.tjw.item.optimize.ConvergenceException;
+import edu.columbia.tjw.item.util.EnumFamily;
+import edu.columbia.tjw.item.util.LogUtil;
+import edu.columbia.tjw.item.util.random.RandomStreams;
+import edu.columbia.tjw.item.util.thread.GeneralTask;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * Fits a model for every from status of a family at once.
+ * <p>
+ * The grid is partitioned by status in a single pass (see RawFittingGrid.partition), and each status is fit from
+ * its own partition, so the columns are materialized only once. The fits then run concurrently on the settings'
+ * executor, largest first, and each status gets its own random stream, so the results don't depend on how the fits
+ * happen to interleave.
+ * <p>
+ * All fits share one pool, so threads freed by a finished (or waiting) fit are stolen by the others. Each fit is
+ * also told (through the parallelism of its executor) its share of the threads, in proportion to its rows among the
+ * fits still running, which limits how much concurrent work (e.g. curve candidates) it starts. The wall time for the
+ * family should then approach that of its largest status, rather than the sum of them all.
+ *
+ * @param <S> The status type
+ * @param <R> The regressor type
+ * @param <T> The curve type
+ * @author tyler
+ */
+public final class FamilyFitter<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+{
+    private static final Logger LOG = LogUtil.getLogger(FamilyFitter.class);
+
+    private final ItemCurveFactory<R, T> _factory;
+    private final EnumFamily<R> _regFamily;
+    private final ItemSettings _settings;
+
+    public FamilyFitter(final ItemCurveFactory<R, T> factory_, final EnumFamily<R> regFamily_,
+                        final ItemSettings settings_)
+    {
+        if (null == factory_)
+        {
+            throw new NullPointerException("Factory cannot be null.");
+        }
+        if (null == regFamily_)
+        {
+            throw new NullPointerException("Regressor family cannot be null.");
+        }
+        if (null == settings_)
+        {
+            throw new NullPointerException("Settings cannot be null.");
+        }
+
+        _factory = factory_;
+        _regFamily = regFamily_;
+        _settings = settings_;
+    }
+
+    /**
+     * Fit the starting (intercept only) model of every status that has data and more than one reachable status.
+     *
+     * @param grid_ The data for the whole family
+     * @return The results for each status
+     */
+    public FamilyFitResult<S, R, T> fit(final ItemStatusGrid<S, R> grid_)
+    {
+        return fit(grid_, null);
+    }
+
+    /**
+     * Fit every status that has data and more than one reachable status, running procedure_ on each fitter after
+     * the starting model is fit. A status whose fit fails is recorded as such, the others carry on.
+     *
+     * @param grid_      The data for the whole family
+     * @param procedure_ The fit to run for each status, null to stop at the starting model
+     * @return The results for each status
+     */
+    public FamilyFitResult<S, R, T> fit(final ItemStatusGrid<S, R> grid_, final FitProcedure<S, R, T> procedure_)
+    {
+        final long start = System.currentTimeMillis();
+        final SortedMap<S, RawFittingGrid<S, R>> partitions = RawFittingGrid.partition(grid_, _settings);
+
+        // Drawn after the partition shuffles, in status order.
+        final RandomStreams streams = _settings.newRandomStreams();
+        final ItemExecutor executor = _settings.getExecutor();
+        final Apportionment apportionment = new Apportionment(executor.getParallelism());
+        final List<StatusTask> tasks = new ArrayList<>();
+
+        for (final SortedMap.Entry<S, RawFittingGrid<S, R>> entry : partitions.entrySet())
+        {
+            if (entry.getKey().getReachableCount() < 2)
+            {
+                // Terminal status, nothing to fit.
+                continue;
+            }
+
+            final RawFittingGrid<S, R> grid = entry.getValue();
+            final ItemSettings settings = _settings.toBuilder()
+                    .setRand(streams.nextStream())
+                    .setExecutor(new ApportionedExecutor(executor, apportionment, grid.size()))
+                    .build();
+
+            tasks.add(new StatusTask(grid, settings, procedure_, apportionment));
+        }
+
+        // Start the largest fits first, they will take the longest.
+        tasks.sort(Comparator.comparingInt((StatusTask task) -> task._grid.size()).reversed());
+
+        for (final StatusTask task : tasks)
+        {
+            apportionment.begin(task._grid.size());
+        }
+
+        final SortedMap<S, FittingProgressChain<S, R, T>> chains = new TreeMap<>();
+        final SortedMap<S, Throwable> failures = new TreeMap<>();
+        final SortedMap<S, Long> elapsed = new TreeMap<>();
+
+        for (final StatusTask task : executor.runAll(tasks))
+        {
+            final S status = task._grid.getFromStatus();
+            elapsed.put(status, task._elapsed);
+
+            if (null != task._failure)
+            {
+                failures.put(status, task._failure);
+            }
+            else
+            {
+                chains.put(status, task._chain);
+            }
+        }
+
+        return new FamilyFitResult<>(chains, failures, elapsed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * The fit to run for each status, e.g. fitter_.fitModel(...).
+     *
+     * @param <S> The status type
+     * @param <R> The regressor type
+     * @param <T> The curve type
+     */
+    @FunctionalInterface
+    public interface FitProcedure<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+    {
+        void fit(final ItemFitter<S, R, T> fitter_) throws ConvergenceException;
+    }
+
+    /**
+     * Tracks the rows of the fits still running, so that each can be given its share of the threads.
+     */
+    private static final class Apportionment
+    {
+        private final int _parallelism;
+        private long _remainingRows;
+
+        private Apportionment(final int parallelism_)
+        {
+            _parallelism = parallelism_;
+            _remainingRows = 0;
+        }
+
+        private synchronized void begin(final int rows_)
+        {
+            _remainingRows += rows_;
+        }
+
+        private synchronized void end(final int rows_)
+        {
+            _remainingRows -= rows_;
+        }
+
+        private synchronized int getShare(final int rows_)
+        {
+            if (_remainingRows <= 0)
+            {
+                return _parallelism;
+            }
+
+            final long share = Math.round((double) _parallelism * rows_ / _remainingRows);
+            return (int) Math.max(1, Math.min(_parallelism, share));
+        }
+    }
+
+    /**
+     * Runs on the shared executor, but reports only this fit's share of its parallelism.
+     */
+    private static final class ApportionedExecutor implements ItemExecutor
+    {
+        private final ItemExecutor _underlying;
+        private final Apportionment _apportionment;
+        private final int _rows;
+
+        private ApportionedExecutor(final ItemExecutor underlying_, final Apportionment apportionment_,
+                                    final int rows_)
+        {
+            _underlying = underlying_;
+            _apportionment = apportionment_;
+            _rows = rows_;
+        }
+
+        @Override
+        public <V> List<V> runAll(final List<? extends GeneralTask<V>> tasks_)
+        {
+            return _underlying.runAll(tasks_);
+        }
+
+        @Override
+        public int getParallelism()
+        {
+            return _apportionment.getShare(_rows);
+        }
+
+        @Override
+        public long getQueuedTaskCount()
+        {
+            return _underlying.getQueuedTaskCount();
+        }
+    }
+
+    private final class StatusTask extends GeneralTask<StatusTask>
+    {
+        private final RawFittingGrid<S, R> _grid;
+        private final ItemSettings _settings;
+        private final FitProcedure<S, R, T> _procedure;
+        private final Apportionment _apportionment;
+
+        private FittingProgressChain<S, R, T> _chain;
+        private Throwable _failure;
+        private long _elapsed;
+
+        private StatusTask(final RawFittingGrid<S, R> grid_, final ItemSettings settings_,
+                           final FitProcedure<S, R, T> procedure_, final Apportionment apportionment_)
+        {
+            _grid = grid_;
+            _settings = settings_;
+            _procedure = procedure_;
+            _apportionment = apportionment_;
+        }
+
+        @Override
+        protected StatusTask subRun()
+        {
+            final long start = System.currentTimeMillis();
+
+            try
+            {
+                final ItemFitter<S, R, T> fitter = new ItemFitter<>(_factory, _regFamily, _grid, _settings);
+
+                if (null != _procedure)
+                {
+                    _procedure.fit(fitter);
+                }
+
+                _chain = fitter.getChain();
+            }
+            catch (final ConvergenceException | RuntimeException e)
+            {
+                LOG.warning("Fit failed for " + _grid.getFromStatus() + ": " + e);
+                _failure = e;
+            }
+            finally
+            {
+                // The remaining fits get a larger share of the threads from here on.
+                _apportionment.end(_grid.size());
+                _elapsed = System.currentTimeMillis() - start;
+            }
+
+            LOG.info("Fit for " + _grid.getFromStatus() + " (" + _grid.size() + " rows) took " + _elapsed + "ms");
+            return this;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.fit;
+
+import edu.columbia.tjw.item.ItemCurveType;
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemStatus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A snapshot of a fit in progress, from which an ItemFitter can be resumed.
+ * <p>
+ * This holds the frames of the primary chain, and a record of every step the fitter has completed: its outcome,
+ * the number of frames on the chain when it finished, and the state of the fitter's random generator at that time.
+ * A resumed fitter replays those steps instead of repeating the work, restoring the chain frame by frame, so that
+ * every decision between steps (e.g. which entry to anneal next) sees the chain exactly as it was. See
+ * ItemFitter.resume.
+ * <p>
+ * Each frame is rebased onto the one before it, so the snapshot doesn't drag along the intermediate results of the
+ * sub chains.
+ *
+ * @param <S> The status type
+ * @param <R> The regressor type
+ * @param <T> The curve type
+ * @author tyler
+ */
+public final class FitCheckpoint<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+        implements Serializable
+{
+    private static final long serialVersionUID = 0x3a5d7c41f2b0e969L;
+
+    private final String _chainName;
+    private final int _rowCount;
+    private final List<Frame<S, R, T>> _frames;
+    private final List<Step<S, R, T>> _steps;
+
+    FitCheckpoint(final FittingProgressChain<S, R, T> chain_, final List<Step<S, R, T>> steps_)
+    {
+        final List<Frame<S, R, T>> frames = new ArrayList<>(chain_.size());
+        FitResult<S, R, T> prev = null;
+
+        for (final FittingProgressChain<S, R, T>.ParamProgressFrame<S, R, T> next : chain_.getFrameList())
+        {
+            final FitResult<S, R, T> rebased;
+
+            if (null == prev)
+            {
+                rebased = next.getFitResults();
+            }
+            else
+            {
+                rebased = new FitResult<>(next.getFitResults(), prev);
+            }
+
+            frames.add(new Frame<>(next.getName(), rebased, next.getEntryTime()));
+            prev = rebased;
+        }
+
+        _chainName = chain_.getName();
+        _rowCount = chain_.getRowCount();
+        _frames = Collections.unmodifiableList(frames);
+        _steps = Collections.unmodifiableList(new ArrayList<>(steps_));
+    }
+
+    private FitCheckpoint(final FitCheckpoint<S, R, T> base_, final int stepCount_)
+    {
+        _chainName = base_._chainName;
+        _rowCount = base_._rowCount;
+        _steps = Collections.unmodifiableList(new ArrayList<>(base_._steps.subList(0, stepCount_)));
+        _frames = Collections.unmodifiableList(new ArrayList<>(
+                base_._frames.subList(0, _steps.get(stepCount_ - 1).getFrameCount())));
+    }
+
+    /**
+     * The checkpoint that would have been taken after the first stepCount_ steps of this fit.
+     *
+     * @param stepCount_ The number of completed steps to keep
+     * @return A checkpoint of this fit as of an earlier step
+     */
+    FitCheckpoint<S, R, T> truncate(final int stepCount_)
+    {
+        if (stepCount_ < 1 || stepCount_ > _steps.size())
+        {
+            throw new IllegalArgumentException("Invalid step count: " + stepCount_);
+        }
+
+        return new FitCheckpoint<>(this, stepCount_);
+    }
+
+    public S getFromStatus()
+    {
+        return getBestParameters().getStatus();
+    }
+
+    public String getChainName()
+    {
+        return _chainName;
+    }
+
+    public int getRowCount()
+    {
+        return _rowCount;
+    }
+
+    /**
+     * @return The number of fitting steps completed before this snapshot was taken
+     */
+    public int getCompletedSteps()
+    {
+        return _steps.size();
+    }
+
+    public ItemParameters<S, R, T> getBestParameters()
+    {
+        return _frames.get(_frames.size() - 1).getFitResult().getParams();
+    }
+
+    List<Frame<S, R, T>> getFrames()
+    {
+        return _frames;
+    }
+
+    List<Step<S, R, T>> getSteps()
+    {
+        return _steps;
+    }
+
+    /**
+     * @return The state of the fitter's random generator after the last completed step
+     */
+    byte[] getRandomState()
+    {
+        return _steps.get(_steps.size() - 1).getRandomState();
+    }
+
+    public void writeToStream(final OutputStream stream_) throws IOException
+    {
+        try (final GZIPOutputStream zipout = new GZIPOutputStream(stream_);
+             final ObjectOutputStream oOut = new ObjectOutputStream(zipout))
+        {
+            oOut.writeObject(this);
+            oOut.flush();
+        }
+    }
+
+    public static <S2 extends ItemStatus<S2>, R2 extends ItemRegressor<R2>, T2 extends ItemCurveType<T2>>
+    FitCheckpoint<S2, R2, T2> readFromFile(final Path file_,
+                                           final Class<S2> statusClass_, final Class<R2> regClass_,
+                                           final Class<T2> typeClass_)
+            throws IOException
+    {
+        try (final InputStream stream = Files.newInputStream(file_))
+        {
+            return readFromStream(stream, statusClass_, regClass_, typeClass_);
+        }
+    }
+
+    public static <S2 extends ItemStatus<S2>, R2 extends ItemRegressor<R2>, T2 extends ItemCurveType<T2>>
+    FitCheckpoint<S2, R2, T2> readFromStream(final InputStream stream_,
+                                             final Class<S2> statusClass_, final Class<R2> regClass_,
+                                             final Class<T2> typeClass_)
+            throws IOException
+    {
+        try (final GZIPInputStream zipin = new GZIPInputStream(stream_);
+             final ObjectInputStream oIn = new ObjectInputStream(zipin))
+        {
+            final FitCheckpoint<?, ?, ?> raw = (FitCheckpoint<?, ?, ?>) oIn.readObject();
+            final ItemParameters<?, ?, ?> params = raw.getBestParameters();
+
+            if (params.getStatus().getClass() != statusClass_)
+            {
+                throw new IOException("Status class mismatch.");
+            }
+            if (params.getRegressorFamily().getComponentType() != regClass_)
+            {
+                throw new IOException("Regressor class mismatch.");
+            }
+            if (params.getCurveFamily().getComponentType() != typeClass_)
+            {
+                throw new IOException("Curve Type class mismatch.");
+            }
+
+            final FitCheckpoint<S2, R2, T2> typed = (FitCheckpoint<S2, R2, T2>) raw;
+            return typed;
+        }
+        catch (final ClassNotFoundException e)
+        {
+            throw new IOException("Unable to load checkpoint.", e);
+        }
+    }
+
+    static final class Frame<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+            implements Serializable
+    {
+        private static final long serialVersionUID = 0x6c01d93e5a7f24b3L;
+
+        private final String _name;
+        private final FitResult<S, R, T> _fitResult;
+        private final long _entryTime;
+
+        private Frame(final String name_, final FitResult<S, R, T> fitResult_, final long entryTime_)
+        {
+            _name = name_;
+            _fitResult = fitResult_;
+            _entryTime = entryTime_;
+        }
+
+        String getName()
+        {
+            return _name;
+        }
+
+        FitResult<S, R, T> getFitResult()
+        {
+            return _fitResult;
+        }
+
+        long getEntryTime()
+        {
+            return _entryTime;
+        }
+    }
+
+    /**
+     * The record of a single completed step of the fit.
+     */
+    static final class Step<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+            implements Serializable
+    {
+        private static final long serialVersionUID = 0x1f8e6a2d47c3b095L;
+
+        private final int _outcome;
+        private final int _frameCount;
+        private final byte[] _randomState;
+        private final FitResult<S, R, T> _result;
+
+        /**
+         * @param outcome_     The outcome of the step, interpreted by the fitter
+         * @param frameCount_  The number of frames on the chain when the step finished
+         * @param randomState_ The state of the fitter's generator when the step finished
+         * @param result_      The result returned by the step, or null if that is just the latest result on the chain
+         */
+        Step(final int outcome_, final int frameCount_, final byte[] randomState_, final FitResult<S, R, T> result_)
+        {
+            _outcome = outcome_;
+            _frameCount = frameCount_;
+            _randomState = randomState_.clone();
+            _result = result_;
+        }
+
+        int getOutcome()
+        {
+            return _outcome;
+        }
+
+        int getFrameCount()
+        {
+            return _frameCount;
+        }
+
+        byte[] getRandomState()
+        {
+            return _randomState.clone();
+        }
+
+        FitResult<S, R, T> getResult()
+        {
+            return _result;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.fit;
+
+import edu.columbia.tjw.item.util.LogUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Writes fit checkpoints to a file, in the background.
+ * <p>
+ * Submitting a checkpoint never blocks the fit, it is serialized and written by a single (daemon) writer thread. If
+ * the fit gets ahead of the writer, only the latest checkpoint is kept, the older ones would be overwritten anyway.
+ * <p>
+ * Each checkpoint is written to a temporary file next to the target, and then moved into place, so a crash mid write
+ * leaves the previous checkpoint intact.
+ *
+ * @author tyler
+ */
+public final class FitCheckpointer implements AutoCloseable
+{
+    private static final Logger LOG = LogUtil.getLogger(FitCheckpointer.class);
+
+    private final Path _file;
+    private final Path _tempFile;
+    private final ExecutorService _writer;
+    private final AtomicReference<FitCheckpoint<?, ?, ?>> _pending;
+
+    // The failure of the latest write, null if it succeeded.
+    private volatile IOException _failure;
+    private volatile long _writeCount;
+
+    /**
+     * @param file_ The file to hold the checkpoint, it will be replaced by each write
+     */
+    public FitCheckpointer(final Path file_)
+    {
+        if (null == file_)
+        {
+            throw new NullPointerException("File cannot be null.");
+        }
+
+        _file = file_;
+        _tempFile = file_.resolveSibling(file_.getFileName() + ".tmp");
+        _writer = Executors.newSingleThreadExecutor((r) ->
+        {
+            final Thread t = new Thread(r, "FitCheckpointer");
+            t.setDaemon(true);
+            return t;
+        });
+        _pending = new AtomicReference<>();
+        _failure = null;
+        _writeCount = 0;
+    }
+
+    public Path getFile()
+    {
+        return _file;
+    }
+
+    /**
+     * Schedule the given checkpoint to be written, returns immediately.
+     *
+     * @param checkpoint_ The checkpoint to write
+     */
+    public void submit(final FitCheckpoint<?, ?, ?> checkpoint_)
+    {
+        if (null == checkpoint_)
+        {
+            throw new NullPointerException("Checkpoint cannot be null.");
+        }
+
+        if (null == _pending.getAndSet(checkpoint_))
+        {
+            // Otherwise, a write is already scheduled, and it will pick up this checkpoint instead.
+            _writer.execute(this::writePending);
+        }
+    }
+
+    /**
+     * @return The number of checkpoints written so far
+     */
+    public long getWriteCount()
+    {
+        return _writeCount;
+    }
+
+    /**
+     * Wait until every checkpoint submitted so far has been written.
+     *
+     * @throws IOException If the latest write failed (earlier failures don't matter, the file is current)
+     */
+    public void flush() throws IOException
+    {
+        try
+        {
+            _writer.submit(() ->
+            {
+            }).get();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for checkpoint.", e);
+        }
+        catch (final ExecutionException e)
+        {
+            throw new IOException(e.getCause());
+        }
+
+        if (null != _failure)
+        {
+            throw _failure;
+        }
+    }
+
+    /**
+     * Write any pending checkpoint, then stop the writer thread.
+     *
+     * @throws IOException If the latest write failed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            _writer.shutdown();
+        }
+    }
+
+    private void writePending()
+    {
+        final FitCheckpoint<?, ?, ?> checkpoint = _pending.getAndSet(null);
+
+        if (null == checkpoint)
+        {
+            return;
+        }
+
+        try
+        {
+            try (final OutputStream stream = Files.newOutputStream(_tempFile))
+            {
+                checkpoint.writeToStream(stream);
+            }
+
+            try
+            {
+                Files.move(_tempFile, _file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (final AtomicMoveNotSupportedException e)
+            {
+                Files.move(_tempFile, _file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            _writeCount++;
+            _failure = null;
+        }
+        catch (final IOException e)
+        {
+            // Don't kill the fit over this, the next checkpoint may well succeed.
+            LOG.warning("Unable to write checkpoint to " + _file + ": " + e);
+            _failure = e;
+        }
+    }
+}
@@ -4,13 +4,14 @@ import edu.columbia.tjw.item.ItemCurveType;
 import edu.columbia.tjw.item.ItemParameters;
 import edu.columbia.tjw.item.ItemRegressor;
 import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.algo.DoubleMatrix;
 import edu.columbia.tjw.item.algo.MatrixTools;
+import edu.columbia.tjw.item.algo.SymmetricEigenDecomposition;
 import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
 import edu.columbia.tjw.item.fit.calculator.BlockResult;
 import edu.columbia.tjw.item.fit.calculator.ItemFitPoint;
 import edu.columbia.tjw.item.util.IceTools;
 import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.SingularValueDecomposition;
 
 import java.io.*;
 import java.util.Arrays;
@@ -21,7 +22,7 @@ public final class FitResult<S extends ItemStatus<S>, R extends ItemRegressor<R>
         implements Serializable
 {
     private static final double EPSILON = Math.ulp(4.0); // Just a bit bigger than machine epsilon.
-    private static final long serialVersionUID = 0x606e4b6c2343db26L;
+    private static final long serialVersionUID = 0x3b8e0d5f71a2c694L;
 
     private final FitResult<S, R, T> _prev;
     private final ItemParameters<S, R, T> _params;
@@ -47,7 +48,8 @@ public final class FitResult<S extends ItemStatus<S>, R extends ItemRegressor<R>
     private final double _invConditionNumberJ;
     private final double _invConditionNumberI;
 
-    private final RealMatrix _jMatrix;
+    // Kept in the block packed layout of the model's second derivative, see ItemModel.getHessianLayout.
+    private final DoubleMatrix _jMatrix;
 
     // private final RealMatrix _kMatrix;
 
@@ -105,40 +107,32 @@ public final class FitResult<S extends ItemStatus<S>, R extends ItemRegressor<R>
             _gradient = secondDerivative.getDerivative().copyOfUnderlying();
             final int dimension = _gradient.length;
 
-            final RealMatrix jMatrix = MatrixTools.toApacheMatrix(secondDerivative.getSecondDerivative());
-            final SingularValueDecomposition jSvd = new SingularValueDecomposition(jMatrix);
+            // Both symmetric, so their eigen decompositions stand in for the SVDs, without densifying either.
+            final DoubleMatrix jMatrix = secondDerivative.getSecondDerivative();
+            final SymmetricEigenDecomposition jEigen = new SymmetricEigenDecomposition(jMatrix);
 
-            final RealMatrix iMatrix = MatrixTools.toApacheMatrix(secondDerivative.getFisherInformation());
-            final SingularValueDecomposition iSvd = new SingularValueDecomposition(iMatrix);
+            final DoubleMatrix iMatrix = secondDerivative.getFisherInformation();
+            final SymmetricEigenDecomposition iEigen = new SymmetricEigenDecomposition(iMatrix);
 
-            _invConditionNumberJ = jSvd.getInverseConditionNumber();
-            _invConditionNumberI = iSvd.getInverseConditionNumber();
+            _invConditionNumberJ = jEigen.getInverseConditionNumber();
+            _invConditionNumberI = iEigen.getInverseConditionNumber();
 
             final double minInverseCondition = Math
                     .min(_invConditionNumberJ, _invConditionNumberI);
 
             _invConditionNumber = minInverseCondition;
 
-            final RealMatrix jInverse = jSvd.getSolver().getInverse();
-            final RealMatrix iInverse = iSvd.getSolver().getInverse();
-
+            final double[] iInverseDiagonal = iEigen.getPseudoInverseDiagonal();
             final double inverseSqrtN = 1.0 / Math.sqrt(rowCount);
             _paramStdDev = new double[dimension];
 
             for (int i = 0; i < dimension; i++)
             {
-                _paramStdDev[i] = inverseSqrtN * Math.sqrt(iInverse.getEntry(i, i));
+                _paramStdDev[i] = inverseSqrtN * Math.sqrt(iInverseDiagonal[i]);
             }
 
-            final RealMatrix ticMatrix = jInverse.multiply(iMatrix);
-
-            double ticSum = 0.0;
-
-            for (int i = 0; i < dimension; i++)
-            {
-                final double ticTerm = ticMatrix.getEntry(i, i);
-                ticSum += ticTerm;
-            }
+            // The trace of J^-1 * I.
+            final double ticSum = jEigen.traceOfPseudoInverseTimes(iMatrix);
 
             _tic = 2.0 * ((_entropy * rowCount) + ticSum);
             _ticSum = ticSum;
@@ -271,7 +265,26 @@ public final class FitResult<S extends ItemStatus<S>, R extends ItemRegressor<R>
         return _invConditionNumberI;
     }
 
+    /**
+     * @return The second derivative of the entropy, or null if complex fit results were not computed
+     * @deprecated This copies the packed matrix into a dense one, use getPackedJMatrix instead.
+     */
+    @Deprecated
     public RealMatrix getJMatrix() {
+        if (null == _jMatrix)
+        {
+            return null;
+        }
+
+        return MatrixTools.toApacheMatrix(_jMatrix);
+    }
+
+    /**
+     * @return The second derivative of the entropy, stored packed (see ItemModel.getHessianLayout), or null if
+     * complex fit results were not computed
+     */
+    public DoubleMatrix getPackedJMatrix()
+    {
         return _jMatrix;
     }
 
@@ -319,6 +332,37 @@ public final class FitResult<S extends ItemStatus<S>, R extends ItemRegressor<R>
         return builder.toString();
     }
 
+    /**
+     * A rough estimate of the memory held by this result (not counting its prev, or its params, which are usually
+     * shared), for instrumentation.
+     *
+     * @return The approximate size of this result, in bytes
+     */
+    long estimateSize()
+    {
+        // Object headers and the scalar fields.
+        long size = 192;
+
+        if (null != _gradient)
+        {
+            size += 16 + Double.BYTES * (long) _gradient.length;
+        }
+        if (null != _paramStdDev)
+        {
+            size += 16 + Double.BYTES * (long) _paramStdDev.length;
+        }
+        if (null != _packed)
+        {
+            size += 16 + Double.BYTES * (long) _packed.size();
+        }
+        if (null != _jMatrix)
+        {
+            size += Double.BYTES * (long) _jMatrix.getLayout().getSize();
+        }
+
+        return size;
+    }
+
     public void writeToStream(final OutputStream stream_) throws IOException
     {
         try (final GZIPOutputStream zipout = new GZIPOutputStream(stream_);
@@ -22,6 +22,8 @@ package edu.columbia.tjw.item.fit;
 import edu.columbia.tjw.item.*;
 import edu.columbia.tjw.item.fit.calculator.BlockResult;
 import edu.columbia.tjw.item.fit.curve.CurveFitResult;
+import edu.columbia.tjw.item.fit.metrics.FitListener;
+import edu.columbia.tjw.item.fit.metrics.FitPhase;
 import edu.columbia.tjw.item.util.LogUtil;
 import edu.columbia.tjw.item.util.MathFunctions;
 
@@ -89,10 +91,64 @@ public final class FittingProgressChain<S extends ItemStatus<S>, R extends ItemR
 
         final ParamProgressFrame<S, R, T> frame = new ParamProgressFrame<>("Initial", result_, null);
         _frameList = new ArrayList<>();
-        _frameList.add(frame);
+        appendFrame(frame);
         _frameListReadOnly = Collections.unmodifiableList(_frameList);
     }
 
+    /**
+     * Restore a chain from a checkpoint, without recomputing any of its frames. Only the initial frame is restored
+     * here, the frames of each step are restored as the fitter replays it, see restoreFrames.
+     *
+     * @param settings_   The settings of the resumed fit
+     * @param checkpoint_ The checkpoint to restore
+     * @param calc_       The calculator for the grid the checkpoint was fit on
+     * @param validating_ Whether to validate the results pushed from here on
+     */
+    FittingProgressChain(final ItemSettings settings_, final FitCheckpoint<S, R, T> checkpoint_,
+                         final EntropyCalculator<S, R, T> calc_, final boolean validating_)
+    {
+        if (checkpoint_.getRowCount() != calc_.size())
+        {
+            throw new IllegalArgumentException("Checkpoint row count mismatch: " + checkpoint_.getRowCount() + " != "
+                    + calc_.size());
+        }
+
+        _settings = settings_;
+        _chainName = checkpoint_.getChainName();
+        _rowCount = checkpoint_.getRowCount();
+
+        _calc = calc_;
+        _validate = validating_;
+
+        _frameList = new ArrayList<>();
+        _frameListReadOnly = Collections.unmodifiableList(_frameList);
+
+        restoreFrames(checkpoint_, 1);
+    }
+
+    /**
+     * Append the checkpointed frames following those already on this chain, up to (but not including) endFrame_.
+     *
+     * @param checkpoint_ The checkpoint this chain was restored from
+     * @param endFrame_   The number of frames the chain should have afterwards
+     */
+    void restoreFrames(final FitCheckpoint<S, R, T> checkpoint_, final int endFrame_)
+    {
+        final List<FitCheckpoint.Frame<S, R, T>> frames = checkpoint_.getFrames();
+
+        if (endFrame_ < _frameList.size() || endFrame_ > frames.size())
+        {
+            throw new IllegalArgumentException("Invalid frame count: " + endFrame_);
+        }
+
+        for (int i = _frameList.size(); i < endFrame_; i++)
+        {
+            final FitCheckpoint.Frame<S, R, T> next = frames.get(i);
+            final ParamProgressFrame<S, R, T> prev = _frameList.isEmpty() ? null : getLatestFrame();
+            appendFrame(new ParamProgressFrame<>(next.getName(), next.getFitResult(), prev, next.getEntryTime()));
+        }
+    }
+
     public String getName()
     {
         return _chainName;
@@ -116,8 +172,15 @@ public final class FittingProgressChain<S extends ItemStatus<S>, R extends ItemR
         }
 
         //Since the claim is that the LL improved, let's see if that's true...
+        final long start = System.nanoTime();
         final BlockResult ea = _calc.computeEntropy(fitResult_.getParams());
         final double entropy = ea.getEntropyMean();
+        final FitListener listener = _settings.getFitListener();
+
+        if (null != listener)
+        {
+            listener.phaseFinished(FitPhase.VALIDATION, System.nanoTime() - start);
+        }
 
         //LOG.info("Params: " + fitResult_.hashCode() + " -> " + entropy);
         //LOG.info("Chain: " + this.toString());
@@ -152,7 +215,7 @@ public final class FittingProgressChain<S extends ItemStatus<S>, R extends ItemR
         LOG.info("Force pushing params onto chain[" + result.getEntropy() + "]");
         final ParamProgressFrame<S, R, T> frame = new ParamProgressFrame<>(frameName_, result,
                 getLatestFrame());
-        _frameList.add(frame);
+        appendFrame(frame);
     }
 
     public boolean pushVacuousResults(final String frameName_, final ItemParameters<S, R, T> fitResult_)
@@ -160,7 +223,7 @@ public final class FittingProgressChain<S extends ItemStatus<S>, R extends ItemR
         final FitResult<S, R, T> result = _calc.computeFitResult(fitResult_, this.getLatestFrame().getFitResults());
         final ParamProgressFrame<S, R, T> frame = new ParamProgressFrame<>(frameName_, result,
                 getLatestFrame());
-        _frameList.add(frame);
+        appendFrame(frame);
         return true;
     }
 
@@ -206,13 +269,24 @@ public final class FittingProgressChain<S extends ItemStatus<S>, R extends ItemR
         //This is an improvement. 
         final ParamProgressFrame<S, R, T> frame = new ParamProgressFrame<>(frameName_, fitResult_,
                 getLatestFrame());
-        _frameList.add(frame);
+        appendFrame(frame);
 
         LOG.info("Current chain: " + this.toString());
 
         return true;
     }
 
+    private void appendFrame(final ParamProgressFrame<S, R, T> frame_)
+    {
+        _frameList.add(frame_);
+        final FitListener listener = _settings.getFitListener();
+
+        if (null != listener)
+        {
+            listener.resultRetained(frame_.getFitResults().estimateSize());
+        }
+    }
+
     public int getRowCount()
     {
         return _rowCount;
@@ -323,6 +397,12 @@ public final class FittingProgressChain<S extends ItemStatus<S>, R extends ItemR
 
         private ParamProgressFrame(final String frameName_, final FitResult<S1, R1, T1> current_,
                                    final ParamProgressFrame<S1, R1, T1> startingPoint_)
+        {
+            this(frameName_, current_, startingPoint_, System.currentTimeMillis());
+        }
+
+        private ParamProgressFrame(final String frameName_, final FitResult<S1, R1, T1> current_,
+                                   final ParamProgressFrame<S1, R1, T1> startingPoint_, final long entryTime_)
         {
             if (null == current_)
             {
@@ -331,7 +411,7 @@ public final class FittingProgressChain<S extends ItemStatus<S>, R extends ItemR
 
             _frameName = frameName_;
 
-            _entryTime = System.currentTimeMillis();
+            _entryTime = entryTime_;
 
             if (null == startingPoint_)
             {
@@ -355,6 +435,11 @@ public final class FittingProgressChain<S extends ItemStatus<S>, R extends ItemR
             }
         }
 
+        public String getName()
+        {
+            return _frameName;
+        }
+
         public long getElapsed()
         {
             final long prevEntry = _startingPoint.getEntryTime();
@@ -28,6 +28,7 @@ import edu.columbia.tjw.item.fit.calculator.BlockResult;
 import edu.columbia.tjw.item.optimize.ConvergenceException;
 import edu.columbia.tjw.item.util.EnumFamily;
 import edu.columbia.tjw.item.util.LogUtil;
+import edu.columbia.tjw.item.util.random.UniformWrapper;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,6 +40,12 @@ import java.util.logging.Logger;
  * A class designed to expand the model by adding curves.
  * <p>
  * In addition, it may be used to fit only coefficients if needed.
+ * <p>
+ * Long fits can be checkpointed, by passing a FitCheckpointer to the constructor. The fitter then counts every step
+ * (e.g. each full refit, expansion, or annealing step), and after each one submits a checkpoint of its chain. To
+ * resume, create a fitter with resume(...), and make the same sequence of calls as the original fit. The steps that
+ * completed before the checkpoint are skipped (their results are already on the chain), and the fit picks up where
+ * it left off, drawing the same random numbers it would have.
  *
  * @param <S> The status type for this model
  * @param <R> The regressor type for this model
@@ -49,6 +56,11 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 {
     private static final Logger LOG = LogUtil.getLogger(ItemFitter.class);
 
+    // The outcomes of a fitting step, see beginStep.
+    private static final int STEP_LIVE = -1;
+    private static final int STEP_DONE = 0;
+    private static final int STEP_FLAGGED = 1;
+
     private final ItemSettings _settings;
     private final EntropyCalculator<S, R, T> _calc;
 
@@ -56,6 +68,14 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 
     private final FittingProgressChain<S, R, T> _chain;
 
+    // Only used when checkpointing, see resume.
+    private final FitCheckpointer _checkpointer;
+    private final UniformWrapper _checkpointRandom;
+    private final FitCheckpoint<S, R, T> _checkpoint;
+    private final List<FitCheckpoint.Step<S, R, T>> _steps;
+    private final int _replayCount;
+    private int _nextStep;
+    private FitResult<S, R, T> _replayedResult;
 
     public ItemFitter(final ItemCurveFactory<R, T> factory_, final EnumFamily<R> regFamily_, final S status_,
                       final ItemStatusGrid<S, R> grid_, ItemSettings settings_)
@@ -71,9 +91,25 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 
     public ItemFitter(final ItemCurveFactory<R, T> factory_, final EnumFamily<R> regFamily_,
                       final ItemFittingGrid<S, R> grid_, ItemSettings settings_)
+    {
+        this(factory_, regFamily_, grid_, settings_, null);
+    }
+
+    /**
+     * Create a fitter that checkpoints its progress after each step. The settings' random generator is used only to
+     * seed the fitter's own (restorable) generator.
+     *
+     * @param factory_      The curve factory
+     * @param regFamily_    The regressor family
+     * @param grid_         The data to fit
+     * @param settings_     The settings for the fit
+     * @param checkpointer_ The checkpointer to write to, or null for no checkpoints
+     */
+    public ItemFitter(final ItemCurveFactory<R, T> factory_, final EnumFamily<R> regFamily_,
+                      final ItemFittingGrid<S, R> grid_, ItemSettings settings_, final FitCheckpointer checkpointer_)
     {
         this(new ItemParameters<>(grid_.getFromStatus(), regFamily_,
-                factory_.getFamily()), grid_, settings_);
+                factory_.getFamily()), grid_, settings_, checkpointer_, null);
 
         // Start by calibrating the parameters.
         // We do this because we are starting with parameters that are basically vacuous.
@@ -82,6 +118,13 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 
     public ItemFitter(final ItemParameters<S, R, T> starting_,
                       final ItemFittingGrid<S, R> grid_, ItemSettings settings_)
+    {
+        this(starting_, grid_, settings_, null, null);
+    }
+
+    private ItemFitter(final ItemParameters<S, R, T> starting_,
+                       final ItemFittingGrid<S, R> grid_, ItemSettings settings_,
+                       final FitCheckpointer checkpointer_, final FitCheckpoint<S, R, T> checkpoint_)
     {
         if (null == starting_)
         {
@@ -97,12 +140,76 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
             throw new NullPointerException("Grid cannot be null.");
         }
 
+        if (null != checkpointer_ || null != checkpoint_)
+        {
+            // The settings' generator may not be restorable, so use our own.
+            _checkpointRandom = UniformWrapper.restorable(settings_.getRandom().nextLong());
+            settings_ = settings_.toBuilder().setRand(_checkpointRandom).build();
+        }
+        else
+        {
+            _checkpointRandom = null;
+        }
+
         _settings = settings_;
         _calc = new EntropyCalculator<>(grid_, _settings);
-        _modelFitter = new ModelFitter(starting_, grid_, settings_);
+        _modelFitter = new ModelFitter<>(starting_, _calc, _settings);
+
+        _checkpointer = checkpointer_;
+        _checkpoint = checkpoint_;
+        _steps = new ArrayList<>();
+        _nextStep = 0;
+        _replayedResult = null;
+
+        if (null == checkpoint_)
+        {
+            _chain = new FittingProgressChain<>(_settings, "Primary", starting_, _calc.size(), _calc,
+                    _settings.getDoValidate());
+            _replayCount = 0;
+        }
+        else
+        {
+            _chain = new FittingProgressChain<>(_settings, checkpoint_, _calc, _settings.getDoValidate());
+            _checkpointRandom.restoreState(checkpoint_.getRandomState());
+            _steps.addAll(checkpoint_.getSteps());
+            _replayCount = _steps.size();
+        }
+    }
+
+    /**
+     * Resume a checkpointed fit. The grid and settings must be the same as for the original fit (in particular, the
+     * grid must have been randomized the same way), and the caller should then repeat the calls of the original fit.
+     * <p>
+     * The chain is restored step by step as those calls are replayed, so it holds all of the checkpoint's frames
+     * only once every completed step has been replayed.
+     *
+     * @param checkpoint_   The checkpoint to resume from
+     * @param grid_         The data the checkpoint was fit on
+     * @param settings_     The settings for the fit
+     * @param checkpointer_ The checkpointer for the rest of the fit, or null for no further checkpoints
+     * @return A fitter positioned at the checkpoint
+     */
+    public static <S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+    ItemFitter<S, R, T> resume(final FitCheckpoint<S, R, T> checkpoint_, final ItemFittingGrid<S, R> grid_,
+                               final ItemSettings settings_, final FitCheckpointer checkpointer_)
+    {
+        if (null == checkpoint_)
+        {
+            throw new NullPointerException("Checkpoint cannot be null.");
+        }
+        if (checkpoint_.getFromStatus() != grid_.getFromStatus())
+        {
+            throw new IllegalArgumentException("Checkpoint status mismatch.");
+        }
+
+        final ItemFitter<S, R, T> fitter = new ItemFitter<>(checkpoint_.getFrames().get(0).getFitResult().getParams(),
+                grid_, settings_, checkpointer_, checkpoint_);
+
+        // Replay the initial calibration done by the constructor of the original fitter.
+        fitter.fitAllParameters();
 
-        _chain = new FittingProgressChain<>(_settings, "Primary", starting_, _calc.size(), _calc,
-                _settings.getDoValidate());
+        LOG.info("Resuming fit after " + checkpoint_.getCompletedSteps() + " steps: " + fitter._chain);
+        return fitter;
     }
 
 
@@ -159,7 +266,11 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 
     public FitResult<S, R, T> pushParameters(final String label_, ItemParameters<S, R, T> params_)
     {
-        _chain.forcePushResults("ForcePush[" + label_ + "]", params_);
+        if (STEP_LIVE == beginStep())
+        {
+            _chain.forcePushResults("ForcePush[" + label_ + "]", params_);
+            endStep(STEP_DONE, null);
+        }
 
         this.fitAllParameters();
 
@@ -221,6 +332,18 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
                 continue;
             }
 
+            final int replayed = beginStep();
+
+            if (STEP_LIVE != replayed)
+            {
+                if (STEP_FLAGGED == replayed)
+                {
+                    offset++;
+                }
+
+                continue;
+            }
+
             final ItemParameters<S, R, T> reduced = base.dropIndex(index);
             doSingleAnnealingOperation(curveFields_, base, reduced, subChain, exhaustiveCalibration_);
 
@@ -235,6 +358,11 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
                 //Just step back, this entry has been removed, other entries slid up.
                 offset++;
                 //_chain.pushResults(subChain.getName(), subChain.getConsolidatedResults());
+                endStep(STEP_FLAGGED, null);
+            }
+            else
+            {
+                endStep(STEP_DONE, null);
             }
         }
 
@@ -246,6 +374,11 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
     {
         for (final R regressor : curveFields_)
         {
+            if (STEP_LIVE != beginStep())
+            {
+                continue;
+            }
+
             final FittingProgressChain<S, R, T> subChain =
                     new FittingProgressChain<>(_settings, "AnnealingSubChain[" + regressor.name() + "]", _chain);
             final ItemParameters<S, R, T> base = subChain.getBestParameters();
@@ -254,6 +387,7 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
             LOG.info("Annealing attempting to drop params from " + regressor);
             doSingleAnnealingOperation(curveFields_, base, reduced, subChain, exhaustiveCalibration_);
             LOG.info("---->Finished rebuild after dropping regressor: " + regressor);
+            endStep(STEP_DONE, null);
         }
 
         this.trim(exhaustiveCalibration_);
@@ -270,16 +404,28 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
      */
     private FitResult<S, R, T> addCoefficients(final Collection<R> coefficients_) throws ConvergenceException
     {
+        if (STEP_LIVE != beginStep())
+        {
+            return getReplayedResult();
+        }
+
         final FitResult<S, R, T> fitResult = _modelFitter.addDirectRegressors(_chain.getLatestResults(), coefficients_);
         _chain.pushResults("Adding Direct Betas", fitResult);
+        endStep(STEP_DONE, null);
         return _chain.getLatestResults();
     }
 
     public FitResult<S, R, T> fitAllParameters()
     {
+        if (STEP_LIVE != beginStep())
+        {
+            return getReplayedResult();
+        }
+
         final FitResult<S, R, T> best = _chain.getLatestResults();
         final FitResult<S, R, T> refit = _modelFitter.fitAllParameters(best);
         _chain.pushResults("Full Refit", refit);
+        endStep(STEP_DONE, refit);
         return refit;
     }
 
@@ -290,8 +436,14 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 
     public FitResult<S, R, T> fitEntries(final int[] entries_)
     {
+        if (STEP_LIVE != beginStep())
+        {
+            return getReplayedResult();
+        }
+
         final FitResult<S, R, T> betaFit = _modelFitter.fitEntries(_chain.getLatestResults(), entries_);
         _chain.pushResults("Fit Betas", betaFit);
+        endStep(STEP_DONE, null);
         return _chain.getLatestResults();
     }
 
@@ -303,8 +455,14 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
      */
     public FitResult<S, R, T> fitCoefficients() throws ConvergenceException
     {
+        if (STEP_LIVE != beginStep())
+        {
+            return getReplayedResult();
+        }
+
         final FitResult<S, R, T> betaFit = _modelFitter.fitBetas(_chain.getLatestResults());
         _chain.pushResults("Fit Betas", betaFit);
+        endStep(STEP_DONE, null);
         return _chain.getLatestResults();
     }
 
@@ -339,7 +497,8 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
         }
 
         final FitResult<S, R, T> rebuilt = expandModel(subChain_, curveFields_, reduction);
-        final boolean better = _chain.pushResults("AnnealingExpansion", subChain_.getLatestResults());
+        // Consolidated, so that the result pushed follows on from the latest result of the primary chain.
+        final boolean better = _chain.pushResults("AnnealingExpansion", subChain_.getConsolidatedResults());
 
         if (better)
         {
@@ -354,16 +513,101 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 
     private FitResult<S, R, T> trim(final boolean exhaustiveCalibration_)
     {
+        if (STEP_LIVE != beginStep())
+        {
+            return getReplayedResult();
+        }
+
         final FitResult<S, R, T> trimmed = _modelFitter.trim(_chain.getLatestResults());
 
         // Rebase the trimmed on top of the latest.
         final FitResult<S, R, T> rebased = new FitResult<>(trimmed, _chain.getLatestResults());
 
         _chain.pushResults("Trimmed", rebased);
+        endStep(STEP_DONE, null);
         return _chain.getLatestResults();
     }
 
 
+    /**
+     * Start the next step of the fit.
+     * <p>
+     * If this step completed before the checkpoint this fitter was resumed from, the frames it added are restored
+     * onto the chain, which is then exactly as it was when the step originally finished.
+     *
+     * @return STEP_LIVE if the step must be run (followed by endStep), otherwise the recorded outcome of this step,
+     * and its result is available from getReplayedResult
+     */
+    private int beginStep()
+    {
+        final int step = _nextStep++;
+
+        if (step < _replayCount)
+        {
+            final FitCheckpoint.Step<S, R, T> record = _steps.get(step);
+            _chain.restoreFrames(_checkpoint, record.getFrameCount());
+            _replayedResult = record.getResult();
+            return record.getOutcome();
+        }
+
+        return STEP_LIVE;
+    }
+
+    /**
+     * @return The result returned by the step just replayed
+     */
+    private FitResult<S, R, T> getReplayedResult()
+    {
+        if (null != _replayedResult)
+        {
+            return _replayedResult;
+        }
+
+        return _chain.getLatestResults();
+    }
+
+    /**
+     * Finish a live step.
+     *
+     * @param outcome_ The outcome of the step, to be replayed on resume
+     * @param result_  The result the step returns, if it is not simply the latest result on the chain
+     */
+    private void endStep(final int outcome_, final FitResult<S, R, T> result_)
+    {
+        final FitResult<S, R, T> latest = _chain.getLatestResults();
+        final FitResult<S, R, T> recorded;
+
+        if (null == result_ || result_ == latest)
+        {
+            recorded = null;
+        }
+        else
+        {
+            // Rebase it onto the chain, so the record doesn't drag along its own history.
+            recorded = new FitResult<>(result_, latest);
+        }
+
+        _steps.add(new FitCheckpoint.Step<>(outcome_, _chain.size(), saveRandomState(), recorded));
+
+        if (null == _checkpointer)
+        {
+            return;
+        }
+
+        // Everything in the checkpoint is immutable, so the writer can serialize it while we carry on.
+        _checkpointer.submit(new FitCheckpoint<>(_chain, _steps));
+    }
+
+    private byte[] saveRandomState()
+    {
+        if (null == _checkpointRandom)
+        {
+            return new byte[0];
+        }
+
+        return _checkpointRandom.saveState();
+    }
+
     public double computeLogLikelihood(final ItemParameters<S, R, T> params_)
     {
         final BlockResult ea = _calc.computeEntropy(params_);
@@ -373,7 +617,15 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 
     public FitResult<S, R, T> generateFlagInteractions(final boolean exhaustive_)
     {
-        return generateFlagInteractions(_chain.getBestParameters().getEntryCount(), exhaustive_);
+        if (STEP_LIVE != beginStep())
+        {
+            return getReplayedResult();
+        }
+
+        final FitResult<S, R, T> result = generateFlagInteractions(_chain.getBestParameters().getEntryCount(),
+                exhaustive_);
+        endStep(STEP_DONE, null);
+        return result;
     }
 
     private FitResult<S, R, T> generateFlagInteractions(final int entryNumber_, final boolean exhaustive_)
@@ -420,12 +672,32 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
             throw new IllegalArgumentException("Param count must be positive.");
         }
 
+        if (STEP_LIVE != beginStep())
+        {
+            return getReplayedResult();
+        }
+
         expandModel(_chain, curveFields_, paramCount_);
+        endStep(STEP_DONE, null);
         return _chain.getLatestResults();
     }
 
     public FitResult<S, R, T> calibrateCurves()
     {
+        final int replayed = beginStep();
+
+        if (STEP_LIVE != replayed)
+        {
+            final FitResult<S, R, T> replayedResult = getReplayedResult();
+
+            if (STEP_FLAGGED == replayed)
+            {
+                this.fitAllParameters();
+            }
+
+            return replayedResult;
+        }
+
         final FittingProgressChain<S, R, T> subChain = new FittingProgressChain<>(_settings, "CalibrationChain",
                 _chain);
 
@@ -436,9 +708,15 @@ public final class ItemFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 
         if (this._chain.pushResults("ExhaustiveCalibration", results))
         {
+            endStep(STEP_FLAGGED, results);
+
             // If we were able to improve things, try to hit it with one more full calibration.
             this.fitAllParameters();
         }
+        else
+        {
+            endStep(STEP_DONE, results);
+        }
 
         return results;
     }
@@ -93,6 +93,34 @@ public abstract class ItemParamGrid<S extends ItemStatus<S>, R extends ItemRegre
         }
     }
 
+    /**
+     * Get the regressors for a block of observations, one column at a time.
+     *
+     * @param start_  The first row of the block
+     * @param length_ The number of rows in the block
+     * @param output_ output_[k][i] receives regressor k (ordered as for getRegressors) of row start_ + i
+     */
+    public void getRegressors(final int start_, final int length_, final double[][] output_)
+    {
+        if (output_.length != _readers.length)
+        {
+            throw new IllegalArgumentException("Size mismatch: " + output_.length + " != " + _readers.length);
+        }
+
+        for (int i = 0; i < _readers.length; i++)
+        {
+            _readers[i].read(start_, length_, output_[i]);
+        }
+    }
+
+    /**
+     * @return The number of regressors returned by getRegressors
+     */
+    public int getRegressorCount()
+    {
+        return _readers.length;
+    }
+
     @Override
     public ItemRegressorReader getRegressorReader(R field_)
     {
@@ -5,10 +5,16 @@ import edu.columbia.tjw.item.algo.DoubleVector;
 import edu.columbia.tjw.item.fit.EntropyCalculator;
 import edu.columbia.tjw.item.fit.FitResult;
 import edu.columbia.tjw.item.fit.PackedParameters;
+import edu.columbia.tjw.item.fit.metrics.FitListener;
 import edu.columbia.tjw.item.optimize.ConvergenceException;
+import edu.columbia.tjw.item.optimize.LbfgsOptimizer;
 import edu.columbia.tjw.item.optimize.MultivariateOptimizer;
+import edu.columbia.tjw.item.optimize.NewtonOptimizer;
 import edu.columbia.tjw.item.optimize.OptimizationResult;
+import edu.columbia.tjw.item.optimize.OptimizerType;
+import edu.columbia.tjw.item.optimize.StochasticOptimizer;
 import edu.columbia.tjw.item.util.LogUtil;
+import org.apache.commons.math3.random.RandomGenerator;
 
 import java.util.logging.Logger;
 
@@ -16,15 +22,70 @@ public final class BaseFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 {
     private static final Logger LOG = LogUtil.getLogger(BaseFitter.class);
 
+    private static final int DEFAULT_MAX_EVAL_COUNT = 1000;
+    private static final int LOOP_EVAL_COUNT = 50;
+
     private final MultivariateOptimizer _optimizer;
+    private final LbfgsOptimizer _lbfgs;
+
+    // Null if the target is not supported by Newton's method.
+    private final NewtonOptimizer _newton;
+
+    // Null if the target does not decompose over blocks.
+    private final StochasticOptimizer _stochastic;
+
     private final ItemSettings _settings;
     private final EntropyCalculator<S, R, T> _calc;
 
     public BaseFitter(final EntropyCalculator<S, R, T> calc_, final ItemSettings settings_)
     {
+        this(calc_, settings_, DEFAULT_MAX_EVAL_COUNT);
+    }
+
+    /**
+     * A fitter whose optimizers give up after maxEvalCount_ evaluations, used to cut fits short (e.g. when
+     * screening candidates) rather than run them to convergence. Each line search gets at most a tenth of the
+     * budget.
+     *
+     * @param calc_         The calculator for the data being fit
+     * @param settings_     The settings
+     * @param maxEvalCount_ The evaluation budget of each fit
+     */
+    public BaseFitter(final EntropyCalculator<S, R, T> calc_, final ItemSettings settings_, final int maxEvalCount_)
+    {
+        if (maxEvalCount_ < 10)
+        {
+            throw new IllegalArgumentException("Evaluation count must be at least 10: " + maxEvalCount_);
+        }
+
+        // The multivariate optimizer needs at least ten line searches' worth of evaluations.
+        final int loopEvalCount = Math.min(LOOP_EVAL_COUNT, maxEvalCount_ / 10);
+
         _calc = calc_;
-        _optimizer = new MultivariateOptimizer(settings_.getBlockSize(), 1000, 50, 0.1, settings_.getTarget(),
-                settings_);
+        _optimizer = new MultivariateOptimizer(settings_.getBlockSize(), maxEvalCount_, loopEvalCount, 0.1,
+                settings_.getTarget(), settings_);
+        _lbfgs = new LbfgsOptimizer(settings_.getBlockSize(), maxEvalCount_, settings_.getTarget(), settings_);
+
+        if (NewtonOptimizer.isSupported(settings_.getTarget()))
+        {
+            _newton = new NewtonOptimizer(settings_.getBlockSize(), maxEvalCount_, settings_.getTarget(),
+                    settings_);
+        }
+        else
+        {
+            _newton = null;
+        }
+
+        if (StochasticOptimizer.isSupported(settings_.getTarget()))
+        {
+            _stochastic = new StochasticOptimizer(settings_.getBlockSize(), maxEvalCount_, settings_.getTarget(),
+                    settings_);
+        }
+        else
+        {
+            _stochastic = null;
+        }
+
         _settings = settings_;
     }
 
@@ -35,6 +96,22 @@ public final class BaseFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
 
     public FitResult<S, R, T> doFit(final PackedParameters<S, R, T> packed_, final FitResult<S, R, T> prev_,
                                     final boolean skipWorse_)
+    {
+        return doFit(packed_, prev_, skipWorse_, _settings.getRandom());
+    }
+
+    /**
+     * Same as above, but any randomness in the optimizer (e.g. block sampling) is drawn from rand_ rather than the
+     * settings' generator. Fits running concurrently must each pass their own.
+     *
+     * @param packed_    The parameters to fit
+     * @param prev_      The result to compare against
+     * @param skipWorse_ If true, don't bother computing the full result for a fit clearly worse than prev_
+     * @param rand_      The generator owned by this fit, may be null if this fitter is not randomized
+     * @return The result of the fit
+     */
+    public FitResult<S, R, T> doFit(final PackedParameters<S, R, T> packed_, final FitResult<S, R, T> prev_,
+                                    final boolean skipWorse_, final RandomGenerator rand_)
     {
         try
         {
@@ -42,7 +119,7 @@ public final class BaseFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
             //final double entropy = prev_.getEntropy();
             final BaseModelFunction<S, R, T> function = generateFunction(packed_);
             final DoubleVector beta = function.getBeta();
-            final OptimizationResult result = _optimizer.optimize(function, beta);
+            final OptimizationResult result = optimize(function, beta, isBetaOnly(packed_), rand_);
 
             if (!result.converged())
             {
@@ -81,9 +158,88 @@ public final class BaseFitter<S extends ItemStatus<S>, R extends ItemRegressor<R
         return _calc;
     }
 
+    /**
+     * @return True if fits draw random numbers (i.e. they use the stochastic optimizer), and so need a generator of
+     * their own. If false, the generator passed to doFit is never used.
+     */
+    public boolean isRandomized()
+    {
+        if (null == _stochastic)
+        {
+            return false;
+        }
+
+        return _settings.getOptimizer() == OptimizerType.STOCHASTIC
+                || _settings.getBetaOptimizer() == OptimizerType.STOCHASTIC;
+    }
+
+    private OptimizationResult optimize(final BaseModelFunction<S, R, T> function_, final DoubleVector beta_,
+                                        final boolean betaOnly_, final RandomGenerator rand_)
+            throws ConvergenceException
+    {
+        final OptimizerType type = betaOnly_ ? _settings.getBetaOptimizer() : _settings.getOptimizer();
+        final FitListener listener = _settings.getFitListener();
+
+        if (null == listener)
+        {
+            return optimize(function_, beta_, type, rand_);
+        }
+
+        final long start = System.nanoTime();
+        final OptimizationResult result = optimize(function_, beta_, type, rand_);
+        listener.optimizationFinished(type, result.evaluationCount(), result.converged(), System.nanoTime() - start);
+        return result;
+    }
+
+    private OptimizationResult optimize(final BaseModelFunction<S, R, T> function_, final DoubleVector beta_,
+                                        final OptimizerType type_, final RandomGenerator rand_)
+            throws ConvergenceException
+    {
+        switch (type_)
+        {
+            case NEWTON:
+                if (null != _newton)
+                {
+                    return _newton.optimize(function_, beta_);
+                }
+
+                // Not supported for this target, fall back to line searches.
+                return _optimizer.optimize(function_, beta_);
+            case LBFGS:
+                return _lbfgs.optimize(function_, beta_);
+            case STOCHASTIC:
+                if (null != _stochastic)
+                {
+                    return _stochastic.optimize(function_, beta_, rand_);
+                }
+
+                // Not supported for this target, L-BFGS is the nearest full batch equivalent.
+                return _lbfgs.optimize(function_, beta_);
+            case LINE_SEARCH:
+            default:
+                return _optimizer.optimize(function_, beta_);
+        }
+    }
+
+    /**
+     * True if no curve parameters are free, so the problem is a plain (convex) multinomial logistic regression.
+     */
+    private static boolean isBetaOnly(final PackedParameters<?, ?, ?> packed_)
+    {
+        for (int i = 0; i < packed_.size(); i++)
+        {
+            if (!packed_.isBeta(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     private BaseModelFunction<S, R, T> generateFunction(final PackedParameters<S, R, T> packed_)
     {
-        final BaseModelFunction<S, R, T> function = new BaseModelFunction<>(_calc.getGrid(),
+        final BaseModelFunction<S, R, T> function = new BaseModelFunction<>(_calc.getGenerator(),
                 _settings, packed_);
         return function;
     }
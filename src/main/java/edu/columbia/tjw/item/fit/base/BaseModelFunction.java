@@ -21,11 +21,23 @@ public class BaseModelFunction<S extends ItemStatus<S>, R extends ItemRegressor<
     public BaseModelFunction(final ItemFittingGrid<S, R> grid_, ItemSettings settings_,
                              final PackedParameters<S, R, T> packedStarting_)
     {
-        super(settings_.getThreadBlockSize(), settings_.getUseThreading());
+        this(new FitPointGenerator<>(grid_, settings_), settings_, packedStarting_);
+    }
+
+    /**
+     * @param generator_      The generator of this function's points, typically shared with the rest of the fit
+     * @param settings_       The settings of the fit
+     * @param packedStarting_ The starting point, which this function will copy
+     */
+    public BaseModelFunction(final FitPointGenerator<S, R, T> generator_, ItemSettings settings_,
+                             final PackedParameters<S, R, T> packedStarting_)
+    {
+        super(settings_.getThreadBlockSize(), settings_.getUseThreading(), settings_.getExecutor());
 
-        final ParamFittingGrid<S, R, T> grid = new ParamFittingGrid<>(packedStarting_.getOriginalParams(), grid_);
+        final ParamFittingGrid<S, R, T> grid = new ParamFittingGrid<>(packedStarting_.getOriginalParams(),
+                generator_.getGrid());
 
-        _generator = new FitPointGenerator<>(grid_);
+        _generator = generator_;
         _grid = grid;
         _packed = packedStarting_.clone();
     }
@@ -32,12 +32,21 @@ public final class ModelFitter<S extends ItemStatus<S>, R extends ItemRegressor<
 
     public ModelFitter(final ItemParameters<S, R, T> starting_,
                        final ItemFittingGrid<S, R> grid_, ItemSettings settings_)
+    {
+        this(starting_, new EntropyCalculator<>(grid_, settings_), settings_);
+    }
+
+    /**
+     * @param starting_ The parameters to start from
+     * @param calc_     The calculator of the fit, whose fit point generator this shares
+     * @param settings_ The settings of the fit
+     */
+    public ModelFitter(final ItemParameters<S, R, T> starting_,
+                       final EntropyCalculator<S, R, T> calc_, ItemSettings settings_)
     {
         _settings = settings_;
         _starting = starting_;
-
-        final EntropyCalculator<S, R, T> calc = new EntropyCalculator<>(grid_, settings_);
-        _base = new BaseFitter<>(calc, _settings);
+        _base = new BaseFitter<>(calc_, _settings);
         _fitter = new ParamFitter<>(_base);
         _curveFitter = new CurveFitter<>(_settings, _base);
     }
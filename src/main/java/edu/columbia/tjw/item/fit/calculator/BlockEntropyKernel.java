@@ -0,0 +1,301 @@
+package edu.columbia.tjw.item.fit.calculator;
+
+import edu.columbia.tjw.item.ItemCurve;
+import edu.columbia.tjw.item.ItemCurveType;
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.util.LogLikelihood;
+
+import java.util.Arrays;
+
+/**
+ * A columnar kernel computing the entropy of every row of a grid.
+ * <p>
+ * Rather than walking rows one at a time through ItemModel.logLikelihood, this computes the power scores of a tile
+ * of rows one entry (i.e. column) at a time, using block reads of each column (see ItemRegressorReader.read). All
+ * workspaces are allocated up front and reused, nothing is allocated per row.
+ * <p>
+ * With the scalar ColumnOps, the floating point operations are performed in exactly the same order as
+ * ItemModel.logLikelihood, so the results are bit-for-bit identical to the row by row calculation. The vectorized
+ * ColumnOps processes rows in SIMD lanes, and may differ in the last few bits.
+ * <p>
+ * Optionally, the weights of each entry can be cached (see EntryWeightCache), so that evaluations which change only
+ * the betas don't need to transform the regressors again. The cached weights are exactly those computed, so the
+ * results are the same whether or not a column was cached.
+ * <p>
+ * N.B: This is not threadsafe, it is meant to be owned by a single BlockResultCalculator.
+ *
+ * @param <S> The status type for this kernel
+ * @param <R> The regressor type for this kernel
+ * @param <T> The curve type for this kernel
+ */
+final class BlockEntropyKernel<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+{
+    // Small enough that the whole tile of workspaces stays in cache.
+    private static final int TILE_SIZE = 256;
+
+    private final ItemFittingGrid<S, R> _grid;
+    private final ColumnOps _ops;
+    private final int _size;
+    private final LogLikelihood<S> _likelihood;
+    private final ItemRegressorReader[] _readers;
+    private final EntryWeightCache<R, T> _cache;
+
+    private final double[] _weights;
+    private final double[] _column;
+    private final double[][] _scores;
+    private final double[] _probabilities;
+
+    // Per entry, the cached (or being cached) weights, and whether they are being filled by this computation.
+    private double[][] _entryColumns;
+    private boolean[] _filling;
+
+    private double _entropySum;
+    private double _entropySquaredSum;
+
+    public BlockEntropyKernel(final ItemFittingGrid<S, R> grid_, final ColumnOps ops_)
+    {
+        this(grid_, ops_, 0L);
+    }
+
+    /**
+     * @param grid_       The grid whose entropy is computed
+     * @param ops_        The column operations to use
+     * @param cacheBytes_ The memory budget for caching entry weights, zero to disable the cache
+     */
+    public BlockEntropyKernel(final ItemFittingGrid<S, R> grid_, final ColumnOps ops_, final long cacheBytes_)
+    {
+        if (null == grid_)
+        {
+            throw new NullPointerException("Grid cannot be null.");
+        }
+        if (null == ops_)
+        {
+            throw new NullPointerException("Ops cannot be null.");
+        }
+
+        _grid = grid_;
+        _ops = ops_;
+        _size = grid_.size();
+
+        final S fromStatus = grid_.getFromStatus();
+        final int reachableCount = fromStatus.getReachableCount();
+        final int tileSize = Math.min(TILE_SIZE, _size);
+
+        _likelihood = new LogLikelihood<>(fromStatus);
+        _readers = new ItemRegressorReader[grid_.getRegressorFamily().size()];
+
+        _weights = new double[tileSize];
+        _column = new double[tileSize];
+        _scores = new double[reachableCount][tileSize];
+        _probabilities = new double[reachableCount];
+
+        if (cacheBytes_ > 0 && _size > 0)
+        {
+            _cache = new EntryWeightCache<>(_size, cacheBytes_);
+        }
+        else
+        {
+            _cache = null;
+        }
+
+        _entryColumns = new double[0][];
+        _filling = new boolean[0];
+    }
+
+    /**
+     * Compute the entropy of every row in the grid under the given parameters. The results are available from
+     * getEntropySum() and getEntropySquaredSum() until the next call.
+     *
+     * @param params_ The parameters to evaluate
+     */
+    public void compute(final ItemParameters<S, R, T> params_)
+    {
+        if (params_.getReachableSize() != _probabilities.length)
+        {
+            throw new IllegalArgumentException("Reachable size mismatch.");
+        }
+
+        final int entryCount = params_.getEntryCount();
+        final int reachableCount = _probabilities.length;
+
+        double entropySum = 0.0;
+        double x2 = 0.0;
+
+        resolveCachedEntries(params_);
+
+        for (int start = 0; start < _size; start += TILE_SIZE)
+        {
+            final int tileSize = Math.min(TILE_SIZE, _size - start);
+
+            for (int k = 0; k < reachableCount; k++)
+            {
+                Arrays.fill(_scores[k], 0, tileSize, 0.0);
+            }
+
+            // Column by column, accumulate the power scores in entry order, exactly as ItemModel does.
+            for (int entry = 0; entry < entryCount; entry++)
+            {
+                fillEntryWeights(params_, entry, start, tileSize);
+
+                for (int k = 0; k < reachableCount; k++)
+                {
+                    _ops.multiplyAdd(_scores[k], _weights, params_.getBeta(k, entry), tileSize);
+                }
+            }
+
+            _ops.multiLogistic(_scores, tileSize);
+
+            for (int i = 0; i < tileSize; i++)
+            {
+                final int mapped = _likelihood.ordinalToOffset(_grid.getNextStatus(start + i));
+                final double entropy;
+
+                //If this item took a forbidden transition, ignore the data point.
+                if (mapped < 0)
+                {
+                    entropy = 0.0;
+                }
+                else
+                {
+                    for (int k = 0; k < reachableCount; k++)
+                    {
+                        _probabilities[k] = _scores[k][i];
+                    }
+
+                    entropy = _likelihood.logLikelihood(_probabilities, mapped);
+                }
+
+                final double e2 = entropy * entropy;
+                entropySum += entropy;
+                x2 += e2;
+            }
+        }
+
+        if (null != _cache)
+        {
+            // Only now are the reserved columns completely filled in.
+            for (int entry = 0; entry < entryCount; entry++)
+            {
+                if (_filling[entry])
+                {
+                    _cache.commit(entry);
+                }
+            }
+        }
+
+        _entropySum = entropySum;
+        _entropySquaredSum = x2;
+    }
+
+    public double getEntropySum()
+    {
+        return _entropySum;
+    }
+
+    public double getEntropySquaredSum()
+    {
+        return _entropySquaredSum;
+    }
+
+    private void resolveCachedEntries(final ItemParameters<S, R, T> params_)
+    {
+        if (null == _cache)
+        {
+            return;
+        }
+
+        final int entryCount = params_.getEntryCount();
+
+        if (_entryColumns.length < entryCount)
+        {
+            _entryColumns = new double[entryCount][];
+            _filling = new boolean[entryCount];
+        }
+
+        for (int entry = 0; entry < entryCount; entry++)
+        {
+            final double[] cached = _cache.lookup(params_, entry);
+
+            if (null != cached)
+            {
+                _entryColumns[entry] = cached;
+                _filling[entry] = false;
+            }
+            else
+            {
+                _entryColumns[entry] = _cache.reserve(params_, entry);
+                _filling[entry] = (null != _entryColumns[entry]);
+            }
+        }
+    }
+
+    private void fillEntryWeights(final ItemParameters<S, R, T> params_, final int entry_, final int start_,
+                                  final int tileSize_)
+    {
+        final double[] cached = (null == _cache) ? null : _entryColumns[entry_];
+
+        if (null != cached && !_filling[entry_])
+        {
+            System.arraycopy(cached, start_, _weights, 0, tileSize_);
+            return;
+        }
+
+        computeEntryWeights(params_, entry_, start_, tileSize_);
+
+        if (null != cached)
+        {
+            System.arraycopy(_weights, 0, cached, start_, tileSize_);
+        }
+    }
+
+    private void computeEntryWeights(final ItemParameters<S, R, T> params_, final int entry_, final int start_,
+                                     final int tileSize_)
+    {
+        Arrays.fill(_weights, 0, tileSize_, 1.0);
+
+        if (entry_ == params_.getInterceptIndex())
+        {
+            // The intercept doesn't even need a regressor.
+            return;
+        }
+
+        final int depth = params_.getEntryDepth(entry_);
+
+        for (int w = 0; w < depth; w++)
+        {
+            final double[] column = loadColumn(params_.getEntryRegressor(entry_, w), start_, tileSize_);
+            final ItemCurve<T> curve = params_.getEntryCurve(entry_, w);
+
+            if (null == curve)
+            {
+                _ops.multiply(_weights, column, tileSize_);
+            }
+            else
+            {
+                _ops.multiplyCurve(_weights, curve, column, tileSize_);
+            }
+        }
+    }
+
+    private double[] loadColumn(final R regressor_, final int start_, final int tileSize_)
+    {
+        getReader(regressor_).read(start_, tileSize_, _column);
+        return _column;
+    }
+
+    private ItemRegressorReader getReader(final R regressor_)
+    {
+        final int ordinal = regressor_.ordinal();
+
+        if (null == _readers[ordinal])
+        {
+            _readers[ordinal] = _grid.getRegressorReader(regressor_);
+        }
+
+        return _readers[ordinal];
+    }
+}
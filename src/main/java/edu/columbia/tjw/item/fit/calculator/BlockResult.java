@@ -109,7 +109,7 @@ public final class BlockResult
 
             if (hasSecondDerivative)
             {
-                final DoubleMatrix zeroMatrix = DoubleMatrix.constantMatrix(0.0, dimension, dimension);
+                final DoubleMatrix zeroMatrix = DoubleMatrix.constantSymmetricMatrix(0.0, dimension);
 
                 fisherInformation = zeroMatrix;
                 secondDerivative = zeroMatrix;
@@ -6,17 +6,29 @@ import edu.columbia.tjw.item.ItemRegressor;
 import edu.columbia.tjw.item.ItemStatus;
 import edu.columbia.tjw.item.algo.DoubleMatrix;
 import edu.columbia.tjw.item.algo.DoubleVector;
+import edu.columbia.tjw.item.algo.SymmetricBlockLayout;
 import edu.columbia.tjw.item.algo.VectorTools;
 import edu.columbia.tjw.item.data.ItemFittingGrid;
 import edu.columbia.tjw.item.fit.ParamFittingGrid;
 import edu.columbia.tjw.item.util.IceTools;
 import edu.columbia.tjw.item.util.MathTools;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
 public final class BlockResultCalculator<S extends ItemStatus<S>, R extends ItemRegressor<R>,
         T extends ItemCurveType<T>>
 {
     private final ItemFittingGrid<S, R> _grid;
     private final int _rowOffset;
+    private final ColumnOps _ops;
+
+    // The kernel holding the entry weight cache. Points may be shared between concurrent searches, so a compute
+    // that finds it busy takes an uncached spare instead of waiting.
+    private final BlockEntropyKernel<S, R, T> _kernel;
+    private final ReentrantLock _kernelLock;
+    private final Queue<BlockEntropyKernel<S, R, T>> _spareKernels;
 
     public BlockResultCalculator(final ItemFittingGrid<S, R> grid_)
     {
@@ -24,6 +36,17 @@ public final class BlockResultCalculator<S extends ItemStatus<S>, R extends Item
     }
 
     public BlockResultCalculator(final ItemFittingGrid<S, R> grid_, final int rowOffset_)
+    {
+        this(grid_, rowOffset_, ColumnOps.getOps(false));
+    }
+
+    public BlockResultCalculator(final ItemFittingGrid<S, R> grid_, final int rowOffset_, final ColumnOps ops_)
+    {
+        this(grid_, rowOffset_, ops_, 0L);
+    }
+
+    public BlockResultCalculator(final ItemFittingGrid<S, R> grid_, final int rowOffset_, final ColumnOps ops_,
+                                 final long cacheBytes_)
     {
         if (null == grid_)
         {
@@ -36,6 +59,10 @@ public final class BlockResultCalculator<S extends ItemStatus<S>, R extends Item
 
         _grid = grid_;
         _rowOffset = rowOffset_;
+        _ops = ops_;
+        _kernel = new BlockEntropyKernel<>(grid_, ops_, cacheBytes_);
+        _kernelLock = new ReentrantLock();
+        _spareKernels = new ConcurrentLinkedQueue<>();
     }
 
     public ItemFittingGrid<S, R> getGrid()
@@ -43,39 +70,44 @@ public final class BlockResultCalculator<S extends ItemStatus<S>, R extends Item
         return _grid;
     }
 
-    public synchronized BlockResult compute(final ItemModel<S, R, T> model_,
-                                            final BlockCalculationType type_, final BlockResult derivativeBlock_)
+    public BlockResult compute(final ItemModel<S, R, T> model_,
+                               final BlockCalculationType type_, final BlockResult derivativeBlock_)
     {
         if (!model_.getParams().getStatus().equals(_grid.getFromStatus()))
         {
             throw new IllegalArgumentException("Status mismatch.");
         }
 
-        final ParamFittingGrid<S, R, T> grid = new ParamFittingGrid<>(model_.getParams(), _grid);
-
-        double entropySum = 0.0;
-        double x2 = 0.0;
-        final int count = grid.size();
+        final int count = _grid.size();
 
         if (count <= 0)
         {
             throw new IllegalArgumentException("Grid must have positive size.");
         }
 
-        for (int i = 0; i < grid.size(); i++)
+        // The values are computed column by column, this is the hot path for line searches.
+        final BlockEntropyKernel<S, R, T> kernel = acquireKernel();
+        final double entropySum;
+        final double x2;
+
+        try
         {
-            final double entropy = model_.logLikelihood(grid, i);
-            final double e2 = entropy * entropy;
-            entropySum += entropy;
-            x2 += e2;
+            kernel.compute(model_.getParams());
+            entropySum = kernel.getEntropySum();
+            x2 = kernel.getEntropySquaredSum();
+        }
+        finally
+        {
+            releaseKernel(kernel);
         }
 
         final DoubleVector.Builder derivative;
         final DoubleVector.Builder d2;
         final DoubleVector.Builder jDiag;
         final DoubleVector.Builder shiftGradient;
-        final double[][] secondDerivative;
-        final double[][] fisherInformation;
+        // Both symmetric, only the blocks on or above the diagonal are accumulated, see ItemModel.getHessianLayout.
+        final double[] secondDerivative;
+        final double[] fisherInformation;
         final DoubleVector.Builder scaledGradient;
         final DoubleVector.Builder scaledGradient2;
         final DoubleVector prevJDiag;
@@ -107,8 +139,8 @@ public final class BlockResultCalculator<S extends ItemStatus<S>, R extends Item
             scaledGradient = DoubleVector.newBuilder(dimension);
             scaledGradient2 = DoubleVector.newBuilder(dimension);
             shiftGradient = DoubleVector.newBuilder(dimension);
-            fisherInformation = new double[dimension][dimension];
-            secondDerivative = new double[dimension][dimension];
+            fisherInformation = new double[model_.getHessianLayout().getSize()];
+            secondDerivative = new double[model_.getHessianLayout().getSize()];
         }
         else if (type_ == BlockCalculationType.FIRST_DERIVATIVE)
         {
@@ -136,15 +168,17 @@ public final class BlockResultCalculator<S extends ItemStatus<S>, R extends Item
 
         if (derivative != null)
         {
+            final ParamFittingGrid<S, R, T> grid = new ParamFittingGrid<>(model_.getParams(), _grid);
             final int dimension = derivative.getSize();
             final double[] tmp = new double[dimension];
 
             final double[] diagTmp = new double[dimension];
-            final double[][] tmp2;
+            final SymmetricBlockLayout layout = model_.getHessianLayout();
+            final double[] tmp2;
 
             if (secondDerivative != null)
             {
-                tmp2 = new double[dimension][dimension];
+                tmp2 = new double[model_.getHessianLayout().getSize()];
             }
             else
             {
@@ -153,20 +187,13 @@ public final class BlockResultCalculator<S extends ItemStatus<S>, R extends Item
 
             for (int i = 0; i < count; i++)
             {
-                model_.computeGradient(grid, i, tmp, diagTmp, tmp2);
+                model_.computePackedGradient(grid, i, tmp, diagTmp, tmp2);
 
                 if (tmp2 != null)
                 {
                     for (int k = 0; k < dimension; k++)
                     {
-                        double shiftSum = 0.0;
-
-                        for (int w = 0; w < dimension; w++)
-                        {
-                            shiftSum += tmp[w] * tmp2[k][w];
-                        }
-
-                        shiftGradient.addToEntry(k, shiftSum);
+                        shiftGradient.addToEntry(k, layout.rowDot(tmp2, k, tmp));
                     }
                 }
 
@@ -198,13 +225,15 @@ public final class BlockResultCalculator<S extends ItemStatus<S>, R extends Item
                         scaledGradient2.addToEntry(k, 2.0 * tmp[k] * elemScale);
                     }
 
-                    if (secondDerivative != null)
+                }
+
+                if (secondDerivative != null)
+                {
+                    accumulateOuterProduct(layout, tmp, fisherInformation);
+
+                    for (int k = 0; k < secondDerivative.length; k++)
                     {
-                        for (int w = 0; w < dimension; w++)
-                        {
-                            fisherInformation[k][w] += tmp[k] * tmp[w];
-                            secondDerivative[k][w] += tmp2[k][w];
-                        }
+                        secondDerivative[k] += tmp2[k];
                     }
                 }
             }
@@ -224,15 +253,12 @@ public final class BlockResultCalculator<S extends ItemStatus<S>, R extends Item
                     shiftGradient.scalarMultiply(invCount);
                 }
 
-                for (int i = 0; i < dimension; i++)
+                if (secondDerivative != null)
                 {
-                    if (secondDerivative != null)
+                    for (int i = 0; i < secondDerivative.length; i++)
                     {
-                        for (int w = 0; w < dimension; w++)
-                        {
-                            fisherInformation[i][w] *= invCount;
-                            secondDerivative[i][w] *= invCount;
-                        }
+                        fisherInformation[i] *= invCount;
+                        secondDerivative[i] *= invCount;
                     }
                 }
             }
@@ -244,8 +270,73 @@ public final class BlockResultCalculator<S extends ItemStatus<S>, R extends Item
                 DoubleVector.of(shiftGradient), DoubleVector.of(scaledGradient),
                 DoubleVector.of(scaledGradient2),
                 gradientMass,
-                DoubleMatrix.of(fisherInformation, false),
-                DoubleMatrix.of(secondDerivative, false));
+                DoubleMatrix.ofSymmetric(fisherInformation, model_.getHessianLayout(), false),
+                DoubleMatrix.ofSymmetric(secondDerivative, model_.getHessianLayout(), false));
+    }
+
+    /**
+     * Add the outer product of x_ with itself to output_, a symmetric matrix stored in the given layout.
+     */
+    private static void accumulateOuterProduct(final SymmetricBlockLayout layout_, final double[] x_,
+                                               final double[] output_)
+    {
+        final int groupCount = layout_.getGroupCount();
+        int pointer = 0;
+
+        for (int g = 0; g < groupCount; g++)
+        {
+            final int gStart = layout_.getGroupStart(g);
+            final int gEnd = gStart + layout_.getGroupSize(g);
+
+            for (int k = gStart; k < gEnd; k++)
+            {
+                for (int w = k; w < gEnd; w++)
+                {
+                    output_[pointer++] += x_[k] * x_[w];
+                }
+            }
+
+            for (int h = g + 1; h < groupCount; h++)
+            {
+                final int hStart = layout_.getGroupStart(h);
+                final int hEnd = hStart + layout_.getGroupSize(h);
+
+                for (int k = gStart; k < gEnd; k++)
+                {
+                    for (int w = hStart; w < hEnd; w++)
+                    {
+                        output_[pointer++] += x_[k] * x_[w];
+                    }
+                }
+            }
+        }
     }
-}
 
+    private BlockEntropyKernel<S, R, T> acquireKernel()
+    {
+        if (_kernelLock.tryLock())
+        {
+            return _kernel;
+        }
+
+        final BlockEntropyKernel<S, R, T> spare = _spareKernels.poll();
+
+        if (null != spare)
+        {
+            return spare;
+        }
+
+        return new BlockEntropyKernel<>(_grid, _ops, 0L);
+    }
+
+    private void releaseKernel(final BlockEntropyKernel<S, R, T> kernel_)
+    {
+        if (kernel_ == _kernel)
+        {
+            _kernelLock.unlock();
+            return;
+        }
+
+        _spareKernels.offer(kernel_);
+    }
+}
@@ -0,0 +1,132 @@
+package edu.columbia.tjw.item.fit.calculator;
+
+import edu.columbia.tjw.item.ItemCurve;
+import edu.columbia.tjw.item.util.LogUtil;
+import edu.columbia.tjw.item.util.MultiLogistic;
+
+import java.util.logging.Logger;
+
+/**
+ * The primitive column operations used by the BlockEntropyKernel.
+ * <p>
+ * The scalar implementation performs exactly the same operations as ItemModel, and is always available. If the
+ * library was built with the vector profile (and the jdk.incubator.vector module is present at runtime), a SIMD
+ * implementation is also available. It is faster, but its exponentials are not bit-for-bit identical to FastMath.
+ *
+ * @author tyler
+ */
+public abstract class ColumnOps
+{
+    private static final Logger LOG = LogUtil.getLogger(ColumnOps.class);
+    private static final String VECTOR_CLASS = "edu.columbia.tjw.item.fit.calculator.VectorColumnOps";
+
+    private static final ColumnOps SCALAR = new ScalarColumnOps();
+    private static final ColumnOps VECTOR = loadVector();
+
+    ColumnOps()
+    {
+    }
+
+    /**
+     * @param vectorize_ True if the SIMD implementation is wanted
+     * @return The SIMD implementation if requested and available, otherwise the scalar implementation
+     */
+    public static ColumnOps getOps(final boolean vectorize_)
+    {
+        if (vectorize_)
+        {
+            return VECTOR;
+        }
+
+        return SCALAR;
+    }
+
+    /**
+     * @return True if the SIMD implementation was loaded successfully
+     */
+    public static boolean isVectorAvailable()
+    {
+        return VECTOR != SCALAR;
+    }
+
+    /**
+     * weights_[i] *= column_[i]
+     */
+    public abstract void multiply(final double[] weights_, final double[] column_, final int size_);
+
+    /**
+     * weights_[i] *= curve_.transform(column_[i])
+     */
+    public abstract void multiplyCurve(final double[] weights_, final ItemCurve<?> curve_, final double[] column_,
+                                       final int size_);
+
+    /**
+     * scores_[i] += weights_[i] * beta_
+     */
+    public abstract void multiplyAdd(final double[] scores_, final double[] weights_, final double beta_,
+                                     final int size_);
+
+    /**
+     * Converts the power scores of each row into probabilities, in place.
+     *
+     * @param scores_ The power scores, indexed by [reachable][row]
+     * @param size_   The number of rows
+     */
+    public abstract void multiLogistic(final double[][] scores_, final int size_);
+
+    private static ColumnOps loadVector()
+    {
+        try
+        {
+            final Class<?> clazz = Class.forName(VECTOR_CLASS);
+            final ColumnOps output = (ColumnOps) clazz.getDeclaredConstructor().newInstance();
+            LOG.info("Using vectorized column operations.");
+            return output;
+        }
+        catch (final ReflectiveOperationException | LinkageError e)
+        {
+            // Either not built with the vector profile, or the incubator module is not available.
+            LOG.info("Vectorized column operations unavailable, falling back to scalar: " + e);
+            return SCALAR;
+        }
+    }
+
+    private static final class ScalarColumnOps extends ColumnOps
+    {
+        @Override
+        public void multiply(final double[] weights_, final double[] column_, final int size_)
+        {
+            for (int i = 0; i < size_; i++)
+            {
+                weights_[i] *= column_[i];
+            }
+        }
+
+        @Override
+        public void multiplyCurve(final double[] weights_, final ItemCurve<?> curve_, final double[] column_,
+                                  final int size_)
+        {
+            for (int i = 0; i < size_; i++)
+            {
+                weights_[i] *= curve_.transform(column_[i]);
+            }
+        }
+
+        @Override
+        public void multiplyAdd(final double[] scores_, final double[] weights_, final double beta_,
+                                final int size_)
+        {
+            for (int i = 0; i < size_; i++)
+            {
+                final double score = weights_[i] * beta_;
+                scores_[i] += score;
+            }
+        }
+
+        @Override
+        public void multiLogistic(final double[][] scores_, final int size_)
+        {
+            MultiLogistic.multiLogisticFunction(scores_, size_);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package edu.columbia.tjw.item.fit.calculator;
+
+import edu.columbia.tjw.item.ItemCurve;
+import edu.columbia.tjw.item.ItemCurveType;
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemRegressor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches the weights (i.e. the product of the curve transforms) of model entries, as columns of doubles.
+ * <p>
+ * The weight of an entry depends only on its regressors and curves, not on the betas. During a beta only fit, the
+ * curves are fixed, and every evaluation can just read the cached weights instead of transforming every row again.
+ * <p>
+ * Each slot holds the column of a single entry index, along with the structure (regressors and curve parameters) it
+ * was computed from. Curves are compared by value, since the parameters are regenerated (along with new curve
+ * objects) for every evaluation. Entries beyond the memory budget, and the intercept, are simply not cached.
+ * <p>
+ * The weights are stored exactly as computed, so reading them back gives bit-for-bit the same results as computing
+ * them again.
+ * <p>
+ * A column is filled while the entropy is being computed, so a slot is reserved first, and only becomes valid once
+ * it has been committed.
+ * <p>
+ * N.B: This is not threadsafe, it is meant to be owned by a single BlockEntropyKernel.
+ *
+ * @param <R> The regressor type for this cache
+ * @param <T> The curve type for this cache
+ */
+final class EntryWeightCache<R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+{
+    private static final int BYTES_PER_ENTRY = Double.BYTES;
+
+    // Models never have anywhere near this many entries, don't bother with slots for them.
+    private static final int MAX_SLOTS = 1024;
+
+    private final int _size;
+    private final List<Slot<R, T>> _slots;
+
+    /**
+     * Create a new cache for columns of size size_, using up to maxBytes_ of memory.
+     *
+     * @param size_     The number of rows in each column
+     * @param maxBytes_ The memory budget for this cache
+     */
+    public EntryWeightCache(final int size_, final long maxBytes_)
+    {
+        if (size_ < 1)
+        {
+            throw new IllegalArgumentException("Size must be positive: " + size_);
+        }
+        if (maxBytes_ < 0)
+        {
+            throw new IllegalArgumentException("Cache size must be nonnegative: " + maxBytes_);
+        }
+
+        final int slotCount = (int) Math.min(MAX_SLOTS, maxBytes_ / ((long) size_ * BYTES_PER_ENTRY));
+
+        _size = size_;
+        _slots = new ArrayList<>(slotCount);
+
+        for (int i = 0; i < slotCount; i++)
+        {
+            _slots.add(new Slot<>());
+        }
+    }
+
+    /**
+     * @return The number of entries that can be cached
+     */
+    public int getSlotCount()
+    {
+        return _slots.size();
+    }
+
+    /**
+     * Find the cached weights of the given entry, if they are available.
+     *
+     * @param params_ The parameters being evaluated
+     * @param entry_  The entry whose weights are needed
+     * @return The weights of this entry, or null if they are not cached
+     */
+    public double[] lookup(final ItemParameters<?, R, T> params_, final int entry_)
+    {
+        if (entry_ >= _slots.size() || entry_ == params_.getInterceptIndex())
+        {
+            return null;
+        }
+
+        final Slot<R, T> slot = _slots.get(entry_);
+
+        if (!slot._valid || !slot.matches(params_, entry_))
+        {
+            return null;
+        }
+
+        return slot._column;
+    }
+
+    /**
+     * Reserve the slot for the given entry, so that its weights can be filled in. The slot is not valid until it is
+     * committed.
+     *
+     * @param params_ The parameters being evaluated
+     * @param entry_  The entry whose weights will be filled in
+     * @return The column to be filled, or null if this entry cannot be cached
+     */
+    public double[] reserve(final ItemParameters<?, R, T> params_, final int entry_)
+    {
+        if (entry_ >= _slots.size() || entry_ == params_.getInterceptIndex())
+        {
+            return null;
+        }
+
+        final Slot<R, T> slot = _slots.get(entry_);
+        slot.record(params_, entry_);
+
+        if (null == slot._column)
+        {
+            slot._column = new double[_size];
+        }
+
+        return slot._column;
+    }
+
+    /**
+     * Mark the reserved slot of the given entry as valid, its column must have been completely filled.
+     *
+     * @param entry_ The entry that was reserved
+     */
+    public void commit(final int entry_)
+    {
+        _slots.get(entry_)._valid = true;
+    }
+
+    private static final class Slot<R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+    {
+        private final List<R> _regressors = new ArrayList<>();
+        private final List<ItemCurve<T>> _curves = new ArrayList<>();
+        private double[] _column;
+        private boolean _valid;
+
+        private void record(final ItemParameters<?, R, T> params_, final int entry_)
+        {
+            _valid = false;
+            _regressors.clear();
+            _curves.clear();
+
+            final int depth = params_.getEntryDepth(entry_);
+
+            for (int w = 0; w < depth; w++)
+            {
+                _regressors.add(params_.getEntryRegressor(entry_, w));
+                _curves.add(params_.getEntryCurve(entry_, w));
+            }
+        }
+
+        private boolean matches(final ItemParameters<?, R, T> params_, final int entry_)
+        {
+            final int depth = params_.getEntryDepth(entry_);
+
+            if (depth != _regressors.size())
+            {
+                return false;
+            }
+
+            for (int w = 0; w < depth; w++)
+            {
+                if (!params_.getEntryRegressor(entry_, w).equals(_regressors.get(w)))
+                {
+                    return false;
+                }
+                if (!sameCurve(params_.getEntryCurve(entry_, w), _curves.get(w)))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static <T extends ItemCurveType<T>> boolean sameCurve(final ItemCurve<T> a_, final ItemCurve<T> b_)
+        {
+            if (a_ == b_)
+            {
+                return true;
+            }
+            if (null == a_ || null == b_)
+            {
+                return false;
+            }
+            if (a_.getCurveType() != b_.getCurveType())
+            {
+                return false;
+            }
+
+            final int paramCount = a_.getCurveType().getParamCount();
+
+            for (int i = 0; i < paramCount; i++)
+            {
+                if (Double.compare(a_.getParam(i), b_.getParam(i)) != 0)
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package edu.columbia.tjw.item.fit.calculator;
 
 import edu.columbia.tjw.item.algo.DoubleVector;
 
+import java.util.List;
+
 public interface FitPoint
 {
     /**
@@ -17,21 +19,36 @@ public interface FitPoint
 
     int getNextBlock(BlockCalculationType type_);
 
-    void clear();
-
     int getDimension();
 
-    void computeAll(BlockCalculationType type_, BlockResult prevDerivative_);
-
     void computeAll(BlockCalculationType type_);
 
     BlockResult getAggregated(BlockCalculationType type_);
 
-    void computeUntil(int endBlock_, BlockCalculationType type_, BlockResult prevDerivative_);
-
     void computeUntil(int endBlock_, BlockCalculationType type_);
 
     BlockResult getBlock(int index_, BlockCalculationType type_);
 
+    /**
+     * Compute the aggregate over all blocks, with the ICE gradients scaled against a previous derivative, without
+     * retaining it. Points may be shared (see FitPointGenerator.generatePoint), so only results that depend on the
+     * parameters alone are kept on the point.
+     *
+     * @param type_           The calculation to perform on each block
+     * @param prevDerivative_ The derivative to scale the ICE gradients against
+     * @return The aggregated result of all blocks
+     */
+    BlockResult computeAggregated(BlockCalculationType type_, BlockResult prevDerivative_);
+
+    /**
+     * Compute the given blocks (in parallel), without retaining them. This is meant for sampling subsets of the
+     * data, e.g. for stochastic gradients, and does not affect the blocks computed so far.
+     *
+     * @param blocks_ The indices of the blocks to compute
+     * @param type_   The calculation to perform on each block
+     * @return The result of each requested block, in the same order as blocks_
+     */
+    List<BlockResult> computeBlocks(int[] blocks_, BlockCalculationType type_);
+
     int getSize();
 }
@@ -2,13 +2,11 @@ package edu.columbia.tjw.item.fit.calculator;
 
 import edu.columbia.tjw.item.ItemSettings;
 import edu.columbia.tjw.item.algo.DoubleVector;
-import edu.columbia.tjw.item.algo.MatrixTools;
+import edu.columbia.tjw.item.algo.SymmetricEigenDecomposition;
 import edu.columbia.tjw.item.algo.VarianceCalculator;
 import edu.columbia.tjw.item.algo.VectorTools;
 import edu.columbia.tjw.item.optimize.OptimizationTarget;
 import edu.columbia.tjw.item.util.IceTools;
-import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.SingularValueDecomposition;
 
 public final class FitPointAnalyzer
 {
@@ -84,8 +82,6 @@ public final class FitPointAnalyzer
             case ICE:
             case ICE_B:
             {
-                // Unfortunately, we have to clear here.
-                point_.clear();
                 final FitPoint jPoint;
 
                 if (prev_ != null)
@@ -100,9 +96,8 @@ public final class FitPointAnalyzer
                 jPoint.computeAll(BlockCalculationType.FIRST_DERIVATIVE);
                 final BlockResult jAgg = jPoint.getAggregated(BlockCalculationType.FIRST_DERIVATIVE);
 
-                // Downgrade this to first derivative once the testing is done.
-                point_.computeAll(BlockCalculationType.FIRST_DERIVATIVE, jAgg);
-                final BlockResult aggregated = point_.getAggregated(BlockCalculationType.FIRST_DERIVATIVE);
+                // Scaled against jAgg, so this is not kept on the point, which may be shared.
+                final BlockResult aggregated = point_.computeAggregated(BlockCalculationType.FIRST_DERIVATIVE, jAgg);
 
                 final DoubleVector extraDerivative4;
 
@@ -178,24 +173,8 @@ public final class FitPointAnalyzer
             case ICE:
             case ICE_B:
             {
-                // Unfortunately, we have to clear here.
-                point_.clear();
-                final FitPoint jPoint;
-
-                if (prev_ != null)
-                {
-                    jPoint = prev_;
-                }
-                else
-                {
-                    jPoint = point_;
-                }
-
-                jPoint.computeAll(BlockCalculationType.FIRST_DERIVATIVE);
-                final BlockResult jAgg = jPoint.getAggregated(BlockCalculationType.FIRST_DERIVATIVE);
-
-                // Downgrade this to first derivative once the testing is done.
-                point_.computeAll(BlockCalculationType.FIRST_DERIVATIVE, jAgg);
+                // The derivative itself does not depend on prev_, only the adjustment does.
+                point_.computeAll(BlockCalculationType.FIRST_DERIVATIVE);
                 final BlockResult aggregated = point_.getAggregated(BlockCalculationType.FIRST_DERIVATIVE);
 
                 final int dimension = aggregated.getDerivativeDimension();
@@ -237,22 +216,11 @@ public final class FitPointAnalyzer
                 final BlockResult secondDerivative = point_.getAggregated(BlockCalculationType.SECOND_DERIVATIVE);
 
                 final double entropy = secondDerivative.getEntropyMean();
-                final RealMatrix jMatrix = MatrixTools.toApacheMatrix(secondDerivative.getSecondDerivative());
-                final RealMatrix iMatrix = MatrixTools.toApacheMatrix(secondDerivative.getFisherInformation());
-
-                final SingularValueDecomposition jSvd = new SingularValueDecomposition(jMatrix);
-                final RealMatrix jInverse = jSvd.getSolver().getInverse();
-
-                final RealMatrix ticMatrix = jInverse.multiply(iMatrix);
-
-                double ticSum = 0.0;
-
-                for (int i = 0; i < ticMatrix.getRowDimension(); i++)
-                {
-                    final double ticTerm = ticMatrix.getEntry(i, i);
-                    ticSum += ticTerm;
-                }
+                final SymmetricEigenDecomposition jEigen =
+                        new SymmetricEigenDecomposition(secondDerivative.getSecondDerivative());
 
+                // The trace of J^-1 * I, without densifying either matrix.
+                final double ticSum = jEigen.traceOfPseudoInverseTimes(secondDerivative.getFisherInformation());
                 final double tic = ticSum / point_.getSize();
                 return entropy + tic;
             }
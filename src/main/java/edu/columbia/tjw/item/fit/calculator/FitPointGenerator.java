@@ -3,13 +3,19 @@ package edu.columbia.tjw.item.fit.calculator;
 import edu.columbia.tjw.item.ItemCurveType;
 import edu.columbia.tjw.item.ItemParameters;
 import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemSettings;
 import edu.columbia.tjw.item.ItemStatus;
 import edu.columbia.tjw.item.data.ItemFittingGrid;
 import edu.columbia.tjw.item.fit.PackedParameters;
+import edu.columbia.tjw.item.fit.metrics.FitListener;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class FitPointGenerator<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
 {
@@ -19,27 +25,107 @@ public class FitPointGenerator<S extends ItemStatus<S>, R extends ItemRegressor<
     private final ItemFittingGrid<S, R> _grid;
     private final int _blockSize;
     private final List<BlockResultCalculator<S, R, T>> _blockCalculators;
+    private final ItemExecutor _executor;
+    private final FitListener _listener;
+
+    // Most recently used points, in access order, or null if caching is disabled.
+    private final Map<FitPointKey, ItemFitPoint<S, R, T>> _pointCache;
+    private long _cacheHits;
+    private long _cacheMisses;
 
     public FitPointGenerator(final ItemFittingGrid<S, R> grid_)
     {
         this(grid_, DEFAULT_BLOCK_SIZE);
     }
 
+    public FitPointGenerator(final ItemFittingGrid<S, R> grid_, final ItemSettings settings_)
+    {
+        this(grid_, DEFAULT_BLOCK_SIZE, ColumnOps.getOps(settings_.getVectorize()), settings_.getExecutor(),
+                settings_.getEntryWeightCacheBytes(), settings_.getFitPointCacheSize(), settings_.getFitListener());
+    }
+
     public FitPointGenerator(final ItemFittingGrid<S, R> grid_, final int blockSize_)
+    {
+        this(grid_, blockSize_, ColumnOps.getOps(false));
+    }
+
+    public FitPointGenerator(final ItemFittingGrid<S, R> grid_, final int blockSize_, final ColumnOps ops_)
+    {
+        this(grid_, blockSize_, ops_, ForkJoinExecutor.shared());
+    }
+
+    public FitPointGenerator(final ItemFittingGrid<S, R> grid_, final int blockSize_, final ColumnOps ops_,
+                             final ItemExecutor executor_)
+    {
+        this(grid_, blockSize_, ops_, executor_, 0L, 0);
+    }
+
+    public FitPointGenerator(final ItemFittingGrid<S, R> grid_, final int blockSize_, final ColumnOps ops_,
+                             final ItemExecutor executor_, final long cacheBytes_, final int pointCacheSize_)
+    {
+        this(grid_, blockSize_, ops_, executor_, cacheBytes_, pointCacheSize_, null);
+    }
+
+    /**
+     * @param grid_       The grid to evaluate points on
+     * @param blockSize_  The (approximate) number of rows in each block
+     * @param ops_        The column operations used to compute the entropy
+     * @param executor_   The executor on which blocks are computed
+     * @param cacheBytes_ The memory budget for caching entry weights, shared among the blocks, zero to disable
+     * @param pointCacheSize_ The number of recently generated points to keep for reuse, zero to disable
+     * @param listener_   The listener for block timings, or null for none
+     */
+    public FitPointGenerator(final ItemFittingGrid<S, R> grid_, final int blockSize_, final ColumnOps ops_,
+                             final ItemExecutor executor_, final long cacheBytes_, final int pointCacheSize_,
+                             final FitListener listener_)
     {
         if (null == grid_)
         {
             throw new NullPointerException("Grid cannot be null.");
         }
+        if (null == ops_)
+        {
+            throw new NullPointerException("Ops cannot be null.");
+        }
+        if (null == executor_)
+        {
+            throw new NullPointerException("Executor cannot be null.");
+        }
         if (grid_.size() < 1)
         {
             throw new IllegalArgumentException("Grid must not be vacuous.");
         }
+        if (cacheBytes_ < 0)
+        {
+            throw new IllegalArgumentException("Cache size must be nonnegative: " + cacheBytes_);
+        }
+        if (pointCacheSize_ < 0)
+        {
+            throw new IllegalArgumentException("Cache size must be nonnegative: " + pointCacheSize_);
+        }
 
         // Eventually allow this as an option.
         _doThreaded = true;
         _grid = grid_;
         _blockSize = blockSize_;
+        _executor = executor_;
+        _listener = listener_;
+
+        if (pointCacheSize_ > 0)
+        {
+            _pointCache = new LinkedHashMap<FitPointKey, ItemFitPoint<S, R, T>>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<FitPointKey, ItemFitPoint<S, R, T>> eldest_)
+                {
+                    return size() > pointCacheSize_;
+                }
+            };
+        }
+        else
+        {
+            _pointCache = null;
+        }
 
         final int numBlocks = (grid_.size() / blockSize_);
 
@@ -49,7 +135,8 @@ public class FitPointGenerator<S extends ItemStatus<S>, R extends ItemRegressor<
         for (int i = 0; i < numBlocks - 1; i++)
         {
             final FittingGridShard<S, R> shard = new FittingGridShard<>(grid_, start, blockSize_);
-            final BlockResultCalculator<S, R, T> nextCalc = new BlockResultCalculator<>(shard, start);
+            final BlockResultCalculator<S, R, T> nextCalc = new BlockResultCalculator<>(shard, start, ops_,
+                    blockShare(cacheBytes_, blockSize_));
             start += blockSize_;
             blockCalculators.add(nextCalc);
         }
@@ -57,26 +144,105 @@ public class FitPointGenerator<S extends ItemStatus<S>, R extends ItemRegressor<
         //Now add the last block, which may be larger than normal.
         final int lastSize = _grid.size() - start;
         final FittingGridShard<S, R> shard = new FittingGridShard<>(grid_, start, lastSize);
-        final BlockResultCalculator<S, R, T> nextCalc = new BlockResultCalculator<>(shard, start);
+        final BlockResultCalculator<S, R, T> nextCalc = new BlockResultCalculator<>(shard, start, ops_,
+                blockShare(cacheBytes_, lastSize));
         blockCalculators.add(nextCalc);
 
         // Could make this synchronized or something, but probably not needed.
         _blockCalculators = Collections.unmodifiableList(blockCalculators);
     }
 
+    /**
+     * Each block gets a share of the cache proportional to its size, so they can all cache the same entries.
+     */
+    private long blockShare(final long cacheBytes_, final int blockRows_)
+    {
+        return (long) ((double) cacheBytes_ * blockRows_ / _grid.size());
+    }
+
     public ItemFitPoint<S, R, T> generatePoint(final ItemParameters<S, R, T> params_)
     {
         return generatePoint(params_.generatePacked());
     }
 
+    /**
+     * Generate the fit point for the given parameters.
+     * <p>
+     * If caching is enabled (see ItemSettings.getFitPointCacheSize), a recently generated point for identical
+     * parameters (and packing) is returned instead, along with whatever blocks it has already computed.
+     *
+     * @param packed_ The parameters of the point
+     * @return A point that will compute the entropy (and derivatives) of packed_
+     */
     public ItemFitPoint<S, R, T> generatePoint(final PackedParameters<S, R, T> packed_)
     {
-        return new ItemFitPoint<>(this, packed_);
+        if (null == _pointCache)
+        {
+            return new ItemFitPoint<>(this, packed_);
+        }
+
+        final FitPointKey key = new FitPointKey(packed_, packed_.generateParams());
+
+        synchronized (_pointCache)
+        {
+            final ItemFitPoint<S, R, T> cached = _pointCache.get(key);
+
+            if (null != cached)
+            {
+                _cacheHits++;
+                return cached;
+            }
+
+            _cacheMisses++;
+            final ItemFitPoint<S, R, T> point = new ItemFitPoint<>(this, packed_);
+            _pointCache.put(key, point);
+            return point;
+        }
     }
 
     public ItemFitPoint<S, R, T> generateGradient(final PackedParameters<S, R, T> packed_)
     {
-        return new ItemFitPoint<>(this, packed_);
+        return generatePoint(packed_);
+    }
+
+    /**
+     * @return The number of points served from the cache
+     */
+    public long getCacheHits()
+    {
+        if (null == _pointCache)
+        {
+            return 0;
+        }
+
+        synchronized (_pointCache)
+        {
+            return _cacheHits;
+        }
+    }
+
+    /**
+     * @return The number of points generated while caching was enabled, but not found in the cache
+     */
+    public long getCacheMisses()
+    {
+        if (null == _pointCache)
+        {
+            return 0;
+        }
+
+        synchronized (_pointCache)
+        {
+            return _cacheMisses;
+        }
+    }
+
+    /**
+     * @return The grid the generated points are evaluated on
+     */
+    public ItemFittingGrid<S, R> getGrid()
+    {
+        return _grid;
     }
 
     public int getBlockCount()
@@ -99,5 +265,21 @@ public class FitPointGenerator<S extends ItemStatus<S>, R extends ItemRegressor<
         return _blockCalculators;
     }
 
+    /**
+     * @return The executor on which the blocks of the generated points are computed
+     */
+    public ItemExecutor getExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * @return The listener for block timings, or null if there is none
+     */
+    public FitListener getListener()
+    {
+        return _listener;
+    }
+
 
 }
@@ -0,0 +1,136 @@
+package edu.columbia.tjw.item.fit.calculator;
+
+import edu.columbia.tjw.item.ItemCurve;
+import edu.columbia.tjw.item.ItemCurveType;
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.fit.PackedParameters;
+
+import java.util.Arrays;
+
+/**
+ * Identifies the fit point of a set of packed parameters, for caching in FitPointGenerator.
+ * <p>
+ * Two packed parameters have the same key if they generate the same model (status, entries, curves and betas), and
+ * are also packed the same way, since the packing determines the layout of the derivatives. Values are compared
+ * bit for bit.
+ */
+final class FitPointKey
+{
+    // Per packed index: entry, transition, depth, curve index, and whether or not it is a beta.
+    private static final int PACKED_FIELDS = 5;
+
+    private final int[] _structure;
+    private final double[] _values;
+    private final int _hash;
+
+    public <S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>> FitPointKey(
+            final PackedParameters<S, R, T> packed_, final ItemParameters<S, R, T> params_)
+    {
+        final int packedSize = packed_.size();
+        final int entryCount = params_.getEntryCount();
+        final int reachable = params_.getReachableSize();
+
+        int structureSize = 3 + PACKED_FIELDS * packedSize + 2 * entryCount;
+        int valueSize = packedSize + reachable * entryCount;
+
+        for (int i = 0; i < entryCount; i++)
+        {
+            final int depth = params_.getEntryDepth(i);
+            structureSize += 2 * depth;
+
+            for (int w = 0; w < depth; w++)
+            {
+                final ItemCurve<T> curve = params_.getEntryCurve(i, w);
+
+                if (null != curve)
+                {
+                    valueSize += curve.getCurveType().getParamCount();
+                }
+            }
+        }
+
+        final int[] structure = new int[structureSize];
+        final double[] values = new double[valueSize];
+        int sPointer = 0;
+        int vPointer = 0;
+
+        structure[sPointer++] = params_.getStatus().ordinal();
+        structure[sPointer++] = packedSize;
+        structure[sPointer++] = entryCount;
+
+        for (int k = 0; k < packedSize; k++)
+        {
+            structure[sPointer++] = packed_.getEntry(k);
+            structure[sPointer++] = packed_.getTransition(k);
+            structure[sPointer++] = packed_.getDepth(k);
+            structure[sPointer++] = packed_.getCurveIndex(k);
+            structure[sPointer++] = packed_.isBeta(k) ? 1 : 0;
+            values[vPointer++] = packed_.getParameter(k);
+        }
+
+        for (int i = 0; i < entryCount; i++)
+        {
+            final int depth = params_.getEntryDepth(i);
+            final S restrict = params_.getEntryStatusRestrict(i);
+            structure[sPointer++] = depth;
+            structure[sPointer++] = (null == restrict) ? -1 : restrict.ordinal();
+
+            for (int w = 0; w < depth; w++)
+            {
+                final ItemCurve<T> curve = params_.getEntryCurve(i, w);
+                final R regressor = params_.getEntryRegressor(i, w);
+
+                // The intercept has no regressor.
+                structure[sPointer++] = (null == regressor) ? -1 : regressor.ordinal();
+
+                if (null == curve)
+                {
+                    structure[sPointer++] = -1;
+                    continue;
+                }
+
+                final T type = curve.getCurveType();
+                structure[sPointer++] = type.ordinal();
+
+                for (int z = 0; z < type.getParamCount(); z++)
+                {
+                    values[vPointer++] = curve.getParam(z);
+                }
+            }
+
+            for (int k = 0; k < reachable; k++)
+            {
+                values[vPointer++] = params_.getBeta(k, i);
+            }
+        }
+
+        _structure = structure;
+        _values = values;
+        _hash = 31 * Arrays.hashCode(structure) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return _hash;
+    }
+
+    @Override
+    public boolean equals(final Object that_)
+    {
+        if (this == that_)
+        {
+            return true;
+        }
+        if (!(that_ instanceof FitPointKey))
+        {
+            return false;
+        }
+
+        final FitPointKey that = (FitPointKey) that_;
+        return _hash == that._hash && Arrays.equals(_structure, that._structure)
+                && Arrays.equals(_values, that._values);
+    }
+}
@@ -4,6 +4,7 @@ import edu.columbia.tjw.item.ItemRegressor;
 import edu.columbia.tjw.item.ItemRegressorReader;
 import edu.columbia.tjw.item.ItemStatus;
 import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.data.RawColumnReader;
 import edu.columbia.tjw.item.util.EnumFamily;
 
 import java.util.Set;
@@ -57,6 +58,14 @@ public class FittingGridShard<S extends ItemStatus<S>, R extends ItemRegressor<R
         return index_ + _start;
     }
 
+    private void checkRange(final int start_, final int length_)
+    {
+        if (start_ < 0 || length_ < 0 || start_ > _size - length_)
+        {
+            throw new ArrayIndexOutOfBoundsException("Out of bounds.");
+        }
+    }
+
 
     @Override
     public S getFromStatus()
@@ -88,7 +97,17 @@ public class FittingGridShard<S extends ItemStatus<S>, R extends ItemRegressor<R
         }
 
         final ItemRegressorReader raw = _underlying.getRegressorReader(field_);
-        final ItemRegressorReader sharded = new ShardedReader(raw);
+        final ItemRegressorReader sharded;
+
+        if (raw instanceof RawColumnReader)
+        {
+            sharded = new ShardedColumnReader((RawColumnReader) raw);
+        }
+        else
+        {
+            sharded = new ShardedReader(raw);
+        }
+
         _readers[field_.ordinal()] = sharded;
         return sharded;
     }
@@ -126,10 +145,68 @@ public class FittingGridShard<S extends ItemStatus<S>, R extends ItemRegressor<R
             return _reader.asDouble(mapped);
         }
 
+        @Override
+        public void read(final int start_, final int length_, final double[] output_)
+        {
+            checkRange(start_, length_);
+            _reader.read(start_ + _start, length_, output_);
+        }
+
+        @Override
+        public void read(final int start_, final int length_, final float[] output_)
+        {
+            checkRange(start_, length_);
+            _reader.read(start_ + _start, length_, output_);
+        }
+
         @Override
         public int size()
         {
             return _size;
         }
     }
+
+    /**
+     * A sharded reader over a raw column, exposes the underlying array (shifted by the start of this shard) so
+     * that kernels may run directly over it.
+     */
+    private final class ShardedColumnReader implements RawColumnReader
+    {
+        private final RawColumnReader _reader;
+
+        private ShardedColumnReader(final RawColumnReader reader_)
+        {
+            if (null == reader_)
+            {
+                throw new NullPointerException("Reader cannot be null.");
+            }
+
+            _reader = reader_;
+        }
+
+        @Override
+        public double asDouble(int index_)
+        {
+            final int mapped = transform(index_);
+            return _reader.asDouble(mapped);
+        }
+
+        @Override
+        public int size()
+        {
+            return _size;
+        }
+
+        @Override
+        public float[] getUnderlyingArray()
+        {
+            return _reader.getUnderlyingArray();
+        }
+
+        @Override
+        public int getArrayOffset()
+        {
+            return _reader.getArrayOffset() + _start;
+        }
+    }
 }
@@ -3,8 +3,9 @@ package edu.columbia.tjw.item.fit.calculator;
 import edu.columbia.tjw.item.*;
 import edu.columbia.tjw.item.algo.DoubleVector;
 import edu.columbia.tjw.item.fit.PackedParameters;
+import edu.columbia.tjw.item.fit.metrics.FitListener;
 import edu.columbia.tjw.item.util.thread.GeneralTask;
-import edu.columbia.tjw.item.util.thread.GeneralThreadPool;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,9 +13,9 @@ import java.util.List;
 public final class ItemFitPoint<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
         implements FitPoint
 {
-    private static final GeneralThreadPool POOL = GeneralThreadPool.singleton();
-
     private final List<BlockResultCalculator<S, R, T>> _blockCalculators;
+    private final ItemExecutor _executor;
+    private final FitListener _listener;
     private final ItemModel<S, R, T> _model;
     private final int _blockSize;
     private final int _totalSize;
@@ -25,8 +26,6 @@ public final class ItemFitPoint<S extends ItemStatus<S>, R extends ItemRegressor
 
     private DoubleVector _params;
 
-    private BlockResult _prevBlockResult = null;
-
     public ItemFitPoint(final FitPointGenerator<S, R, T> calculator_, final PackedParameters<S, R, T> packed_)
     {
         if (null == calculator_)
@@ -40,6 +39,8 @@ public final class ItemFitPoint<S extends ItemStatus<S>, R extends ItemRegressor
 
         _dimension = packed_.size();
         _blockCalculators = calculator_.getCalculators();
+        _executor = calculator_.getExecutor();
+        _listener = calculator_.getListener();
         _model = new ItemModel<>(packed_);
         _blockSize = calculator_.getBlockSize();
         _totalSize = calculator_.getRowCount();
@@ -85,7 +86,7 @@ public final class ItemFitPoint<S extends ItemStatus<S>, R extends ItemRegressor
     }
 
     @Override
-    public int getNextBlock(BlockCalculationType type_)
+    public synchronized int getNextBlock(BlockCalculationType type_)
     {
         return _nextBlock[type_.ordinal()];
     }
@@ -93,48 +94,24 @@ public final class ItemFitPoint<S extends ItemStatus<S>, R extends ItemRegressor
     @Override
     public void computeAll(BlockCalculationType type_)
     {
-        computeAll(type_, null);
+        computeUntil(getBlockCount(), type_);
     }
 
     @Override
-    public void computeAll(BlockCalculationType type_, final BlockResult prevDerivative_)
-    {
-        computeUntil(getBlockCount(), type_, prevDerivative_);
-    }
-
-    @Override
-    public BlockResult getAggregated(BlockCalculationType type_)
+    public synchronized BlockResult getAggregated(BlockCalculationType type_)
     {
         return _compound[type_.ordinal()].getAggregated();
     }
 
-    @Override
-    public void computeUntil(final int endBlock_, BlockCalculationType type_)
-    {
-        computeUntil(endBlock_, type_, null);
-    }
-
     /**
-     * Reset this to a pristine computation state.
+     * N.B: The blocks are computed without holding this point's monitor. Points are shared (through the generator's
+     * cache) by tasks on the same executor, and a worker waiting for its blocks runs other tasks in the meantime. If
+     * it held the monitor while waiting, it could deadlock against a worker doing the same on another point. The
+     * monitor is only taken to append the results, skipping any blocks another thread appended first.
      */
-    public void clear()
-    {
-        for (int i = 0; i < _compound.length; i++)
-        {
-            _compound[i] = new BlockResultCompound();
-            _nextBlock[i] = 0;
-        }
-    }
-
     @Override
-    public void computeUntil(final int endBlock_, BlockCalculationType type_, final BlockResult prevDerivative_)
+    public void computeUntil(final int endBlock_, BlockCalculationType type_)
     {
-        if (_prevBlockResult != prevDerivative_)
-        {
-            this.clear();
-            _prevBlockResult = prevDerivative_;
-        }
-
         final int nextBlock = getNextBlock(type_);
         final int neededBlocks = endBlock_ - nextBlock;
 
@@ -148,17 +125,31 @@ public final class ItemFitPoint<S extends ItemStatus<S>, R extends ItemRegressor
         for (int i = nextBlock; i < endBlock_; i++)
         {
             final BlockResultCalculator<S, R, T> calc = _blockCalculators.get(i);
-            final EntropyRunner runner = new EntropyRunner(calc, type_, prevDerivative_);
+            final EntropyRunner runner = new EntropyRunner(calc, type_, null);
             runners.add(runner);
         }
 
-        final List<BlockResult> analysis = POOL.runAll(runners);
+        final List<BlockResult> analysis = runAll(runners);
+        appendResults(nextBlock, endBlock_, analysis, type_);
+    }
+
+    private synchronized void appendResults(final int firstBlock_, final int endBlock_,
+                                            final List<BlockResult> analysis_, final BlockCalculationType type_)
+    {
         final BlockResultCompound target = _compound[type_.ordinal()];
 
-        for (final BlockResult result : analysis)
+        for (int w = 0; w < analysis_.size(); w++)
         {
+            final BlockResult result = analysis_.get(w);
             final int blockIndex = target.getBlockCount();
 
+            if (blockIndex > firstBlock_ + w)
+            {
+                // Already appended by another thread that computed the same blocks concurrently. The results are
+                // identical, so just skip it.
+                continue;
+            }
+
             for (int k = 0; k < type_.ordinal(); k++)
             {
                 if (_compound[k].getBlockCount() > target.getBlockCount())
@@ -186,16 +177,51 @@ public final class ItemFitPoint<S extends ItemStatus<S>, R extends ItemRegressor
         // implies a value as well.
         for (int i = 0; i <= type_.ordinal(); i++)
         {
-            _nextBlock[i] = endBlock_;
+            _nextBlock[i] = Math.max(_nextBlock[i], endBlock_);
         }
     }
 
     @Override
-    public BlockResult getBlock(final int index_, BlockCalculationType type_)
+    public synchronized BlockResult getBlock(final int index_, BlockCalculationType type_)
     {
         return _compound[type_.ordinal()].getBlock(index_);
     }
 
+    @Override
+    public BlockResult computeAggregated(final BlockCalculationType type_, final BlockResult prevDerivative_)
+    {
+        final List<EntropyRunner> runners = new ArrayList<>(getBlockCount());
+
+        for (final BlockResultCalculator<S, R, T> calc : _blockCalculators)
+        {
+            runners.add(new EntropyRunner(calc, type_, prevDerivative_));
+        }
+
+        return new BlockResult(runAll(runners));
+    }
+
+    @Override
+    public List<BlockResult> computeBlocks(final int[] blocks_, final BlockCalculationType type_)
+    {
+        final List<EntropyRunner> runners = new ArrayList<>(blocks_.length);
+
+        for (final int next : blocks_)
+        {
+            runners.add(new EntropyRunner(_blockCalculators.get(next), type_, null));
+        }
+
+        return runAll(runners);
+    }
+
+    private List<BlockResult> runAll(final List<EntropyRunner> runners_)
+    {
+        if (null != _listener)
+        {
+            _listener.tasksSubmitted(runners_.size(), _executor.getQueuedTaskCount());
+        }
+
+        return _executor.runAll(runners_);
+    }
 
     public int getSize()
     {
@@ -223,7 +249,15 @@ public final class ItemFitPoint<S extends ItemStatus<S>, R extends ItemRegressor
             // N.B: we clone the model since ItemModel isn't threadsafe (it has internal state).
             // However, cloning models is a bit faster than making new ones because of the internal (immutable)
             // parameters.
-            return _calc.compute(_model.clone(), _type, _prevDerivative);
+            if (null == _listener)
+            {
+                return _calc.compute(_model.clone(), _type, _prevDerivative);
+            }
+
+            final long start = System.nanoTime();
+            final BlockResult result = _calc.compute(_model.clone(), _type, _prevDerivative);
+            _listener.blockComputed(_type, result.getSize(), System.nanoTime() - start);
+            return result;
         }
     }
 }
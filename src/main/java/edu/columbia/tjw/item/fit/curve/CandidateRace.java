@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.fit.curve;
+
+import edu.columbia.tjw.item.ItemCurveType;
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.algo.VarianceCalculator;
+import edu.columbia.tjw.item.fit.EntropyCalculator;
+import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
+import edu.columbia.tjw.item.fit.calculator.ItemFitPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Races a set of candidate models against each other, block by block.
+ * <p>
+ * All live candidates are extended by the same number of blocks, then each is compared to the current leader (the
+ * candidate with the lowest entropy so far) using the block-wise differences in entropy. A candidate that is worse
+ * than the leader by more than the given z-score is abandoned, and not computed any further.
+ * <p>
+ * N.B: This compares entropy only, regardless of the optimization target. It is meant as a cheap screen, the
+ * survivors are fully calibrated (and compared on the actual target) afterwards. The calculator should cover rows
+ * that the candidates were not fit on, otherwise the race favours whichever candidate overfits the most.
+ *
+ * @param <S> The status type for this race
+ * @param <R> The regressor type for this race
+ * @param <T> The curve type for this race
+ */
+final class CandidateRace<S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+{
+    // The number of blocks each live candidate is extended by in each round.
+    private static final int RACE_STEP = 10;
+
+    // Need at least a few block differences before the variance means anything.
+    private static final int MIN_BLOCKS = 3;
+
+    private final EntropyCalculator<S, R, T> _calc;
+    private final double _zScoreCutoff;
+
+    public CandidateRace(final EntropyCalculator<S, R, T> calc_, final double zScoreCutoff_)
+    {
+        if (null == calc_)
+        {
+            throw new NullPointerException("Calculator cannot be null.");
+        }
+        if (!(zScoreCutoff_ > 0.0))
+        {
+            throw new IllegalArgumentException("Z-score cutoff must be positive: " + zScoreCutoff_);
+        }
+
+        _calc = calc_;
+        _zScoreCutoff = zScoreCutoff_;
+    }
+
+    /**
+     * Race the given candidates.
+     *
+     * @param candidates_ The parameters of each candidate
+     * @return For each candidate, true if it survived the race
+     */
+    public boolean[] race(final List<ItemParameters<S, R, T>> candidates_)
+    {
+        final int count = candidates_.size();
+        final boolean[] alive = new boolean[count];
+
+        if (count < 2)
+        {
+            // Nothing to race against.
+            for (int i = 0; i < count; i++)
+            {
+                alive[i] = true;
+            }
+
+            return alive;
+        }
+
+        final List<ItemFitPoint<S, R, T>> points = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            points.add(_calc.generatePoint(candidates_.get(i)));
+            alive[i] = true;
+        }
+
+        final BlockCalculationType valType = BlockCalculationType.VALUE;
+        final int blockCount = points.get(0).getBlockCount();
+        int liveCount = count;
+        int endBlock = 0;
+
+        while (endBlock < blockCount && liveCount > 1)
+        {
+            endBlock = Math.min(blockCount, endBlock + RACE_STEP);
+            int leader = -1;
+            double leaderEntropy = Double.POSITIVE_INFINITY;
+
+            for (int i = 0; i < count; i++)
+            {
+                if (!alive[i])
+                {
+                    continue;
+                }
+
+                final ItemFitPoint<S, R, T> point = points.get(i);
+                point.computeUntil(endBlock, valType);
+                final double entropy = point.getAggregated(valType).getEntropyMean();
+
+                if (leader < 0 || entropy < leaderEntropy)
+                {
+                    leader = i;
+                    leaderEntropy = entropy;
+                }
+            }
+
+            if (endBlock < MIN_BLOCKS)
+            {
+                continue;
+            }
+
+            final ItemFitPoint<S, R, T> leaderPoint = points.get(leader);
+
+            for (int i = 0; i < count; i++)
+            {
+                if (!alive[i] || i == leader)
+                {
+                    continue;
+                }
+
+                final double zScore = computeZScore(points.get(i), leaderPoint, endBlock);
+
+                if (zScore > _zScoreCutoff)
+                {
+                    // Statistically dominated by the leader, abandon it.
+                    alive[i] = false;
+                    liveCount--;
+                }
+            }
+        }
+
+        return alive;
+    }
+
+    /**
+     * How many sigma worse (higher entropy) than leader_ is point_, based on the differences of the first
+     * endBlock_ blocks.
+     */
+    private static double computeZScore(final ItemFitPoint<?, ?, ?> point_, final ItemFitPoint<?, ?, ?> leader_,
+                                        final int endBlock_)
+    {
+        final BlockCalculationType valType = BlockCalculationType.VALUE;
+        final VarianceCalculator vcalc = new VarianceCalculator();
+
+        for (int i = 0; i < endBlock_; i++)
+        {
+            final double diff = point_.getBlock(i, valType).getEntropyMean()
+                    - leader_.getBlock(i, valType).getEntropyMean();
+            vcalc.update(diff);
+        }
+
+        final double dev = vcalc.getMeanDev();
+
+        if (!(dev > 0.0))
+        {
+            // Identical (or nearly so), no basis to drop either one.
+            return 0.0;
+        }
+
+        return vcalc.getMean() / dev;
+    }
+}
@@ -21,17 +21,25 @@ package edu.columbia.tjw.item.fit.curve;
 
 import edu.columbia.tjw.item.*;
 import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.fit.EntropyCalculator;
 import edu.columbia.tjw.item.fit.FitResult;
 import edu.columbia.tjw.item.fit.FittingProgressChain;
 import edu.columbia.tjw.item.fit.base.BaseFitter;
+import edu.columbia.tjw.item.fit.calculator.FitPointGenerator;
+import edu.columbia.tjw.item.fit.calculator.FittingGridShard;
 import edu.columbia.tjw.item.fit.param.ParamFitter;
 import edu.columbia.tjw.item.optimize.ConvergenceException;
 import edu.columbia.tjw.item.util.LogUtil;
 import edu.columbia.tjw.item.util.MathFunctions;
+import edu.columbia.tjw.item.util.random.RandomStreams;
 import edu.columbia.tjw.item.util.random.RandomTool;
+import edu.columbia.tjw.item.util.thread.GeneralTask;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
+import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -44,12 +52,26 @@ public final class CurveFitter<S extends ItemStatus<S>, R extends ItemRegressor<
 {
     private static final Logger LOG = LogUtil.getLogger(CurveFitter.class);
 
+    // When racing, candidates are first fit on this fraction of the grid (but at least SCREEN_MIN_ROWS rows).
+    private static final double SCREEN_FRACTION = 0.1;
+    private static final int SCREEN_MIN_ROWS = 10 * FitPointGenerator.DEFAULT_BLOCK_SIZE;
+
+    // Screening fits are cut off after this many evaluations, and get at most this many rounds before the race is
+    // decided.
+    private static final int SCREEN_EVAL_COUNT = 200;
+    private static final int SCREEN_ROUNDS = 3;
+
+    // Candidates this many sigma worse than the leader are abandoned.
+    private static final double RACE_Z_SCORE = 3.0;
+
     private final ItemSettings _settings;
 
     private final BaseFitter<S, R, T> _base;
     private final ParamFitter<S, R, T> _paramFitter;
     private final CurveParamsFitter<S, R, T> _fitter;
 
+    private final AtomicInteger _prunedCount;
+    private final AtomicInteger _raceCount;
 
     public CurveFitter(final ItemSettings settings_,
                        final BaseFitter<S, R, T> base_)
@@ -64,6 +86,8 @@ public final class CurveFitter<S extends ItemStatus<S>, R extends ItemRegressor<
         _base = base_;
         _paramFitter = new ParamFitter<>(_base);
         _fitter = new CurveParamsFitter<>(_settings, _base);
+        _prunedCount = new AtomicInteger(0);
+        _raceCount = new AtomicInteger(0);
     }
 
     public final boolean calibrateCurves(final double improvementTarget_, final boolean exhaustive_,
@@ -271,7 +295,8 @@ public final class CurveFitter<S extends ItemStatus<S>, R extends ItemRegressor<
             //This is a flag-curve interaction term.
             // Try to append this to the given CurveParams
             final CurveFitResult<S, R, T> result =
-                    _fitter.doCalibration(testParams, params_, starting_.getFitResult(), toStatus);
+                    _fitter.doCalibration(testParams, params_, starting_.getFitResult(), toStatus,
+                            _settings.getRandom());
 
             if (!subChain.pushResults("ParameterExpansion", result))
             {
@@ -423,9 +448,48 @@ public final class CurveFitter<S extends ItemStatus<S>, R extends ItemRegressor<
     public List<CurveFitResult<S, R, T>> generateCandidateResults(final Set<R> fields_,
                                                                   final FitResult<S, R, T> fitResult_)
     {
+        return generateCandidateResults(_fitter, fields_, fitResult_);
+    }
+
+    /**
+     * Each (toStatus, field) candidate first draws its starting points from the settings' generator, one candidate
+     * after another in candidate order, just as the serial search always has. Only then are its fits run, and
+     * those draw nothing from the settings (a randomized optimizer uses a stream of the candidate's own). The serial
+     * and parallel searches therefore fit exactly the same candidates from the same starting points, and findBest
+     * selects the same result either way.
+     */
+    private List<CurveFitResult<S, R, T>> generateCandidateResults(final CurveParamsFitter<S, R, T> fitter_,
+                                                                   final Set<R> fields_,
+                                                                   final FitResult<S, R, T> fitResult_)
+    {
+        final List<CandidateTask> tasks = generateCandidateTasks(fitter_, fields_, fitResult_);
+
+        if (_settings.getParallelCandidates())
+        {
+            return generateCandidateResultsParallel(tasks);
+        }
+
+        final RandomGenerator rand = _settings.getRandom();
         final List<CurveFitResult<S, R, T>> fitResults = new ArrayList<>();
+
+        for (final CandidateTask next : tasks)
+        {
+            next.drawStarts(rand);
+            fitResults.addAll(next.subRun());
+        }
+
+        return fitResults;
+    }
+
+    private List<CandidateTask> generateCandidateTasks(final CurveParamsFitter<S, R, T> fitter_,
+                                                       final Set<R> fields_,
+                                                       final FitResult<S, R, T> fitResult_)
+    {
         final ItemParameters<S, R, T> params = fitResult_.getParams();
         final S fromStatus = params.getStatus();
+        // Only draw from the settings for these when they will be used, so that the starting points are the same.
+        final RandomStreams streams = _base.isRandomized() ? _settings.newRandomStreams() : null;
+        final List<CandidateTask> tasks = new ArrayList<>();
 
         for (final S toStatus : fromStatus.getReachable())
         {
@@ -435,10 +499,43 @@ public final class CurveFitter<S extends ItemStatus<S>, R extends ItemRegressor<
                 continue;
             }
 
-            fieldLoop:
             for (final R field : fields_)
             {
-                List<CurveFitResult<S, R, T>> subResults = _fitter.calibrateCurveAdditions(field, toStatus, fitResult_);
+                final RandomGenerator fitRand = (null == streams) ? null : streams.nextStream();
+                tasks.add(new CandidateTask(fitter_, field, toStatus, fitResult_, fitRand));
+            }
+        }
+
+        return tasks;
+    }
+
+    /**
+     * Runs the candidates' fits concurrently on the settings' executor. The results are identical regardless of the
+     * parallelism, or the order in which the candidates happen to complete. Candidates are run in batches no
+     * larger than the executor's parallelism, so only that many fits are in flight (and holding memory) at once.
+     * <p>
+     * The starting points of each batch are drawn serially, in candidate order, before its fits start. That is one
+     * pass over the data per candidate, against the hundreds each fit takes.
+     */
+    private List<CurveFitResult<S, R, T>> generateCandidateResultsParallel(final List<CandidateTask> tasks_)
+    {
+        final ItemExecutor executor = _settings.getExecutor();
+        final RandomGenerator rand = _settings.getRandom();
+        final int batchSize = Math.max(1, executor.getParallelism());
+        final List<CurveFitResult<S, R, T>> fitResults = new ArrayList<>();
+
+        for (int start = 0; start < tasks_.size(); start += batchSize)
+        {
+            final int end = Math.min(tasks_.size(), start + batchSize);
+
+            for (int i = start; i < end; i++)
+            {
+                tasks_.get(i).drawStarts(rand);
+            }
+
+            // N.B: runAll returns results in task order, so the candidates are in the same order as the serial loop.
+            for (final List<CurveFitResult<S, R, T>> subResults : executor.runAll(tasks_.subList(start, end)))
+            {
                 fitResults.addAll(subResults);
             }
         }
@@ -446,10 +543,215 @@ public final class CurveFitter<S extends ItemStatus<S>, R extends ItemRegressor<
         return fitResults;
     }
 
+    /**
+     * Racing version of generateCandidateResults.
+     * <p>
+     * The grid (assumed to be shuffled, as for the block-wise comparisons in the optimizer) is split into a screening
+     * prefix and a held-out remainder. Candidates are fit on the prefix in short rounds, each cut off after a few
+     * evaluations. After every round, the candidates are raced block by block on the held-out rows (never the rows
+     * they were fit on, which would favour overfit candidates), and those statistically dominated by the leader are
+     * abandoned without being optimized any further. Only the survivors are fully calibrated, on the whole grid,
+     * starting from their screened parameters.
+     * <p>
+     * After the screening fits, every candidate gets a stream of its own (if the optimizer is randomized) for its
+     * later fits, and those are run on the settings' executor.
+     *
+     * @param fields_    The fields to consider for the new curve
+     * @param fitResult_ The current fit
+     * @return The fully calibrated results of the surviving candidates
+     */
+    public List<CurveFitResult<S, R, T>> raceCandidateResults(final Set<R> fields_,
+                                                              final FitResult<S, R, T> fitResult_)
+    {
+        final ItemFittingGrid<S, R> grid = getGrid();
+        final int screenSize = Math.max(SCREEN_MIN_ROWS, (int) (SCREEN_FRACTION * grid.size()));
+
+        if (2 * screenSize > grid.size())
+        {
+            // Too small to be worth screening.
+            return generateCandidateResults(fields_, fitResult_);
+        }
+
+        // The fit's entry weight budget is held by its own calculator, these short lived shards don't add to it.
+        final ItemSettings shardSettings = _settings.toBuilder().setEntryWeightCacheBytes(0L).build();
+        final EntropyCalculator<S, R, T> screenCalc = new EntropyCalculator<>(
+                new FittingGridShard<>(grid, 0, screenSize), shardSettings);
+        final CurveParamsFitter<S, R, T> screenFitter = new CurveParamsFitter<>(_settings,
+                new BaseFitter<>(screenCalc, _settings, SCREEN_EVAL_COUNT));
+        final FitResult<S, R, T> screenStart = screenCalc.computeFitResult(fitResult_.getParams(), null);
+
+        final EntropyCalculator<S, R, T> heldOutCalc = new EntropyCalculator<>(
+                new FittingGridShard<>(grid, screenSize, grid.size() - screenSize), shardSettings);
+        final CandidateRace<S, R, T> race = new CandidateRace<>(heldOutCalc, RACE_Z_SCORE);
+
+        List<CurveFitResult<S, R, T>> live = generateCandidateResults(screenFitter, fields_, screenStart);
+        final int candidateCount = live.size();
+        List<RandomGenerator> liveRands = generateFitStreams(candidateCount);
+
+        for (int round = 0; round < SCREEN_ROUNDS && live.size() > 1; round++)
+        {
+            final boolean[] survived = race.race(extractParams(live));
+            final List<CurveFitResult<S, R, T>> survivors = new ArrayList<>();
+            final List<RandomGenerator> survivorRands = new ArrayList<>();
+
+            for (int i = 0; i < live.size(); i++)
+            {
+                if (survived[i])
+                {
+                    survivors.add(live.get(i));
+                    survivorRands.add(liveRands.get(i));
+                }
+            }
+
+            if (survivors.size() == live.size() && round > 0)
+            {
+                // Nothing more to separate them, further rounds would only cost more evaluations.
+                break;
+            }
+
+            live = survivors;
+            liveRands = survivorRands;
+
+            if (round + 1 < SCREEN_ROUNDS && live.size() > 1)
+            {
+                // Continue each survivor's fit (still cut short) from where the last round left it.
+                final List<CurveFitResult<S, R, T>> refits = runRefits(screenFitter, live, liveRands, screenStart);
+                final List<CurveFitResult<S, R, T>> continued = new ArrayList<>(live.size());
+
+                for (int i = 0; i < live.size(); i++)
+                {
+                    final CurveFitResult<S, R, T> next = live.get(i);
+                    final CurveFitResult<S, R, T> refit = refits.get(i);
+
+                    // A fit that went nowhere comes back without the new curve, keep the previous round's.
+                    if (refit.getFitResult().getInformationCriterion()
+                            < next.getFitResult().getInformationCriterion())
+                    {
+                        continued.add(refit);
+                    }
+                    else
+                    {
+                        continued.add(next);
+                    }
+                }
+
+                live = continued;
+            }
+        }
+
+        final List<CurveFitResult<S, R, T>> fitResults = new ArrayList<>();
+
+        for (final CurveFitResult<S, R, T> calibrated : runRefits(_fitter, live, liveRands, fitResult_))
+        {
+            if (calibrated.getFitResult().getInformationCriterionDiff() < _settings.getAicCutoff())
+            {
+                fitResults.add(calibrated);
+            }
+        }
+
+        final int pruned = candidateCount - live.size();
+        LOG.info("Curve candidate race pruned " + pruned + " of " + candidateCount + " candidates.");
+        _prunedCount.addAndGet(pruned);
+        _raceCount.incrementAndGet();
+        return fitResults;
+    }
+
+    /**
+     * One stream per candidate, handed out in candidate order, for the optimizer of its later fits. If the fits are
+     * not randomized these are all null, and nothing is drawn from the settings.
+     */
+    private List<RandomGenerator> generateFitStreams(final int count_)
+    {
+        final RandomStreams streams = _base.isRandomized() ? _settings.newRandomStreams() : null;
+        final List<RandomGenerator> output = new ArrayList<>(count_);
+
+        for (int i = 0; i < count_; i++)
+        {
+            output.add((null == streams) ? null : streams.nextStream());
+        }
+
+        return output;
+    }
+
+    /**
+     * Refit each candidate's new curve (starting from its current values) on fitter_, against start_. The fits are
+     * run on the settings' executor, in batches no larger than its parallelism, and the results are in candidate
+     * order.
+     */
+    private List<CurveFitResult<S, R, T>> runRefits(final CurveParamsFitter<S, R, T> fitter_,
+                                                    final List<CurveFitResult<S, R, T>> candidates_,
+                                                    final List<RandomGenerator> rands_,
+                                                    final FitResult<S, R, T> start_)
+    {
+        final ItemExecutor executor = _settings.getExecutor();
+        final int batchSize = Math.max(1, executor.getParallelism());
+        final List<CurveFitResult<S, R, T>> output = new ArrayList<>(candidates_.size());
+
+        for (int start = 0; start < candidates_.size(); start += batchSize)
+        {
+            final int end = Math.min(candidates_.size(), start + batchSize);
+            final List<RefitTask> tasks = new ArrayList<>(end - start);
+
+            for (int i = start; i < end; i++)
+            {
+                tasks.add(new RefitTask(fitter_, candidates_.get(i), start_, rands_.get(i)));
+            }
+
+            output.addAll(executor.runAll(tasks));
+        }
+
+        return output;
+    }
+
+    private List<ItemParameters<S, R, T>> extractParams(final List<CurveFitResult<S, R, T>> results_)
+    {
+        final List<ItemParameters<S, R, T>> output = new ArrayList<>(results_.size());
+
+        for (final CurveFitResult<S, R, T> next : results_)
+        {
+            output.add(next.getModelParams());
+        }
+
+        return output;
+    }
+
+    /**
+     * The new curve is the last entry of a candidate's parameters, with its fitted values.
+     */
+    private ItemCurveParams<R, T> extractCurveParams(final CurveFitResult<S, R, T> result_)
+    {
+        final ItemParameters<S, R, T> params = result_.getModelParams();
+        return params.getEntryCurveParams(params.getEntryCount() - 1, true);
+    }
+
+    /**
+     * @return The total number of candidates abandoned by raceCandidateResults so far
+     */
+    public int getPrunedCount()
+    {
+        return _prunedCount.get();
+    }
+
+    /**
+     * @return The number of races run so far, i.e. calls to raceCandidateResults on grids large enough to screen
+     */
+    public int getRaceCount()
+    {
+        return _raceCount.get();
+    }
 
     public CurveFitResult<S, R, T> findBest(final Set<R> fields_, final FitResult<S, R, T> fitResult_)
     {
-        final List<CurveFitResult<S, R, T>> candidates = generateCandidateResults(fields_, fitResult_);
+        final List<CurveFitResult<S, R, T>> candidates;
+
+        if (_settings.getRaceCandidates())
+        {
+            candidates = raceCandidateResults(fields_, fitResult_);
+        }
+        else
+        {
+            candidates = generateCandidateResults(fields_, fitResult_);
+        }
 
         CurveFitResult<S, R, T> bestResult = null;
         double bestImprovement = 0.0;
@@ -491,8 +793,8 @@ public final class CurveFitter<S extends ItemStatus<S>, R extends ItemRegressor<
     private boolean calibrateCurve(final int entryIndex_, final S toStatus_,
                                    final FittingProgressChain<S, R, T> subChain_) throws ConvergenceException
     {
-        CurveFitResult<S, R, T> result = _fitter
-                .calibrateExistingCurve(entryIndex_, toStatus_, subChain_.getLatestResults());
+        CurveFitResult<S, R, T> result = _fitter.calibrateExistingCurve(entryIndex_, toStatus_,
+                subChain_.getLatestResults(), _settings.getRandom());
 
         if (null == result)
         {
@@ -503,4 +805,71 @@ public final class CurveFitter<S extends ItemStatus<S>, R extends ItemRegressor<
         return isBetter;
     }
 
+    private final class RefitTask extends GeneralTask<CurveFitResult<S, R, T>>
+    {
+        private final CurveParamsFitter<S, R, T> _candidateFitter;
+        private final CurveFitResult<S, R, T> _candidate;
+        private final FitResult<S, R, T> _start;
+        private final RandomGenerator _fitRand;
+
+        public RefitTask(final CurveParamsFitter<S, R, T> fitter_, final CurveFitResult<S, R, T> candidate_,
+                         final FitResult<S, R, T> start_, final RandomGenerator fitRand_)
+        {
+            _candidateFitter = fitter_;
+            _candidate = candidate_;
+            _start = start_;
+            _fitRand = fitRand_;
+        }
+
+        @Override
+        protected CurveFitResult<S, R, T> subRun()
+        {
+            return _candidateFitter.doCalibration(extractCurveParams(_candidate), _start.getParams(), _start,
+                    _candidate.getToState(), _fitRand);
+        }
+    }
+
+    private final class CandidateTask extends GeneralTask<List<CurveFitResult<S, R, T>>>
+    {
+        private final CurveParamsFitter<S, R, T> _candidateFitter;
+        private final R _field;
+        private final S _toStatus;
+        private final FitResult<S, R, T> _fitResult;
+        private final RandomGenerator _fitRand;
+
+        private List<CurveParamsFitter.CurveStart<R, T>> _starts;
+
+        public CandidateTask(final CurveParamsFitter<S, R, T> fitter_, final R field_, final S toStatus_,
+                             final FitResult<S, R, T> fitResult_, final RandomGenerator fitRand_)
+        {
+            _candidateFitter = fitter_;
+            _field = field_;
+            _toStatus = toStatus_;
+            _fitResult = fitResult_;
+            _fitRand = fitRand_;
+            _starts = null;
+        }
+
+        /**
+         * Must be called (in candidate order) before the task is run.
+         *
+         * @param rand_ The generator to draw the starting points from
+         */
+        public void drawStarts(final RandomGenerator rand_)
+        {
+            _starts = _candidateFitter.generateCurveStarts(_field, _toStatus, _fitResult, rand_);
+        }
+
+        @Override
+        protected List<CurveFitResult<S, R, T>> subRun()
+        {
+            if (null == _starts)
+            {
+                throw new IllegalStateException("Starting points have not been drawn.");
+            }
+
+            return _candidateFitter.fitCurveStarts(_starts, _toStatus, _fitResult, _fitRand);
+        }
+    }
+
 }
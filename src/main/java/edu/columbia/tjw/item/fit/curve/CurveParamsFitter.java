@@ -27,6 +27,7 @@ import edu.columbia.tjw.item.fit.FitResult;
 import edu.columbia.tjw.item.fit.ParamFittingGrid;
 import edu.columbia.tjw.item.fit.base.BaseFitter;
 import edu.columbia.tjw.item.util.LogUtil;
+import org.apache.commons.math3.random.RandomGenerator;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -62,20 +63,39 @@ public final class CurveParamsFitter<S extends ItemStatus<S>, R extends ItemRegr
 
         for (final R next : grid.getAvailableRegressors())
         {
-            _quantiles.put(next,
-                    QuantileBreakdown.buildApproximation(grid.getRegressorReader(next)));
+            if (settings_.getParallelQuantiles())
+            {
+                _quantiles.put(next, QuantileBreakdown.buildApproximation(grid.getRegressorReader(next),
+                        settings_.getExecutor()));
+            }
+            else
+            {
+                _quantiles.put(next, QuantileBreakdown.buildApproximation(grid.getRegressorReader(next)));
+            }
         }
     }
 
+    /**
+     * Fit the given curve, added to the reduced parameters.
+     *
+     * @param curveParams_ The curve to add, and its starting point
+     * @param reduced_     The parameters without the curve
+     * @param prev_        The result to compare against
+     * @param toStatus_    The transition the curve applies to
+     * @param rand_        The generator owned by this fit, for the optimizer. May be null if the base fitter is
+     *                     not randomized.
+     * @return The result of the fit
+     */
     public CurveFitResult<S, R, T> doCalibration(final ItemCurveParams<R, T> curveParams_,
-                                                 final ItemParameters<S, R, T> reduced_, final FitResult<S, R, T> prev_,
-                                                 final S toStatus_)
+                                                 final ItemParameters<S, R, T> reduced_,
+                                                 final FitResult<S, R, T> prev_, final S toStatus_,
+                                                 final RandomGenerator rand_)
     {
         //First, expand the parameters.
         final ItemParameters<S, R, T> expanded = reduced_.addBeta(curveParams_,
                 toStatus_);
 
-        final FitResult<S, R, T> result = _base.doFit(expanded.generatePacked(), prev_);
+        final FitResult<S, R, T> result = _base.doFit(expanded.generatePacked(), prev_, true, rand_);
         final CurveFitResult<S, R, T> output = new CurveFitResult<>(result, curveParams_, toStatus_,
                 _base.getCalc().getGrid().size());
 
@@ -83,8 +103,18 @@ public final class CurveParamsFitter<S extends ItemStatus<S>, R extends ItemRegr
     }
 
 
+    /**
+     * Refit an existing curve, keeping it only if it still pays for itself.
+     *
+     * @param entryIndex_ The entry holding the curve
+     * @param toStatus_   The transition the curve applies to
+     * @param prevResult_ The current fit, which contains the curve
+     * @param rand_       The generator owned by this fit, for the optimizer. May be null if the base fitter is not
+     *                    randomized.
+     * @return The refit curve, or null if it is no longer significant
+     */
     public CurveFitResult<S, R, T> calibrateExistingCurve(final int entryIndex_, final S toStatus_, final FitResult<S
-            , R, T> prevResult_)
+            , R, T> prevResult_, final RandomGenerator rand_)
     {
         final ItemParameters<S, R, T> params = prevResult_.getParams();
 
@@ -92,7 +122,7 @@ public final class CurveParamsFitter<S extends ItemStatus<S>, R extends ItemRegr
         final ItemCurveParams<R, T> entryParams = params.getEntryCurveParams(entryIndex_);
         final ItemParameters<S, R, T> reduced = params.dropIndex(entryIndex_);
 
-        final CurveFitResult<S, R, T> result = doCalibration(entryParams, reduced, prevResult_, toStatus_);
+        final CurveFitResult<S, R, T> result = doCalibration(entryParams, reduced, prevResult_, toStatus_, rand_);
         final double aicDiff = result.calculateAicDifference();
 
         if (aicDiff > _settings.getAicCutoff())
@@ -106,11 +136,27 @@ public final class CurveParamsFitter<S extends ItemStatus<S>, R extends ItemRegr
         return result;
     }
 
-    public List<CurveFitResult<S, R, T>> calibrateCurveAdditions(R field_, S toStatus_,
-                                                                 final FitResult<S, R, T> prevResult_)
+    /**
+     * Draw the starting points of every admissible curve on field_ for a transition to toStatus_. For each curve
+     * type in turn, this draws its starting parameters and then (if enabled) polishes them, in the same order as
+     * the fits that follow would have drawn them.
+     * <p>
+     * This is the only step of a curve search that draws from rand_, and it is cheap next to the fits. Candidates
+     * that draw their starts one after another, in a fixed order, therefore draw exactly the same numbers whether
+     * their fits are then run one at a time or concurrently.
+     *
+     * @param field_      The regressor for the new curve
+     * @param toStatus_   The transition the curve applies to
+     * @param prevResult_ The current fit
+     * @param rand_       The generator for the starting points and polishing multi-starts
+     * @return The starting points, at most one per curve type
+     */
+    List<CurveStart<R, T>> generateCurveStarts(final R field_, final S toStatus_,
+                                               final FitResult<S, R, T> prevResult_, final RandomGenerator rand_)
     {
         final ItemParameters<S, R, T> params = prevResult_.getParams();
-        final List<CurveFitResult<S, R, T>> fitResults = new ArrayList<>();
+        final ItemCurveFactory<R, T> factory = params.getCurveFamily().getFromOrdinal(0).getFactory();
+        final List<CurveStart<R, T>> starts = new ArrayList<>();
 
         final QuantileStatistics dist = generateDistribution(field_, toStatus_, prevResult_);
 
@@ -129,8 +175,57 @@ public final class CurveParamsFitter<S extends ItemStatus<S>, R extends ItemRegr
                     continue;
                 }
 
-                final CurveFitResult<S, R, T> res = calibrateCurveAddition(curveType, field_, toStatus_
-                        , prevResult_, dist);
+                final ItemCurveParams<R, T> starting = factory.generateStartingParameters(curveType, field_, dist,
+                        rand_);
+                ItemCurveParams<R, T> polished = starting;
+
+                if (_settings.getPolishStartingParams())
+                {
+                    try
+                    {
+                        polished = RawCurveCalibrator.polishCurveParameters(factory, _settings, dist, starting,
+                                rand_);
+                    }
+                    catch (final Exception e)
+                    {
+                        LOG.info("Exception during polish: " + e.toString());
+                    }
+                }
+
+                starts.add(new CurveStart<>(curveType, field_, starting, polished));
+            }
+            catch (final IllegalArgumentException e)
+            {
+                LOG.log(Level.INFO, "Argument trouble (" + field_ + "), moving on to next curve.", e);
+            }
+        }
+
+        return starts;
+    }
+
+    /**
+     * Fit each of the given starting points (and its polished version, keeping the better of the two).
+     * <p>
+     * This draws nothing from the settings, so candidates may run it concurrently, in any order.
+     *
+     * @param starts_     The starting points, from generateCurveStarts
+     * @param toStatus_   The transition the curves apply to
+     * @param prevResult_ The current fit
+     * @param rand_       The generator owned by this candidate, for the optimizer. May be null if the base fitter
+     *                    is not randomized.
+     * @return The admissible results, one per curve type at most
+     */
+    List<CurveFitResult<S, R, T>> fitCurveStarts(final List<CurveStart<R, T>> starts_, final S toStatus_,
+                                                 final FitResult<S, R, T> prevResult_, final RandomGenerator rand_)
+    {
+        final ItemParameters<S, R, T> params = prevResult_.getParams();
+        final List<CurveFitResult<S, R, T>> fitResults = new ArrayList<>();
+
+        for (final CurveStart<R, T> start : starts_)
+        {
+            try
+            {
+                final CurveFitResult<S, R, T> res = calibrateCurveAddition(start, toStatus_, prevResult_, rand_);
 
                 if (params.curveIsForbidden(toStatus_, res.getCurveParams()))
                 {
@@ -147,63 +242,56 @@ public final class CurveParamsFitter<S extends ItemStatus<S>, R extends ItemRegr
             }
             catch (final IllegalArgumentException e)
             {
-                LOG.log(Level.INFO, "Argument trouble (" + field_ + "), moving on to next curve.", e);
+                LOG.log(Level.INFO, "Argument trouble (" + start.getField() + "), moving on to next curve.", e);
             }
         }
 
         return fitResults;
     }
 
-    private CurveFitResult<S, R, T> calibrateCurveAddition(T curveType_, R field_, S toStatus_,
+    private CurveFitResult<S, R, T> calibrateCurveAddition(final CurveStart<R, T> start_, final S toStatus_,
                                                            final FitResult<S, R, T> prevResult_,
-                                                           final QuantileStatistics dist_)
+                                                           final RandomGenerator rand_)
     {
-        LOG.info("\nCalculating Curve[" + curveType_ + ", " + field_ + ", " + toStatus_ + "]");
+        LOG.info("\nCalculating Curve[" + start_.getCurveType() + ", " + start_.getField() + ", " + toStatus_ + "]");
 
         final ItemParameters<S, R, T> params = prevResult_.getParams();
-        final ItemCurveFactory<R, T> factory = params.getCurveFamily().getFromOrdinal(0).getFactory();
-        final ItemCurveParams<R, T> starting = factory.generateStartingParameters(curveType_, field_, dist_,
-                _settings.getRandom());
+        final ItemCurveParams<R, T> starting = start_.getStarting();
+        final ItemCurveParams<R, T> polished = start_.getPolished();
 
-        final CurveFitResult<S, R, T> result = doCalibration(starting, params, prevResult_, toStatus_);
+        final CurveFitResult<S, R, T> result = doCalibration(starting, params, prevResult_, toStatus_, rand_);
 
-        if (_settings.getPolishStartingParams())
+        if (polished != starting)
         {
             try
             {
-                final ItemCurveParams<R, T> polished = RawCurveCalibrator.polishCurveParameters(factory, _settings,
-                        dist_, starting);
-
-                if (polished != starting)
-                {
-                    final CurveFitResult<S, R, T> output2 = doCalibration(polished, params,
-                            prevResult_,
-                            toStatus_);
+                final CurveFitResult<S, R, T> output2 = doCalibration(polished, params,
+                        prevResult_,
+                        toStatus_, rand_);
 
-                    final double aic1 = result.calculateAicDifference();
-                    final double aic2 = output2.calculateAicDifference();
-                    final String resString;
+                final double aic1 = result.calculateAicDifference();
+                final double aic2 = output2.calculateAicDifference();
+                final String resString;
 
-                    if (aic1 > aic2)
-                    {
-                        resString = "BETTER";
-                    }
-                    else if (aic2 > aic1)
-                    {
-                        resString = "WORSE";
-                    }
-                    else
-                    {
-                        resString = "SAME";
-                    }
+                if (aic1 > aic2)
+                {
+                    resString = "BETTER";
+                }
+                else if (aic2 > aic1)
+                {
+                    resString = "WORSE";
+                }
+                else
+                {
+                    resString = "SAME";
+                }
 
-                    LOG.info("Polished params[" + aic1 + " <> " + aic2 + "]: " + resString);
+                LOG.info("Polished params[" + aic1 + " <> " + aic2 + "]: " + resString);
 
-                    if (aic1 > aic2)
-                    {
-                        //If the new results are actually better, return those instead.
-                        return output2;
-                    }
+                if (aic1 > aic2)
+                {
+                    //If the new results are actually better, return those instead.
+                    return output2;
                 }
             }
             catch (final Exception e)
@@ -231,5 +319,45 @@ public final class CurveParamsFitter<S extends ItemStatus<S>, R extends ItemRegr
         return dist;
     }
 
+    /**
+     * The starting point of one curve fit, with its polished version (the same object if polishing is off, or
+     * could not improve on it).
+     */
+    static final class CurveStart<R extends ItemRegressor<R>, T extends ItemCurveType<T>>
+    {
+        private final T _curveType;
+        private final R _field;
+        private final ItemCurveParams<R, T> _starting;
+        private final ItemCurveParams<R, T> _polished;
+
+        CurveStart(final T curveType_, final R field_, final ItemCurveParams<R, T> starting_,
+                   final ItemCurveParams<R, T> polished_)
+        {
+            _curveType = curveType_;
+            _field = field_;
+            _starting = starting_;
+            _polished = polished_;
+        }
+
+        public T getCurveType()
+        {
+            return _curveType;
+        }
+
+        public R getField()
+        {
+            return _field;
+        }
+
+        public ItemCurveParams<R, T> getStarting()
+        {
+            return _starting;
+        }
+
+        public ItemCurveParams<R, T> getPolished()
+        {
+            return _polished;
+        }
+    }
 
 }
@@ -111,6 +111,9 @@ public final class ItemQuantileDistribution<S extends ItemStatus<S>, R extends I
         private final int[] _toStatusOrdinals;
         private final ParamFittingGrid<S, R, T> _grid;
         private final LogLikelihood<S> _likelihood;
+        private final double[] _rowRegs;
+        private double[][] _regBlock;
+        private int _blockCapacity;
 
         public InnerResponseReader(final S toStatus_, final ParamFittingGrid<S, R, T> grid_,
                                    final ItemModel<S, R, T> model_, final LogLikelihood<S> likelihood_)
@@ -119,6 +122,7 @@ public final class ItemQuantileDistribution<S extends ItemStatus<S>, R extends I
             _likelihood = likelihood_;
             _model = model_;
             _probabilities = new double[_model.getStatus().getReachableCount()];
+            _rowRegs = new double[_grid.getRegressorCount()];
 
             final List<S> indi = toStatus_.getIndistinguishable();
             _toStatusOrdinals = new int[indi.size()];
@@ -133,6 +137,38 @@ public final class ItemQuantileDistribution<S extends ItemStatus<S>, R extends I
         public double asDouble(int index_)
         {
             _model.transitionProbability(_grid, index_, _probabilities);
+            return computeRatio(index_);
+        }
+
+        @Override
+        public void read(final int start_, final int length_, final double[] output_)
+        {
+            if (_blockCapacity < length_)
+            {
+                _regBlock = new double[_rowRegs.length][length_];
+                _blockCapacity = length_;
+            }
+
+            _grid.getRegressors(start_, length_, _regBlock);
+
+            for (int i = 0; i < length_; i++)
+            {
+                for (int k = 0; k < _rowRegs.length; k++)
+                {
+                    _rowRegs[k] = _regBlock[k][i];
+                }
+
+                _model.transitionProbability(_rowRegs, _probabilities);
+                output_[i] = computeRatio(start_ + i);
+            }
+        }
+
+        /**
+         * Compute the ratio of actual to predicted for this row, based on the probabilities already in
+         * _probabilities.
+         */
+        private double computeRatio(final int index_)
+        {
             final int statusIndex = _grid.getNextStatus(index_);
 
             double probSum = 0.0;
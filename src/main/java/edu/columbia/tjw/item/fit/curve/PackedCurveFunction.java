@@ -27,9 +27,9 @@ public final class PackedCurveFunction<S extends ItemStatus<S>, R extends ItemRe
                                final S toStatus_, final ItemParameters<S, R, T> initParams_,
                                final ItemFittingGrid<S, R> grid_)
     {
-        super(settings_.getThreadBlockSize(), settings_.getUseThreading());
+        super(settings_.getThreadBlockSize(), settings_.getUseThreading(), settings_.getExecutor());
 
-        _generator = new FitPointGenerator<S, R, T>(grid_);
+        _generator = new FitPointGenerator<S, R, T>(grid_, settings_);
 
         //N.B: We need to rebuild the curve params so that we don't end up with ItemParams where a curve being
         // calibrated is
@@ -21,6 +21,8 @@ package edu.columbia.tjw.item.fit.curve;
 
 import edu.columbia.tjw.item.*;
 import edu.columbia.tjw.item.algo.QuantileStatistics;
+import edu.columbia.tjw.item.fit.metrics.FitListener;
+import edu.columbia.tjw.item.fit.metrics.FitPhase;
 import edu.columbia.tjw.item.util.LogUtil;
 import org.apache.commons.math3.analysis.MultivariateFunction;
 import org.apache.commons.math3.exception.TooManyEvaluationsException;
@@ -47,10 +49,23 @@ public class RawCurveCalibrator<S extends ItemStatus<S>, R extends ItemRegressor
 {
     private static final Logger LOG = LogUtil.getLogger(RawCurveCalibrator.class);
 
+    /**
+     * Polish the starting parameters of a new curve against its (adjusted) response distribution.
+     *
+     * @param factory_  The curve factory
+     * @param settings_ The settings
+     * @param dist_     The distribution to fit against
+     * @param params_   The starting parameters, of depth 1
+     * @param rand_     The generator for the multi-start points, owned by the caller (never the settings' shared one)
+     * @param <S>       The status type
+     * @param <R>       The regressor type
+     * @param <T>       The curve type
+     * @return The polished parameters, or params_ if they could not be improved
+     */
     public static <S extends ItemStatus<S>, R extends ItemRegressor<R>, T extends ItemCurveType<T>> ItemCurveParams<R
             , T> polishCurveParameters(final ItemCurveFactory<R, T> factory_,
                                        final ItemSettings settings_, final QuantileStatistics dist_,
-                                       final ItemCurveParams<R, T> params_)
+                                       final ItemCurveParams<R, T> params_, final RandomGenerator rand_)
     {
         if (params_.getEntryDepth() > 1)
         {
@@ -62,7 +77,7 @@ public class RawCurveCalibrator<S extends ItemStatus<S>, R extends ItemRegressor
 
         final double[] rawParams = params_.generatePoint();
 
-        final RandomVectorGenerator gen = new VectorGenerator(rawParams, settings_.getRandom());
+        final RandomVectorGenerator gen = new VectorGenerator(rawParams, rand_);
 
         final int multiStarts = Math.max(1, settings_.getPolishMultiStartPoints());
 
@@ -72,6 +87,7 @@ public class RawCurveCalibrator<S extends ItemStatus<S>, R extends ItemRegressor
 
         final InitialGuess guess = new InitialGuess(rawParams);
         final double start = polishFunction.value(rawParams);
+        final long startNanos = System.nanoTime();
 
         try
         {
@@ -116,6 +132,15 @@ public class RawCurveCalibrator<S extends ItemStatus<S>, R extends ItemRegressor
         {
             LOG.info("Polish failed, too many evaluations.");
         }
+        finally
+        {
+            final FitListener listener = settings_.getFitListener();
+
+            if (null != listener)
+            {
+                listener.phaseFinished(FitPhase.POLISH, System.nanoTime() - startNanos);
+            }
+        }
 
         return params_;
     }
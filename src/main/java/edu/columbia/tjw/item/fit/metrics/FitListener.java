@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.fit.metrics;
+
+import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
+import edu.columbia.tjw.item.optimize.OptimizerType;
+
+/**
+ * Receives measurements from a running fit, see ItemSettings.getFitListener.
+ * <p>
+ * Every method does nothing by default, so a listener implements only what it needs. The methods are called from
+ * the threads doing the work (often many at once), so implementations must be threadsafe, and should be cheap, since
+ * some (e.g. blockComputed) are called many thousands of times per second. FitMetrics is a ready made implementation.
+ *
+ * @author tyler
+ */
+public interface FitListener
+{
+    /**
+     * A block of rows has been computed.
+     *
+     * @param type_     The kind of computation
+     * @param rowCount_ The number of rows in the block
+     * @param nanos_    The time taken
+     */
+    default void blockComputed(final BlockCalculationType type_, final int rowCount_, final long nanos_)
+    {
+    }
+
+    /**
+     * A batch of block computations is about to be handed to the executor.
+     *
+     * @param taskCount_  The number of tasks in the batch
+     * @param queueDepth_ The number of tasks already waiting on the executor, or -1 if not known
+     */
+    default void tasksSubmitted(final int taskCount_, final long queueDepth_)
+    {
+    }
+
+    /**
+     * An optimizer has finished.
+     *
+     * @param type_            The optimizer used
+     * @param evaluationCount_ The number of evaluations (as counted by the optimizer) it took
+     * @param converged_       True if it converged
+     * @param nanos_           The time taken
+     */
+    default void optimizationFinished(final OptimizerType type_, final int evaluationCount_,
+                                      final boolean converged_, final long nanos_)
+    {
+    }
+
+    /**
+     * A golden section line search has finished.
+     *
+     * @param bracketEvaluations_ The number of evaluations spent finding the initial bracket
+     * @param evaluationCount_    The total number of evaluations, bracketing included
+     * @param nanos_              The time taken
+     */
+    default void lineSearchFinished(final int bracketEvaluations_, final int evaluationCount_, final long nanos_)
+    {
+    }
+
+    /**
+     * A timed phase of the fit has finished.
+     *
+     * @param phase_ The phase
+     * @param nanos_ The time taken
+     */
+    default void phaseFinished(final FitPhase phase_, final long nanos_)
+    {
+    }
+
+    /**
+     * A fit result has been added to a progress chain, and will be held in memory for as long as the chain is.
+     *
+     * @param bytes_ The (approximate) size of the result
+     */
+    default void resultRetained(final long bytes_)
+    {
+    }
+}
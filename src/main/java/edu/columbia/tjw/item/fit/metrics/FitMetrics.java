@@ -0,0 +1,190 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.fit.metrics;
+
+import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
+import edu.columbia.tjw.item.optimize.OptimizerType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the measurements of one or more fits in memory.
+ * <p>
+ * Install this with ItemSettings.Builder.setFitListener, then call snapshot() at any time (e.g. periodically from a
+ * monitoring thread, or after the fit) for a consistent enough view of the totals so far. All the counters are lock
+ * free, so the cost to the fit is a couple of clock reads per block.
+ *
+ * @author tyler
+ */
+public final class FitMetrics implements FitListener
+{
+    private final Map<BlockCalculationType, Counter> _blocks;
+    private final Map<OptimizerType, Counter> _optimizations;
+    private final Map<FitPhase, LatencyHistogram> _phases;
+    private final Counter _lineSearches;
+
+    private final LongAdder _taskSubmissions;
+    private final LongAdder _tasks;
+    private final LongAdder _queueDepthSum;
+    private final LongAccumulator _maxQueueDepth;
+
+    private final LongAdder _retainedResults;
+    private final LongAdder _retainedBytes;
+
+    private final long _startNanos;
+
+    public FitMetrics()
+    {
+        _blocks = new EnumMap<>(BlockCalculationType.class);
+        _optimizations = new EnumMap<>(OptimizerType.class);
+        _phases = new EnumMap<>(FitPhase.class);
+
+        // Fill every entry up front, so the maps are never modified once shared.
+        for (final BlockCalculationType next : BlockCalculationType.values())
+        {
+            _blocks.put(next, new Counter());
+        }
+        for (final OptimizerType next : OptimizerType.values())
+        {
+            _optimizations.put(next, new Counter());
+        }
+        for (final FitPhase next : FitPhase.values())
+        {
+            _phases.put(next, new LatencyHistogram());
+        }
+
+        _lineSearches = new Counter();
+        _taskSubmissions = new LongAdder();
+        _tasks = new LongAdder();
+        _queueDepthSum = new LongAdder();
+        _maxQueueDepth = new LongAccumulator(Math::max, 0L);
+        _retainedResults = new LongAdder();
+        _retainedBytes = new LongAdder();
+        _startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void blockComputed(final BlockCalculationType type_, final int rowCount_, final long nanos_)
+    {
+        _blocks.get(type_).record(rowCount_, 0, nanos_);
+    }
+
+    @Override
+    public void tasksSubmitted(final int taskCount_, final long queueDepth_)
+    {
+        _taskSubmissions.increment();
+        _tasks.add(taskCount_);
+
+        if (queueDepth_ >= 0)
+        {
+            _queueDepthSum.add(queueDepth_);
+            _maxQueueDepth.accumulate(queueDepth_);
+        }
+    }
+
+    @Override
+    public void optimizationFinished(final OptimizerType type_, final int evaluationCount_, final boolean converged_,
+                                     final long nanos_)
+    {
+        _optimizations.get(type_).record(evaluationCount_, converged_ ? 0 : 1, nanos_);
+    }
+
+    @Override
+    public void lineSearchFinished(final int bracketEvaluations_, final int evaluationCount_, final long nanos_)
+    {
+        _lineSearches.record(evaluationCount_, bracketEvaluations_, nanos_);
+    }
+
+    @Override
+    public void phaseFinished(final FitPhase phase_, final long nanos_)
+    {
+        _phases.get(phase_).record(nanos_);
+    }
+
+    @Override
+    public void resultRetained(final long bytes_)
+    {
+        _retainedResults.increment();
+        _retainedBytes.add(bytes_);
+    }
+
+    /**
+     * @return The totals so far
+     */
+    public FitMetricsSnapshot snapshot()
+    {
+        final Map<BlockCalculationType, FitMetricsSnapshot.Entry> blocks = new EnumMap<>(
+                BlockCalculationType.class);
+        final Map<OptimizerType, FitMetricsSnapshot.Entry> optimizations = new EnumMap<>(OptimizerType.class);
+        final Map<FitPhase, LatencyHistogram> phases = new EnumMap<>(FitPhase.class);
+
+        for (final Map.Entry<BlockCalculationType, Counter> next : _blocks.entrySet())
+        {
+            blocks.put(next.getKey(), next.getValue().snapshot());
+        }
+        for (final Map.Entry<OptimizerType, Counter> next : _optimizations.entrySet())
+        {
+            optimizations.put(next.getKey(), next.getValue().snapshot());
+        }
+        for (final Map.Entry<FitPhase, LatencyHistogram> next : _phases.entrySet())
+        {
+            phases.put(next.getKey(), next.getValue().copy());
+        }
+
+        final long submissions = _taskSubmissions.sum();
+        final double meanQueueDepth = (submissions == 0) ? 0.0 : (double) _queueDepthSum.sum() / submissions;
+
+        return new FitMetricsSnapshot(System.nanoTime() - _startNanos, blocks, optimizations, phases,
+                _lineSearches.snapshot(), submissions, _tasks.sum(), meanQueueDepth, _maxQueueDepth.get(),
+                _retainedResults.sum(), _retainedBytes.sum());
+    }
+
+    /**
+     * Counts events, along with two totals (e.g. rows, or evaluations) and their durations.
+     */
+    private static final class Counter
+    {
+        private final LongAdder _amount;
+        private final LongAdder _secondary;
+        private final LatencyHistogram _time;
+
+        private Counter()
+        {
+            _amount = new LongAdder();
+            _secondary = new LongAdder();
+            _time = new LatencyHistogram();
+        }
+
+        private void record(final long amount_, final long secondary_, final long nanos_)
+        {
+            _amount.add(amount_);
+            _secondary.add(secondary_);
+            _time.record(nanos_);
+        }
+
+        private FitMetricsSnapshot.Entry snapshot()
+        {
+            return new FitMetricsSnapshot.Entry(_amount.sum(), _secondary.sum(), _time.copy());
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.fit.metrics;
+
+import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
+import edu.columbia.tjw.item.optimize.OptimizerType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The totals collected by a FitMetrics, as of some point in time.
+ * <p>
+ * Durations are summed over all threads, so with several threads the time attributed to (for instance) block
+ * computations may well exceed the elapsed time. The throughput figures are per elapsed second, i.e. for the whole
+ * process.
+ *
+ * @author tyler
+ */
+public final class FitMetricsSnapshot
+{
+    private static final double NANOS_PER_SECOND = 1.0e9;
+    private static final double NANOS_PER_MILLI = 1.0e6;
+
+    private final long _elapsedNanos;
+    private final Map<BlockCalculationType, Entry> _blocks;
+    private final Map<OptimizerType, Entry> _optimizations;
+    private final Map<FitPhase, LatencyHistogram> _phases;
+    private final Entry _lineSearches;
+    private final long _taskSubmissions;
+    private final long _taskCount;
+    private final double _meanQueueDepth;
+    private final long _maxQueueDepth;
+    private final long _retainedResults;
+    private final long _retainedBytes;
+
+    FitMetricsSnapshot(final long elapsedNanos_, final Map<BlockCalculationType, Entry> blocks_,
+                       final Map<OptimizerType, Entry> optimizations_, final Map<FitPhase, LatencyHistogram> phases_,
+                       final Entry lineSearches_, final long taskSubmissions_, final long taskCount_,
+                       final double meanQueueDepth_, final long maxQueueDepth_, final long retainedResults_,
+                       final long retainedBytes_)
+    {
+        _elapsedNanos = elapsedNanos_;
+        _blocks = Collections.unmodifiableMap(new EnumMap<>(blocks_));
+        _optimizations = Collections.unmodifiableMap(new EnumMap<>(optimizations_));
+        _phases = Collections.unmodifiableMap(new EnumMap<>(phases_));
+        _lineSearches = lineSearches_;
+        _taskSubmissions = taskSubmissions_;
+        _taskCount = taskCount_;
+        _meanQueueDepth = meanQueueDepth_;
+        _maxQueueDepth = maxQueueDepth_;
+        _retainedResults = retainedResults_;
+        _retainedBytes = retainedBytes_;
+    }
+
+    /**
+     * @return The time since the FitMetrics was created
+     */
+    public long getElapsedNanos()
+    {
+        return _elapsedNanos;
+    }
+
+    public long getBlockCount(final BlockCalculationType type_)
+    {
+        return _blocks.get(type_).getTime().getCount();
+    }
+
+    public long getBlockRows(final BlockCalculationType type_)
+    {
+        return _blocks.get(type_).getAmount();
+    }
+
+    public LatencyHistogram getBlockTime(final BlockCalculationType type_)
+    {
+        return _blocks.get(type_).getTime();
+    }
+
+    /**
+     * @param type_ The kind of computation
+     * @return The rows computed per elapsed second
+     */
+    public double getRowsPerSecond(final BlockCalculationType type_)
+    {
+        return perSecond(getBlockRows(type_), _elapsedNanos);
+    }
+
+    /**
+     * @param type_ The kind of computation
+     * @return The rows computed per second of time actually spent computing them, i.e. per thread
+     */
+    public double getRowsPerBusySecond(final BlockCalculationType type_)
+    {
+        return perSecond(getBlockRows(type_), getBlockTime(type_).getTotalNanos());
+    }
+
+    public long getOptimizationCount(final OptimizerType type_)
+    {
+        return _optimizations.get(type_).getTime().getCount();
+    }
+
+    public long getOptimizerEvaluations(final OptimizerType type_)
+    {
+        return _optimizations.get(type_).getAmount();
+    }
+
+    public long getUnconvergedCount(final OptimizerType type_)
+    {
+        return _optimizations.get(type_).getSecondary();
+    }
+
+    public LatencyHistogram getOptimizationTime(final OptimizerType type_)
+    {
+        return _optimizations.get(type_).getTime();
+    }
+
+    public long getLineSearchCount()
+    {
+        return _lineSearches.getTime().getCount();
+    }
+
+    public long getLineSearchEvaluations()
+    {
+        return _lineSearches.getAmount();
+    }
+
+    /**
+     * @return The total number of evaluations spent bracketing, over all the line searches
+     */
+    public long getBracketEvaluations()
+    {
+        return _lineSearches.getSecondary();
+    }
+
+    public LatencyHistogram getLineSearchTime()
+    {
+        return _lineSearches.getTime();
+    }
+
+    public LatencyHistogram getPhaseTime(final FitPhase phase_)
+    {
+        return _phases.get(phase_);
+    }
+
+    /**
+     * @return The number of batches of block computations handed to the executor
+     */
+    public long getTaskSubmissions()
+    {
+        return _taskSubmissions;
+    }
+
+    public long getTaskCount()
+    {
+        return _taskCount;
+    }
+
+    /**
+     * @return The mean number of tasks already waiting on the executor, as each batch was submitted
+     */
+    public double getMeanQueueDepth()
+    {
+        return _meanQueueDepth;
+    }
+
+    public long getMaxQueueDepth()
+    {
+        return _maxQueueDepth;
+    }
+
+    public long getRetainedResults()
+    {
+        return _retainedResults;
+    }
+
+    /**
+     * @return The approximate memory held by the results on progress chains (results shared between chains are
+     * counted once per chain)
+     */
+    public long getRetainedBytes()
+    {
+        return _retainedBytes;
+    }
+
+    private static double perSecond(final long amount_, final long nanos_)
+    {
+        if (nanos_ <= 0)
+        {
+            return 0.0;
+        }
+
+        return amount_ * NANOS_PER_SECOND / nanos_;
+    }
+
+    private static String formatTime(final LatencyHistogram time_)
+    {
+        return String.format("count=%d, total=%.1fms, mean=%.3fms, p50<=%.3fms, p99<=%.3fms, max=%.3fms",
+                time_.getCount(), time_.getTotalNanos() / NANOS_PER_MILLI, time_.getMeanNanos() / NANOS_PER_MILLI,
+                time_.getPercentileNanos(0.5) / NANOS_PER_MILLI, time_.getPercentileNanos(0.99) / NANOS_PER_MILLI,
+                time_.getMaxNanos() / NANOS_PER_MILLI);
+    }
+
+    /**
+     * @return A human readable report of these metrics
+     */
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder();
+
+        builder.append(String.format("FitMetrics [elapsed=%.1fms]%n", _elapsedNanos / NANOS_PER_MILLI));
+
+        for (final BlockCalculationType type : BlockCalculationType.values())
+        {
+            if (getBlockCount(type) == 0)
+            {
+                continue;
+            }
+
+            builder.append(String.format("  blocks[%s]: rows=%d, rows/s=%.0f, rows/busy s=%.0f, %s%n", type,
+                    getBlockRows(type), getRowsPerSecond(type), getRowsPerBusySecond(type),
+                    formatTime(getBlockTime(type))));
+        }
+
+        for (final OptimizerType type : OptimizerType.values())
+        {
+            if (getOptimizationCount(type) == 0)
+            {
+                continue;
+            }
+
+            builder.append(String.format("  optimizer[%s]: evaluations=%d, unconverged=%d, %s%n", type,
+                    getOptimizerEvaluations(type), getUnconvergedCount(type), formatTime(getOptimizationTime(type))));
+        }
+
+        if (getLineSearchCount() > 0)
+        {
+            builder.append(String.format("  line search: evaluations=%d, bracketing=%d, %s%n",
+                    getLineSearchEvaluations(), getBracketEvaluations(), formatTime(getLineSearchTime())));
+        }
+
+        for (final FitPhase phase : FitPhase.values())
+        {
+            if (getPhaseTime(phase).getCount() == 0)
+            {
+                continue;
+            }
+
+            builder.append(String.format("  phase[%s]: %s%n", phase, formatTime(getPhaseTime(phase))));
+        }
+
+        builder.append(String.format("  executor: batches=%d, tasks=%d, mean queue=%.1f, max queue=%d%n",
+                _taskSubmissions, _taskCount, _meanQueueDepth, _maxQueueDepth));
+        builder.append(String.format("  retained results: count=%d, bytes=%d", _retainedResults, _retainedBytes));
+
+        return builder.toString();
+    }
+
+    /**
+     * The totals of one kind of event.
+     */
+    static final class Entry
+    {
+        private final long _amount;
+        private final long _secondary;
+        private final LatencyHistogram _time;
+
+        Entry(final long amount_, final long secondary_, final LatencyHistogram time_)
+        {
+            _amount = amount_;
+            _secondary = secondary_;
+            _time = time_;
+        }
+
+        long getAmount()
+        {
+            return _amount;
+        }
+
+        long getSecondary()
+        {
+            return _secondary;
+        }
+
+        LatencyHistogram getTime()
+        {
+            return _time;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.fit.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations, in power of two buckets.
+ * <p>
+ * Recording is lock free, so this may be updated from many threads at once. The percentiles are accurate to within
+ * a factor of two, which is plenty for telling where the time goes.
+ *
+ * @author tyler
+ */
+public final class LatencyHistogram
+{
+    private static final int BUCKET_COUNT = Long.SIZE;
+
+    private final AtomicLongArray _buckets;
+    private final LongAdder _count;
+    private final LongAdder _totalNanos;
+    private final LongAccumulator _maxNanos;
+
+    public LatencyHistogram()
+    {
+        _buckets = new AtomicLongArray(BUCKET_COUNT);
+        _count = new LongAdder();
+        _totalNanos = new LongAdder();
+        _maxNanos = new LongAccumulator(Math::max, 0L);
+    }
+
+    /**
+     * @param nanos_ The duration to record, negative values are treated as zero
+     */
+    public void record(final long nanos_)
+    {
+        final long nanos = Math.max(0L, nanos_);
+
+        // Bucket i holds [2^(i-1), 2^i), bucket zero holds zero.
+        _buckets.incrementAndGet(BUCKET_COUNT - Long.numberOfLeadingZeros(nanos));
+        _count.increment();
+        _totalNanos.add(nanos);
+        _maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * @return A copy of this histogram, unaffected by later updates
+     */
+    public LatencyHistogram copy()
+    {
+        final LatencyHistogram output = new LatencyHistogram();
+
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            output._buckets.set(i, _buckets.get(i));
+        }
+
+        output._count.add(_count.sum());
+        output._totalNanos.add(_totalNanos.sum());
+        output._maxNanos.accumulate(_maxNanos.get());
+        return output;
+    }
+
+    public long getCount()
+    {
+        return _count.sum();
+    }
+
+    public long getTotalNanos()
+    {
+        return _totalNanos.sum();
+    }
+
+    public long getMaxNanos()
+    {
+        return _maxNanos.get();
+    }
+
+    public double getMeanNanos()
+    {
+        final long count = getCount();
+
+        if (count == 0)
+        {
+            return 0.0;
+        }
+
+        return (double) getTotalNanos() / count;
+    }
+
+    /**
+     * @param quantile_ The quantile, in [0, 1]
+     * @return An upper bound (within a factor of two) on the given quantile of the recorded durations
+     */
+    public long getPercentileNanos(final double quantile_)
+    {
+        if (!(quantile_ >= 0.0 && quantile_ <= 1.0))
+        {
+            throw new IllegalArgumentException("Quantile must be in [0, 1]: " + quantile_);
+        }
+
+        long total = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            total += _buckets.get(i);
+        }
+
+        if (total == 0)
+        {
+            return 0L;
+        }
+
+        final long target = Math.max(1L, (long) Math.ceil(quantile_ * total));
+        long cumulative = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            cumulative += _buckets.get(i);
+
+            if (cumulative >= target)
+            {
+                final long upper = (i == 0) ? 0L : (i >= BUCKET_COUNT - 1) ? Long.MAX_VALUE : (1L << i) - 1;
+                return Math.min(upper, getMaxNanos());
+            }
+        }
+
+        return getMaxNanos();
+    }
+}
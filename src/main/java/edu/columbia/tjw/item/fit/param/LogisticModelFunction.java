@@ -47,11 +47,11 @@ public class LogisticModelFunction<S extends ItemStatus<S>, R extends ItemRegres
             final ItemParameters<S, R, T> params_, final ItemFittingGrid<S, R> grid_,
             final ItemModel<S, R, T> model_, ItemSettings settings_, final PackedParameters<S, R, T> packed_)
     {
-        super(settings_.getThreadBlockSize(), settings_.getUseThreading());
+        super(settings_.getThreadBlockSize(), settings_.getUseThreading(), settings_.getExecutor());
 
         final ParamFittingGrid<S, R, T> grid = new ParamFittingGrid<>(params_, grid_);
 
-        _generator = new FitPointGenerator<>(grid_);
+        _generator = new FitPointGenerator<>(grid_, settings_);
         _grid = grid;
         _packed = packed_;
     }
@@ -23,6 +23,7 @@ import edu.columbia.tjw.item.ItemSettings;
 import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
 import edu.columbia.tjw.item.fit.calculator.FitPoint;
 import edu.columbia.tjw.item.fit.calculator.FitPointAnalyzer;
+import edu.columbia.tjw.item.fit.metrics.FitListener;
 import edu.columbia.tjw.item.util.LogUtil;
 
 import java.util.logging.Logger;
@@ -46,6 +47,7 @@ public final class GoldenSectionOptimizer
     private final int _maxEvalCount;
 
     private final FitPointAnalyzer _comparator;
+    private final FitListener _listener;
 
     public GoldenSectionOptimizer(final double xTol_, final double yTol_, final int blockSize_, int maxEvalCount_,
                                   final OptimizationTarget target_, ItemSettings settings_)
@@ -57,11 +59,15 @@ public final class GoldenSectionOptimizer
         _stdDevThreshold = settings_.getZScoreCutoff();
 
         _comparator = new FitPointAnalyzer(_blockSize, target_, settings_);
+        _listener = settings_.getFitListener();
     }
 
     public OptimizationResult optimize(final UnivariateOptimizationFunction f_)
             throws ConvergenceException
     {
+        final long start = System.nanoTime();
+        final int startCount = f_.getEvaluationCount();
+
         final FitPoint pointA = f_.evaluate(-1.0);
         final FitPoint pointB = f_.evaluate(0.0);
         final FitPoint pointC = f_.evaluate(1.0);
@@ -69,8 +75,10 @@ public final class GoldenSectionOptimizer
         final Bracket b1 = new Bracket(-1.0, 0.0, 1.0, pointA, pointB, pointC);
 
         final Bracket bracket = this.bracket(f_, b1);
+        final int bracketCount = f_.getEvaluationCount();
 
         final OptimizationResult result = this.optimize(f_, bracket);
+        report(f_, start, startCount, bracketCount);
         return result;
     }
 
@@ -96,6 +104,9 @@ public final class GoldenSectionOptimizer
             return optimize(f_);
         }
 
+        final long start = System.nanoTime();
+        final int startCount = f_.getEvaluationCount();
+
         //vector from a -> b.
         final double direction = (b_ - a_);
 
@@ -114,7 +125,23 @@ public final class GoldenSectionOptimizer
         }
 
         final Bracket bracket = this.bracket(f_, b1);
-        return this.optimize(f_, bracket);
+        final int bracketCount = f_.getEvaluationCount();
+
+        final OptimizationResult result = this.optimize(f_, bracket);
+        report(f_, start, startCount, bracketCount);
+        return result;
+    }
+
+    private void report(final UnivariateOptimizationFunction f_, final long start_, final int startCount_,
+                        final int bracketCount_)
+    {
+        if (null == _listener)
+        {
+            return;
+        }
+
+        _listener.lineSearchFinished(bracketCount_ - startCount_, f_.getEvaluationCount() - startCount_,
+                System.nanoTime() - start_);
     }
 
 
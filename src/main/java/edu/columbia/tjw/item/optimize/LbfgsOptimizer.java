@@ -0,0 +1,429 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.optimize;
+
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.algo.DoubleVector;
+import edu.columbia.tjw.item.algo.VectorTools;
+import edu.columbia.tjw.item.fit.calculator.FitPoint;
+import edu.columbia.tjw.item.fit.calculator.FitPointAnalyzer;
+import edu.columbia.tjw.item.util.LogUtil;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+/**
+ * A limited memory BFGS optimizer, with a (strong) Wolfe line search.
+ * <p>
+ * The search directions come from the last few gradient differences, so this needs far fewer passes over the data
+ * than steepest descent when there are many (possibly poorly scaled) parameters, such as curve fits.
+ * <p>
+ * The evaluation count is in full passes over the data, each trial point costs at most one value pass and one
+ * gradient pass. Before a trial point's gradient is computed, it is compared to the current point block by block
+ * (see FitPointAnalyzer.compare), and a point that is clearly worse is rejected after only a prefix of the blocks.
+ *
+ * @author tyler
+ */
+public class LbfgsOptimizer extends Optimizer<MultivariateDifferentiableFunction>
+{
+    private static final Logger LOG = LogUtil.getLogger(LbfgsOptimizer.class);
+
+    private static final int HISTORY_SIZE = 10;
+    private static final int MAX_LINE_SEARCH = 20;
+
+    // The usual Wolfe constants for quasi-Newton methods, see Nocedal & Wright.
+    private static final double WOLFE_C1 = 1.0e-4;
+    private static final double WOLFE_C2 = 0.9;
+
+    private final double _zTolerance;
+
+    public LbfgsOptimizer(final int blockSize_, final int maxEvalCount_, final OptimizationTarget target_,
+                          final ItemSettings settings_)
+    {
+        super(blockSize_, maxEvalCount_, target_, settings_);
+        _zTolerance = settings_.getZScoreCutoff();
+    }
+
+    @Override
+    public OptimizationResult optimize(final MultivariateDifferentiableFunction f_, final DoubleVector startingPoint_,
+                                       final DoubleVector direction_) throws ConvergenceException
+    {
+        // The first step is along the gradient anyway.
+        return optimize(f_, startingPoint_);
+    }
+
+    public OptimizationResult optimize(final MultivariateDifferentiableFunction f_,
+                                       final DoubleVector startingPoint_) throws ConvergenceException
+    {
+        final FitPointAnalyzer comparator = this.getComparator();
+        final Deque<Correction> history = new ArrayDeque<>(HISTORY_SIZE);
+
+        Trial current = new Trial(0.0, startingPoint_, f_.evaluateGradient(startingPoint_));
+        current.computeGradient(comparator);
+
+        int evaluationCount = 1;
+        boolean converged = false;
+
+        while (evaluationCount < this.getMaxEvalCount())
+        {
+            final DoubleVector gradient = current._gradient;
+
+            if (VectorTools.maxAbsElement(gradient) < 1.0e-12)
+            {
+                converged = true;
+                break;
+            }
+
+            final DoubleVector direction = computeDirection(gradient, history);
+            final double slope = VectorTools.dot(gradient, direction);
+
+            final double initialStep;
+
+            if (history.isEmpty())
+            {
+                // No curvature information yet, so keep the first step to unit length.
+                initialStep = Math.min(1.0, 1.0 / VectorTools.magnitude(direction));
+            }
+            else
+            {
+                initialStep = 1.0;
+            }
+
+            final LineSearch search = new LineSearch(f_, current, direction, slope);
+            final Trial next = search.run(initialStep);
+            evaluationCount += search._evaluationCount;
+
+            if (null == next)
+            {
+                if (history.isEmpty())
+                {
+                    LOG.info("Line search failed, unable to make progress.");
+                    break;
+                }
+
+                // The curvature estimate may be stale, start over from steepest descent.
+                LOG.info("Line search failed, resetting history.");
+                history.clear();
+                continue;
+            }
+
+            final FitPointAnalyzer.FitPointComparison comparison = comparator.generateComparision(
+                    current._point, next._point);
+
+            final DoubleVector s = VectorTools.subtract(next._x, current._x).collapse();
+            final DoubleVector y = VectorTools.subtract(next._gradient, gradient).collapse();
+            final double sy = VectorTools.dot(s, y);
+
+            // Only keep corrections that preserve positive definiteness.
+            if (sy > 1.0e-12 * VectorTools.magnitude(s) * VectorTools.magnitude(y))
+            {
+                if (history.size() >= HISTORY_SIZE)
+                {
+                    history.removeFirst();
+                }
+
+                history.addLast(new Correction(s, y, sy));
+            }
+
+            final boolean xConverged = this.checkXTolerance(current._x, next._x);
+            current = next;
+
+            if (comparison.getZScore() <= _zTolerance)
+            {
+                LOG.info("Unable to make progress.");
+                converged = true;
+                break;
+            }
+
+            if (comparison.getRelativeError() < this.getYTolerance() || xConverged)
+            {
+                converged = true;
+                break;
+            }
+        }
+
+        LOG.info("L-BFGS finished after " + evaluationCount + " passes, converged: " + converged);
+        return new MultivariateOptimizationResult(current._point, converged, evaluationCount);
+    }
+
+    /**
+     * The standard two loop recursion, computes -H * gradient for the implied inverse hessian H.
+     */
+    private static DoubleVector computeDirection(final DoubleVector gradient_, final Deque<Correction> history_)
+    {
+        final double[] q = gradient_.copyOfUnderlying();
+
+        if (history_.isEmpty())
+        {
+            for (int i = 0; i < q.length; i++)
+            {
+                q[i] = -q[i];
+            }
+
+            return DoubleVector.of(q, false);
+        }
+
+        final double[] alpha = new double[history_.size()];
+        int index = history_.size() - 1;
+
+        for (final Iterator<Correction> iter = history_.descendingIterator(); iter.hasNext(); index--)
+        {
+            final Correction next = iter.next();
+            alpha[index] = next._rho * dot(next._s, q);
+            axpy(q, next._y, -alpha[index]);
+        }
+
+        // Scale by the most recent curvature estimate.
+        final Correction last = history_.getLast();
+        final double gamma = last._sy / VectorTools.dot(last._y, last._y);
+
+        for (int i = 0; i < q.length; i++)
+        {
+            q[i] *= gamma;
+        }
+
+        index = 0;
+
+        for (final Correction next : history_)
+        {
+            final double beta = next._rho * dot(next._y, q);
+            axpy(q, next._s, alpha[index] - beta);
+            index++;
+        }
+
+        for (int i = 0; i < q.length; i++)
+        {
+            q[i] = -q[i];
+        }
+
+        return DoubleVector.of(q, false);
+    }
+
+    private static double dot(final DoubleVector a_, final double[] b_)
+    {
+        double sum = 0.0;
+
+        for (int i = 0; i < b_.length; i++)
+        {
+            sum += a_.getEntry(i) * b_[i];
+        }
+
+        return sum;
+    }
+
+    private static void axpy(final double[] target_, final DoubleVector x_, final double scale_)
+    {
+        for (int i = 0; i < target_.length; i++)
+        {
+            target_[i] += scale_ * x_.getEntry(i);
+        }
+    }
+
+    /**
+     * Finds a step satisfying the strong Wolfe conditions, Nocedal & Wright algorithms 3.5 and 3.6, with bisection
+     * for the zoom phase.
+     */
+    private final class LineSearch
+    {
+        private final MultivariateDifferentiableFunction _f;
+        private final Trial _start;
+        private final DoubleVector _direction;
+        private final double _slope;
+        private int _evaluationCount;
+
+        private LineSearch(final MultivariateDifferentiableFunction f_, final Trial start_,
+                           final DoubleVector direction_, final double slope_)
+        {
+            _f = f_;
+            _start = start_;
+            _direction = direction_;
+            _slope = slope_;
+        }
+
+        private Trial run(final double initialStep_)
+        {
+            if (!(_slope < 0.0))
+            {
+                return null;
+            }
+
+            Trial prev = _start;
+            double step = initialStep_;
+
+            for (int i = 0; i < MAX_LINE_SEARCH; i++)
+            {
+                final Trial trial = evaluate(step);
+
+                if (!sufficientDecrease(trial) || (i > 0 && trial._objective >= prev._objective))
+                {
+                    return zoom(prev, step);
+                }
+
+                final double slope = directionalDerivative(trial);
+
+                if (Math.abs(slope) <= -WOLFE_C2 * _slope)
+                {
+                    return trial;
+                }
+                if (slope >= 0.0)
+                {
+                    return zoom(trial, prev._step);
+                }
+
+                prev = trial;
+                step *= 2.0;
+            }
+
+            return acceptable(prev);
+        }
+
+        /**
+         * lo_ satisfies sufficient decrease, and the interval between lo_ and hi_ contains a Wolfe point.
+         */
+        private Trial zoom(Trial lo_, double hi_)
+        {
+            for (int i = 0; i < MAX_LINE_SEARCH; i++)
+            {
+                final double step = 0.5 * (lo_._step + hi_);
+                final Trial trial = evaluate(step);
+
+                if (!sufficientDecrease(trial) || trial._objective >= lo_._objective)
+                {
+                    hi_ = step;
+                    continue;
+                }
+
+                final double slope = directionalDerivative(trial);
+
+                if (Math.abs(slope) <= -WOLFE_C2 * _slope)
+                {
+                    return trial;
+                }
+                if (slope * (hi_ - lo_._step) >= 0.0)
+                {
+                    hi_ = lo_._step;
+                }
+
+                lo_ = trial;
+            }
+
+            return acceptable(lo_);
+        }
+
+        /**
+         * Out of iterations, take the best point so far if it improved on the start at all.
+         */
+        private Trial acceptable(final Trial best_)
+        {
+            if (best_ == _start)
+            {
+                return null;
+            }
+
+            if (null == best_._gradient)
+            {
+                best_.computeGradient(getComparator());
+                _evaluationCount++;
+            }
+
+            return best_;
+        }
+
+        private Trial evaluate(final double step_)
+        {
+            final DoubleVector x = VectorTools.multiplyAccumulate(_start._x, _direction, step_).collapse();
+            final Trial trial = new Trial(step_, x, _f.evaluateGradient(x));
+            _evaluationCount++;
+
+            // Compare block by block, stopping early if the difference is clear.
+            final FitPointAnalyzer.FitPointComparison comparison = getComparator().generateComparision(
+                    _start._point, trial._point);
+
+            if (comparison.getZScore() <= -getComparator().getSigmaTarget())
+            {
+                // Clearly worse than the start, no need to look at the rest of the data.
+                trial._objective = Double.POSITIVE_INFINITY;
+            }
+            else
+            {
+                trial._objective = getComparator().computeObjective(trial._point, trial._point.getBlockCount());
+            }
+
+            return trial;
+        }
+
+        private boolean sufficientDecrease(final Trial trial_)
+        {
+            return trial_._objective <= _start._objective + WOLFE_C1 * trial_._step * _slope;
+        }
+
+        private double directionalDerivative(final Trial trial_)
+        {
+            trial_.computeGradient(getComparator());
+            _evaluationCount++;
+            return VectorTools.dot(trial_._gradient, _direction);
+        }
+    }
+
+    private static final class Trial
+    {
+        private final double _step;
+        private final DoubleVector _x;
+        private final FitPoint _point;
+        private double _objective;
+        private DoubleVector _gradient;
+
+        private Trial(final double step_, final DoubleVector x_, final FitPoint point_)
+        {
+            _step = step_;
+            _x = x_;
+            _point = point_;
+            _objective = Double.NaN;
+        }
+
+        private void computeGradient(final FitPointAnalyzer comparator_)
+        {
+            _gradient = comparator_.getDerivative(_point).collapse();
+
+            if (Double.isNaN(_objective))
+            {
+                _objective = comparator_.computeObjective(_point, _point.getBlockCount());
+            }
+        }
+    }
+
+    private static final class Correction
+    {
+        private final DoubleVector _s;
+        private final DoubleVector _y;
+        private final double _sy;
+        private final double _rho;
+
+        private Correction(final DoubleVector s_, final DoubleVector y_, final double sy_)
+        {
+            _s = s_;
+            _y = y_;
+            _sy = sy_;
+            _rho = 1.0 / sy_;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.optimize;
+
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.algo.DoubleMatrix;
+import edu.columbia.tjw.item.algo.DoubleVector;
+import edu.columbia.tjw.item.algo.MatrixTools;
+import edu.columbia.tjw.item.algo.VectorTools;
+import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
+import edu.columbia.tjw.item.fit.calculator.BlockResult;
+import edu.columbia.tjw.item.fit.calculator.FitPoint;
+import edu.columbia.tjw.item.fit.calculator.FitPointAnalyzer;
+import edu.columbia.tjw.item.util.LogUtil;
+
+import java.util.logging.Logger;
+
+/**
+ * A Newton (i.e. IRLS) optimizer, using the exact second derivative computed by the block calculators.
+ * <p>
+ * For a fit where only betas are free, the entropy is a convex function of the parameters, so full Newton steps
+ * converge in a handful of passes over the data. Each step solves the Newton system with a Cholesky decomposition,
+ * adding a ridge to the diagonal if the second derivative is not (numerically) positive definite. The step is then
+ * safeguarded with a backtracking (Armijo) line search, so that the objective never increases.
+ * <p>
+ * N.B: This supports only the ENTROPY and L2 targets, the ICE objectives do not have a usable second derivative.
+ *
+ * @author tyler
+ */
+public class NewtonOptimizer extends Optimizer<MultivariateDifferentiableFunction>
+{
+    private static final Logger LOG = LogUtil.getLogger(NewtonOptimizer.class);
+
+    // Sufficient decrease, as a fraction of the decrease predicted by the gradient.
+    private static final double ARMIJO_FRACTION = 1.0e-4;
+    private static final int MAX_BACKTRACK = 20;
+    private static final int MAX_RIDGE_ATTEMPTS = 20;
+    private static final double MIN_RIDGE = 1.0e-10;
+
+    private final OptimizationTarget _target;
+    private final double _l2Lambda;
+
+    public NewtonOptimizer(final int blockSize_, final int maxEvalCount_, final OptimizationTarget target_,
+                           final ItemSettings settings_)
+    {
+        super(blockSize_, maxEvalCount_, target_, settings_);
+
+        if (!isSupported(target_))
+        {
+            throw new IllegalArgumentException("Unsupported target: " + target_);
+        }
+
+        _target = target_;
+        _l2Lambda = settings_.getL2Lambda();
+    }
+
+    /**
+     * @param target_ The optimization target
+     * @return True if this optimizer can be used for the given target
+     */
+    public static boolean isSupported(final OptimizationTarget target_)
+    {
+        return target_ == OptimizationTarget.ENTROPY || target_ == OptimizationTarget.L2;
+    }
+
+    @Override
+    public OptimizationResult optimize(final MultivariateDifferentiableFunction f_, final DoubleVector startingPoint_,
+                                       final DoubleVector direction_) throws ConvergenceException
+    {
+        // Newton steps choose their own direction.
+        return optimize(f_, startingPoint_);
+    }
+
+    public OptimizationResult optimize(final MultivariateDifferentiableFunction f_,
+                                       final DoubleVector startingPoint_) throws ConvergenceException
+    {
+        final FitPointAnalyzer comparator = this.getComparator();
+        final int maxEvalCount = this.getMaxEvalCount();
+
+        DoubleVector currentPoint = startingPoint_;
+        FitPoint currentResult = f_.evaluateGradient(currentPoint);
+        double currentObjective = computeObjective(currentResult);
+        int evaluationCount = 1;
+        boolean converged = false;
+
+        while (evaluationCount < maxEvalCount)
+        {
+            currentResult.computeAll(BlockCalculationType.SECOND_DERIVATIVE);
+            evaluationCount++;
+
+            final BlockResult aggregated = currentResult.getAggregated(BlockCalculationType.SECOND_DERIVATIVE);
+            final DoubleVector gradient = comparator.getDerivative(currentResult);
+            final DoubleVector step = computeStep(aggregated.getSecondDerivative(), gradient);
+            final double slope = VectorTools.dot(gradient, step);
+
+            if (!(slope < 0.0))
+            {
+                LOG.info("No descent direction, Newton search done.");
+                converged = true;
+                break;
+            }
+
+            // The Newton decrement, half of this is the predicted improvement.
+            if (-0.5 * slope < this.getYTolerance() * Math.abs(currentObjective))
+            {
+                converged = true;
+                break;
+            }
+
+            double scale = 1.0;
+            DoubleVector nextPoint = null;
+            FitPoint nextResult = null;
+            double nextObjective = Double.NaN;
+
+            for (int i = 0; i < MAX_BACKTRACK && evaluationCount < maxEvalCount; i++)
+            {
+                final DoubleVector trialPoint = VectorTools.multiplyAccumulate(currentPoint, step, scale).collapse();
+                final FitPoint trialResult = f_.evaluateGradient(trialPoint);
+                final double trialObjective = computeObjective(trialResult);
+                evaluationCount++;
+
+                if (trialObjective <= currentObjective + ARMIJO_FRACTION * scale * slope)
+                {
+                    nextPoint = trialPoint;
+                    nextResult = trialResult;
+                    nextObjective = trialObjective;
+                    break;
+                }
+
+                scale *= 0.5;
+            }
+
+            if (null == nextResult)
+            {
+                LOG.info("Unable to make progress.");
+                break;
+            }
+
+            final double relativeChange = Math.abs(currentObjective - nextObjective)
+                    / (Math.abs(currentObjective) + Math.abs(nextObjective));
+            final boolean xConverged = this.checkXTolerance(currentPoint, nextPoint);
+
+            currentPoint = nextPoint;
+            currentResult = nextResult;
+            currentObjective = nextObjective;
+
+            if (relativeChange < this.getYTolerance() || xConverged)
+            {
+                converged = true;
+                break;
+            }
+        }
+
+        return new MultivariateOptimizationResult(currentResult, converged, evaluationCount);
+    }
+
+    private double computeObjective(final FitPoint point_)
+    {
+        return this.getComparator().computeObjective(point_, point_.getBlockCount());
+    }
+
+    /**
+     * Solve H * step = -gradient. If H is not positive definite (e.g. a regressor with no variance), a ridge is
+     * added to its diagonal until it is. Falls back to steepest descent if even that fails.
+     */
+    private DoubleVector computeStep(final DoubleMatrix secondDerivative_, final DoubleVector gradient_)
+    {
+        final DoubleVector negGradient = VectorTools.scalarMultiply(gradient_, -1.0).collapse();
+        final int dimension = negGradient.getSize();
+
+        // The L2 penalty (lambda * |beta|^2) adds a constant to the diagonal.
+        final double penalty = (_target == OptimizationTarget.L2) ? 2.0 * _l2Lambda : 0.0;
+
+        double maxDiag = 0.0;
+
+        for (int i = 0; i < dimension; i++)
+        {
+            maxDiag = Math.max(maxDiag, Math.abs(secondDerivative_.getEntry(i, i)));
+        }
+
+        double ridge = 0.0;
+
+        for (int i = 0; i < MAX_RIDGE_ATTEMPTS; i++)
+        {
+            final DoubleVector step = MatrixTools.choleskySolve(secondDerivative_, negGradient, penalty + ridge);
+
+            if (null != step && VectorTools.isWellDefined(step))
+            {
+                return step;
+            }
+
+            ridge = Math.max(10.0 * ridge, MIN_RIDGE * Math.max(1.0, maxDiag));
+        }
+
+        LOG.info("Second derivative is not positive definite, using the gradient.");
+        return negGradient;
+    }
+}
@@ -0,0 +1,18 @@
+package edu.columbia.tjw.item.optimize;
+
+/**
+ * The optimizer used for a fit, see ItemSettings.getOptimizer and ItemSettings.getBetaOptimizer.
+ */
+public enum OptimizerType
+{
+    // Gradient directed line searches (see MultivariateOptimizer).
+    LINE_SEARCH,
+    // Newton steps on the exact second derivative, with a backtracking line search (see NewtonOptimizer). Only for
+    // fits where just the betas are free.
+    NEWTON,
+    // Limited memory BFGS with a Wolfe line search (see LbfgsOptimizer).
+    LBFGS,
+    // Adam steps on random samples of the blocks, refined by full batch L-BFGS (see StochasticOptimizer). Only for
+    // the ENTROPY and L2 targets.
+    STOCHASTIC;
+}
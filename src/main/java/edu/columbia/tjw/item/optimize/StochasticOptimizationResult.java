@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.optimize;
+
+import edu.columbia.tjw.item.fit.calculator.FitPoint;
+
+/**
+ * The result of a StochasticOptimizer, including the gradient variance observed at each stochastic step.
+ *
+ * @author tyler
+ */
+public class StochasticOptimizationResult extends MultivariateOptimizationResult
+{
+    private final double[] _gradientVariance;
+
+    public StochasticOptimizationResult(final FitPoint minValue_, final boolean converged_, final int evalCount_,
+                                        final double[] gradientVariance_)
+    {
+        super(minValue_, converged_, evalCount_);
+
+        if (null == gradientVariance_)
+        {
+            throw new NullPointerException("Gradient variance cannot be null.");
+        }
+
+        _gradientVariance = gradientVariance_.clone();
+    }
+
+    /**
+     * @return The number of mini-batch steps taken before the full batch refinement
+     */
+    public int getStochasticStepCount()
+    {
+        return _gradientVariance.length;
+    }
+
+    /**
+     * The variance (i.e. the trace of the covariance matrix) of the mini-batch gradient estimate, at each step.
+     *
+     * @param step_ The step of interest
+     * @return The variance of that step's gradient estimate
+     */
+    public double getGradientVariance(final int step_)
+    {
+        return _gradientVariance[step_];
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.optimize;
+
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.algo.DoubleVector;
+import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
+import edu.columbia.tjw.item.fit.calculator.BlockResult;
+import edu.columbia.tjw.item.fit.calculator.FitPoint;
+import edu.columbia.tjw.item.fit.calculator.FitPointAnalyzer;
+import edu.columbia.tjw.item.util.IceTools;
+import edu.columbia.tjw.item.util.LogUtil;
+import edu.columbia.tjw.item.util.random.RandomStreams;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A mini-batch (Adam) optimizer, for grids too large to make many full passes over.
+ * <p>
+ * Each step computes the gradient on a random sample of the blocks (in parallel), and takes an Adam step along it.
+ * The regressors are not standardized, so the parameters can have wildly different scales. Instead of the squared
+ * gradient, the step is therefore normalized by the diagonal of the second derivative (as in AdaHessian), which the
+ * block calculators produce along with the gradient, making each step a damped diagonal Newton step.
+ * The variance of each such estimate is computed from the spread of the block gradients. Once the gradient is no
+ * longer clearly larger than this noise, the stochastic steps can make no further progress, and the fit is refined
+ * with full batch L-BFGS (see LbfgsOptimizer). Most of the distance is covered by cheap steps, and only the last few
+ * iterations need all of the data.
+ * <p>
+ * The evaluation count is in full passes over the data, so that it can be compared to the other optimizers.
+ * <p>
+ * The blocks are sampled from a generator owned by the fit (see optimize), never from the shared one in the
+ * settings, since several fits may run at once (e.g. parallel curve candidates).
+ * <p>
+ * N.B: This supports only the ENTROPY and L2 targets, the ICE objectives do not decompose over the blocks.
+ *
+ * @author tyler
+ */
+public class StochasticOptimizer extends Optimizer<MultivariateDifferentiableFunction>
+{
+    private static final Logger LOG = LogUtil.getLogger(StochasticOptimizer.class);
+
+    // The usual Adam constants, see Kingma & Ba.
+    private static final double ADAM_BETA1 = 0.9;
+    private static final double ADAM_BETA2 = 0.999;
+    private static final double LEARNING_RATE = 0.1;
+
+    // Keeps the step finite even for parameters with no curvature at all.
+    private static final double MIN_CURVATURE = 1.0e-10;
+
+    // Batches are sized to give this many steps per pass over the data, but are never smaller than MIN_BATCH_BLOCKS.
+    private static final int STEPS_PER_PASS = 64;
+    private static final int MIN_BATCH_BLOCKS = 8;
+
+    // With fewer blocks than this many batches, just run the full batch optimizer.
+    private static final int MIN_BATCH_COUNT = 4;
+
+    // The budget for the stochastic phase, in passes over the data.
+    private static final int MAX_STOCHASTIC_PASSES = 5;
+
+    // Switch to full batch after this many consecutive steps dominated by noise.
+    private static final int NOISE_PATIENCE = 3;
+
+    private final LbfgsOptimizer _refiner;
+    private final OptimizationTarget _target;
+    private final double _l2Lambda;
+
+    public StochasticOptimizer(final int blockSize_, final int maxEvalCount_, final OptimizationTarget target_,
+                               final ItemSettings settings_)
+    {
+        super(blockSize_, maxEvalCount_, target_, settings_);
+
+        if (!isSupported(target_))
+        {
+            throw new IllegalArgumentException("Unsupported target: " + target_);
+        }
+
+        _refiner = new LbfgsOptimizer(blockSize_, maxEvalCount_, target_, settings_);
+        _target = target_;
+        _l2Lambda = settings_.getL2Lambda();
+    }
+
+    /**
+     * @param target_ The optimization target
+     * @return True if this optimizer can be used for the given target
+     */
+    public static boolean isSupported(final OptimizationTarget target_)
+    {
+        return target_ == OptimizationTarget.ENTROPY || target_ == OptimizationTarget.L2;
+    }
+
+    @Override
+    public OptimizationResult optimize(final MultivariateDifferentiableFunction f_, final DoubleVector startingPoint_,
+                                       final DoubleVector direction_) throws ConvergenceException
+    {
+        // The steps follow the sampled gradients.
+        return optimize(f_, startingPoint_);
+    }
+
+    public OptimizationResult optimize(final MultivariateDifferentiableFunction f_,
+                                       final DoubleVector startingPoint_) throws ConvergenceException
+    {
+        return optimize(f_, startingPoint_, newStream(startingPoint_));
+    }
+
+    /**
+     * @param f_             The function to minimize
+     * @param startingPoint_ The starting point
+     * @param rand_          The generator used to sample blocks, owned by this fit for its duration
+     * @return The result of the optimization
+     * @throws ConvergenceException If the full batch refinement fails
+     */
+    public OptimizationResult optimize(final MultivariateDifferentiableFunction f_, final DoubleVector startingPoint_,
+                                       final RandomGenerator rand_) throws ConvergenceException
+    {
+        if (null == rand_)
+        {
+            throw new NullPointerException("Random generator cannot be null.");
+        }
+
+        final FitPointAnalyzer comparator = this.getComparator();
+        final FitPoint startPoint = f_.evaluateGradient(startingPoint_);
+        final int blockCount = startPoint.getBlockCount();
+        final int batchSize = Math.max(MIN_BATCH_BLOCKS, blockCount / STEPS_PER_PASS);
+
+        if (blockCount < MIN_BATCH_COUNT * batchSize)
+        {
+            LOG.info("Too few blocks for mini-batches, using full batch only.");
+            return _refiner.optimize(f_, startingPoint_);
+        }
+
+        final int dimension = startingPoint_.getSize();
+        final double[] x = startingPoint_.copyOfUnderlying();
+        final double[] m = new double[dimension];
+        final double[] v = new double[dimension];
+
+        final int[] order = new int[blockCount];
+
+        for (int i = 0; i < blockCount; i++)
+        {
+            order[i] = i;
+        }
+
+        // The L2 penalty (lambda * |beta|^2) adds a constant to the diagonal of the curvature.
+        final double penalty = (_target == OptimizationTarget.L2) ? 2.0 * _l2Lambda : 0.0;
+
+        final int maxSteps = (int) (((long) MAX_STOCHASTIC_PASSES * blockCount) / batchSize);
+        final double[] gradientVariance = new double[maxSteps];
+
+        FitPoint current = startPoint;
+        long blocksComputed = 0;
+        int noisySteps = 0;
+        int step = 0;
+
+        while (step < maxSteps)
+        {
+            final int[] batch = sampleBlocks(order, batchSize, rand_);
+            final List<BlockResult> results = current.computeBlocks(batch, BlockCalculationType.FIRST_DERIVATIVE);
+            blocksComputed += batchSize;
+
+            final BatchGradient gradient = new BatchGradient(results, blockCount,
+                    comparator.getDerivativeAdjustment(current, null), penalty);
+            gradientVariance[step] = gradient._variance;
+            step++;
+
+            LOG.fine("Step " + step + ": gradient magnitude^2 " + gradient._magnitudeSquared + ", variance "
+                    + gradient._variance);
+
+            if (gradient._magnitudeSquared < gradient._variance)
+            {
+                noisySteps++;
+
+                if (noisySteps >= NOISE_PATIENCE)
+                {
+                    break;
+                }
+            }
+            else
+            {
+                noisySteps = 0;
+            }
+
+            final double bias1 = 1.0 - Math.pow(ADAM_BETA1, step);
+            final double bias2 = 1.0 - Math.pow(ADAM_BETA2, step);
+
+            for (int i = 0; i < dimension; i++)
+            {
+                final double g = gradient._mean[i];
+                final double h = gradient._curvature[i];
+                m[i] = ADAM_BETA1 * m[i] + (1.0 - ADAM_BETA1) * g;
+                v[i] = ADAM_BETA2 * v[i] + (1.0 - ADAM_BETA2) * h * h;
+                x[i] -= LEARNING_RATE * (m[i] / bias1) / Math.sqrt(v[i] / bias2);
+            }
+
+            current = f_.evaluateGradient(DoubleVector.of(x, true));
+        }
+
+        // Count the comparison below as a pass, it will usually stop well short of one.
+        final int stochasticPasses = (int) ((blocksComputed + blockCount - 1) / blockCount) + 1;
+
+        LOG.info("Stochastic phase finished after " + step + " steps (" + stochasticPasses + " passes), final "
+                + "gradient variance: " + gradientVariance[step - 1]);
+
+        // The noisy steps may have wandered off, never refine from a point worse than the start.
+        final FitPointAnalyzer.FitPointComparison comparison = comparator.generateComparision(startPoint, current);
+        final DoubleVector refineStart;
+
+        if (comparison.getZScore() < 0.0)
+        {
+            LOG.info("Stochastic phase made no progress, refining from the start.");
+            refineStart = startingPoint_;
+        }
+        else
+        {
+            refineStart = current.getParameters();
+        }
+
+        final OptimizationResult refined = _refiner.optimize(f_, refineStart);
+
+        return new StochasticOptimizationResult(refined.minResult(), refined.converged(),
+                stochasticPasses + refined.evaluationCount(), Arrays.copyOf(gradientVariance, step));
+    }
+
+    /**
+     * A generator for a fit that was not given one, seeded from its starting point. Each fit is then reproducible
+     * from its inputs alone, and never shares a generator with any other.
+     */
+    private static RandomGenerator newStream(final DoubleVector startingPoint_)
+    {
+        long seed = startingPoint_.getSize();
+
+        for (int i = 0; i < startingPoint_.getSize(); i++)
+        {
+            seed = 31 * seed + Double.doubleToLongBits(startingPoint_.getEntry(i));
+        }
+
+        return RandomStreams.create(seed).nextStream();
+    }
+
+    /**
+     * Partial Fisher-Yates shuffle, the first count_ elements of order_ become a uniform sample (without replacement).
+     */
+    private static int[] sampleBlocks(final int[] order_, final int count_, final RandomGenerator rand_)
+    {
+        for (int i = 0; i < count_; i++)
+        {
+            final int j = i + rand_.nextInt(order_.length - i);
+            final int tmp = order_[i];
+            order_[i] = order_[j];
+            order_[j] = tmp;
+        }
+
+        return Arrays.copyOf(order_, count_);
+    }
+
+    /**
+     * The size weighted mean of the block gradients, and the variance of this mean as an estimate of the full
+     * gradient (including the finite population correction, as blocks are sampled without replacement).
+     * <p>
+     * Also the (absolute) diagonal of the second derivative, floored so that it is safe to divide by, plus the
+     * curvature of the regularization penalty.
+     */
+    private static final class BatchGradient
+    {
+        private final double[] _mean;
+        private final double[] _curvature;
+        private final double _magnitudeSquared;
+        private final double _variance;
+
+        private BatchGradient(final List<BlockResult> results_, final int blockCount_,
+                              final DoubleVector adjustment_, final double penalty_)
+        {
+            final int dimension = adjustment_.getSize();
+            final int batchSize = results_.size();
+            final double[] mean = new double[dimension];
+            final double[] curvature = new double[dimension];
+            double totalWeight = 0.0;
+
+            for (final BlockResult next : results_)
+            {
+                final double weight = next.getSize();
+                final DoubleVector derivative = next.getDerivative();
+                final DoubleVector jDiag = next.getJDiag();
+                totalWeight += weight;
+
+                for (int i = 0; i < dimension; i++)
+                {
+                    mean[i] += weight * derivative.getEntry(i);
+                    curvature[i] += weight * jDiag.getEntry(i);
+                }
+            }
+
+            for (int i = 0; i < dimension; i++)
+            {
+                mean[i] /= totalWeight;
+                curvature[i] /= totalWeight;
+            }
+
+            final double cutoff = Math.max(MIN_CURVATURE,
+                    IceTools.computeJDiagCutoff(DoubleVector.of(curvature, false)));
+
+            for (int i = 0; i < dimension; i++)
+            {
+                curvature[i] = Math.max(cutoff, Math.abs(curvature[i])) + penalty_;
+            }
+
+            double sumSquares = 0.0;
+
+            for (final BlockResult next : results_)
+            {
+                final double weight = next.getSize();
+                final DoubleVector derivative = next.getDerivative();
+
+                for (int i = 0; i < dimension; i++)
+                {
+                    final double diff = derivative.getEntry(i) - mean[i];
+                    sumSquares += weight * diff * diff;
+                }
+            }
+
+            final double blockVariance = (sumSquares / totalWeight) * batchSize / (batchSize - 1);
+            final double correction = 1.0 - ((double) batchSize / blockCount_);
+            double magnitudeSquared = 0.0;
+
+            for (int i = 0; i < dimension; i++)
+            {
+                // The adjustment (e.g. L2 penalty) is exact, it adds no variance.
+                mean[i] += adjustment_.getEntry(i);
+                magnitudeSquared += mean[i] * mean[i];
+            }
+
+            _mean = mean;
+            _curvature = curvature;
+            _magnitudeSquared = magnitudeSquared;
+            _variance = correction * blockVariance / batchSize;
+        }
+    }
+}
@@ -21,7 +21,7 @@ package edu.columbia.tjw.item.optimize;
 
 import edu.columbia.tjw.item.algo.DoubleVector;
 import edu.columbia.tjw.item.util.thread.GeneralTask;
-import edu.columbia.tjw.item.util.thread.GeneralThreadPool;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -31,15 +31,22 @@ import java.util.List;
  */
 public abstract class ThreadedMultivariateFunction implements MultivariateOptimizationFunction
 {
-    private static final GeneralThreadPool POOL = GeneralThreadPool.singleton();
     private final int _blockSize;
     private final boolean _useThreading;
+    private final ItemExecutor _executor;
     private final Object _prepLock = new Object();
 
-    public ThreadedMultivariateFunction(final int blockSize_, final boolean useThreading_)
+    public ThreadedMultivariateFunction(final int blockSize_, final boolean useThreading_,
+                                        final ItemExecutor executor_)
     {
+        if (null == executor_)
+        {
+            throw new NullPointerException("Executor cannot be null.");
+        }
+
         _blockSize = blockSize_;
         _useThreading = useThreading_;
+        _executor = executor_;
     }
 
     @Override
@@ -50,20 +57,13 @@ public abstract class ThreadedMultivariateFunction implements MultivariateOptimi
 
     private <W> List<W> executeTasks(final List<? extends GeneralTask<W>> tasks_)
     {
-        final List<W> output = new ArrayList<>(tasks_.size());
-
-        for (final GeneralTask<W> next : tasks_)
+        if (_useThreading)
         {
-            if (_useThreading)
-            {
-                POOL.execute(next);
-            }
-            else
-            {
-                next.run();
-            }
+            return _executor.runAll(tasks_);
         }
 
+        final List<W> output = new ArrayList<>(tasks_.size());
+
         for (final GeneralTask<W> next : tasks_)
         {
             final W res = next.waitForCompletion();
@@ -11,6 +11,7 @@ public final class UnivariateOptimizationFunction
     private final DoubleVector _a;
     private final DoubleVector _direction;
     private final double _scale;
+    private int _evaluationCount;
 
     public UnivariateOptimizationFunction(final MultivariateOptimizationFunction base_, final DoubleVector a_,
                                           final DoubleVector direction_)
@@ -43,13 +44,23 @@ public final class UnivariateOptimizationFunction
     public FitPoint evaluate(final double val_)
     {
         final DoubleVector next = generatePoint(val_);
+        _evaluationCount++;
         return _base.evaluate(next);
     }
 
     public FitPoint evaluateGradient(final double val_)
     {
         final DoubleVector next = generatePoint(val_);
+        _evaluationCount++;
         return _base.evaluateGradient(next);
     }
 
+    /**
+     * @return The number of points evaluated so far
+     */
+    public int getEvaluationCount()
+    {
+        return _evaluationCount;
+    }
+
 }
@@ -0,0 +1,474 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.sim;
+
+import edu.columbia.tjw.item.ItemCurveType;
+import edu.columbia.tjw.item.ItemModel;
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.data.ItemGrid;
+import edu.columbia.tjw.item.data.ItemStatusGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
+import edu.columbia.tjw.item.util.MultiLogistic;
+import edu.columbia.tjw.item.util.random.RandomStreams;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import edu.columbia.tjw.item.util.thread.GeneralTask;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Simulates paths forward through time, one period at a time, using one fitted model per from status.
+ * <p>
+ * Each row of the starting grid is a path, its regressors are read once, and then moved forward between periods by
+ * the (optional) RegressorUpdater. Statuses with no model are absorbing.
+ * <p>
+ * Paths are split into fixed size chunks, and each chunk gets its own random stream (see RandomStreams), seeded by
+ * the caller. The results therefore depend only on the seed, and not on the executor or its parallelism.
+ * The chunks are aggregated as they complete, so memory use does not grow with the number of paths.
+ * <p>
+ * The expected value mode propagates the status probabilities of each path instead of sampling, which gives the
+ * exact expected counts (for regressors that don't depend on the status) without any sampling noise.
+ *
+ * @param <S> The status type
+ * @param <R> The regressor type
+ * @param <T> The curve type
+ * @author tyler
+ */
+public final class MarkovSimulator<S extends ItemStatus<S>, R extends ItemRegressor<R>,
+        T extends ItemCurveType<T>>
+{
+    private static final int PATHS_PER_TASK = 4096;
+
+    // Enough tasks in flight to keep the executor busy, but no more, since each holds its own counts.
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final EnumFamily<S> _family;
+    private final List<ItemParameters<S, R, T>> _params;
+    private final int[][] _reachable;
+    private final RegressorUpdater<S, R> _updater;
+    private final ItemExecutor _executor;
+
+    public MarkovSimulator(final Map<S, ItemParameters<S, R, T>> params_, final RegressorUpdater<S, R> updater_)
+    {
+        this(params_, updater_, ForkJoinExecutor.shared());
+    }
+
+    /**
+     * @param params_   The model for each from status, statuses without a model are absorbing
+     * @param updater_  Moves the regressors forward between periods, null if they are constant
+     * @param executor_ The executor on which to simulate chunks of paths
+     */
+    public MarkovSimulator(final Map<S, ItemParameters<S, R, T>> params_, final RegressorUpdater<S, R> updater_,
+                           final ItemExecutor executor_)
+    {
+        if (null == params_)
+        {
+            throw new NullPointerException("Params cannot be null.");
+        }
+        if (null == executor_)
+        {
+            throw new NullPointerException("Executor cannot be null.");
+        }
+        if (params_.isEmpty())
+        {
+            throw new IllegalArgumentException("Params cannot be empty.");
+        }
+
+        _family = params_.keySet().iterator().next().getFamily();
+        _params = new ArrayList<>(_family.size());
+        _reachable = new int[_family.size()][];
+
+        for (final S status : _family.getMembers())
+        {
+            final ItemParameters<S, R, T> params = params_.get(status);
+            _params.add(params);
+
+            if (null == params)
+            {
+                continue;
+            }
+            if (params.getStatus() != status)
+            {
+                throw new IllegalArgumentException("Params for " + params.getStatus() + " given for " + status);
+            }
+
+            final List<S> reachable = status.getReachable();
+            _reachable[status.ordinal()] = new int[reachable.size()];
+
+            for (int i = 0; i < reachable.size(); i++)
+            {
+                _reachable[status.ordinal()][i] = reachable.get(i).ordinal();
+            }
+        }
+
+        _updater = (null == updater_) ? (path, period, status, regressors) -> {
+        } : updater_;
+        _executor = executor_;
+    }
+
+    public EnumFamily<S> getStatusFamily()
+    {
+        return _family;
+    }
+
+    /**
+     * Simulate one path per row of start_, beginning in that row's status.
+     *
+     * @param start_   The starting status and regressors of each path
+     * @param periods_ The number of periods to simulate
+     * @param seed_    The seed of the random streams
+     * @return The aggregated counts of the simulated paths
+     */
+    public SimulationResult<S> simulate(final ItemStatusGrid<S, R> start_, final int periods_, final long seed_)
+    {
+        checkFamily(start_);
+        return run(start_, start_::getStatus, periods_, seed_, true);
+    }
+
+    /**
+     * Simulate one path per row of start_, every path beginning in status_.
+     *
+     * @param start_   The starting regressors of each path
+     * @param status_  The starting status of every path
+     * @param periods_ The number of periods to simulate
+     * @param seed_    The seed of the random streams
+     * @return The aggregated counts of the simulated paths
+     */
+    public SimulationResult<S> simulate(final ItemGrid<R> start_, final S status_, final int periods_,
+                                        final long seed_)
+    {
+        final int ordinal = status_.ordinal();
+        return run(start_, x -> ordinal, periods_, seed_, true);
+    }
+
+    /**
+     * Compute the expected counts for one path per row of start_, beginning in that row's status. The regressor
+     * updater is given a null status.
+     *
+     * @param start_   The starting status and regressors of each path
+     * @param periods_ The number of periods to project
+     * @return The expected counts of the paths
+     */
+    public SimulationResult<S> expectedValue(final ItemStatusGrid<S, R> start_, final int periods_)
+    {
+        checkFamily(start_);
+        return run(start_, start_::getStatus, periods_, 0L, false);
+    }
+
+    /**
+     * Compute the expected counts for one path per row of start_, every path beginning in status_. The regressor
+     * updater is given a null status.
+     *
+     * @param start_   The starting regressors of each path
+     * @param status_  The starting status of every path
+     * @param periods_ The number of periods to project
+     * @return The expected counts of the paths
+     */
+    public SimulationResult<S> expectedValue(final ItemGrid<R> start_, final S status_, final int periods_)
+    {
+        final int ordinal = status_.ordinal();
+        return run(start_, x -> ordinal, periods_, 0L, false);
+    }
+
+    private void checkFamily(final ItemStatusGrid<S, R> start_)
+    {
+        if (!_family.equals(start_.getStatusFamily()))
+        {
+            throw new IllegalArgumentException("Status family mismatch.");
+        }
+    }
+
+    private void checkGrid(final ItemGrid<R> grid_)
+    {
+        for (final ItemParameters<S, R, T> params : _params)
+        {
+            if (null == params)
+            {
+                continue;
+            }
+
+            for (int entry = 0; entry < params.getEntryCount(); entry++)
+            {
+                if (entry == params.getInterceptIndex())
+                {
+                    continue;
+                }
+
+                for (int w = 0; w < params.getEntryDepth(entry); w++)
+                {
+                    final R regressor = params.getEntryRegressor(entry, w);
+
+                    if (!grid_.getAvailableRegressors().contains(regressor))
+                    {
+                        throw new IllegalArgumentException("Grid is missing regressor: " + regressor);
+                    }
+                }
+            }
+        }
+    }
+
+    private SimulationResult<S> run(final ItemGrid<R> grid_, final IntUnaryOperator startStatus_,
+                                    final int periods_, final long seed_, final boolean sample_)
+    {
+        if (periods_ < 0)
+        {
+            throw new IllegalArgumentException("Periods must be nonnegative: " + periods_);
+        }
+
+        checkGrid(grid_);
+
+        final RandomStreams streams = sample_ ? RandomStreams.create(seed_) : null;
+        final int batchSize = Math.max(1, _executor.getParallelism() * TASKS_PER_THREAD);
+        final SimulationResult<S> result = new SimulationResult<>(_family, periods_);
+        final List<PathTask> batch = new ArrayList<>(batchSize);
+
+        for (int start = 0; start < grid_.size(); start += PATHS_PER_TASK)
+        {
+            final int end = Math.min(grid_.size(), start + PATHS_PER_TASK);
+
+            // Streams are handed out in path order, so each chunk gets the same one no matter how they are run.
+            final RandomGenerator rand = sample_ ? streams.nextStream() : null;
+            batch.add(new PathTask(grid_, startStatus_, start, end, periods_, rand));
+
+            if (batch.size() >= batchSize)
+            {
+                runBatch(batch, result);
+            }
+        }
+
+        runBatch(batch, result);
+        return result;
+    }
+
+    private void runBatch(final List<PathTask> batch_, final SimulationResult<S> result_)
+    {
+        if (batch_.isEmpty())
+        {
+            return;
+        }
+
+        // Merge in task order, so that (floating point) sums don't depend on scheduling.
+        for (final SimulationResult<S> next : _executor.runAll(batch_))
+        {
+            result_.add(next);
+        }
+
+        batch_.clear();
+    }
+
+    private final class PathTask extends GeneralTask<SimulationResult<S>>
+    {
+        private final ItemGrid<R> _grid;
+        private final IntUnaryOperator _startStatus;
+        private final int _start;
+        private final int _end;
+        private final int _periods;
+        private final RandomGenerator _rand;
+
+        private final List<ItemModel<S, R, T>> _models;
+        private final int[][] _regOrdinals;
+        private final double[][] _modelRegs;
+        private final double[][] _probs;
+
+        private PathTask(final ItemGrid<R> grid_, final IntUnaryOperator startStatus_, final int start_,
+                         final int end_, final int periods_, final RandomGenerator rand_)
+        {
+            _grid = grid_;
+            _startStatus = startStatus_;
+            _start = start_;
+            _end = end_;
+            _periods = periods_;
+            _rand = rand_;
+
+            final int size = _family.size();
+            _models = new ArrayList<>(size);
+            _regOrdinals = new int[size][];
+            _modelRegs = new double[size][];
+            _probs = new double[size][];
+        }
+
+        @Override
+        protected SimulationResult<S> subRun()
+        {
+            // Models are not threadsafe, so each task builds its own.
+            for (int i = 0; i < _params.size(); i++)
+            {
+                final ItemParameters<S, R, T> params = _params.get(i);
+
+                if (null == params)
+                {
+                    _models.add(null);
+                    continue;
+                }
+
+                final List<R> regressors = params.getUniqueRegressors();
+                _models.add(new ItemModel<>(params));
+                _regOrdinals[i] = new int[regressors.size()];
+                _modelRegs[i] = new double[regressors.size()];
+                _probs[i] = new double[_reachable[i].length];
+
+                for (int k = 0; k < regressors.size(); k++)
+                {
+                    _regOrdinals[i][k] = regressors.get(k).ordinal();
+                }
+            }
+
+            final EnumFamily<R> regFamily = _grid.getRegressorFamily();
+            final List<R> available = new ArrayList<>(_grid.getAvailableRegressors());
+            final List<ItemRegressorReader> readers = new ArrayList<>(available.size());
+
+            for (final R next : available)
+            {
+                readers.add(_grid.getRegressorReader(next));
+            }
+
+            final SimulationResult<S> result = new SimulationResult<>(_family, _periods);
+            final double[] regressors = new double[regFamily.size()];
+            final double[] current = new double[_family.size()];
+            final double[] next = new double[_family.size()];
+
+            for (int path = _start; path < _end; path++)
+            {
+                Arrays.fill(regressors, 0.0);
+
+                for (int k = 0; k < available.size(); k++)
+                {
+                    regressors[available.get(k).ordinal()] = readers.get(k).asDouble(path);
+                }
+
+                if (null != _rand)
+                {
+                    samplePath(path, regressors, result);
+                }
+                else
+                {
+                    expectPath(path, regressors, current, next, result);
+                }
+            }
+
+            return result;
+        }
+
+        private void samplePath(final int path_, final double[] regressors_, final SimulationResult<S> result_)
+        {
+            int status = _startStatus.applyAsInt(path_);
+            result_.addPath();
+
+            for (int period = 0; period < _periods; period++)
+            {
+                final int next;
+
+                if (null == _models.get(status))
+                {
+                    next = status;
+                }
+                else
+                {
+                    final double[] probs = computeProbabilities(status, regressors_);
+                    next = _reachable[status][MultiLogistic.chooseOne(probs, _rand)];
+                }
+
+                result_.addOccupancy(period, status, 1.0);
+                result_.addTransition(period, status, next, 1.0);
+                status = next;
+                _updater.update(path_, period, _family.getFromOrdinal(status), regressors_);
+            }
+
+            result_.addOccupancy(_periods, status, 1.0);
+        }
+
+        private void expectPath(final int path_, final double[] regressors_, double[] current_, double[] next_,
+                                final SimulationResult<S> result_)
+        {
+            Arrays.fill(current_, 0.0);
+            current_[_startStatus.applyAsInt(path_)] = 1.0;
+            result_.addPath();
+
+            for (int period = 0; period < _periods; period++)
+            {
+                Arrays.fill(next_, 0.0);
+
+                for (int status = 0; status < current_.length; status++)
+                {
+                    final double mass = current_[status];
+
+                    if (mass == 0.0)
+                    {
+                        continue;
+                    }
+
+                    result_.addOccupancy(period, status, mass);
+
+                    if (null == _models.get(status))
+                    {
+                        next_[status] += mass;
+                        result_.addTransition(period, status, status, mass);
+                        continue;
+                    }
+
+                    final double[] probs = computeProbabilities(status, regressors_);
+
+                    for (int k = 0; k < probs.length; k++)
+                    {
+                        final int to = _reachable[status][k];
+                        final double flow = mass * probs[k];
+                        next_[to] += flow;
+                        result_.addTransition(period, status, to, flow);
+                    }
+                }
+
+                final double[] swap = current_;
+                current_ = next_;
+                next_ = swap;
+                _updater.update(path_, period, null, regressors_);
+            }
+
+            for (int status = 0; status < current_.length; status++)
+            {
+                if (current_[status] != 0.0)
+                {
+                    result_.addOccupancy(_periods, status, current_[status]);
+                }
+            }
+        }
+
+        private double[] computeProbabilities(final int status_, final double[] regressors_)
+        {
+            final int[] ordinals = _regOrdinals[status_];
+            final double[] modelRegs = _modelRegs[status_];
+
+            for (int k = 0; k < ordinals.length; k++)
+            {
+                modelRegs[k] = regressors_[ordinals[k]];
+            }
+
+            _models.get(status_).transitionProbability(modelRegs, _probs[status_]);
+            return _probs[status_];
+        }
+    }
+}
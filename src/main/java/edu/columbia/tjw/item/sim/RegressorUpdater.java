@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.sim;
+
+import edu.columbia.tjw.item.ItemRegressor;
+import edu.columbia.tjw.item.ItemStatus;
+
+/**
+ * Moves the regressors of a simulated path forward by one period, e.g. aging a loan, or applying a rate scenario.
+ * <p>
+ * N.B: This is called concurrently for different paths, so it must be threadsafe. If the simulation is to be
+ * reproducible, it should depend only on its arguments.
+ *
+ * @param <S> The status type
+ * @param <R> The regressor type
+ * @author tyler
+ */
+@FunctionalInterface
+public interface RegressorUpdater<S extends ItemStatus<S>, R extends ItemRegressor<R>>
+{
+    /**
+     * @param path_       The path being simulated, i.e. its row in the starting grid
+     * @param period_     The period that was just simulated, starting from zero
+     * @param status_     The status of the path after this period, or null when computing expected values, in which
+     *                    case the path is spread over several statuses at once
+     * @param regressors_ The regressors of this path, indexed by regressor ordinal, to be updated in place
+     */
+    void update(final int path_, final int period_, final S status_, final double[] regressors_);
+}
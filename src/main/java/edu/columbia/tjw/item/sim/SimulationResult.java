@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.sim;
+
+import edu.columbia.tjw.item.ItemStatus;
+import edu.columbia.tjw.item.util.EnumFamily;
+
+/**
+ * The aggregate of a simulation, by period.
+ * <p>
+ * For a Monte Carlo simulation, these are counts of paths. For an expected value simulation, they are expected
+ * counts, and are generally not integers.
+ *
+ * @param <S> The status type
+ * @author tyler
+ */
+public final class SimulationResult<S extends ItemStatus<S>>
+{
+    private final EnumFamily<S> _family;
+    private final int _periodCount;
+    private final double[][] _occupancy;
+    private final double[][][] _transitions;
+    private int _pathCount;
+
+    SimulationResult(final EnumFamily<S> family_, final int periodCount_)
+    {
+        final int size = family_.size();
+        _family = family_;
+        _periodCount = periodCount_;
+        _occupancy = new double[periodCount_ + 1][size];
+        _transitions = new double[periodCount_][size][size];
+        _pathCount = 0;
+    }
+
+    public EnumFamily<S> getStatusFamily()
+    {
+        return _family;
+    }
+
+    /**
+     * @return The number of periods simulated, there are one more occupancy snapshots than this
+     */
+    public int getPeriodCount()
+    {
+        return _periodCount;
+    }
+
+    public int getPathCount()
+    {
+        return _pathCount;
+    }
+
+    /**
+     * @param period_ The period, from 0 (the starting status) to getPeriodCount() (the final status)
+     * @param status_ The status
+     * @return The number of paths in status_ at the start of period_
+     */
+    public double getOccupancy(final int period_, final S status_)
+    {
+        return _occupancy[period_][status_.ordinal()];
+    }
+
+    /**
+     * @param period_ The period, from 0 to getPeriodCount()
+     * @param status_ The status
+     * @return The fraction of paths in status_ at the start of period_
+     */
+    public double getProbability(final int period_, final S status_)
+    {
+        return getOccupancy(period_, status_) / _pathCount;
+    }
+
+    /**
+     * Statuses without a model are absorbing, their paths are counted as transitioning to themselves.
+     *
+     * @param period_ The period, from 0 to getPeriodCount() - 1
+     * @param from_   The status at the start of the period
+     * @param to_     The status at the end of the period
+     * @return The number of paths that moved from from_ to to_ during period_
+     */
+    public double getTransitions(final int period_, final S from_, final S to_)
+    {
+        return _transitions[period_][from_.ordinal()][to_.ordinal()];
+    }
+
+    /**
+     * @param period_ The period, from 0 to getPeriodCount() - 1
+     * @param from_   The status at the start of the period
+     * @param to_     The status at the end of the period
+     * @return The fraction of the paths in from_ that moved to to_ during period_, NaN if there were none in from_
+     */
+    public double getTransitionRate(final int period_, final S from_, final S to_)
+    {
+        return getTransitions(period_, from_, to_) / getOccupancy(period_, from_);
+    }
+
+    void addPath()
+    {
+        _pathCount++;
+    }
+
+    void addOccupancy(final int period_, final int status_, final double weight_)
+    {
+        _occupancy[period_][status_] += weight_;
+    }
+
+    void addTransition(final int period_, final int from_, final int to_, final double weight_)
+    {
+        _transitions[period_][from_][to_] += weight_;
+    }
+
+    void add(final SimulationResult<S> other_)
+    {
+        _pathCount += other_._pathCount;
+
+        for (int i = 0; i < _occupancy.length; i++)
+        {
+            add(_occupancy[i], other_._occupancy[i]);
+        }
+        for (int i = 0; i < _transitions.length; i++)
+        {
+            for (int k = 0; k < _transitions[i].length; k++)
+            {
+                add(_transitions[i][k], other_._transitions[i][k]);
+            }
+        }
+    }
+
+    private static void add(final double[] target_, final double[] source_)
+    {
+        for (int i = 0; i < target_.length; i++)
+        {
+            target_[i] += source_[i];
+        }
+    }
+}
@@ -30,7 +30,7 @@ public final class MultiLogistic
     // Power scores cannot be arbitrarily low. This is due to the fact that we only have limited data, there would never
     // be any justification for saying the odds of an event are worse than 1/N for the N observations we have. In this
     // case, use an N deep into the billions, but still low enough to avoid overflow issues.
-    private static final double MIN_POWER_SCORE = -30.0;
+    public static final double MIN_POWER_SCORE = -30.0;
 
     /**
      * This should really be something like 1/N for N being the number of observations.
@@ -83,6 +83,49 @@ public final class MultiLogistic
         return expSum;
     }
 
+    /**
+     * Columnar version of multiLogisticFunction, converting the power scores of many rows at once.
+     * <p>
+     * Row i is made up of powerScores_[k][i] for each k. Each row is transformed in place, with exactly the same
+     * operations (in the same order) as multiLogisticFunction.
+     *
+     * @param powerScores_ The power scores, indexed by [reachable][row], overwritten with the probabilities
+     * @param size_        The number of rows to convert
+     */
+    public static void multiLogisticFunction(final double[][] powerScores_, final int size_)
+    {
+        final int reachable = powerScores_.length;
+
+        for (int i = 0; i < size_; i++)
+        {
+            double maxSum = Double.NEGATIVE_INFINITY;
+
+            for (int k = 0; k < reachable; k++)
+            {
+                maxSum = Math.max(powerScores_[k][i], maxSum);
+            }
+
+            double expSum = 0.0;
+
+            for (int k = 0; k < reachable; k++)
+            {
+                final double raw = powerScores_[k][i];
+                final double adjusted = raw - maxSum;
+                final double floored = Math.max(MIN_POWER_SCORE, adjusted);
+                final double exp = FastMath.exp(floored);
+                powerScores_[k][i] = exp;
+                expSum += exp;
+            }
+
+            final double normalizer = 1.0 / expSum;
+
+            for (int k = 0; k < reachable; k++)
+            {
+                powerScores_[k][i] = powerScores_[k][i] * normalizer;
+            }
+        }
+    }
+
     public static double multiLogisticEntropy(final double[] modelProbabilities_, final int actualIndex_)
     {
         return -Math.log(modelProbabilities_[actualIndex_]);
@@ -42,10 +42,36 @@ public abstract class AbstractRandom extends Random
         this.setSeed(ByteTool.longToBytes(seed_));
     }
 
+    private double nextNextGaussian;
+    private boolean haveNextNextGaussian = false;
+
+    /**
+     * Cloned from java.util.Random, but without the lock. The generators extending this are not threadsafe anyway,
+     * so locking here only adds contention.
+     */
     //Later on, add the ziggurat method for gaussians.
     @Override
-    synchronized public double nextGaussian()
+    public double nextGaussian()
     {
-        return super.nextGaussian();
+        // See Knuth, ACP, Section 3.4.1 Algorithm C.
+        if (haveNextNextGaussian)
+        {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+        else
+        {
+            double v1, v2, s;
+            do
+            {
+                v1 = 2 * nextDouble() - 1; // between -1 and 1
+                v2 = 2 * nextDouble() - 1; // between -1 and 1
+                s = v1 * v1 + v2 * v2;
+            } while (s >= 1 || s == 0);
+            double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+            nextNextGaussian = v2 * multiplier;
+            haveNextNextGaussian = true;
+            return v1 * multiplier;
+        }
     }
 }
@@ -0,0 +1,79 @@
+package edu.columbia.tjw.item.util.random;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.rng.JumpableUniformRandomProvider;
+import org.apache.commons.rng.LongJumpableUniformRandomProvider;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.simple.RandomSource;
+
+/**
+ * A source of independent random streams, for parallel tasks.
+ * <p>
+ * Every stream is a jump (2^64 steps) of a single xoroshiro128++ generator, so the streams never overlap, and they
+ * are entirely determined by the seed and the order in which they are requested. Streams should be handed out by a
+ * single thread (typically while the tasks are being created), after which each task owns its stream outright, and
+ * draws from it with no locking and no shared state. The results are then the same no matter how (or on how many
+ * threads) the tasks are run.
+ * <p>
+ * N.B: This class is not threadsafe, and neither are the streams it produces.
+ *
+ * @author tyler
+ */
+public final class RandomStreams
+{
+    private final JumpableUniformRandomProvider _source;
+
+    private RandomStreams(final JumpableUniformRandomProvider source_)
+    {
+        _source = source_;
+    }
+
+    /**
+     * @param seed_ The seed, which entirely determines the streams
+     * @return A new source of streams
+     */
+    public static RandomStreams create(final long seed_)
+    {
+        return new RandomStreams((JumpableUniformRandomProvider) RandomSource.XO_RO_SHI_RO_128_PP.create(seed_));
+    }
+
+    /**
+     * Create a source of streams seeded from the given generator, which is used exactly once.
+     *
+     * @param parent_ The generator supplying the seed
+     * @return A new source of streams
+     */
+    public static RandomStreams create(final RandomGenerator parent_)
+    {
+        return create(parent_.nextLong());
+    }
+
+    /**
+     * @return The next stream, independent of every other stream from this source
+     */
+    public UniformRandomProvider nextProvider()
+    {
+        return _source.jump();
+    }
+
+    /**
+     * @return The next stream, as a RandomGenerator
+     */
+    public RandomGenerator nextStream()
+    {
+        return new UniformWrapper(nextProvider());
+    }
+
+    /**
+     * Split off a new source of streams, for a task that will itself hand out streams (e.g. nested parallel loops).
+     * The new source is a long jump (2^96 steps) of this one, so it will not overlap with the next 2^32 streams of
+     * this source.
+     *
+     * @return A new source of streams
+     */
+    public RandomStreams split()
+    {
+        final LongJumpableUniformRandomProvider source = (LongJumpableUniformRandomProvider) _source;
+        return new RandomStreams(source.longJump());
+    }
+}
@@ -22,6 +22,7 @@ import java.util.*;
  */
 public class RandomTool
 {
+    // N.B: SecureRandom is threadsafe, so there is no need to lock around it here.
     private static final SecureRandom CORE;
 
     static
@@ -54,7 +55,7 @@ public class RandomTool
         }
     }
 
-    public synchronized static String randomString(final int length_)
+    public static String randomString(final int length_)
     {
         final int longLength = 1 + (length_ / 8);
 
@@ -144,13 +145,13 @@ public class RandomTool
         arr[j] = tmp;
     }
 
-    public synchronized static int nextInt()
+    public static int nextInt()
     {
         final int output = CORE.nextInt();
         return output;
     }
 
-    public synchronized static byte[] getStrong(final int bytes_)
+    public static byte[] getStrong(final int bytes_)
     {
         final byte[] output = new byte[bytes_];
         CORE.nextBytes(output);
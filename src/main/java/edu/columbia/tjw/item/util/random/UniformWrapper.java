@@ -1,12 +1,23 @@
 package edu.columbia.tjw.item.util.random;
 
 import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.rng.RandomProviderState;
+import org.apache.commons.rng.RestorableUniformRandomProvider;
 import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.core.RandomProviderDefaultState;
+import org.apache.commons.rng.simple.RandomSource;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 /**
  * Wrap a commons-rng in a RandomGenerator wrapper.
+ * <p>
+ * N.B: Like the providers it wraps, this is not threadsafe. Parallel tasks should each have their own, see
+ * RandomStreams.
+ * <p>
+ * If the provider is restorable (see restorable(long)), then the state of this generator can be saved and later
+ * restored exactly, e.g. to resume a fit from a checkpoint.
  */
 public class UniformWrapper implements RandomGenerator
 {
@@ -17,6 +28,60 @@ public class UniformWrapper implements RandomGenerator
         _provider = provider_;
     }
 
+    /**
+     * @param seed_ The seed, which entirely determines the output
+     * @return A new generator whose state can be saved and restored
+     */
+    public static UniformWrapper restorable(final long seed_)
+    {
+        return new UniformWrapper(RandomSource.XO_RO_SHI_RO_128_PP.create(seed_));
+    }
+
+    /**
+     * @return The complete state of this generator, including any pending gaussian
+     * @throws UnsupportedOperationException If the underlying provider is not restorable
+     */
+    public byte[] saveState()
+    {
+        final RandomProviderState state = getRestorable().saveState();
+        final byte[] providerState = ((RandomProviderDefaultState) state).getState();
+        final ByteBuffer buffer = ByteBuffer.allocate(providerState.length + 9);
+        buffer.put(providerState);
+        buffer.put((byte) (haveNextNextGaussian ? 1 : 0));
+        buffer.putDouble(nextNextGaussian);
+        return buffer.array();
+    }
+
+    /**
+     * @param state_ A state produced by saveState() on a generator of the same kind
+     * @throws UnsupportedOperationException If the underlying provider is not restorable
+     */
+    public void restoreState(final byte[] state_)
+    {
+        if (state_.length < 9)
+        {
+            throw new IllegalArgumentException("Invalid state.");
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(state_);
+        final byte[] providerState = new byte[state_.length - 9];
+        buffer.get(providerState);
+
+        getRestorable().restoreState(new RandomProviderDefaultState(providerState));
+        haveNextNextGaussian = buffer.get() != 0;
+        nextNextGaussian = buffer.getDouble();
+    }
+
+    private RestorableUniformRandomProvider getRestorable()
+    {
+        if (!(_provider instanceof RestorableUniformRandomProvider))
+        {
+            throw new UnsupportedOperationException("Provider is not restorable.");
+        }
+
+        return (RestorableUniformRandomProvider) _provider;
+    }
+
     @Override
     public void setSeed(int seed)
     {
@@ -85,7 +150,7 @@ public class UniformWrapper implements RandomGenerator
      * Cloned from java.util.Random.
      */
     @Override
-    synchronized public double nextGaussian()
+    public double nextGaussian()
     {
         // See Knuth, ACP, Section 3.4.1 Algorithm C.
         if (haveNextNextGaussian)
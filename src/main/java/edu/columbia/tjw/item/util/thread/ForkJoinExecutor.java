@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.util.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * An executor backed by a work stealing ForkJoinPool.
+ * <p>
+ * When runAll is called from a worker of this pool (i.e. from inside another task), the tasks are forked onto that
+ * worker's queue and joined, so the worker keeps running (or stealing) tasks rather than blocking. Nested batches
+ * therefore can neither deadlock nor starve, unlike with the GeneralThreadPool.
+ * <p>
+ * An executor that created its own pool owns it, and close shuts that pool down. The shared executors (see
+ * shared(int)) live as long as the JVM, and can't be closed.
+ *
+ * @author tyler
+ */
+public final class ForkJoinExecutor implements ItemExecutor, AutoCloseable
+{
+    private static final int NUM_PROCESSORS = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_THREADS = 32;
+    private static final int DEFAULT_PARALLELISM = Math.min(NUM_PROCESSORS, MAX_THREADS);
+    private static final ForkJoinExecutor SHARED = new ForkJoinExecutor(createPool(DEFAULT_PARALLELISM), false);
+    private static final ConcurrentMap<Integer, ForkJoinExecutor> SHARED_BY_PARALLELISM = new ConcurrentHashMap<>();
+
+    private final ForkJoinPool _pool;
+    private final boolean _owned;
+
+    /**
+     * Make an executor with its own pool, which should be closed when it is no longer needed.
+     *
+     * @param parallelism_ The number of threads for the new pool
+     */
+    public ForkJoinExecutor(final int parallelism_)
+    {
+        this(createPool(parallelism_), true);
+    }
+
+    /**
+     * Make an executor using the given pool, which may be shared with other executors (or other code).
+     *
+     * @param pool_ The pool to run tasks on
+     */
+    public ForkJoinExecutor(final ForkJoinPool pool_)
+    {
+        if (null == pool_)
+        {
+            throw new NullPointerException("Pool cannot be null.");
+        }
+
+        _pool = pool_;
+        _owned = false;
+    }
+
+    private ForkJoinExecutor(final ForkJoinPool pool_, final boolean owned_)
+    {
+        _pool = pool_;
+        _owned = owned_;
+    }
+
+    /**
+     * @return The executor used by default, shared throughout the JVM
+     */
+    public static ForkJoinExecutor shared()
+    {
+        return SHARED;
+    }
+
+    /**
+     * The executor shared throughout the JVM by everything asking for this parallelism. The pool is created on
+     * first use, and is never shut down.
+     *
+     * @param parallelism_ The number of threads
+     * @return The shared executor with this parallelism
+     */
+    public static ForkJoinExecutor shared(final int parallelism_)
+    {
+        if (parallelism_ == DEFAULT_PARALLELISM)
+        {
+            return SHARED;
+        }
+
+        // Validate before caching, so that a bad value doesn't leave anything behind.
+        if (parallelism_ < 1)
+        {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism_);
+        }
+
+        return SHARED_BY_PARALLELISM.computeIfAbsent(parallelism_,
+                (p) -> new ForkJoinExecutor(createPool(p), false));
+    }
+
+    public static int getDefaultParallelism()
+    {
+        return DEFAULT_PARALLELISM;
+    }
+
+    public ForkJoinPool getPool()
+    {
+        return _pool;
+    }
+
+    @Override
+    public int getParallelism()
+    {
+        return _pool.getParallelism();
+    }
+
+    @Override
+    public long getQueuedTaskCount()
+    {
+        return _pool.getQueuedTaskCount() + _pool.getQueuedSubmissionCount();
+    }
+
+    @Override
+    public <V> List<V> runAll(final List<? extends GeneralTask<V>> tasks_)
+    {
+        final List<ForkJoinTask<?>> forkTasks = new ArrayList<>(tasks_.size());
+
+        for (final GeneralTask<V> task : tasks_)
+        {
+            forkTasks.add(ForkJoinTask.adapt(task));
+        }
+
+        if (ForkJoinTask.getPool() == _pool)
+        {
+            // Nested call, fork these onto our own queue, and help out until they are done.
+            ForkJoinTask.invokeAll(forkTasks);
+        }
+        else
+        {
+            for (final ForkJoinTask<?> next : forkTasks)
+            {
+                _pool.execute(next);
+            }
+            for (final ForkJoinTask<?> next : forkTasks)
+            {
+                next.join();
+            }
+        }
+
+        final List<V> output = new ArrayList<>(tasks_.size());
+
+        for (final GeneralTask<V> task : tasks_)
+        {
+            // These are all done, this just collects the results (or rethrows any exception).
+            output.add(task.waitForCompletion());
+        }
+
+        return output;
+    }
+
+    /**
+     * Shut down the pool, if this executor created it. Executors on a caller's pool, or shared executors, leave
+     * the pool alone.
+     */
+    @Override
+    public void close()
+    {
+        if (_owned)
+        {
+            _pool.shutdown();
+        }
+    }
+
+    private static ForkJoinPool createPool(final int parallelism_)
+    {
+        if (parallelism_ < 1)
+        {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism_);
+        }
+
+        // The default worker threads are daemons, so an idle pool will not keep the JVM alive.
+        return new ForkJoinPool(parallelism_);
+    }
+}
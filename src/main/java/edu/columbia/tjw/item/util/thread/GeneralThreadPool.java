@@ -29,7 +29,7 @@ import java.util.concurrent.TimeUnit;
 /**
  * @author tyler
  */
-public class GeneralThreadPool extends ThreadPoolExecutor
+public class GeneralThreadPool extends ThreadPoolExecutor implements ItemExecutor
 {
     private static final int NUM_PROCESSORS = Runtime.getRuntime().availableProcessors();
     private static final int MAX_THREADS = 32;
@@ -55,6 +55,19 @@ public class GeneralThreadPool extends ThreadPoolExecutor
         return SINGLETON;
     }
 
+    @Override
+    public int getParallelism()
+    {
+        return this.getMaximumPoolSize();
+    }
+
+    @Override
+    public long getQueuedTaskCount()
+    {
+        return this.getQueue().size();
+    }
+
+    @Override
     public <V> List<V> runAll(final List<? extends GeneralTask<V>> tasks_)
     {
         for (final GeneralTask<V> task : tasks_)
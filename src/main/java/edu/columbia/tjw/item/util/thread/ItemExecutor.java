@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 Tyler Ward.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code is part of the reference implementation of http://arxiv.org/abs/1409.6075
+ *
+ * This is provided as an example to help in the understanding of the ITEM model system.
+ */
+package edu.columbia.tjw.item.util.thread;
+
+import java.util.List;
+
+/**
+ * Something that can run a batch of tasks, possibly in parallel.
+ * <p>
+ * Implementations must allow runAll to be called from within one of their own tasks, so that the block
+ * computations of a fit may be nested inside the outer (e.g. curve candidate) loops.
+ *
+ * @author tyler
+ */
+public interface ItemExecutor
+{
+    /**
+     * Run all the given tasks, and wait for them to complete.
+     *
+     * @param tasks_ The tasks to run
+     * @param <V>    The result type of the tasks
+     * @return The results of the tasks, in the same order as tasks_
+     */
+    <V> List<V> runAll(final List<? extends GeneralTask<V>> tasks_);
+
+    /**
+     * @return The (target) number of tasks that this executor will run at the same time
+     */
+    int getParallelism();
+
+    /**
+     * @return The (approximate) number of tasks waiting to be run, or -1 if this is not known
+     */
+    default long getQueuedTaskCount()
+    {
+        return -1;
+    }
+}
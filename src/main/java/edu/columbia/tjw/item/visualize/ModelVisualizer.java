@@ -28,6 +28,9 @@ import edu.columbia.tjw.item.data.ItemGrid;
 import edu.columbia.tjw.item.fit.ItemCalcGrid;
 import edu.columbia.tjw.item.fit.ParamFittingGrid;
 import edu.columbia.tjw.item.util.EnumFamily;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import edu.columbia.tjw.item.util.thread.GeneralTask;
+import edu.columbia.tjw.item.util.thread.ItemExecutor;
 import org.apache.commons.math3.distribution.NormalDistribution;
 
 import java.io.PrintStream;
@@ -44,6 +47,12 @@ public class ModelVisualizer<S extends ItemStatus<S>, R extends ItemRegressor<R>
         implements Serializable
 {
     private static final long serialVersionUID = 4198554232525136207L;
+    private static final int READ_BLOCK_SIZE = 1000;
+    private static final int ROWS_PER_TASK = 64 * 1024;
+
+    // Enough chunks in flight to keep the executor busy, each holds its own builders until merged.
+    private static final int TASKS_PER_THREAD = 4;
+
     private final ItemParameters<S, R, T> _params;
     private final SortedSet<S> _reachable;
     private final SortedSet<R> _regressors;
@@ -53,8 +62,39 @@ public class ModelVisualizer<S extends ItemStatus<S>, R extends ItemRegressor<R>
     public ModelVisualizer(final ItemParameters<S, R, T> params_, final ItemFittingGrid<S, R> grid_,
                            final SortedSet<R> extraRegressors_)
     {
+        this(params_, grid_, extraRegressors_, ForkJoinExecutor.shared());
+    }
+
+    /**
+     * Build the observed and model distributions of every (to status, regressor) pair.
+     * <p>
+     * This is a single scan of the grid, computing the model probabilities once per row, and bucketing every
+     * regressor of that row. Chunks of rows are scanned in parallel, and their statistics merged in chunk order, so
+     * the results do not depend on the executor.
+     *
+     * @param params_          The model to visualize
+     * @param grid_            The data to compare the model against
+     * @param extraRegressors_ Regressors to break down, beyond those used by the model
+     * @param executor_        The executor on which to scan the grid
+     */
+    public ModelVisualizer(final ItemParameters<S, R, T> params_, final ItemFittingGrid<S, R> grid_,
+                           final SortedSet<R> extraRegressors_, final ItemExecutor executor_)
+    {
+        this(params_, grid_, extraRegressors_, executor_, ROWS_PER_TASK);
+    }
+
+    /**
+     * As above, but scanning rowsPerTask_ rows per chunk, so that tests can vary how the chunks are merged.
+     */
+    ModelVisualizer(final ItemParameters<S, R, T> params_, final ItemFittingGrid<S, R> grid_,
+                    final SortedSet<R> extraRegressors_, final ItemExecutor executor_, final int rowsPerTask_)
+    {
+        if (rowsPerTask_ < 1)
+        {
+            throw new IllegalArgumentException("Rows per task must be positive: " + rowsPerTask_);
+        }
+
         _params = params_;
-        final ItemModel<S, R, T> model = new ItemModel<>(params_);
         final ParamFittingGrid<S, R, T> grid = new ParamFittingGrid<>(params_, grid_);
         final S from = params_.getStatus();
 
@@ -70,58 +110,63 @@ public class ModelVisualizer<S extends ItemStatus<S>, R extends ItemRegressor<R>
         }
 
         _reachable = Collections.unmodifiableSortedSet(new TreeSet<>(from.getReachable()));
-        final int fromOrdinal = from.ordinal();
-        final SortedMap<S, SortedMap<R, QuantileStatistics>> distMap = new TreeMap<>();
-        final SortedMap<S, SortedMap<R, QuantileStatistics>> modelMap = new TreeMap<>();
 
-        final double[] workspace = new double[_reachable.size()];
+        final List<R> regressors = new ArrayList<>(_regressors);
+        final List<BreakdownTask> breakdownTasks = new ArrayList<>(regressors.size());
 
-        for (final S to : _reachable)
+        for (final R reg : regressors)
         {
-            final SortedMap<R, QuantileStatistics> approximations = new TreeMap<>();
-            final SortedMap<R, QuantileStatistics> modelCalcs = new TreeMap<>();
-            final int toIndex = from.getReachable().indexOf(to);
-
-            for (final R reg : _regressors)
-            {
-                final ItemRegressorReader reader = grid.getRegressorReader(reg);
-                final QuantileBreakdown regApprox = QuantileBreakdown.buildApproximation(reader);
-
-                final QuantileStatistics.QuantileStatisticsBuilder approxBuilder =
-                        QuantileStatistics.builder(regApprox);
-                final QuantileStatistics.QuantileStatisticsBuilder modelBuilder = QuantileStatistics.builder(regApprox);
-
-//                final QuantApprox approx = new QuantApprox(approxBuckets_, approxLoad_);
-//                final QuantApprox modelApprox = new QuantApprox(approxBuckets_, approxLoad_);
+            breakdownTasks.add(new BreakdownTask(grid.getRegressorReader(reg)));
+        }
 
+        final List<QuantileBreakdown> breakdowns = executor_.runAll(breakdownTasks);
+        final int gridSize = grid.size();
+        final int batchSize = Math.max(1, executor_.getParallelism() * TASKS_PER_THREAD);
+        final List<ScanTask<S, R, T>> batch = new ArrayList<>(batchSize);
+        ScanTask<S, R, T> total = null;
 
-                final int toOrdinal = to.ordinal();
+        for (int start = 0; start < gridSize; start += rowsPerTask_)
+        {
+            final int end = Math.min(gridSize, start + rowsPerTask_);
+            batch.add(new ScanTask<>(params_, grid, regressors, breakdowns, start, end));
 
-                for (int i = 0; i < grid.size(); i++)
+            if (batch.size() >= batchSize || end == gridSize)
+            {
+                // Merge as we go, so that only a batch of (per chunk) builders is held at once.
+                for (final ScanTask<S, R, T> next : executor_.runAll(batch))
                 {
-                    final int trueToOrdinal = grid.getNextStatus(i);
-                    final double prob;
-
-                    if (trueToOrdinal == toOrdinal)
+                    if (null == total)
                     {
-                        prob = 1.0;
+                        total = next;
                     }
                     else
                     {
-                        prob = 0.0;
+                        total.merge(next);
                     }
+                }
+
+                batch.clear();
+            }
+        }
 
-                    final double x = reader.asDouble(i);
-                    approxBuilder.append(x, prob); //.addObservation(x, prob, true);
+        if (null == total)
+        {
+            total = new ScanTask<>(params_, grid, regressors, breakdowns, 0, 0);
+        }
 
-                    model.transitionProbability(grid, i, workspace);
-                    final double modelProb = workspace[toIndex];
-                    //modelApprox.addObservation(x, modelProb);
-                    modelBuilder.append(x, modelProb);
-                }
+        final SortedMap<S, SortedMap<R, QuantileStatistics>> distMap = new TreeMap<>();
+        final SortedMap<S, SortedMap<R, QuantileStatistics>> modelMap = new TreeMap<>();
 
-                approximations.put(reg, approxBuilder.build());
-                modelCalcs.put(reg, modelBuilder.build());
+        for (final S to : _reachable)
+        {
+            final SortedMap<R, QuantileStatistics> approximations = new TreeMap<>();
+            final SortedMap<R, QuantileStatistics> modelCalcs = new TreeMap<>();
+            final int toIndex = from.getReachable().indexOf(to);
+
+            for (int k = 0; k < regressors.size(); k++)
+            {
+                approximations.put(regressors.get(k), total._dist[toIndex][k].build());
+                modelCalcs.put(regressors.get(k), total._model[toIndex][k].build());
             }
 
             distMap.put(to, Collections.unmodifiableSortedMap(approximations));
@@ -477,4 +522,146 @@ public class ModelVisualizer<S extends ItemStatus<S>, R extends ItemRegressor<R>
 
     }
 
+    private static final class BreakdownTask extends GeneralTask<QuantileBreakdown>
+    {
+        private final ItemRegressorReader _reader;
+
+        private BreakdownTask(final ItemRegressorReader reader_)
+        {
+            _reader = reader_;
+        }
+
+        @Override
+        protected QuantileBreakdown subRun()
+        {
+            return QuantileBreakdown.buildApproximation(_reader);
+        }
+    }
+
+    /**
+     * Accumulates the observed and model statistics of a chunk of rows, for every (to status, regressor) pair.
+     */
+    private static final class ScanTask<S extends ItemStatus<S>, R extends ItemRegressor<R>,
+            T extends ItemCurveType<T>> extends GeneralTask<ScanTask<S, R, T>>
+    {
+        private final ItemParameters<S, R, T> _params;
+        private final ParamFittingGrid<S, R, T> _grid;
+        private final List<R> _regressors;
+        private final List<QuantileBreakdown> _breakdowns;
+        private final int _start;
+        private final int _end;
+
+        // Indexed by [to index][regressor index].
+        private final QuantileStatistics.QuantileStatisticsBuilder[][] _dist;
+        private final QuantileStatistics.QuantileStatisticsBuilder[][] _model;
+
+        private ScanTask(final ItemParameters<S, R, T> params_, final ParamFittingGrid<S, R, T> grid_,
+                         final List<R> regressors_, final List<QuantileBreakdown> breakdowns_, final int start_,
+                         final int end_)
+        {
+            _params = params_;
+            _grid = grid_;
+            _regressors = regressors_;
+            _breakdowns = breakdowns_;
+            _start = start_;
+            _end = end_;
+
+            final int reachableCount = params_.getStatus().getReachableCount();
+            _dist = new QuantileStatistics.QuantileStatisticsBuilder[reachableCount][regressors_.size()];
+            _model = new QuantileStatistics.QuantileStatisticsBuilder[reachableCount][regressors_.size()];
+
+            for (int t = 0; t < reachableCount; t++)
+            {
+                for (int k = 0; k < regressors_.size(); k++)
+                {
+                    _dist[t][k] = QuantileStatistics.builder(breakdowns_.get(k));
+                    _model[t][k] = QuantileStatistics.builder(breakdowns_.get(k));
+                }
+            }
+        }
+
+        @Override
+        protected ScanTask<S, R, T> subRun()
+        {
+            // Models are not threadsafe, each chunk needs its own.
+            final ItemModel<S, R, T> model = new ItemModel<>(_params);
+            final List<S> reachable = _params.getStatus().getReachable();
+            final int[] toOrdinals = new int[reachable.size()];
+
+            for (int t = 0; t < toOrdinals.length; t++)
+            {
+                toOrdinals[t] = reachable.get(t).ordinal();
+            }
+
+            final ItemRegressorReader[] readers = new ItemRegressorReader[_regressors.size()];
+
+            for (int k = 0; k < readers.length; k++)
+            {
+                readers[k] = _grid.getRegressorReader(_regressors.get(k));
+            }
+
+            final int blockSize = Math.max(0, Math.min(_end - _start, READ_BLOCK_SIZE));
+            final double[][] xBlock = new double[readers.length][blockSize];
+            final double[][] regBlock = new double[_grid.getRegressorCount()][blockSize];
+            final double[] rowRegs = new double[regBlock.length];
+            final double[] workspace = new double[toOrdinals.length];
+
+            for (int start = _start; start < _end; start += READ_BLOCK_SIZE)
+            {
+                final int length = Math.min(READ_BLOCK_SIZE, _end - start);
+                _grid.getRegressors(start, length, regBlock);
+
+                for (int k = 0; k < readers.length; k++)
+                {
+                    readers[k].read(start, length, xBlock[k]);
+                }
+
+                for (int w = 0; w < length; w++)
+                {
+                    for (int k = 0; k < rowRegs.length; k++)
+                    {
+                        rowRegs[k] = regBlock[k][w];
+                    }
+
+                    // The probabilities don't depend on the regressor being bucketed, so compute them once.
+                    model.transitionProbability(rowRegs, workspace);
+                    final int trueToOrdinal = _grid.getNextStatus(start + w);
+
+                    for (int k = 0; k < readers.length; k++)
+                    {
+                        final double x = xBlock[k][w];
+
+                        if (Double.isNaN(x) || Double.isInfinite(x))
+                        {
+                            continue;
+                        }
+
+                        final int bucket = _breakdowns.get(k).findBucket(x);
+
+                        for (int t = 0; t < toOrdinals.length; t++)
+                        {
+                            final double prob = (trueToOrdinal == toOrdinals[t]) ? 1.0 : 0.0;
+                            _dist[t][k].appendToBucket(bucket, prob);
+                            _model[t][k].appendToBucket(bucket, workspace[t]);
+                        }
+                    }
+                }
+            }
+
+            return this;
+        }
+
+        private void merge(final ScanTask<S, R, T> other_)
+        {
+            for (int t = 0; t < _dist.length; t++)
+            {
+                for (int k = 0; k < _dist[t].length; k++)
+                {
+                    _dist[t][k].merge(other_._dist[t][k]);
+                    _model[t][k].merge(other_._model[t][k]);
+                }
+            }
+        }
+    }
+
 }
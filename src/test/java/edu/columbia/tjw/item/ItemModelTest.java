@@ -1,6 +1,8 @@
 package edu.columbia.tjw.item;
 
+import edu.columbia.tjw.item.algo.DoubleMatrix;
 import edu.columbia.tjw.item.algo.DoubleVector;
+import edu.columbia.tjw.item.algo.SymmetricBlockLayout;
 import edu.columbia.tjw.item.algo.VectorTools;
 import edu.columbia.tjw.item.base.SimpleRegressor;
 import edu.columbia.tjw.item.base.SimpleStatus;
@@ -10,18 +12,34 @@ import edu.columbia.tjw.item.data.ItemFittingGrid;
 import edu.columbia.tjw.item.fit.EntropyCalculator;
 import edu.columbia.tjw.item.fit.PackedParameters;
 import edu.columbia.tjw.item.fit.ParamFittingGrid;
+import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
+import edu.columbia.tjw.item.fit.calculator.BlockResult;
+import edu.columbia.tjw.item.fit.calculator.BlockResultCalculator;
+import edu.columbia.tjw.item.fit.calculator.ColumnOps;
 import edu.columbia.tjw.item.fit.calculator.FitPoint;
 import edu.columbia.tjw.item.fit.calculator.FitPointAnalyzer;
+import edu.columbia.tjw.item.fit.calculator.FittingGridShard;
 import edu.columbia.tjw.item.optimize.OptimizationTarget;
 import edu.columbia.tjw.item.util.MathTools;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import edu.columbia.tjw.item.util.thread.GeneralTask;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.SingularValueDecomposition;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 class ItemModelTest
 {
@@ -379,6 +397,315 @@ class ItemModelTest
     }
 
 
+    @Test
+    void blockEntropyMatchesModel() throws Exception
+    {
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                readParams(ItemModelTest.class.getResourceAsStream("/test_model_medium.dat"));
+        final ItemModel<SimpleStatus, SimpleRegressor, StandardCurveType> model = new ItemModel<>(params);
+
+        final int start = 1000;
+        final int size = Math.min(5001, _rawData.size() - start);
+        final FittingGridShard<SimpleStatus, SimpleRegressor> shard = new FittingGridShard<>(_rawData, start, size);
+        final ParamFittingGrid<SimpleStatus, SimpleRegressor, StandardCurveType> paramGrid =
+                new ParamFittingGrid<>(params, shard);
+
+        double entropySum = 0.0;
+        double x2 = 0.0;
+
+        for (int i = 0; i < size; i++)
+        {
+            final double entropy = model.logLikelihood(paramGrid, i);
+            entropySum += entropy;
+            x2 += entropy * entropy;
+        }
+
+        final BlockResultCalculator<SimpleStatus, SimpleRegressor, StandardCurveType> calculator =
+                new BlockResultCalculator<>(shard, start);
+        final BlockResult result = calculator.compute(model, BlockCalculationType.VALUE, null);
+
+        // The columnar calculation must match the row by row calculation exactly.
+        Assertions.assertEquals(entropySum, result.getEntropySum());
+        Assertions.assertEquals(x2, result.getEntropySquareSum());
+    }
+
+    @Test
+    void packedSecondDerivative() throws Exception
+    {
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                readParams(ItemModelTest.class.getResourceAsStream("/test_model_medium.dat"));
+        final ItemModel<SimpleStatus, SimpleRegressor, StandardCurveType> model = new ItemModel<>(params);
+        final ParamFittingGrid<SimpleStatus, SimpleRegressor, StandardCurveType> paramGrid =
+                new ParamFittingGrid<>(params, _rawData);
+
+        final int dimension = model.getDerivativeSize();
+        final double[] gradient = new double[dimension];
+        final double[] jDiag = new double[dimension];
+        final double[][] secondDerivative = new double[dimension][dimension];
+        final double[] packedGradient = new double[dimension];
+        final double[] packedJDiag = new double[dimension];
+        final SymmetricBlockLayout layout = model.getHessianLayout();
+        final double[] packed = new double[layout.getSize()];
+
+        // One block per (transition, entry), holding the same number of elements as the packed upper triangle.
+        Assertions.assertTrue(layout.getGroupCount() > 1);
+        Assertions.assertEquals(DoubleMatrix.packedSize(dimension), layout.getSize());
+
+        for (int k = 0; k < 1000; k++)
+        {
+            model.computeGradient(paramGrid, k, gradient, jDiag, secondDerivative);
+            model.computePackedGradient(paramGrid, k, packedGradient, packedJDiag, packed);
+
+            Assertions.assertArrayEquals(gradient, packedGradient);
+            Assertions.assertArrayEquals(jDiag, packedJDiag);
+
+            final DoubleMatrix matrix = DoubleMatrix.ofSymmetric(packed, layout, false);
+
+            for (int i = 0; i < dimension; i++)
+            {
+                for (int w = 0; w < dimension; w++)
+                {
+                    Assertions.assertEquals(secondDerivative[i][w], matrix.getEntry(i, w));
+                }
+            }
+        }
+    }
+
+    @Test
+    void vectorizedBlockEntropy() throws Exception
+    {
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                readParams(ItemModelTest.class.getResourceAsStream("/test_model_medium.dat"));
+        final ItemModel<SimpleStatus, SimpleRegressor, StandardCurveType> model = new ItemModel<>(params);
+
+        final BlockResult scalar = new BlockResultCalculator<SimpleStatus, SimpleRegressor, StandardCurveType>(
+                _rawData, 0, ColumnOps.getOps(false)).compute(model, BlockCalculationType.VALUE, null);
+
+        // Falls back to scalar if the vector profile was not built, in which case these match exactly.
+        final BlockResult vector = new BlockResultCalculator<SimpleStatus, SimpleRegressor, StandardCurveType>(
+                _rawData, 0, ColumnOps.getOps(true)).compute(model, BlockCalculationType.VALUE, null);
+
+        System.out.println("Vector available: " + ColumnOps.isVectorAvailable());
+        Assertions.assertEquals(scalar.getEntropyMean(), vector.getEntropyMean(), 1.0e-12);
+    }
+
+    @Test
+    void cachedEntryWeights() throws Exception
+    {
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                readParams(ItemModelTest.class.getResourceAsStream("/test_model_medium.dat"));
+        final double[][] betas = params.getBetas();
+
+        for (final double[] row : betas)
+        {
+            for (int i = 0; i < row.length; i++)
+            {
+                row[i] *= 0.9;
+            }
+        }
+
+        // Same curves (though regenerated), different betas.
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> shifted =
+                params.generatePacked().generateParams().updateBetas(betas);
+
+        final BlockResultCalculator<SimpleStatus, SimpleRegressor, StandardCurveType> cached =
+                new BlockResultCalculator<>(_rawData, 0, ColumnOps.getOps(false), 1L << 30);
+
+        final BlockResult first = cached.compute(new ItemModel<>(params), BlockCalculationType.VALUE, null);
+        final BlockResult second = cached.compute(new ItemModel<>(params), BlockCalculationType.VALUE, null);
+        final BlockResult shiftedResult = cached.compute(new ItemModel<>(shifted), BlockCalculationType.VALUE,
+                null);
+
+        Assertions.assertEquals(first.getEntropySum(), second.getEntropySum());
+
+        final BlockResult exact = new BlockResultCalculator<SimpleStatus, SimpleRegressor, StandardCurveType>(
+                _rawData, 0).compute(new ItemModel<>(params), BlockCalculationType.VALUE, null);
+        final BlockResult exactShifted = new BlockResultCalculator<SimpleStatus, SimpleRegressor,
+                StandardCurveType>(_rawData, 0).compute(new ItemModel<>(shifted), BlockCalculationType.VALUE, null);
+
+        // The weights are cached exactly, so the cached passes match the uncached results bit for bit.
+        Assertions.assertEquals(exact.getEntropySum(), first.getEntropySum());
+        Assertions.assertEquals(exactShifted.getEntropySum(), shiftedResult.getEntropySum());
+        Assertions.assertNotEquals(first.getEntropyMean(), shiftedResult.getEntropyMean());
+    }
+
+    @Test
+    void cachedFitPoints() throws Exception
+    {
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                readParams(ItemModelTest.class.getResourceAsStream("/test_model_medium.dat"));
+        final ItemSettings settings = ItemSettings.newBuilder().setFitPointCacheSize(4).build();
+        final EntropyCalculator<SimpleStatus, SimpleRegressor, StandardCurveType> calc =
+                new EntropyCalculator<>(_rawData, settings);
+
+        final FitPoint first = calc.generateFitPoint(params);
+        first.computeAll(BlockCalculationType.VALUE);
+
+        // Regenerated (so not the same objects), but identical parameters.
+        final FitPoint second = calc.generateFitPoint(params.generatePacked().generateParams());
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(first.getBlockCount(), second.getNextBlock(BlockCalculationType.VALUE));
+
+        final double[][] betas = params.getBetas();
+        betas[0][0] += 0.1;
+        final FitPoint shifted = calc.generateFitPoint(params.updateBetas(betas));
+        Assertions.assertNotSame(first, shifted);
+
+        Assertions.assertEquals(1, calc.getFitPointCacheHits());
+        Assertions.assertEquals(2, calc.getFitPointCacheMisses());
+    }
+
+    @Test
+    void cachedFitPointsKeepBlocksUnderIce() throws Exception
+    {
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                readParams(ItemModelTest.class.getResourceAsStream("/test_model_medium.dat"));
+        final double[][] betas = params.getBetas();
+        betas[0][0] += 0.1;
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> shifted = params.updateBetas(betas);
+
+        final ItemSettings settings = ItemSettings.newBuilder().setTarget(OptimizationTarget.ICE)
+                .setFitPointCacheSize(4).build();
+        final EntropyCalculator<SimpleStatus, SimpleRegressor, StandardCurveType> calc =
+                new EntropyCalculator<>(_rawData, settings);
+        final EntropyCalculator<SimpleStatus, SimpleRegressor, StandardCurveType> uncached =
+                new EntropyCalculator<>(_rawData, settings.toBuilder().setFitPointCacheSize(0).build());
+        final FitPointAnalyzer analyzer = new FitPointAnalyzer(settings.getBlockSize(), settings.getTarget(),
+                settings);
+
+        final FitPoint shared = calc.generateFitPoint(params);
+        shared.computeAll(BlockCalculationType.FIRST_DERIVATIVE);
+        final BlockResult before = shared.getAggregated(BlockCalculationType.FIRST_DERIVATIVE);
+
+        // Scaled against another point, which must neither clear the shared point nor be kept on it.
+        final DoubleVector adjustment = analyzer.getDerivativeAdjustment(shared, calc.generateFitPoint(shifted));
+        Assertions.assertSame(before, shared.getAggregated(BlockCalculationType.FIRST_DERIVATIVE));
+        Assertions.assertSame(shared, calc.generateFitPoint(params));
+
+        final DoubleVector expected = analyzer.getDerivativeAdjustment(uncached.generateFitPoint(params),
+                uncached.generateFitPoint(shifted));
+
+        for (int i = 0; i < expected.getSize(); i++)
+        {
+            Assertions.assertEquals(expected.getEntry(i), adjustment.getEntry(i));
+        }
+
+        // And the point's own (unscaled) adjustment is unaffected by the scaled one computed before it.
+        final DoubleVector own = analyzer.getDerivativeAdjustment(shared, null);
+        final DoubleVector ownExpected = analyzer.getDerivativeAdjustment(uncached.generateFitPoint(params), null);
+
+        for (int i = 0; i < ownExpected.getSize(); i++)
+        {
+            Assertions.assertEquals(ownExpected.getEntry(i), own.getEntry(i));
+        }
+    }
+
+    @Test
+    void sharedFitPointsComputedConcurrently() throws Exception
+    {
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                readParams(ItemModelTest.class.getResourceAsStream("/test_model_medium.dat"));
+        final double[][] betas = params.getBetas();
+        betas[0][0] += 0.1;
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> shifted = params.updateBetas(betas);
+
+        try (final ForkJoinExecutor executor = new ForkJoinExecutor(2))
+        {
+            final ItemSettings settings = ItemSettings.newBuilder().setExecutor(executor).setFitPointCacheSize(4)
+                    .build();
+            final EntropyCalculator<SimpleStatus, SimpleRegressor, StandardCurveType> calc =
+                    new EntropyCalculator<>(_rawData, settings);
+
+            final FitPoint a = calc.generateFitPoint(params);
+            final FitPoint b = calc.generateFitPoint(shifted);
+            final int blockCount = a.getBlockCount();
+            final List<GeneralTask<Void>> tasks = new ArrayList<>();
+
+            // Half the tasks extend a then b, the other half b then a, all while the points' own blocks are queued
+            // on the same pool.
+            for (int i = 0; i < 8; i++)
+            {
+                final FitPoint first = (i % 2 == 0) ? a : b;
+                final FitPoint second = (i % 2 == 0) ? b : a;
+                final int end = (blockCount * (i + 1)) / 8;
+
+                tasks.add(new GeneralTask<Void>()
+                {
+                    @Override
+                    protected Void subRun()
+                    {
+                        first.computeUntil(end, BlockCalculationType.FIRST_DERIVATIVE);
+                        second.computeUntil(end, BlockCalculationType.FIRST_DERIVATIVE);
+                        return null;
+                    }
+                });
+            }
+
+            Assertions.assertTimeoutPreemptively(Duration.ofMinutes(5), () -> executor.runAll(tasks));
+
+            final EntropyCalculator<SimpleStatus, SimpleRegressor, StandardCurveType> uncached =
+                    new EntropyCalculator<>(_rawData, settings.toBuilder().setFitPointCacheSize(0).build());
+
+            for (final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> next : List.of(params,
+                    shifted))
+            {
+                final FitPoint shared = calc.generateFitPoint(next);
+                final FitPoint fresh = uncached.generateFitPoint(next);
+                fresh.computeAll(BlockCalculationType.FIRST_DERIVATIVE);
+
+                Assertions.assertEquals(blockCount, shared.getNextBlock(BlockCalculationType.FIRST_DERIVATIVE));
+
+                final BlockResult expected = fresh.getAggregated(BlockCalculationType.FIRST_DERIVATIVE);
+                final BlockResult actual = shared.getAggregated(BlockCalculationType.FIRST_DERIVATIVE);
+                Assertions.assertEquals(expected.getEntropySum(), actual.getEntropySum());
+
+                for (int i = 0; i < expected.getDerivativeDimension(); i++)
+                {
+                    Assertions.assertEquals(expected.getDerivativeEntry(i), actual.getDerivativeEntry(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void compiledScorerMatchesModel(@TempDir final Path dir_) throws Exception
+    {
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> params =
+                readParams(ItemModelTest.class.getResourceAsStream("/test_model_medium.dat"));
+        final ItemModel<SimpleStatus, SimpleRegressor, StandardCurveType> model = new ItemModel<>(params);
+        final ParamFittingGrid<SimpleStatus, SimpleRegressor, StandardCurveType> paramGrid =
+                new ParamFittingGrid<>(params, _rawData);
+
+        final ItemScorer<SimpleStatus, SimpleRegressor, StandardCurveType> scorer = new ItemScorer<>(params);
+        final int reachable = scorer.getReachableCount();
+        final double[] matrix = new double[_rawData.size() * reachable];
+
+        try (final ForkJoinExecutor executor = new ForkJoinExecutor(4))
+        {
+            scorer.score(_rawData, DoubleBuffer.wrap(matrix), executor);
+
+            final Path file = dir_.resolve("scores.bin");
+            scorer.score(_rawData, file, executor);
+            final DoubleBuffer mapped = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+            Assertions.assertEquals(matrix.length, mapped.limit());
+
+            final double[] expected = new double[reachable];
+
+            for (int i = 0; i < _rawData.size(); i++)
+            {
+                Assertions.assertEquals(reachable, model.transitionProbability(paramGrid, i, expected));
+
+                for (int k = 0; k < reachable; k++)
+                {
+                    // Same operations in the same order, so these must match exactly.
+                    Assertions.assertEquals(expected[k], matrix[i * reachable + k]);
+                    Assertions.assertEquals(expected[k], mapped.get(i * reachable + k));
+                }
+            }
+        }
+    }
+
     @Test
     void transitionProbability()
     {
@@ -0,0 +1,211 @@
+package edu.columbia.tjw.item.algo;
+
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+
+public class KllQuantilesTest
+{
+    private static final double EPSILON = 0.005;
+    private static final int SIZE = 200 * 1000;
+    private static final int SHARDS = 8;
+
+    @Test
+    void testQuantiles()
+    {
+        // The same data as GKQuantilesTest, small enough that the sketch is exact.
+        final KllQuantiles quantiles = new KllQuantiles(0.001);
+
+        quantiles.offer(0.0);
+        quantiles.offer(1.0);
+
+        Assertions.assertEquals(0.0, quantiles.getQuantile(0.1));
+        Assertions.assertEquals(1.0, quantiles.getQuantile(0.99));
+
+        final double[] sorted = new double[102];
+        sorted[0] = 0.0;
+        sorted[1] = 1.0;
+
+        for (int i = 0; i < 100; i++)
+        {
+            quantiles.offer((0.1 * i) - 1.0);
+            sorted[i + 2] = (0.1 * i) - 1.0;
+        }
+
+        Arrays.sort(sorted);
+
+        for (final double q : new double[]{0.001, 0.1, 0.5, 0.9})
+        {
+            Assertions.assertEquals(sorted[(int) (q * sorted.length)], quantiles.getQuantile(q));
+        }
+
+        Assertions.assertEquals(-1.0, quantiles.getQuantile(0.0));
+        Assertions.assertEquals(8.9, quantiles.getQuantile(1.0), 1.0e-12);
+        Assertions.assertEquals(0.5, quantiles.getRank(sorted[50]), 0.5 / sorted.length);
+    }
+
+    @Test
+    void testRankError()
+    {
+        final Random rand = new Random(0xbeefL);
+        final double[] data = new double[SIZE];
+
+        for (int i = 0; i < SIZE; i++)
+        {
+            data[i] = rand.nextGaussian() * Math.exp(rand.nextGaussian());
+        }
+
+        final double[] sorted = data.clone();
+        Arrays.sort(sorted);
+
+        final KllQuantiles single = new KllQuantiles(EPSILON);
+        final GKQuantiles gk = new GKQuantiles(EPSILON);
+
+        for (final double next : data)
+        {
+            single.offer(next);
+            gk.offer(next);
+        }
+
+        // N.B: GK itself slightly exceeds its nominal error on this data, so it is only reported.
+        final double gkError = maxRankError(sorted, gk::getQuantile);
+        final double kllError = checkRanks(sorted, single);
+        System.out.println("Max rank error, GK: " + gkError + ", KLL: " + kllError);
+
+        // Worst case for deterministic compaction.
+        final KllQuantiles ordered = new KllQuantiles(EPSILON);
+
+        for (final double next : sorted)
+        {
+            ordered.offer(next);
+        }
+
+        checkRanks(sorted, ordered);
+
+        final KllQuantiles merged = new KllQuantiles(EPSILON);
+        final int shardSize = SIZE / SHARDS;
+
+        for (int shard = 0; shard < SHARDS; shard++)
+        {
+            final KllQuantiles next = new KllQuantiles(EPSILON);
+
+            for (int i = shard * shardSize; i < (shard + 1) * shardSize; i++)
+            {
+                next.offer(data[i]);
+            }
+
+            merged.merge(next);
+        }
+
+        Assertions.assertEquals(SIZE, merged.getCount());
+        checkRanks(sorted, merged);
+        Assertions.assertTrue(merged.getRetained() < SIZE / 100);
+    }
+
+    @Test
+    void testBreakdown()
+    {
+        final Random rand = new Random(0xfeedL);
+        final double[] data = new double[SIZE];
+
+        for (int i = 0; i < SIZE; i++)
+        {
+            data[i] = rand.nextDouble();
+        }
+
+        final ItemRegressorReader reader = new ItemRegressorReader()
+        {
+            @Override
+            public double asDouble(final int index_)
+            {
+                return data[index_];
+            }
+
+            @Override
+            public int size()
+            {
+                return data.length;
+            }
+        };
+
+        final QuantileBreakdown serial = QuantileBreakdown.buildApproximation(reader, new ForkJoinExecutor(1));
+        final QuantileBreakdown parallel = QuantileBreakdown.buildApproximation(reader, new ForkJoinExecutor(4));
+        final QuantileBreakdown gk = QuantileBreakdown.buildApproximation(reader);
+
+        Assertions.assertArrayEquals(serial.getXValues(), parallel.getXValues());
+        Assertions.assertEquals(gk.getSize(), serial.getSize());
+        Assertions.assertEquals(gk.getTotalCount(), serial.getTotalCount());
+        Assertions.assertEquals(gk.getMean(), serial.getMean(), 1.0e-12);
+
+        for (int i = 0; i < gk.getSize(); i++)
+        {
+            // Uniform data, so the values are the ranks.
+            Assertions.assertEquals(gk.getBucketMean(i), serial.getBucketMean(i), 2 * EPSILON);
+        }
+    }
+
+    private static double checkRanks(final double[] sorted_, final KllQuantiles sketch_)
+    {
+        final double error = maxRankError(sorted_, sketch_::getQuantile);
+        Assertions.assertTrue(error <= EPSILON, "Rank error too large: " + error);
+        return error;
+    }
+
+    private static double maxRankError(final double[] sorted_, final DoubleUnaryOperator quantile_)
+    {
+        double maxError = 0.0;
+
+        for (int i = 1; i < 100; i++)
+        {
+            final double q = 0.01 * i;
+            final double x = quantile_.applyAsDouble(q);
+
+            // The range of ranks occupied by x, which must come within epsilon of q.
+            final int low = lowerBound(sorted_, x);
+            final int high = upperBound(sorted_, x);
+            final double error = Math.max(0.0, Math.max(low / (double) sorted_.length - q,
+                    q - high / (double) sorted_.length));
+
+            maxError = Math.max(maxError, error);
+        }
+
+        return maxError;
+    }
+
+    private static int lowerBound(final double[] sorted_, final double x_)
+    {
+        int index = Arrays.binarySearch(sorted_, x_);
+
+        if (index < 0)
+        {
+            return (-index) - 1;
+        }
+        while (index > 0 && sorted_[index - 1] == x_)
+        {
+            index--;
+        }
+
+        return index;
+    }
+
+    private static int upperBound(final double[] sorted_, final double x_)
+    {
+        int index = Arrays.binarySearch(sorted_, x_);
+
+        if (index < 0)
+        {
+            return (-index) - 1;
+        }
+        while (index < sorted_.length && sorted_[index] == x_)
+        {
+            index++;
+        }
+
+        return index;
+    }
+}
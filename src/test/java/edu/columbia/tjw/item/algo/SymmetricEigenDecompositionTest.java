@@ -0,0 +1,123 @@
+package edu.columbia.tjw.item.algo;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class SymmetricEigenDecompositionTest
+{
+    private static final double EPSILON = 1.0e-10;
+    private static final int[] GROUP_STARTS = {0, 1, 4, 5, 9, 12};
+
+    @Test
+    void layoutMatchesDense()
+    {
+        final SymmetricBlockLayout layout = SymmetricBlockLayout.of(GROUP_STARTS);
+        final int dimension = layout.getDimension();
+        final double[][] dense = randomSymmetric(new Random(0x5eed), dimension);
+        final double[] packed = pack(layout, dense);
+
+        Assertions.assertEquals(DoubleMatrix.packedSize(dimension), layout.getSize());
+
+        final DoubleMatrix matrix = DoubleMatrix.ofSymmetric(packed, layout, false);
+        final double[] x = randomSymmetric(new Random(0xbeef), dimension)[0];
+        final double[] row = new double[dimension];
+
+        for (int i = 0; i < dimension; i++)
+        {
+            double expected = 0.0;
+
+            for (int w = 0; w < dimension; w++)
+            {
+                Assertions.assertEquals(dense[i][w], matrix.getEntry(i, w));
+                expected += x[w] * dense[i][w];
+            }
+
+            // Summed in the same order, so exactly the same.
+            Assertions.assertEquals(expected, matrix.rowDot(i, x));
+
+            matrix.copyRow(i, row);
+            Assertions.assertArrayEquals(dense[i], row);
+        }
+
+        // A single group is the plain packed upper triangle.
+        final SymmetricBlockLayout single = SymmetricBlockLayout.single(dimension);
+        Assertions.assertEquals(DoubleMatrix.packedIndex(dimension, 3, 7), single.index(7, 3));
+    }
+
+    @Test
+    void matchesSvd()
+    {
+        final SymmetricBlockLayout layout = SymmetricBlockLayout.of(GROUP_STARTS);
+        final int dimension = layout.getDimension();
+        final Random rand = new Random(0xfeed);
+
+        final double[][] a = randomSymmetric(rand, dimension);
+        final double[][] b = randomSymmetric(rand, dimension);
+
+        // Make a singular, so that the pseudo inverse must drop a direction.
+        for (int w = 0; w < dimension; w++)
+        {
+            a[0][w] = 0.0;
+            a[w][0] = 0.0;
+        }
+
+        final SymmetricEigenDecomposition eigen =
+                new SymmetricEigenDecomposition(DoubleMatrix.ofSymmetric(pack(layout, a), layout, false));
+
+        final RealMatrix aMatrix = new Array2DRowRealMatrix(a);
+        final RealMatrix bMatrix = new Array2DRowRealMatrix(b);
+        final SingularValueDecomposition svd = new SingularValueDecomposition(aMatrix);
+        final RealMatrix inverse = svd.getSolver().getInverse();
+
+        Assertions.assertEquals(svd.getInverseConditionNumber(), eigen.getInverseConditionNumber(), EPSILON);
+
+        final double[] diagonal = eigen.getPseudoInverseDiagonal();
+
+        for (int i = 0; i < dimension; i++)
+        {
+            Assertions.assertEquals(inverse.getEntry(i, i), diagonal[i], EPSILON);
+        }
+
+        final double expected = inverse.multiply(bMatrix).getTrace();
+        final double actual = eigen.traceOfPseudoInverseTimes(
+                DoubleMatrix.ofSymmetric(pack(layout, b), layout, false));
+
+        Assertions.assertEquals(expected, actual, EPSILON * Math.max(1.0, Math.abs(expected)));
+    }
+
+    private static double[][] randomSymmetric(final Random rand_, final int dimension_)
+    {
+        final double[][] output = new double[dimension_][dimension_];
+
+        for (int i = 0; i < dimension_; i++)
+        {
+            for (int w = i; w < dimension_; w++)
+            {
+                output[i][w] = rand_.nextGaussian();
+                output[w][i] = output[i][w];
+            }
+        }
+
+        return output;
+    }
+
+    private static double[] pack(final SymmetricBlockLayout layout_, final double[][] dense_)
+    {
+        final double[] packed = new double[layout_.getSize()];
+
+        for (int i = 0; i < dense_.length; i++)
+        {
+            for (int w = i; w < dense_.length; w++)
+            {
+                packed[layout_.index(i, w)] = dense_[i][w];
+            }
+        }
+
+        return packed;
+    }
+}
@@ -0,0 +1,132 @@
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class DelimitedGridReaderTest
+{
+    private final ItemFittingGrid<SimpleStatus, SimpleRegressor> _rawData;
+
+    DelimitedGridReaderTest()
+    {
+        try (final InputStream iStream = DelimitedGridReaderTest.class.getResourceAsStream("/raw_data.dat"))
+        {
+            _rawData = RawFittingGrid.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class);
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void roundTrip(@TempDir final Path dir_) throws IOException
+    {
+        final Path file = dir_.resolve("grid.csv");
+        final List<SimpleRegressor> regs = new ArrayList<>(_rawData.getAvailableRegressors());
+
+        try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII))
+        {
+            writer.write("STATUS,COMMENT,NEXT_STATUS");
+
+            for (final SimpleRegressor reg : regs)
+            {
+                writer.write("," + reg.name());
+            }
+
+            writer.write("\r\n");
+
+            for (int i = 0; i < _rawData.size(); i++)
+            {
+                writer.write(_rawData.getFromStatus().name() + ",ignored,");
+
+                if (hasNextStatus(i))
+                {
+                    writer.write(getNextStatus(i).name());
+                }
+
+                for (final SimpleRegressor reg : regs)
+                {
+                    writer.write("," + Float.toString((float) _rawData.getRegressorReader(reg).asDouble(i)));
+                }
+
+                // Blank lines should be skipped.
+                writer.write((i % 1000) == 0 ? "\r\n\n" : "\n");
+            }
+        }
+
+        // Small chunks, so that rows straddle plenty of chunk boundaries.
+        final DelimitedGridReader<SimpleStatus, SimpleRegressor> reader = new DelimitedGridReader<>(
+                _rawData.getFromStatus().getFamily(), _rawData.getRegressorFamily(), "STATUS", "NEXT_STATUS", ',',
+                64 * 1024, new ForkJoinExecutor(4));
+        final RawItemStatusGrid<SimpleStatus, SimpleRegressor> grid = reader.read(file);
+
+        Assertions.assertEquals(_rawData.size(), grid.size());
+        Assertions.assertEquals(_rawData.getAvailableRegressors(), grid.getAvailableRegressors());
+
+        for (int i = 0; i < _rawData.size(); i++)
+        {
+            Assertions.assertEquals(_rawData.getFromStatus().ordinal(), grid.getStatus(i));
+            Assertions.assertEquals(hasNextStatus(i), grid.hasNextStatus(i));
+
+            if (hasNextStatus(i))
+            {
+                Assertions.assertEquals(_rawData.getNextStatus(i), grid.getNextStatus(i));
+            }
+
+            for (final SimpleRegressor reg : regs)
+            {
+                Assertions.assertEquals(_rawData.getRegressorReader(reg).asDouble(i),
+                        grid.getRegressorReader(reg).asDouble(i));
+            }
+        }
+    }
+
+    @Test
+    void malformedRejected(@TempDir final Path dir_) throws IOException
+    {
+        final EnumFamily<SimpleStatus> statusFamily = _rawData.getFromStatus().getFamily();
+        final SimpleRegressor reg = _rawData.getAvailableRegressors().iterator().next();
+        final String header = "STATUS,NEXT_STATUS," + reg.name() + "\n";
+        final String status = _rawData.getFromStatus().name();
+        final DelimitedGridReader<SimpleStatus, SimpleRegressor> reader = new DelimitedGridReader<>(
+                statusFamily, _rawData.getRegressorFamily(), "STATUS", "NEXT_STATUS");
+
+        final Path unknownStatus = dir_.resolve("unknown.csv");
+        Files.writeString(unknownStatus, header + status + ",NOT_A_STATUS,1.5\n");
+        Assertions.assertThrows(IOException.class, () -> reader.read(unknownStatus));
+
+        final Path badNumber = dir_.resolve("number.csv");
+        Files.writeString(badNumber, header + status + ",," + "1.5x\n");
+        Assertions.assertThrows(IOException.class, () -> reader.read(badNumber));
+
+        final Path missingField = dir_.resolve("missing.csv");
+        Files.writeString(missingField, header + status + ",\n");
+        Assertions.assertThrows(IOException.class, () -> reader.read(missingField));
+    }
+
+    private boolean hasNextStatus(final int index_)
+    {
+        return (index_ % 7) != 0;
+    }
+
+    private SimpleStatus getNextStatus(final int index_)
+    {
+        return _rawData.getFromStatus().getFamily().getFromOrdinal(_rawData.getNextStatus(index_));
+    }
+}
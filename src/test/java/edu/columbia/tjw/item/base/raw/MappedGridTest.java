@@ -0,0 +1,196 @@
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.data.ItemGrid;
+import edu.columbia.tjw.item.data.ItemStatusGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+
+class MappedGridTest
+{
+    private final ItemFittingGrid<SimpleStatus, SimpleRegressor> _rawData;
+
+    MappedGridTest()
+    {
+        try (final InputStream iStream = MappedGridTest.class.getResourceAsStream("/raw_data.dat"))
+        {
+            _rawData = RawFittingGrid.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class);
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void fittingGridRoundTrip(@TempDir final Path dir_) throws IOException
+    {
+        final Path file = dir_.resolve("grid.igd");
+        MappedFittingGrid.writeToFile(_rawData, file);
+
+        final MappedFittingGrid<SimpleStatus, SimpleRegressor> mapped = MappedFittingGrid.open(file,
+                SimpleStatus.class, SimpleRegressor.class);
+
+        Assertions.assertEquals(_rawData.getFromStatus(), mapped.getFromStatus());
+        compareRegressors(_rawData, mapped);
+
+        for (int i = 0; i < _rawData.size(); i++)
+        {
+            Assertions.assertEquals(_rawData.getNextStatus(i), mapped.getNextStatus(i));
+        }
+    }
+
+    @Test
+    void statusGridRoundTrip(@TempDir final Path dir_) throws IOException
+    {
+        final ItemStatusGrid<SimpleStatus, SimpleRegressor> statusGrid = new FittingStatusGrid(_rawData);
+        final Path file = dir_.resolve("grid.igd");
+        MappedStatusGrid.writeToFile(statusGrid, file);
+
+        final MappedStatusGrid<SimpleStatus, SimpleRegressor> mapped = MappedStatusGrid.open(file,
+                SimpleStatus.class, SimpleRegressor.class);
+
+        Assertions.assertEquals(statusGrid.getStatusFamily(), mapped.getStatusFamily());
+        compareRegressors(statusGrid, mapped);
+
+        for (int i = 0; i < statusGrid.size(); i++)
+        {
+            Assertions.assertEquals(statusGrid.getStatus(i), mapped.getStatus(i));
+            Assertions.assertEquals(statusGrid.hasNextStatus(i), mapped.hasNextStatus(i));
+
+            if (statusGrid.hasNextStatus(i))
+            {
+                Assertions.assertEquals(statusGrid.getNextStatus(i), mapped.getNextStatus(i));
+            }
+        }
+    }
+
+    @Test
+    void wrongKindRejected(@TempDir final Path dir_) throws IOException
+    {
+        final Path file = dir_.resolve("grid.igd");
+        MappedFittingGrid.writeToFile(_rawData, file);
+
+        Assertions.assertThrows(IOException.class, () -> MappedStatusGrid.open(file, SimpleStatus.class,
+                SimpleRegressor.class));
+    }
+
+    @Test
+    void corruptHeaderRejected(@TempDir final Path dir_) throws IOException
+    {
+        final Path file = dir_.resolve("grid.igd");
+        MappedFittingGrid.writeToFile(_rawData, file);
+        final byte[] original = Files.readAllBytes(file);
+
+        // The first regressor ordinal follows the magic, version, kind, size, family bytes, from status and count.
+        final ByteBuffer bytes = ByteBuffer.wrap(original.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        final int ordinalPos = 7 * Integer.BYTES + bytes.getInt(4 * Integer.BYTES);
+        bytes.putInt(ordinalPos, 999);
+        Files.write(file, bytes.array());
+
+        final IOException badOrdinal = Assertions.assertThrows(IOException.class,
+                () -> MappedFittingGrid.open(file, SimpleStatus.class, SimpleRegressor.class));
+        Assertions.assertTrue(badOrdinal.getMessage().contains("ordinal 999"), badOrdinal.getMessage());
+
+        Files.write(file, Arrays.copyOf(original, original.length / 2));
+
+        final IOException truncated = Assertions.assertThrows(IOException.class,
+                () -> MappedFittingGrid.open(file, SimpleStatus.class, SimpleRegressor.class));
+        Assertions.assertTrue(truncated.getMessage().contains("past the end"), truncated.getMessage());
+    }
+
+    private static void compareRegressors(final ItemGrid<SimpleRegressor> expected_,
+                                          final MappedItemGrid<SimpleRegressor> actual_)
+    {
+        Assertions.assertEquals(expected_.size(), actual_.size());
+        Assertions.assertEquals(expected_.getAvailableRegressors(), actual_.getAvailableRegressors());
+
+        for (final SimpleRegressor reg : expected_.getAvailableRegressors())
+        {
+            final ItemRegressorReader expected = expected_.getRegressorReader(reg);
+            final ItemRegressorReader actual = actual_.getRegressorReader(reg);
+
+            for (int i = 0; i < expected_.size(); i++)
+            {
+                // Both sides are stored as floats, so these must match exactly.
+                Assertions.assertEquals(expected.asDouble(i), actual.asDouble(i));
+            }
+        }
+    }
+
+    /**
+     * Presents a fitting grid as a status grid, every row starting in the from status.
+     */
+    private static final class FittingStatusGrid implements ItemStatusGrid<SimpleStatus, SimpleRegressor>
+    {
+        private final ItemFittingGrid<SimpleStatus, SimpleRegressor> _grid;
+
+        public FittingStatusGrid(final ItemFittingGrid<SimpleStatus, SimpleRegressor> grid_)
+        {
+            _grid = grid_;
+        }
+
+        @Override
+        public EnumFamily<SimpleStatus> getStatusFamily()
+        {
+            return _grid.getFromStatus().getFamily();
+        }
+
+        @Override
+        public int getStatus(int index_)
+        {
+            return _grid.getFromStatus().ordinal();
+        }
+
+        @Override
+        public int getNextStatus(int index_)
+        {
+            return _grid.getNextStatus(index_);
+        }
+
+        @Override
+        public boolean hasNextStatus(int index_)
+        {
+            // Make some rows unobserved, to check that this survives the round trip.
+            return (index_ % 7) != 0;
+        }
+
+        @Override
+        public Set<SimpleRegressor> getAvailableRegressors()
+        {
+            return _grid.getAvailableRegressors();
+        }
+
+        @Override
+        public ItemRegressorReader getRegressorReader(SimpleRegressor field_)
+        {
+            return _grid.getRegressorReader(field_);
+        }
+
+        @Override
+        public int size()
+        {
+            return _grid.size();
+        }
+
+        @Override
+        public EnumFamily<SimpleRegressor> getRegressorFamily()
+        {
+            return _grid.getRegressorFamily();
+        }
+    }
+}
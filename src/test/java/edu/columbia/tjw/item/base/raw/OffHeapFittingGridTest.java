@@ -0,0 +1,80 @@
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.fit.calculator.FittingGridShard;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+class OffHeapFittingGridTest
+{
+    private final ItemFittingGrid<SimpleStatus, SimpleRegressor> _rawData;
+
+    OffHeapFittingGridTest()
+    {
+        try (final InputStream iStream = OffHeapFittingGridTest.class.getResourceAsStream("/raw_data.dat"))
+        {
+            _rawData = RawFittingGrid.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class);
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void matchesRawGrid()
+    {
+        final OffHeapFittingGrid<SimpleStatus, SimpleRegressor> offHeap = new OffHeapFittingGrid<>(_rawData);
+
+        Assertions.assertEquals(_rawData.size(), offHeap.size());
+        Assertions.assertEquals(_rawData.getFromStatus(), offHeap.getFromStatus());
+
+        for (int i = 0; i < _rawData.size(); i++)
+        {
+            Assertions.assertEquals(_rawData.getNextStatus(i), offHeap.getNextStatus(i));
+        }
+
+        for (final SimpleRegressor reg : _rawData.getAvailableRegressors())
+        {
+            final ItemRegressorReader expected = _rawData.getRegressorReader(reg);
+            final ItemRegressorReader actual = offHeap.getRegressorReader(reg);
+
+            for (int i = 0; i < _rawData.size(); i++)
+            {
+                Assertions.assertEquals(expected.asDouble(i), actual.asDouble(i));
+            }
+        }
+    }
+
+    @Test
+    void blockReads()
+    {
+        final OffHeapFittingGrid<SimpleStatus, SimpleRegressor> offHeap = new OffHeapFittingGrid<>(_rawData);
+        final int start = 1234;
+        final int length = 5000;
+        final FittingGridShard<SimpleStatus, SimpleRegressor> shard = new FittingGridShard<>(offHeap, start,
+                length);
+        final double[] block = new double[length];
+
+        for (final SimpleRegressor reg : _rawData.getAvailableRegressors())
+        {
+            final ItemRegressorReader expected = _rawData.getRegressorReader(reg);
+            shard.getRegressorReader(reg).read(0, length, block);
+
+            for (int i = 0; i < length; i++)
+            {
+                Assertions.assertEquals(expected.asDouble(start + i), block[i]);
+            }
+        }
+
+        final ItemRegressorReader reader = shard.getRegressorReader(
+                _rawData.getAvailableRegressors().iterator().next());
+        Assertions.assertThrows(ArrayIndexOutOfBoundsException.class, () -> reader.read(1, length, block));
+    }
+}
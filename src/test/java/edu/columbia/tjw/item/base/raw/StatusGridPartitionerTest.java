@@ -0,0 +1,134 @@
+package edu.columbia.tjw.item.base.raw;
+
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
+import edu.columbia.tjw.item.util.random.PrngType;
+import edu.columbia.tjw.item.util.random.RandomTool;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+
+class StatusGridPartitionerTest
+{
+    private final ItemFittingGrid<SimpleStatus, SimpleRegressor> _rawData;
+
+    StatusGridPartitionerTest()
+    {
+        try (final InputStream iStream = StatusGridPartitionerTest.class.getResourceAsStream("/raw_data.dat"))
+        {
+            _rawData = RawFittingGrid.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class);
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void matchesPerStatusGrids()
+    {
+        final RawItemStatusGrid<SimpleStatus, SimpleRegressor> grid = mixStatuses();
+
+        final SortedMap<SimpleStatus, RawFittingGrid<SimpleStatus, SimpleRegressor>> partitions =
+                RawFittingGrid.partition(grid, makeSettings());
+
+        // The same PRNG, used by each status in ordinal order.
+        final ItemSettings serialSettings = makeSettings();
+        int total = 0;
+
+        for (final SimpleStatus status : grid.getStatusFamily().getMembers())
+        {
+            final RawFittingGrid<SimpleStatus, SimpleRegressor> expected = RawFittingGrid.fromStatusGrid(grid,
+                    serialSettings, status);
+
+            if (expected.size() == 0)
+            {
+                Assertions.assertFalse(partitions.containsKey(status));
+                continue;
+            }
+
+            final RawFittingGrid<SimpleStatus, SimpleRegressor> actual = partitions.get(status);
+            Assertions.assertEquals(status, actual.getFromStatus());
+            Assertions.assertEquals(expected.size(), actual.size());
+            Assertions.assertEquals(expected.getAvailableRegressors(), actual.getAvailableRegressors());
+            total += actual.size();
+
+            for (int i = 0; i < expected.size(); i++)
+            {
+                Assertions.assertEquals(expected.getNextStatus(i), actual.getNextStatus(i));
+            }
+
+            for (final SimpleRegressor reg : expected.getAvailableRegressors())
+            {
+                for (int i = 0; i < expected.size(); i++)
+                {
+                    Assertions.assertEquals(expected.getRegressorReader(reg).asDouble(i),
+                            actual.getRegressorReader(reg).asDouble(i));
+                }
+            }
+        }
+
+        Assertions.assertTrue(partitions.size() > 1);
+        Assertions.assertTrue(total > 0 && total < grid.size());
+    }
+
+    private ItemSettings makeSettings()
+    {
+        return ItemSettings.newBuilder().setRand(RandomTool.getRandomGenerator(PrngType.SECURE, 0xcafebabe))
+                .setExecutor(new ForkJoinExecutor(4)).build();
+    }
+
+    /**
+     * Spread the rows over several from statuses, with some unobserved and some impossible next statuses.
+     */
+    private RawItemStatusGrid<SimpleStatus, SimpleRegressor> mixStatuses()
+    {
+        final EnumFamily<SimpleStatus> family = _rawData.getFromStatus().getFamily();
+        final EnumFamily<SimpleRegressor> regFamily = _rawData.getRegressorFamily();
+        final int size = _rawData.size();
+        final Random rand = new Random(1234L);
+        final int[] status = new int[size];
+        final int[] nextStatus = new int[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            final SimpleStatus from = family.getFromOrdinal(rand.nextInt(family.size()));
+            final List<SimpleStatus> reachable = from.getReachable();
+            status[i] = from.ordinal();
+
+            if (rand.nextInt(10) == 0)
+            {
+                nextStatus[i] = -1;
+            }
+            else if (rand.nextInt(10) == 0)
+            {
+                nextStatus[i] = rand.nextInt(family.size());
+            }
+            else
+            {
+                nextStatus[i] = reachable.isEmpty() ? -1 : reachable.get(rand.nextInt(reachable.size())).ordinal();
+            }
+        }
+
+        final float[][] columns = new float[regFamily.size()][];
+
+        for (final SimpleRegressor reg : _rawData.getAvailableRegressors())
+        {
+            final float[] column = new float[size];
+            _rawData.getRegressorReader(reg).read(0, size, column);
+            columns[reg.ordinal()] = column;
+        }
+
+        return new RawItemStatusGrid<>(family, regFamily, _rawData.getAvailableRegressors(), columns, status,
+                nextStatus);
+    }
+}
@@ -0,0 +1,188 @@
+package edu.columbia.tjw.item.fit;
+
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.StandardCurveFactory;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.base.raw.RawFittingGrid;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.data.ItemStatusGrid;
+import edu.columbia.tjw.item.util.EnumFamily;
+import edu.columbia.tjw.item.util.random.PrngType;
+import edu.columbia.tjw.item.util.random.RandomTool;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+
+class FamilyFitterTest
+{
+    private final ItemFittingGrid<SimpleStatus, SimpleRegressor> _rawData;
+
+    FamilyFitterTest()
+    {
+        try (final InputStream iStream = FamilyFitterTest.class.getResourceAsStream("/raw_data.dat"))
+        {
+            _rawData = RawFittingGrid.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class);
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void independentOfParallelism()
+    {
+        final MixedStatusGrid grid = new MixedStatusGrid(_rawData);
+
+        final FamilyFitResult<SimpleStatus, SimpleRegressor, StandardCurveType> serial = makeFitter(1).fit(grid);
+        final FamilyFitResult<SimpleStatus, SimpleRegressor, StandardCurveType> parallel = makeFitter(4).fit(grid);
+
+        Assertions.assertTrue(serial.isSuccessful());
+        Assertions.assertTrue(parallel.isSuccessful());
+        Assertions.assertTrue(serial.getStatuses().size() > 1);
+        Assertions.assertEquals(serial.getStatuses(), parallel.getStatuses());
+
+        final SortedMap<SimpleStatus, ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType>> expected =
+                serial.getBestParameters();
+        final SortedMap<SimpleStatus, ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType>> actual =
+                parallel.getBestParameters();
+
+        for (final SimpleStatus status : serial.getStatuses())
+        {
+            Assertions.assertEquals(serial.getChain(status).getLogLikelihood(),
+                    parallel.getChain(status).getLogLikelihood());
+            Assertions.assertEquals(expected.get(status).getEntryCount(), actual.get(status).getEntryCount());
+            Assertions.assertArrayEquals(expected.get(status).getBetas(), actual.get(status).getBetas());
+        }
+    }
+
+    @Test
+    void failureIsolated()
+    {
+        final MixedStatusGrid grid = new MixedStatusGrid(_rawData);
+        final SimpleStatus failing = grid.getStatusFamily().getFromOrdinal(grid._fromStatuses[0]);
+
+        final FamilyFitResult<SimpleStatus, SimpleRegressor, StandardCurveType> result = makeFitter(4).fit(grid,
+                (fitter_) ->
+                {
+                    if (fitter_.getStatus() == failing)
+                    {
+                        throw new IllegalStateException("Failing on purpose.");
+                    }
+                });
+
+        Assertions.assertFalse(result.isSuccessful());
+        Assertions.assertTrue(result.getFailure(failing) instanceof IllegalStateException);
+        Assertions.assertNull(result.getChain(failing));
+        Assertions.assertFalse(result.getBestParameters().containsKey(failing));
+
+        for (final SimpleStatus status : result.getStatuses())
+        {
+            if (status != failing)
+            {
+                Assertions.assertNotNull(result.getChain(status));
+                Assertions.assertNull(result.getFailure(status));
+            }
+        }
+    }
+
+    private FamilyFitter<SimpleStatus, SimpleRegressor, StandardCurveType> makeFitter(final int parallelism_)
+    {
+        final ItemSettings settings = ItemSettings.newBuilder()
+                .setRand(RandomTool.getRandomGenerator(PrngType.SECURE, 0xcafebabe))
+                .setExecutor(new ForkJoinExecutor(parallelism_)).build();
+
+        return new FamilyFitter<>(new StandardCurveFactory<>(), _rawData.getRegressorFamily(), settings);
+    }
+
+    /**
+     * Spreads the rows over every from status that can transition, keeping each next status reachable.
+     */
+    private static final class MixedStatusGrid implements ItemStatusGrid<SimpleStatus, SimpleRegressor>
+    {
+        private final ItemFittingGrid<SimpleStatus, SimpleRegressor> _grid;
+        private final int[] _fromStatuses;
+        private final int[] _status;
+        private final int[] _nextStatus;
+
+        public MixedStatusGrid(final ItemFittingGrid<SimpleStatus, SimpleRegressor> grid_)
+        {
+            final EnumFamily<SimpleStatus> family = grid_.getFromStatus().getFamily();
+            _fromStatuses = family.getMembers().stream().filter((x) -> x.getReachableCount() > 1)
+                    .mapToInt(SimpleStatus::ordinal).toArray();
+
+            _grid = grid_;
+            _status = new int[grid_.size()];
+            _nextStatus = new int[grid_.size()];
+
+            for (int i = 0; i < grid_.size(); i++)
+            {
+                // Uneven sizes, so that the statuses get different shares.
+                final int choice = (i % 7) % _fromStatuses.length;
+                final SimpleStatus from = family.getFromOrdinal(_fromStatuses[choice]);
+                final List<SimpleStatus> reachable = from.getReachable();
+
+                _status[i] = from.ordinal();
+                _nextStatus[i] = reachable.get(grid_.getNextStatus(i) % reachable.size()).ordinal();
+            }
+        }
+
+        @Override
+        public EnumFamily<SimpleStatus> getStatusFamily()
+        {
+            return _grid.getFromStatus().getFamily();
+        }
+
+        @Override
+        public int getStatus(int index_)
+        {
+            return _status[index_];
+        }
+
+        @Override
+        public int getNextStatus(int index_)
+        {
+            return _nextStatus[index_];
+        }
+
+        @Override
+        public boolean hasNextStatus(int index_)
+        {
+            return true;
+        }
+
+        @Override
+        public Set<SimpleRegressor> getAvailableRegressors()
+        {
+            return _grid.getAvailableRegressors();
+        }
+
+        @Override
+        public ItemRegressorReader getRegressorReader(SimpleRegressor field_)
+        {
+            return _grid.getRegressorReader(field_);
+        }
+
+        @Override
+        public int size()
+        {
+            return _grid.size();
+        }
+
+        @Override
+        public EnumFamily<SimpleRegressor> getRegressorFamily()
+        {
+            return _grid.getRegressorFamily();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package edu.columbia.tjw.item.fit;
+
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.StandardCurveFactory;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.base.raw.RawFittingGrid;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.util.random.PrngType;
+import edu.columbia.tjw.item.util.random.RandomTool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+
+class FitCheckpointTest
+{
+    private final ItemFittingGrid<SimpleStatus, SimpleRegressor> _rawData;
+
+    FitCheckpointTest()
+    {
+        try (final InputStream iStream = FitCheckpointTest.class.getResourceAsStream("/raw_data.dat"))
+        {
+            _rawData = RawFittingGrid.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class);
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void resumeMatchesUninterrupted(@TempDir final Path dir_) throws Exception
+    {
+        final Path file = dir_.resolve("fit.chk");
+        final Path saved = dir_.resolve("saved.chk");
+
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> expected;
+        final int expectedFrames;
+
+        try (final FitCheckpointer checkpointer = new FitCheckpointer(file))
+        {
+            final ItemFitter<SimpleStatus, SimpleRegressor, StandardCurveType> fitter = new ItemFitter<>(
+                    new StandardCurveFactory<>(), _rawData.getRegressorFamily(), _rawData, makeSettings(),
+                    checkpointer);
+            fitter.fitModel(Collections.emptySet(), regs("INCENTIVE"), 2, false);
+
+            // Pretend the fit died here.
+            checkpointer.flush();
+            Assertions.assertTrue(checkpointer.getWriteCount() > 0);
+            Files.copy(file, saved);
+
+            fitter.fitModel(Collections.emptySet(), regs("AGE"), 2, false);
+            expected = fitter.getBestParameters();
+            expectedFrames = fitter.getChain().size();
+        }
+
+        final FitCheckpoint<SimpleStatus, SimpleRegressor, StandardCurveType> checkpoint =
+                FitCheckpoint.readFromFile(saved, SimpleStatus.class, SimpleRegressor.class, StandardCurveType.class);
+        Assertions.assertTrue(checkpoint.getCompletedSteps() > 1);
+
+        final ItemFitter<SimpleStatus, SimpleRegressor, StandardCurveType> resumed = ItemFitter.resume(checkpoint,
+                _rawData, makeSettings(), null);
+
+        // The frames of each step come back as it is replayed, so far only the initial calibration has been.
+        Assertions.assertEquals(checkpoint.getSteps().get(0).getFrameCount(), resumed.getChain().size());
+        Assertions.assertTrue(resumed.getChain().size() < checkpoint.getFrames().size());
+
+        // Already done, this just replays.
+        resumed.fitModel(Collections.emptySet(), regs("INCENTIVE"), 2, false);
+        Assertions.assertEquals(checkpoint.getFrames().size(), resumed.getChain().size());
+
+        resumed.fitModel(Collections.emptySet(), regs("AGE"), 2, false);
+
+        Assertions.assertEquals(expectedFrames, resumed.getChain().size());
+        Assertions.assertEquals(expected.getEntryCount(), resumed.getBestParameters().getEntryCount());
+        Assertions.assertArrayEquals(expected.getBetas(), resumed.getBestParameters().getBetas());
+    }
+
+    @Test
+    void resumeInsideAnnealing(@TempDir final Path dir_) throws Exception
+    {
+        final Path file = dir_.resolve("fit.chk");
+        final Set<SimpleRegressor> curves = regs("INCENTIVE");
+
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> expected;
+        final int fitSteps;
+        final int byEntrySteps;
+
+        try (final FitCheckpointer checkpointer = new FitCheckpointer(file))
+        {
+            final ItemFitter<SimpleStatus, SimpleRegressor, StandardCurveType> fitter = new ItemFitter<>(
+                    new StandardCurveFactory<>(), _rawData.getRegressorFamily(), _rawData, makeSettings(),
+                    checkpointer);
+            fitter.fitModel(Collections.emptySet(), curves, 2, false);
+            fitSteps = readCheckpoint(checkpointer).getCompletedSteps();
+
+            fitter.runAnnealingByEntry(curves, false);
+            byEntrySteps = readCheckpoint(checkpointer).getCompletedSteps();
+
+            fitter.runAnnealingPass(curves, false);
+            expected = fitter.getBestParameters();
+        }
+
+        final FitCheckpoint<SimpleStatus, SimpleRegressor, StandardCurveType> last =
+                FitCheckpoint.readFromFile(file, SimpleStatus.class, SimpleRegressor.class, StandardCurveType.class);
+
+        // Stop inside each annealing phase, the resumed fit must line its steps up with the same entries.
+        Assertions.assertTrue(byEntrySteps > fitSteps);
+        Assertions.assertTrue(last.getCompletedSteps() > byEntrySteps + 1);
+
+        final int[] stopPoints = {fitSteps + 1, byEntrySteps + 1};
+
+        for (final int stop : stopPoints)
+        {
+            final ItemFitter<SimpleStatus, SimpleRegressor, StandardCurveType> resumed =
+                    ItemFitter.resume(last.truncate(stop), _rawData, makeSettings(), null);
+            resumed.fitModel(Collections.emptySet(), curves, 2, false);
+            resumed.runAnnealingByEntry(curves, false);
+            resumed.runAnnealingPass(curves, false);
+
+            Assertions.assertEquals(expected.getEntryCount(), resumed.getBestParameters().getEntryCount());
+            Assertions.assertArrayEquals(expected.getBetas(), resumed.getBestParameters().getBetas());
+        }
+    }
+
+    private FitCheckpoint<SimpleStatus, SimpleRegressor, StandardCurveType> readCheckpoint(
+            final FitCheckpointer checkpointer_) throws IOException
+    {
+        checkpointer_.flush();
+        return FitCheckpoint.readFromFile(checkpointer_.getFile(), SimpleStatus.class, SimpleRegressor.class,
+                StandardCurveType.class);
+    }
+
+    @Test
+    void writeFailureIsNotSticky(@TempDir final Path dir_) throws Exception
+    {
+        // The directory doesn't exist yet, so the first write fails.
+        final Path subDir = dir_.resolve("sub");
+        final Path file = subDir.resolve("fit.chk");
+
+        final ItemFitter<SimpleStatus, SimpleRegressor, StandardCurveType> fitter = new ItemFitter<>(
+                new StandardCurveFactory<>(), _rawData.getRegressorFamily(), _rawData, makeSettings());
+        final FitCheckpoint<SimpleStatus, SimpleRegressor, StandardCurveType> checkpoint =
+                new FitCheckpoint<>(fitter.getChain(), Collections.emptyList());
+
+        try (final FitCheckpointer checkpointer = new FitCheckpointer(file))
+        {
+            checkpointer.submit(checkpoint);
+            Assertions.assertThrows(IOException.class, checkpointer::flush);
+            Assertions.assertEquals(0, checkpointer.getWriteCount());
+
+            Files.createDirectory(subDir);
+            checkpointer.submit(checkpoint);
+            checkpointer.flush();
+            Assertions.assertEquals(1, checkpointer.getWriteCount());
+        }
+
+        Assertions.assertTrue(Files.exists(file));
+    }
+
+    private Set<SimpleRegressor> regs(final String name_)
+    {
+        return Collections.singleton(_rawData.getRegressorFamily().getFromName(name_));
+    }
+
+    private ItemSettings makeSettings()
+    {
+        return ItemSettings.newBuilder().setRand(RandomTool.getRandomGenerator(PrngType.SECURE, 0xcafebabe)).build();
+    }
+}
@@ -0,0 +1,105 @@
+package edu.columbia.tjw.item.fit.metrics;
+
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemSettings;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.StandardCurveFactory;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.base.raw.RawFittingGrid;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.fit.ItemFitter;
+import edu.columbia.tjw.item.fit.calculator.BlockCalculationType;
+import edu.columbia.tjw.item.optimize.OptimizerType;
+import edu.columbia.tjw.item.util.random.PrngType;
+import edu.columbia.tjw.item.util.random.RandomTool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+class FitMetricsTest
+{
+    @Test
+    void histogramBounds()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 1000; i++)
+        {
+            histogram.record(i);
+        }
+
+        Assertions.assertEquals(1000, histogram.getCount());
+        Assertions.assertEquals(500500, histogram.getTotalNanos());
+        Assertions.assertEquals(1000, histogram.getMaxNanos());
+        Assertions.assertEquals(0, new LatencyHistogram().getPercentileNanos(0.5));
+
+        // Power of two buckets, so each percentile is within a factor of two (above) of the truth.
+        final long median = histogram.getPercentileNanos(0.5);
+        Assertions.assertTrue(median >= 500 && median < 1000, "Median: " + median);
+        Assertions.assertEquals(1000, histogram.getPercentileNanos(1.0));
+
+        final LatencyHistogram copy = histogram.copy();
+        histogram.record(5000);
+        Assertions.assertEquals(1000, copy.getCount());
+        Assertions.assertEquals(1000, copy.getMaxNanos());
+    }
+
+    @Test
+    void instrumentedFit()
+    {
+        final ItemFittingGrid<SimpleStatus, SimpleRegressor> rawData = loadData();
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> plain = fit(rawData,
+                makeSettings().build());
+
+        final FitMetrics metrics = new FitMetrics();
+        final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> instrumented = fit(rawData,
+                makeSettings().setFitListener(metrics).build());
+
+        // Measuring the fit must not change it.
+        Assertions.assertArrayEquals(plain.getBetas(), instrumented.getBetas());
+
+        final FitMetricsSnapshot snapshot = metrics.snapshot();
+        final String report = snapshot.toString();
+        Assertions.assertTrue(report.contains("blocks[" + BlockCalculationType.VALUE + "]"), report);
+        Assertions.assertTrue(report.contains("optimizer[" + OptimizerType.LINE_SEARCH + "]"), report);
+
+        Assertions.assertTrue(snapshot.getBlockRows(BlockCalculationType.VALUE) >= rawData.size());
+        Assertions.assertTrue(snapshot.getRowsPerSecond(BlockCalculationType.VALUE) > 0.0);
+        Assertions.assertTrue(snapshot.getOptimizationCount(OptimizerType.LINE_SEARCH) > 0);
+        Assertions.assertTrue(snapshot.getOptimizerEvaluations(OptimizerType.LINE_SEARCH) > 0);
+        Assertions.assertTrue(snapshot.getLineSearchCount() > 0);
+        Assertions.assertTrue(snapshot.getLineSearchEvaluations() >= snapshot.getBracketEvaluations());
+        Assertions.assertTrue(snapshot.getPhaseTime(FitPhase.VALIDATION).getCount() > 0);
+        Assertions.assertTrue(snapshot.getTaskSubmissions() > 0);
+        Assertions.assertTrue(snapshot.getRetainedResults() > 0 && snapshot.getRetainedBytes() > 0);
+    }
+
+    private static ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> fit(
+            final ItemFittingGrid<SimpleStatus, SimpleRegressor> rawData_, final ItemSettings settings_)
+    {
+        final ItemFitter<SimpleStatus, SimpleRegressor, StandardCurveType> fitter = new ItemFitter<>(
+                new StandardCurveFactory<>(), rawData_.getRegressorFamily(), rawData_, settings_);
+        return fitter.getBestParameters();
+    }
+
+    private static ItemSettings.Builder makeSettings()
+    {
+        return ItemSettings.newBuilder().setRand(RandomTool.getRandomGenerator(PrngType.SECURE, 0xcafebabe))
+                .setValidate(true);
+    }
+
+    private static ItemFittingGrid<SimpleStatus, SimpleRegressor> loadData()
+    {
+        try (final InputStream iStream = FitMetricsTest.class.getResourceAsStream("/raw_data.dat"))
+        {
+            return RawFittingGrid.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class);
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
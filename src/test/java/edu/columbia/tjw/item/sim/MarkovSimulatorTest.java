@@ -0,0 +1,105 @@
+package edu.columbia.tjw.item.sim;
+
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.base.raw.RawFittingGrid;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+class MarkovSimulatorTest
+{
+    private static final int PERIODS = 6;
+
+    private final ItemFittingGrid<SimpleStatus, SimpleRegressor> _rawData;
+    private final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> _params;
+
+    MarkovSimulatorTest()
+    {
+        try (final InputStream iStream = MarkovSimulatorTest.class.getResourceAsStream("/raw_data.dat");
+             final InputStream pStream = MarkovSimulatorTest.class.getResourceAsStream("/test_model_medium.dat"))
+        {
+            _rawData = RawFittingGrid.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class);
+            _params = ItemParameters.readFromStream(pStream, SimpleStatus.class, SimpleRegressor.class,
+                    StandardCurveType.class);
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void simulationIsReproducible()
+    {
+        final Map<SimpleStatus, ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType>> params =
+                Collections.singletonMap(_params.getStatus(), _params);
+
+        final SimulationResult<SimpleStatus> serial = new MarkovSimulator<>(params, null,
+                new ForkJoinExecutor(1)).simulate(_rawData, _params.getStatus(), PERIODS, 1234L);
+        final SimulationResult<SimpleStatus> parallel = new MarkovSimulator<>(params, null,
+                new ForkJoinExecutor(4)).simulate(_rawData, _params.getStatus(), PERIODS, 1234L);
+
+        Assertions.assertEquals(_rawData.size(), serial.getPathCount());
+
+        for (int period = 0; period <= PERIODS; period++)
+        {
+            for (final SimpleStatus status : serial.getStatusFamily().getMembers())
+            {
+                Assertions.assertEquals(serial.getOccupancy(period, status), parallel.getOccupancy(period, status));
+            }
+        }
+    }
+
+    @Test
+    void simulationMatchesExpectedValue()
+    {
+        final MarkovSimulator<SimpleStatus, SimpleRegressor, StandardCurveType> simulator =
+                new MarkovSimulator<>(Collections.singletonMap(_params.getStatus(), _params), null);
+
+        final SimulationResult<SimpleStatus> sampled = simulator.simulate(_rawData, _params.getStatus(), PERIODS,
+                5678L);
+        final SimulationResult<SimpleStatus> expected = simulator.expectedValue(_rawData, _params.getStatus(),
+                PERIODS);
+        final double paths = _rawData.size();
+
+        for (int period = 0; period <= PERIODS; period++)
+        {
+            double total = 0.0;
+
+            for (final SimpleStatus status : expected.getStatusFamily().getMembers())
+            {
+                final double occupancy = expected.getOccupancy(period, status);
+                total += occupancy;
+
+                // Binomial noise of the sampled counts, allowing for plenty of standard deviations.
+                final double p = occupancy / paths;
+                final double tolerance = 6.0 * Math.sqrt(paths * p * (1.0 - p)) + 1.0;
+                Assertions.assertEquals(occupancy, sampled.getOccupancy(period, status), tolerance);
+
+                if (period < PERIODS)
+                {
+                    // Every path in a status must go somewhere.
+                    double outflow = 0.0;
+
+                    for (final SimpleStatus to : expected.getStatusFamily().getMembers())
+                    {
+                        outflow += sampled.getTransitions(period, status, to);
+                    }
+
+                    Assertions.assertEquals(sampled.getOccupancy(period, status), outflow);
+                }
+            }
+
+            Assertions.assertEquals(paths, total, 1.0e-6 * paths);
+        }
+    }
+}
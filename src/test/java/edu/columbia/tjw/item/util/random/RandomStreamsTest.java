@@ -0,0 +1,53 @@
+package edu.columbia.tjw.item.util.random;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RandomStreamsTest
+{
+    private static final int STREAM_COUNT = 8;
+    private static final int DRAW_COUNT = 100;
+
+    @Test
+    void streamsAreReproducible()
+    {
+        final RandomStreams a = RandomStreams.create(42L);
+        final RandomStreams b = RandomStreams.create(42L);
+
+        for (int i = 0; i < STREAM_COUNT; i++)
+        {
+            final RandomGenerator aStream = a.nextStream();
+            final RandomGenerator bStream = b.nextStream();
+
+            for (int k = 0; k < DRAW_COUNT; k++)
+            {
+                Assertions.assertEquals(aStream.nextLong(), bStream.nextLong());
+                Assertions.assertEquals(aStream.nextGaussian(), bStream.nextGaussian());
+            }
+        }
+    }
+
+    @Test
+    void streamsAreDistinct()
+    {
+        final RandomStreams streams = RandomStreams.create(42L);
+        final RandomStreams split = streams.split();
+        final long[] first = new long[STREAM_COUNT + 1];
+
+        for (int i = 0; i < STREAM_COUNT; i++)
+        {
+            first[i] = streams.nextStream().nextLong();
+        }
+
+        first[STREAM_COUNT] = split.nextStream().nextLong();
+
+        for (int i = 0; i < first.length; i++)
+        {
+            for (int k = i + 1; k < first.length; k++)
+            {
+                Assertions.assertNotEquals(first[i], first[k]);
+            }
+        }
+    }
+}
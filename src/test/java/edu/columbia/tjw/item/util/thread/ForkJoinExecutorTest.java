@@ -0,0 +1,119 @@
+package edu.columbia.tjw.item.util.thread;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ForkJoinExecutorTest
+{
+    @Test
+    void nestedRunAll()
+    {
+        // A single thread, so any blocking in the nested calls would deadlock.
+        try (final ForkJoinExecutor executor = new ForkJoinExecutor(1))
+        {
+            final List<SumTask> outer = new ArrayList<>();
+
+            for (int i = 0; i < 10; i++)
+            {
+                outer.add(new SumTask(executor, i));
+            }
+
+            final List<Integer> results = executor.runAll(outer);
+
+            Assertions.assertEquals(10, results.size());
+
+            for (int i = 0; i < 10; i++)
+            {
+                // Sum of 0..i, computed by the nested tasks, in order.
+                Assertions.assertEquals((i * (i + 1)) / 2, results.get(i).intValue());
+            }
+        }
+    }
+
+    @Test
+    void sharedByParallelism()
+    {
+        final ForkJoinExecutor shared = ForkJoinExecutor.shared(3);
+
+        Assertions.assertSame(shared, ForkJoinExecutor.shared(3));
+        Assertions.assertEquals(3, shared.getParallelism());
+
+        // Shared pools outlive any one user, closing leaves them running.
+        shared.close();
+        Assertions.assertFalse(shared.getPool().isShutdown());
+
+        final ForkJoinExecutor owned = new ForkJoinExecutor(3);
+        owned.close();
+        Assertions.assertTrue(owned.getPool().isShutdown());
+    }
+
+    @Test
+    void exceptionPropagates()
+    {
+        final ForkJoinExecutor executor = ForkJoinExecutor.shared(2);
+        final List<GeneralTask<Integer>> tasks = new ArrayList<>();
+
+        tasks.add(new ConstantTask(1));
+        tasks.add(new GeneralTask<Integer>()
+        {
+            @Override
+            protected Integer subRun()
+            {
+                throw new IllegalStateException("Failed.");
+            }
+        });
+
+        Assertions.assertThrows(RuntimeException.class, () -> executor.runAll(tasks));
+    }
+
+    private static final class SumTask extends GeneralTask<Integer>
+    {
+        private final ItemExecutor _executor;
+        private final int _count;
+
+        public SumTask(final ItemExecutor executor_, final int count_)
+        {
+            _executor = executor_;
+            _count = count_;
+        }
+
+        @Override
+        protected Integer subRun()
+        {
+            final List<ConstantTask> inner = new ArrayList<>();
+
+            for (int i = 0; i <= _count; i++)
+            {
+                inner.add(new ConstantTask(i));
+            }
+
+            int sum = 0;
+
+            for (final Integer next : _executor.runAll(inner))
+            {
+                sum += next;
+            }
+
+            return sum;
+        }
+    }
+
+    private static final class ConstantTask extends GeneralTask<Integer>
+    {
+        private final int _value;
+
+        public ConstantTask(final int value_)
+        {
+            _value = value_;
+        }
+
+        @Override
+        protected Integer subRun()
+        {
+            return _value;
+        }
+    }
+}
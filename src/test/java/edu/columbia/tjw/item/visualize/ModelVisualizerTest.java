@@ -0,0 +1,178 @@
+package edu.columbia.tjw.item.visualize;
+
+import edu.columbia.tjw.item.ItemModel;
+import edu.columbia.tjw.item.ItemParameters;
+import edu.columbia.tjw.item.ItemRegressorReader;
+import edu.columbia.tjw.item.algo.QuantileBreakdown;
+import edu.columbia.tjw.item.algo.QuantileStatistics;
+import edu.columbia.tjw.item.base.SimpleRegressor;
+import edu.columbia.tjw.item.base.SimpleStatus;
+import edu.columbia.tjw.item.base.StandardCurveType;
+import edu.columbia.tjw.item.base.raw.RawFittingGrid;
+import edu.columbia.tjw.item.data.ItemFittingGrid;
+import edu.columbia.tjw.item.fit.ParamFittingGrid;
+import edu.columbia.tjw.item.util.thread.ForkJoinExecutor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+class ModelVisualizerTest
+{
+    private static final double TOLERANCE = 1.0e-12;
+
+    private final ItemFittingGrid<SimpleStatus, SimpleRegressor> _rawData;
+    private final ItemParameters<SimpleStatus, SimpleRegressor, StandardCurveType> _params;
+
+    ModelVisualizerTest()
+    {
+        try (final InputStream iStream = ModelVisualizerTest.class.getResourceAsStream("/raw_data.dat");
+             final InputStream pStream = ModelVisualizerTest.class.getResourceAsStream("/test_model_medium.dat"))
+        {
+            _rawData = RawFittingGrid.readFromStream(iStream, SimpleStatus.class, SimpleRegressor.class);
+            _params = ItemParameters.readFromStream(pStream, SimpleStatus.class, SimpleRegressor.class,
+                    StandardCurveType.class);
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void parallelScanMatchesSerial()
+    {
+        final ParamFittingGrid<SimpleStatus, SimpleRegressor, StandardCurveType> grid =
+                new ParamFittingGrid<>(_params, _rawData);
+
+        // Whole grid in one chunk, then several chunk sizes (and so merge trees) on different executors.
+        final int[] rowsPerTask = {_rawData.size(), 4099, 1013};
+        final int[] threads = {1, 3, 2};
+
+        for (int i = 0; i < rowsPerTask.length; i++)
+        {
+            final ModelVisualizer<SimpleStatus, SimpleRegressor, StandardCurveType> visualizer =
+                    new ModelVisualizer<>(_params, _rawData, new TreeSet<>(), ForkJoinExecutor.shared(threads[i]),
+                            rowsPerTask[i]);
+
+            for (final SimpleStatus to : visualizer.getReachable())
+            {
+                for (final SimpleRegressor reg : visualizer.getRegressors())
+                {
+                    final QuantileStatistics[] expected = serialStatistics(grid, to, reg);
+                    assertClose(expected[0], visualizer.getActualDistribution(to, reg));
+                    assertClose(expected[1], visualizer.getModelDistribution(to, reg));
+                }
+            }
+        }
+    }
+
+    @Test
+    void mergeOrderIndependent()
+    {
+        final ParamFittingGrid<SimpleStatus, SimpleRegressor, StandardCurveType> grid =
+                new ParamFittingGrid<>(_params, _rawData);
+        final SimpleStatus to = _params.getStatus().getReachable().get(1);
+        final SimpleRegressor reg = _params.getUniqueRegressors().iterator().next();
+        final QuantileStatistics[] expected = serialStatistics(grid, to, reg);
+
+        final ItemRegressorReader reader = grid.getRegressorReader(reg);
+        final QuantileBreakdown breakdown = expected[1].getQuantApprox();
+        final ItemModel<SimpleStatus, SimpleRegressor, StandardCurveType> model = new ItemModel<>(_params);
+        final double[] workspace = new double[_params.getStatus().getReachableCount()];
+        final int toIndex = _params.getStatus().getReachable().indexOf(to);
+        final int chunkSize = 1013;
+
+        final List<QuantileStatistics.QuantileStatisticsBuilder> chunks = new ArrayList<>();
+
+        for (int start = 0; start < grid.size(); start += chunkSize)
+        {
+            final QuantileStatistics.QuantileStatisticsBuilder builder = QuantileStatistics.builder(breakdown);
+
+            for (int k = start; k < Math.min(grid.size(), start + chunkSize); k++)
+            {
+                model.transitionProbability(grid, k, workspace);
+                builder.append(reader.asDouble(k), workspace[toIndex]);
+            }
+
+            chunks.add(builder);
+        }
+
+        final List<QuantileStatistics.QuantileStatisticsBuilder> reversed = new ArrayList<>(chunks);
+        Collections.reverse(reversed);
+        final List<QuantileStatistics.QuantileStatisticsBuilder> shuffled = new ArrayList<>(chunks);
+        Collections.shuffle(shuffled, new Random(0xbeef));
+
+        for (final List<QuantileStatistics.QuantileStatisticsBuilder> order : List.of(chunks, reversed, shuffled))
+        {
+            final QuantileStatistics.QuantileStatisticsBuilder total = QuantileStatistics.builder(breakdown);
+
+            for (final QuantileStatistics.QuantileStatisticsBuilder next : order)
+            {
+                total.merge(next);
+            }
+
+            assertClose(expected[1], total.build());
+        }
+    }
+
+    /**
+     * The visualizer's original computation: one serial pass over the grid per (to status, regressor) pair.
+     *
+     * @return The observed and model statistics
+     */
+    private QuantileStatistics[] serialStatistics(final ParamFittingGrid<SimpleStatus, SimpleRegressor,
+            StandardCurveType> grid_, final SimpleStatus to_, final SimpleRegressor reg_)
+    {
+        final ItemModel<SimpleStatus, SimpleRegressor, StandardCurveType> model = new ItemModel<>(_params);
+        final double[] workspace = new double[_params.getStatus().getReachableCount()];
+        final int toIndex = _params.getStatus().getReachable().indexOf(to_);
+
+        final ItemRegressorReader reader = grid_.getRegressorReader(reg_);
+        final QuantileBreakdown breakdown = QuantileBreakdown.buildApproximation(reader);
+        final QuantileStatistics.QuantileStatisticsBuilder approxBuilder = QuantileStatistics.builder(breakdown);
+        final QuantileStatistics.QuantileStatisticsBuilder modelBuilder = QuantileStatistics.builder(breakdown);
+
+        for (int i = 0; i < grid_.size(); i++)
+        {
+            final double x = reader.asDouble(i);
+            final double prob = (grid_.getNextStatus(i) == to_.ordinal()) ? 1.0 : 0.0;
+            approxBuilder.append(x, prob);
+
+            model.transitionProbability(grid_, i, workspace);
+            modelBuilder.append(x, workspace[toIndex]);
+        }
+
+        return new QuantileStatistics[]{approxBuilder.build(), modelBuilder.build()};
+    }
+
+    private static void assertClose(final QuantileStatistics expected_, final QuantileStatistics actual_)
+    {
+        Assertions.assertEquals(expected_.getSize(), actual_.getSize());
+        assertClose(expected_.getMeanY(), actual_.getMeanY());
+
+        for (int i = 0; i < expected_.getSize(); i++)
+        {
+            Assertions.assertEquals(expected_.getCount(i), actual_.getCount(i));
+            assertClose(expected_.getMeanY(i), actual_.getMeanY(i));
+            assertClose(expected_.getDevY(i), actual_.getDevY(i));
+        }
+    }
+
+    private static void assertClose(final double expected_, final double actual_)
+    {
+        if (Double.isNaN(expected_))
+        {
+            Assertions.assertEquals(expected_, actual_);
+            return;
+        }
+
+        Assertions.assertEquals(expected_, actual_, TOLERANCE * Math.max(1.0, Math.abs(expected_)));
+    }
+}